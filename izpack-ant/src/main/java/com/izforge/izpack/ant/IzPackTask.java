@@ -79,6 +79,26 @@ public class IzPackTask extends Task implements PackagerListener
      */
     private int compressionLevel;
 
+    /**
+     * Holds value of property packThreads.
+     */
+    private int packThreads;
+
+    /**
+     * Holds value of property packCache.
+     */
+    private String packCache;
+
+    /**
+     * Holds value of property scanThreads.
+     */
+    private int scanThreads;
+
+    /**
+     * Holds value of property classDataSharingJava.
+     */
+    private String classDataSharingJava;
+
     /**
      * Holds value of property installerType.
      */
@@ -112,6 +132,8 @@ public class IzPackTask extends Task implements PackagerListener
         izPackDir = null;
         compression = "default";
         compressionLevel = -1;
+        packThreads = 1;
+        scanThreads = 1;
     }
 
 
@@ -209,7 +231,7 @@ public class IzPackTask extends Task implements PackagerListener
             ClassLoader loader = new URLClassLoader(getUrlsForClassloader());
             Class runableClass = loader.loadClass("com.izforge.izpack.ant.IzpackAntRunnable");
             Constructor constructor = runableClass.getConstructors()[0];
-            Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, mkdirs, compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir);
+            Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, mkdirs, compressionLevel, packThreads, packCache, scanThreads, classDataSharingJava, properties, inheritAll, getProject().getProperties(), izPackDir);
             final Thread thread = new Thread((Runnable) instance);
             thread.setContextClassLoader(loader);
             thread.start();
@@ -356,6 +378,39 @@ public class IzPackTask extends Task implements PackagerListener
         this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * @param packThreads The number of threads used to write packs. Values greater than 1 write packs in parallel.
+     */
+    public void setPackThreads(int packThreads)
+    {
+        this.packThreads = packThreads;
+    }
+
+    /**
+     * @param packCache The directory used to cache compressed packs between builds.
+     */
+    public void setPackCache(String packCache)
+    {
+        this.packCache = packCache;
+    }
+
+    /**
+     * @param scanThreads The number of threads used to list directories when scanning filesets.
+     */
+    public void setScanThreads(int scanThreads)
+    {
+        this.scanThreads = scanThreads;
+    }
+
+    /**
+     * @param classDataSharingJava The Java installation used to generate a class data sharing archive for the
+     *                             installer.
+     */
+    public void setClassDataSharingJava(String classDataSharingJava)
+    {
+        this.classDataSharingJava = classDataSharingJava;
+    }
+
     /**
      * Ant will call this for each &lt;property&gt; tag to the IzPack task.
      */
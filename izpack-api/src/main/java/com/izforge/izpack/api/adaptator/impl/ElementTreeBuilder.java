@@ -0,0 +1,302 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.adaptator.impl;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Stack;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.NamespaceSupport;
+
+
+/**
+ * A SAX handler that builds a DOM tree directly from parser events.
+ * <p/>
+ * This produces the same tree as the identity transformation performed by the
+ * {@link com.izforge.izpack.api.adaptator.IXMLParser#XSL_FILE_NAME} style sheet, without the cost of compiling
+ * and running it:
+ * <ul>
+ * <li>line numbers are stored in the <em>ln</em> user data of each element as it is created</li>
+ * <li><tt>xfragment</tt> elements left by XInclude processing are replaced by their content, unless they are the
+ * document element</li>
+ * <li>comments and processing instructions are dropped, and adjacent character data is merged into a single text
+ * node</li>
+ * <li>attribute values are pooled, so that the many repeated values in large documents share the same string</li>
+ * </ul>
+ */
+class ElementTreeBuilder extends DefaultHandler
+{
+
+    /**
+     * The name of the element that wraps XInclude fragments.
+     */
+    private static final String FRAGMENT = "xfragment";
+
+    /**
+     * Attribute values longer than this aren't pooled, as they are unlikely to be repeated.
+     */
+    private static final int MAX_POOLED_LENGTH = 64;
+
+    /**
+     * The document being built.
+     */
+    private final Document document;
+
+    /**
+     * The pooled attribute values.
+     */
+    private final Map<String, String> pool = new HashMap<String, String>();
+
+    /**
+     * The elements being built. Elements that are replaced by their content are represented by <tt>null</tt>.
+     */
+    private final Stack<Element> elements = new Stack<Element>();
+
+    /**
+     * The namespaces in scope in the parsed document.
+     */
+    private final NamespaceSupport inputNamespaces = new NamespaceSupport();
+
+    /**
+     * The namespaces in scope in the built tree.
+     */
+    private final NamespaceSupport outputNamespaces = new NamespaceSupport();
+
+    /**
+     * Determines if a namespace context has been pushed for the next element.
+     */
+    private boolean contextPushed;
+
+    /**
+     * Character data not yet added to the tree.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * The node that content is added to.
+     */
+    private Node current;
+
+    /**
+     * The locator given while parsing.
+     */
+    private Locator locator;
+
+
+    /**
+     * Constructs an <tt>ElementTreeBuilder</tt>.
+     *
+     * @param document the document to build
+     */
+    public ElementTreeBuilder(Document document)
+    {
+        this.document = document;
+        this.current = document;
+    }
+
+    /**
+     * Returns the document.
+     *
+     * @return the document
+     */
+    public Document getDocument()
+    {
+        return document;
+    }
+
+    /**
+     * Returns the locator on the current position.
+     *
+     * @return the current locator. May be <tt>null</tt>
+     */
+    public Locator getDocumentLocator()
+    {
+        return locator;
+    }
+
+    @Override
+    public void setDocumentLocator(Locator locator)
+    {
+        this.locator = locator;
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) throws SAXException
+    {
+        if (!contextPushed)
+        {
+            inputNamespaces.pushContext();
+            contextPushed = true;
+        }
+        inputNamespaces.declarePrefix(prefix, uri);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+    {
+        if (!contextPushed)
+        {
+            inputNamespaces.pushContext();
+        }
+        contextPushed = false;
+        if (FRAGMENT.equals(qName) && (uri == null || uri.length() == 0) && current != document)
+        {
+            // the fragment's content replaces it, so its text merges with the surrounding text
+            elements.push(null);
+            return;
+        }
+        flushText();
+        Element element = document.createElementNS(uri != null && uri.length() != 0 ? uri : null, qName);
+        declareNamespaces(element);
+        for (int i = 0; i < atts.getLength(); ++i)
+        {
+            String attributeUri = atts.getURI(i);
+            element.setAttributeNS(attributeUri != null && attributeUri.length() != 0 ? attributeUri : null,
+                                   atts.getQName(i), pool(atts.getValue(i)));
+        }
+        if (locator != null)
+        {
+            element.setUserData("ln", locator.getLineNumber(), null);
+        }
+        current.appendChild(element);
+        current = element;
+        elements.push(element);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException
+    {
+        inputNamespaces.popContext();
+        Element element = elements.pop();
+        if (element != null)
+        {
+            flushText();
+            outputNamespaces.popContext();
+            current = element.getParentNode();
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException
+    {
+        text.append(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+    {
+        text.append(ch, start, length);
+    }
+
+    @Override
+    public void endDocument() throws SAXException
+    {
+        flushText();
+    }
+
+    /**
+     * Declares the namespaces in scope in the parsed document that aren't yet in scope in the built tree.
+     * <p/>
+     * Like the copy made by the style sheet, this includes namespaces declared by replaced <tt>xfragment</tt>
+     * elements.
+     *
+     * @param element the element to declare the namespaces on
+     */
+    private void declareNamespaces(Element element)
+    {
+        outputNamespaces.pushContext();
+        Enumeration prefixes = inputNamespaces.getPrefixes();
+        while (prefixes.hasMoreElements())
+        {
+            declareNamespace(element, (String) prefixes.nextElement());
+        }
+        declareNamespace(element, "");
+    }
+
+    /**
+     * Declares a namespace on an element, if it isn't already in scope in the built tree.
+     *
+     * @param element the element
+     * @param prefix  the namespace prefix, or an empty string for the default namespace
+     */
+    private void declareNamespace(Element element, String prefix)
+    {
+        if (!XMLConstants.XML_NS_PREFIX.equals(prefix))
+        {
+            String uri = inputNamespaces.getURI(prefix);
+            uri = (uri != null) ? uri : "";
+            String outputUri = outputNamespaces.getURI(prefix);
+            outputUri = (outputUri != null) ? outputUri : "";
+            if (!uri.equals(outputUri))
+            {
+                String name = (prefix.length() == 0) ? XMLConstants.XMLNS_ATTRIBUTE
+                        : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+                element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, name, uri);
+                outputNamespaces.declarePrefix(prefix, uri);
+            }
+        }
+    }
+
+    /**
+     * Adds any pending character data to the current element.
+     */
+    private void flushText()
+    {
+        if (text.length() != 0)
+        {
+            if (current != document)
+            {
+                current.appendChild(document.createTextNode(text.toString()));
+            }
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Returns the pooled instance of an attribute value.
+     *
+     * @param value the value
+     * @return the pooled value
+     */
+    private String pool(String value)
+    {
+        if (value.length() > MAX_POOLED_LENGTH)
+        {
+            return value;
+        }
+        String result = pool.get(value);
+        if (result == null)
+        {
+            pool.put(value, value);
+            result = value;
+        }
+        return result;
+    }
+}
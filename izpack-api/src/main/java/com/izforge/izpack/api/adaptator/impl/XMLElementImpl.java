@@ -32,8 +32,10 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Pattern;
 
@@ -63,6 +65,12 @@ public class XMLElementImpl implements IXMLElement
      */
     private List<IXMLElement> childrenList;
 
+    /**
+     * The children elements, indexed by name.
+     * It is generated with the childrenList.
+     */
+    private Map<String, List<IXMLElement>> childrenByName;
+
     /**
      * Create a new root element in a new document.
      *
@@ -170,11 +178,20 @@ public class XMLElementImpl implements IXMLElement
         {
             hasChanged = false;
             childrenList = new ArrayList<IXMLElement>();
+            childrenByName = new HashMap<String, List<IXMLElement>>();
             for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
             {
                 if (child.getNodeType() == Node.ELEMENT_NODE)
                 {
-                    childrenList.add(new XMLElementImpl(child));
+                    XMLElementImpl xmlElement = new XMLElementImpl(child);
+                    childrenList.add(xmlElement);
+                    List<IXMLElement> named = childrenByName.get(child.getNodeName());
+                    if (named == null)
+                    {
+                        named = new ArrayList<IXMLElement>(1);
+                        childrenByName.put(child.getNodeName(), named);
+                    }
+                    named.add(xmlElement);
                 }
             }
         }
@@ -216,15 +233,9 @@ public class XMLElementImpl implements IXMLElement
     @Override
     public List<IXMLElement> getChildrenNamed(String name)
     {
-        List<IXMLElement> res = new ArrayList<IXMLElement>();
-        for (IXMLElement child : getChildren())
-        {
-            if (child.getName() != null && child.getName().equals(name))
-            {
-                res.add(new XMLElementImpl(child.getElement()));
-            }
-        }
-        return res;
+        initChildrenList();
+        List<IXMLElement> named = childrenByName.get(name);
+        return (named != null) ? new ArrayList<IXMLElement>(named) : new ArrayList<IXMLElement>();
     }
 
     @Override
@@ -349,6 +360,7 @@ public class XMLElementImpl implements IXMLElement
     @Override
     public void setContent(String content)
     {
+        hasChanged = true;
         Node child;
         while ((child = this.element.getFirstChild()) != null)
         {
@@ -26,15 +26,18 @@ package com.izforge.izpack.api.adaptator.impl;
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
 import com.izforge.izpack.api.adaptator.XMLException;
+import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
+import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -92,19 +95,50 @@ public class XMLParser implements IXMLParser
         }
     }
 
-    private LineNumberFilter filter;
+    /**
+     * The compiled style sheet. Shared by all parsers, as compiling it is expensive.
+     */
+    private static Templates templates;
+
+    /**
+     * The factory used to create documents when building the element tree directly.
+     */
+    private static DocumentBuilderFactory documentFactory;
+
+    private final XMLReader xmlReader;
+    private final LineNumberFilter filter;
+    private final boolean direct;
+    private ElementTreeBuilder builder;
     private String parsedItem = null;
 
+    /**
+     * Constructs an <tt>XMLParser</tt> that builds the element tree via the {@link #XSL_FILE_NAME} style sheet.
+     */
     public XMLParser()
     {
+        this(false);
+    }
+
+    /**
+     * Constructs an <tt>XMLParser</tt>.
+     * <p/>
+     * When <tt>direct</tt> is <tt>true</tt>, the element tree is built from the parser events as they are
+     * received, rather than by transforming the parsed document with the {@link #XSL_FILE_NAME} style sheet. The
+     * resulting tree is the same, but is built in a single pass, without holding the intermediate document. This
+     * is significantly faster, and uses less memory, for large documents.
+     *
+     * @param direct if <tt>true</tt>, build the element tree directly from the parser events
+     */
+    public XMLParser(boolean direct)
+    {
+        this.direct = direct;
         try
         {
             SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
             saxParserFactory.setNamespaceAware(true);
             saxParserFactory.setXIncludeAware(true);
-            XMLReader xmlReader = saxParserFactory.newSAXParser().getXMLReader();
+            xmlReader = saxParserFactory.newSAXParser().getXMLReader();
             filter = new LineNumberFilter(xmlReader);
-
         }
         catch (ParserConfigurationException e)
         {
@@ -116,9 +150,9 @@ public class XMLParser implements IXMLParser
         }
     }
 
-    private IXMLElement searchFirstElement(DOMResult domResult)
+    private IXMLElement searchFirstElement(Node document)
     {
-        for (Node child = domResult.getNode().getFirstChild(); child != null; child = child.getNextSibling())
+        for (Node child = document.getFirstChild(); child != null; child = child.getNextSibling())
         {
             if (child.getNodeType() == Node.ELEMENT_NODE)
             {
@@ -128,7 +162,12 @@ public class XMLParser implements IXMLParser
         return null;
     }
 
-    private DOMResult parseLineNrFromInputSource(InputSource inputSource)
+    private Node parseLineNrFromInputSource(InputSource inputSource)
+    {
+        return direct ? parseDirect(inputSource) : parseTransform(inputSource);
+    }
+
+    private Node parseTransform(InputSource inputSource)
     {
         DOMResult result = null;
         try
@@ -136,45 +175,129 @@ public class XMLParser implements IXMLParser
             result = new DOMResult();
             SAXSource source = new SAXSource(inputSource);
             source.setXMLReader(filter);
-            URL xslResourceUrl = IXMLParser.class.getResource(XSL_FILE_NAME);
-            if (xslResourceUrl == null)
-            {
-                throw new XMLException("Can't find IzPack internal file \"" + XSL_FILE_NAME + "\"");
-            }
-            Source xsltSource = new StreamSource(xslResourceUrl.openStream());
-            Transformer xformer = TransformerFactory.newInstance().newTransformer(xsltSource);
+            Transformer xformer = getTemplates().newTransformer();
             xformer.transform(source, result);
             filter.applyLN(result);
         }
         catch (TransformerException e)
         {
-            String extraInfos = null;
-            if (this.parsedItem != null)
-            {
-                extraInfos = " in " + parsedItem;
-            }
             // we try to get the location of the error.
             // can't use an ErrorHander here !
-            if (e.getLocator() == null && filter.getDocumentLocator() != null)
-            {
-                Locator locator = filter.getDocumentLocator();
-                extraInfos += " at line " + locator.getLineNumber() + ", column " + locator.getColumnNumber();
-            }
-            if (extraInfos != null)
-            {
-                throw new XMLException("Error" + extraInfos + " : " + e.getMessage(), e);
-            }
+            Locator locator = (e.getLocator() == null) ? filter.getDocumentLocator() : null;
+            throw createException(e, locator);
+        }
+        catch (IOException e)
+        {
             throw new XMLException(e);
         }
+        finally
+        {
+            this.parsedItem = null;
+        }
+        return result.getNode();
+    }
+
+    private Node parseDirect(InputSource inputSource)
+    {
+        try
+        {
+            builder = new ElementTreeBuilder(newDocument());
+            xmlReader.setContentHandler(builder);
+            xmlReader.parse(inputSource);
+            return builder.getDocument();
+        }
+        catch (SAXException e)
+        {
+            throw createException(e, builder.getDocumentLocator());
+        }
         catch (IOException e)
         {
             throw new XMLException(e);
         }
         finally
         {
+            xmlReader.setContentHandler(null);
+            builder = null;
             this.parsedItem = null;
         }
-        return result;
+    }
+
+    /**
+     * Creates an exception for a parse error, including the parsed item and the location of the error, if known.
+     *
+     * @param exception the parse error
+     * @param locator   the location of the error, if it isn't reported by the exception. May be <tt>null</tt>
+     * @return a new exception
+     */
+    private XMLException createException(Exception exception, Locator locator)
+    {
+        String extraInfos = null;
+        if (this.parsedItem != null)
+        {
+            extraInfos = " in " + parsedItem;
+        }
+        if (locator != null)
+        {
+            extraInfos = (extraInfos != null ? extraInfos : "") + " at line " + locator.getLineNumber()
+                    + ", column " + locator.getColumnNumber();
+        }
+        if (extraInfos != null)
+        {
+            return new XMLException("Error" + extraInfos + " : " + exception.getMessage(), exception);
+        }
+        return new XMLException(exception);
+    }
+
+    /**
+     * Returns the compiled style sheet, compiling it on first use.
+     *
+     * @return the compiled style sheet
+     * @throws IOException          if the style sheet cannot be read
+     * @throws TransformerException if the style sheet cannot be compiled
+     */
+    private static synchronized Templates getTemplates() throws IOException, TransformerException
+    {
+        if (templates == null)
+        {
+            URL xslResourceUrl = IXMLParser.class.getResource(XSL_FILE_NAME);
+            if (xslResourceUrl == null)
+            {
+                throw new XMLException("Can't find IzPack internal file \"" + XSL_FILE_NAME + "\"");
+            }
+            InputStream xslStream = xslResourceUrl.openStream();
+            try
+            {
+                Source xsltSource = new StreamSource(xslStream, xslResourceUrl.toExternalForm());
+                templates = TransformerFactory.newInstance().newTemplates(xsltSource);
+            }
+            finally
+            {
+                xslStream.close();
+            }
+        }
+        return templates;
+    }
+
+    /**
+     * Creates a new empty document.
+     *
+     * @return a new document
+     */
+    private static synchronized Document newDocument()
+    {
+        try
+        {
+            if (documentFactory == null)
+            {
+                documentFactory = DocumentBuilderFactory.newInstance();
+                documentFactory.setNamespaceAware(true);
+            }
+            return documentFactory.newDocumentBuilder().newDocument();
+        }
+        catch (ParserConfigurationException e)
+        {
+            throw new XMLException(e);
+        }
     }
 
     public IXMLElement parse(InputStream inputStream)
@@ -183,7 +306,7 @@ public class XMLParser implements IXMLParser
 
         this.parsedItem = null;
         InputSource inputSource = new InputSource(inputStream);
-        DOMResult result = parseLineNrFromInputSource(inputSource);
+        Node result = parseLineNrFromInputSource(inputSource);
         return searchFirstElement(result);
     }
 
@@ -194,7 +317,7 @@ public class XMLParser implements IXMLParser
         this.parsedItem = systemId;
         InputSource inputSource = new InputSource(inputStream);
         inputSource.setSystemId(systemId);
-        DOMResult result = parseLineNrFromInputSource(inputSource);
+        Node result = parseLineNrFromInputSource(inputSource);
         return searchFirstElement(result);
     }
 
@@ -211,8 +334,8 @@ public class XMLParser implements IXMLParser
     {
         this.parsedItem = inputURL.toString();
         InputSource inputSource = new InputSource(inputURL.toExternalForm());
-        DOMResult domResult = parseLineNrFromInputSource(inputSource);
-        return searchFirstElement(domResult);
+        Node result = parseLineNrFromInputSource(inputSource);
+        return searchFirstElement(result);
     }
 
     private void checkNotNullStream(InputStream inputStream) {
@@ -125,6 +125,11 @@ public class Info implements Serializable
 
     private boolean pack200Compression;
 
+    /**
+     * Determines if jar entries are stored uncompressed in packs, to be compressed along with the pack.
+     */
+    private boolean solidJarCompression;
+
     private boolean requirePrivilegedExecution = false;
 
     private boolean requirePrivilegedExecutionUninstaller = false;
@@ -398,6 +403,16 @@ public class Info implements Serializable
         return pack200Compression;
     }
 
+    public void setSolidJarCompression(boolean solidJarCompression)
+    {
+        this.solidJarCompression = solidJarCompression;
+    }
+
+    public boolean isSolidJarCompression()
+    {
+        return solidJarCompression;
+    }
+
     /**
      * This class represents an author.
      *
@@ -21,27 +21,33 @@ package com.izforge.izpack.api.data;
 
 import java.io.InputStream;
 import java.text.MessageFormat;
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.izforge.izpack.api.adaptator.IXMLElement;
-import com.izforge.izpack.api.adaptator.IXMLParser;
-import com.izforge.izpack.api.adaptator.XMLException;
-import com.izforge.izpack.api.adaptator.impl.XMLParser;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.resource.Locales;
 import com.izforge.izpack.api.resource.Messages;
 
 /**
  * Represents a database of a locale.
+ * <p/>
+ * The messages are held in immutable tables, one per langpack. Adding the messages of another
+ * {@code LocaleDatabase} layers its tables over the existing ones rather than copying them, so overlays such as
+ * those created by {@link #newMessages(String)} are cheap. Messages may still be added individually via
+ * {@link #put}, but may not be removed.
  *
  * @author Julien Ponge
  * @author J. Chris Folsom <jchrisfolsom@gmail.com>
  */
-public class LocaleDatabase extends TreeMap<String, String> implements Messages
+public class LocaleDatabase extends AbstractMap<String, String> implements Messages
 {
 
     /**
@@ -71,6 +77,21 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
      */
     private final Locales locales;
 
+    /**
+     * The message tables, in the order they were added. Later tables take precedence over earlier ones.
+     */
+    private final List<MessageTable> tables = new ArrayList<MessageTable>(1);
+
+    /**
+     * Messages added via {@link #put}, since the last table was added. These take precedence over the tables.
+     */
+    private final Map<String, String> changes = new HashMap<String, String>();
+
+    /**
+     * All of the messages, in identifier order. Built on demand, for the map views.
+     */
+    private Map<String, String> merged;
+
     /**
      * The logger.
      */
@@ -126,50 +147,86 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
      */
     public void add(InputStream in)
     {
-        IXMLElement data;
-
-        try
-        {
-            IXMLParser parser = new XMLParser();
-            data = parser.parse(in);
-        }
-        catch (XMLException exception)
-        {
-            throw new ResourceException("Failed to read langpack stream", exception);
-        }
+        addTable(MessageTable.read(in));
+    }
 
-        // We check the data
-        if (!"langpack".equalsIgnoreCase(data.getElement().getLocalName()))
-        {
-            throw new ResourceException("Invalid IzPack XML langpack file");
-        }
+    /**
+     * Returns the message with the specified identifier.
+     *
+     * @param id the message identifier
+     * @return the corresponding message, or {@code id} if the message does not exist
+     */
+    @Override
+    public String get(Object id)
+    {
+        String result = (id instanceof String) ? find((String) id) : null;
+        return result != null ? result : id.toString();
+    }
 
-        // We fill the Hashtable
-        for (IXMLElement child : data.getChildren())
+    /**
+     * Determines if a message exists.
+     *
+     * @param id the message identifier
+     * @return {@code true} if the message exists
+     */
+    @Override
+    public boolean containsKey(Object id)
+    {
+        if (id instanceof String)
         {
-            String text = child.getContent();
-            if (text != null && !"".equals(text))
+            if (changes.containsKey(id))
             {
-                put(child.getAttribute("id"), text.trim());
+                return true;
             }
-            else
+            for (int i = tables.size() - 1; i >= 0; --i)
             {
-                put(child.getAttribute("id"), child.getAttribute("txt"));
+                if (tables.get(i).indexOf((String) id) != -1)
+                {
+                    return true;
+                }
             }
         }
+        return false;
     }
 
     /**
-     * Returns the message with the specified identifier.
+     * Adds a message, replacing any existing message with the same identifier.
      *
-     * @param id the message identifier
-     * @return the corresponding message, or {@code id} if the message does not exist
+     * @param id      the message identifier
+     * @param message the message
+     * @return the previous message, or {@code null} if there was none
      */
     @Override
-    public String get(Object id)
+    public String put(String id, String message)
     {
-        String result = super.get(id);
-        return result != null ? result : id.toString();
+        String result = find(id);
+        changes.put(id, message);
+        merged = null;
+        return result;
+    }
+
+    /**
+     * Returns the messages, in identifier order.
+     *
+     * @return the messages
+     */
+    @Override
+    public Set<Entry<String, String>> entrySet()
+    {
+        if (merged == null)
+        {
+            Map<String, String> map = new TreeMap<String, String>();
+            for (MessageTable table : tables)
+            {
+                for (int i = 0; i < table.size(); ++i)
+                {
+                    map.put(table.getId(i), table.getMessage(i));
+                }
+            }
+            map.putAll(changes);
+            merged = Collections.unmodifiableMap(map);
+        }
+        return merged.entrySet();
     }
 
     /**
@@ -185,7 +242,7 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
     public String get(String id, Object... args)
     {
         String result;
-        String pattern = (id != null) ? super.get(id) : null;
+        String pattern = (id != null) ? find(id) : null;
         if (pattern != null)
         {
             if (args.length > 0)
@@ -236,7 +293,22 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
     @Override
     public void add(Messages messages)
     {
-        putAll(messages.getMessages());
+        if (messages instanceof LocaleDatabase)
+        {
+            LocaleDatabase other = (LocaleDatabase) messages;
+            for (MessageTable table : other.tables)
+            {
+                addTable(table);
+            }
+            if (!other.changes.isEmpty())
+            {
+                addTable(new MessageTable(other.changes));
+            }
+        }
+        else
+        {
+            putAll(messages.getMessages());
+        }
     }
 
     /**
@@ -265,6 +337,50 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
         return result;
     }
 
+    /**
+     * Returns the message with the specified identifier.
+     *
+     * @param id the message identifier
+     * @return the corresponding message, or {@code null} if the message does not exist
+     */
+    private String find(String id)
+    {
+        if (!changes.isEmpty() && changes.containsKey(id))
+        {
+            return changes.get(id);
+        }
+        for (int i = tables.size() - 1; i >= 0; --i)
+        {
+            MessageTable table = tables.get(i);
+            int position = table.indexOf(id);
+            if (position != -1)
+            {
+                return table.getMessage(position);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a table of messages, over the existing messages.
+     *
+     * @param table the table to add
+     */
+    private void addTable(MessageTable table)
+    {
+        if (!changes.isEmpty())
+        {
+            // preserve the precedence of the individually added messages over the existing tables
+            tables.add(new MessageTable(changes));
+            changes.clear();
+        }
+        if (table.size() != 0)
+        {
+            tables.add(table);
+        }
+        merged = null;
+    }
+
     /**
      * Convenience method to retrieve an element.
      *
@@ -0,0 +1,195 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.IXMLParser;
+import com.izforge.izpack.api.adaptator.XMLException;
+import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.exception.ResourceException;
+
+/**
+ * An immutable table of messages, read from a langpack.
+ * <p/>
+ * The message identifiers are held in a sorted array, with an open addressing hash index over them, so that lookups
+ * don't need to compare strings other than the one found. Identical messages share the same string.
+ *
+ * @see LocaleDatabase
+ */
+final class MessageTable
+{
+
+    /**
+     * The message identifiers, in ascending order.
+     */
+    private final String[] ids;
+
+    /**
+     * The messages, in the order of their identifiers. A message may be {@code null}.
+     */
+    private final String[] messages;
+
+    /**
+     * The hash index. Each slot holds the position of an identifier plus one, or {@code 0} if it is empty.
+     */
+    private final int[] index;
+
+    /**
+     * Constructs a {@code MessageTable}.
+     *
+     * @param messages the messages, keyed on identifier
+     */
+    MessageTable(Map<String, String> messages)
+    {
+        ids = messages.keySet().toArray(new String[messages.size()]);
+        Arrays.sort(ids);
+        this.messages = new String[ids.length];
+        int capacity = 2;
+        while (capacity < ids.length * 2)
+        {
+            capacity <<= 1;
+        }
+        index = new int[capacity];
+        for (int i = 0; i < ids.length; ++i)
+        {
+            this.messages[i] = messages.get(ids[i]);
+            int slot = ids[i].hashCode() & (capacity - 1);
+            while (index[slot] != 0)
+            {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            index[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Reads a table from a stream containing key value pairs as declared by the DTD langpack.dtd.
+     *
+     * @param in the stream to read the messages from
+     * @return the messages
+     * @throws ResourceException if the stream is not an IzPack langpack file or cannot be read
+     */
+    static MessageTable read(InputStream in)
+    {
+        IXMLElement data;
+
+        try
+        {
+            IXMLParser parser = new XMLParser(true);
+            data = parser.parse(in);
+        }
+        catch (XMLException exception)
+        {
+            throw new ResourceException("Failed to read langpack stream", exception);
+        }
+
+        // We check the data
+        if (!"langpack".equalsIgnoreCase(data.getElement().getLocalName()))
+        {
+            throw new ResourceException("Invalid IzPack XML langpack file");
+        }
+
+        Map<String, String> messages = new HashMap<String, String>();
+        Map<String, String> shared = new HashMap<String, String>();
+        for (IXMLElement child : data.getChildren())
+        {
+            String id = child.getAttribute("id");
+            if (id == null)
+            {
+                throw new ResourceException("Invalid IzPack XML langpack file: missing id at line "
+                                                    + child.getLineNr());
+            }
+            String text = child.getContent();
+            String message = (text != null && !"".equals(text)) ? text.trim() : child.getAttribute("txt");
+            if (message != null)
+            {
+                String existing = shared.get(message);
+                if (existing != null)
+                {
+                    message = existing;
+                }
+                else
+                {
+                    shared.put(message, message);
+                }
+            }
+            messages.put(id, message);
+        }
+        return new MessageTable(messages);
+    }
+
+    /**
+     * Returns the number of messages.
+     *
+     * @return the number of messages
+     */
+    int size()
+    {
+        return ids.length;
+    }
+
+    /**
+     * Returns the position of a message.
+     *
+     * @param id the message identifier
+     * @return the position of the message, or {@code -1} if the message does not exist
+     */
+    int indexOf(String id)
+    {
+        int mask = index.length - 1;
+        for (int slot = id.hashCode() & mask; index[slot] != 0; slot = (slot + 1) & mask)
+        {
+            int position = index[slot] - 1;
+            if (ids[position].equals(id))
+            {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the identifier of the message at the specified position.
+     *
+     * @param position the message position
+     * @return the message identifier
+     */
+    String getId(int position)
+    {
+        return ids[position];
+    }
+
+    /**
+     * Returns the message at the specified position.
+     *
+     * @param position the message position
+     * @return the message. May be {@code null}
+     */
+    String getMessage(int position)
+    {
+        return messages[position];
+    }
+
+}
@@ -156,6 +156,16 @@ public class Pack implements Serializable
      */
     private boolean hidden;
 
+    /**
+     * The compression format of the pack, or <tt>null</tt> to use that of the installation.
+     */
+    private String compression;
+
+    /**
+     * The class used to decode the pack stream, when the pack has its own compression format.
+     */
+    private String packDecoderClassName;
+
     /**
      * Used for conversions.
      */
@@ -656,6 +666,48 @@ public class Pack implements Serializable
         return hidden;
     }
 
+    /**
+     * Sets the compression format of the pack.
+     *
+     * @param compression the compression format, or {@code null} to use that of the installation
+     */
+    public void setCompression(String compression)
+    {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the compression format of the pack.
+     *
+     * @return the compression format, or {@code null} if the pack uses that of the installation
+     */
+    public String getCompression()
+    {
+        return compression;
+    }
+
+    /**
+     * Sets the class used to decode the pack stream, when the pack has its own compression format.
+     *
+     * @param className the decoder class name, or {@code null} if the pack stream is not encoded
+     */
+    public void setPackDecoderClassName(String className)
+    {
+        this.packDecoderClassName = className;
+    }
+
+    /**
+     * Returns the class used to decode the pack stream, when the pack has its own compression format.
+     * <p/>
+     * This is only applicable if {@link #getCompression()} is non-null.
+     *
+     * @return the decoder class name, or {@code null} if the pack stream is not encoded
+     */
+    public String getPackDecoderClassName()
+    {
+        return packDecoderClassName;
+    }
+
     /**
      * To a String (usefull for JLists).
      *
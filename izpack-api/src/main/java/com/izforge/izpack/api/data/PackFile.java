@@ -114,6 +114,16 @@ public class PackFile implements Serializable
      */
     private boolean pack200Jar = false;
 
+    /**
+     * True if the file is a jar whose entries are stored uncompressed in the pack, and rebuilt on installation.
+     */
+    private boolean solidJar = false;
+
+    /**
+     * The POSIX permission bits of the source file, or <tt>0</tt> if they are not known.
+     */
+    private int mode = 0;
+
     /**
      * condition for this packfile
      */
@@ -154,19 +164,10 @@ public class PackFile implements Serializable
             throw new FileNotFoundException("No such file: " + src);
         }
 
-        if ('/' != File.separatorChar)
-        {
-            target = target.replace(File.separatorChar, '/');
-        }
-        if (target.endsWith("/"))
-        {
-            target = target.substring(0, target.length() - 1);
-        }
-
         this.sourcePath = src.getPath().replace(File.separatorChar, '/');
         this.relativePath = (relativeSourcePath != null) ? relativeSourcePath.replace(File.separatorChar, '/') : relativeSourcePath;
 
-        this.targetPath = (target != null) ? target.replace(File.separatorChar, '/') : target;
+        this.targetPath = normalizeTarget(target);
         this.osConstraints = osList;
         this.override = override;
         this.overrideRenameTo = overrideRenameTo;
@@ -203,6 +204,64 @@ public class PackFile implements Serializable
         this(src, FileUtil.getRelativeFileName(src, baseDir), target, osList, override, overrideRenameTo, blockable, additionals);
     }
 
+    /**
+     * Constructs a pack file from previously stored meta-data.
+     * <p/>
+     * This is used when reading pack meta-data at installation time, where the source file is not available.
+     *
+     * @param relativeSourcePath the path relative to the compiletime's basedirectory. May be <tt>null</tt>
+     * @param target             the path to install the file to, using '/' as file separator
+     * @param osList             OS constraints. May be <tt>null</tt>
+     * @param length             the length of the file in bytes
+     * @param lastModified       the last-modification time of the file, or <tt>-1</tt> if it is not specified
+     * @param directory          determines if the file is a directory
+     * @param override           what to do when the file already exists
+     * @param overrideRenameTo   the globmapper expression for renaming existing files. May be <tt>null</tt>
+     * @param blockable          whether or not the file might be blocked during installation/uninstallation
+     * @param additionals        additional attributes. May be <tt>null</tt>
+     */
+    public PackFile(String relativeSourcePath, String target, List<OsModel> osList, long length, long lastModified,
+                    boolean directory, OverrideType override, String overrideRenameTo, Blockable blockable,
+                    Map additionals)
+    {
+        this.relativePath = relativeSourcePath;
+        this.targetPath = target;
+        this.osConstraints = osList;
+        this.length = length;
+        this.mtime = lastModified;
+        this.isDirectory = directory;
+        this.override = override;
+        this.overrideRenameTo = overrideRenameTo;
+        this.blockable = blockable;
+        this.additionals = additionals;
+    }
+
+    /**
+     * Constructs a pack file whose content is not read from a file of its own, such as an entry of an archive.
+     *
+     * @param sourcePath         a description of the source of the content, for diagnostic purposes
+     * @param relativeSourcePath the path relative to the compiletime's basedirectory. May be <tt>null</tt>
+     * @param target             the path to install the file to
+     * @param osList             OS constraints. May be <tt>null</tt>
+     * @param length             the length of the content in bytes
+     * @param lastModified       the last-modification time of the content, or <tt>-1</tt> if it is not known
+     * @param directory          determines if the file is a directory
+     * @param override           what to do when the file already exists
+     * @param overrideRenameTo   the globmapper expression for renaming existing files. May be <tt>null</tt>
+     * @param blockable          whether or not the file might be blocked during installation/uninstallation
+     * @param additionals        additional attributes. May be <tt>null</tt>
+     */
+    public PackFile(String sourcePath, String relativeSourcePath, String target, List<OsModel> osList, long length,
+                    long lastModified, boolean directory, OverrideType override, String overrideRenameTo,
+                    Blockable blockable, Map additionals)
+    {
+        this((relativeSourcePath != null) ? relativeSourcePath.replace(File.separatorChar, '/') : null,
+             normalizeTarget(target), osList, directory ? 0 : length, lastModified, directory, override,
+             overrideRenameTo, blockable, additionals);
+        this.sourcePath = sourcePath;
+        this.size = this.length;
+    }
+
     public void setPreviousPackFileRef(String previousPackId, Long offsetInPreviousPack)
     {
         this.previousPackId = previousPackId;
@@ -339,6 +398,57 @@ public class PackFile implements Serializable
         this.pack200Jar = pack200Jar;
     }
 
+    public boolean isSolidJar()
+    {
+        return solidJar;
+    }
+
+    public void setSolidJar(boolean solidJar)
+    {
+        this.solidJar = solidJar;
+    }
+
+    /**
+     * Returns the POSIX execute permission bits of the source file, e.g. <tt>0111</tt>.
+     * <p/>
+     * These are added to the permissions the file is created with when it is installed.
+     *
+     * @return the execute permission bits, or <tt>0</tt> if the file isn't executable or they are not known
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Sets the POSIX execute permission bits to add when the file is installed.
+     *
+     * @param mode the execute permission bits, or <tt>0</tt> if the file isn't executable or they are not known
+     */
+    public void setMode(int mode)
+    {
+        this.mode = mode;
+    }
+
+    /**
+     * Normalizes a target path to use '/' as file separator, without a trailing separator.
+     *
+     * @param target the target path
+     * @return the normalized target path
+     */
+    private static String normalizeTarget(String target)
+    {
+        if ('/' != File.separatorChar)
+        {
+            target = target.replace(File.separatorChar, '/');
+        }
+        if (target.endsWith("/"))
+        {
+            target = target.substring(0, target.length() - 1);
+        }
+        return target;
+    }
+
     public void setLoosePackInfo(boolean loose)
     {
         if (loose)
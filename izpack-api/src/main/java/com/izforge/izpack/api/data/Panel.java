@@ -285,6 +285,16 @@ public class Panel implements Serializable
         this.configuration.put(key, value);
     }
 
+    /**
+     * Returns the panel configuration.
+     *
+     * @return the configuration, or {@code null} if the panel has none
+     */
+    public Map<String, String> getConfiguration()
+    {
+        return configuration;
+    }
+
     public String getConfiguration(String key)
     {
         String result = null;
@@ -69,10 +69,12 @@ public class XPackFile extends PackFile implements Comparable<XPackFile>
      */
     public XPackFile(PackFile file) throws FileNotFoundException
     {
-        super(new File(file.sourcePath), file.relativePath, file.getTargetPath(), file.osConstraints(),
-              file.override(), file.overrideRenameTo(), file.blockable(), file.getAdditionals());
+        super(file.sourcePath, file.relativePath, file.getTargetPath(), file.osConstraints(), file.size(),
+              file.lastModified(), file.isDirectory(), file.override(), file.overrideRenameTo(), file.blockable(),
+              file.getAdditionals());
         this.position = 0;
         this.setCondition(file.getCondition());
+        this.setMode(file.getMode());
     }
 
     /**
@@ -20,6 +20,7 @@
 package com.izforge.izpack.api.rules;
 
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 
@@ -57,6 +58,14 @@ public interface RulesEngine
 
     Condition getCondition(String id);
 
+    /**
+     * Compiles the conditions referred to by the supplied ids, so that expressions needn't be parsed when the
+     * conditions are evaluated.
+     *
+     * @param ids condition identifiers or expressions, as accepted by {@link #getCondition(String)}
+     */
+    void compileConditions(Collection<String> ids);
+
     void readConditionMap(Map<String, Condition> rules);
 
     void analyzeXml(IXMLElement conditionsspec);
@@ -26,6 +26,7 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.Set;
 
 
 /**
@@ -87,6 +88,23 @@ public interface VariableSubstitutor extends Serializable
     int substitute(InputStream in, OutputStream out, SubstitutionType type, String encoding)
             throws Exception;
 
+    /**
+     * Substitutes the variables found in the specified input stream, collecting the names of the variables that
+     * couldn't be resolved. References to such variables are left as is.
+     *
+     * @param in         the input stream to read
+     * @param out        the output stream to write
+     * @param type       the file type or null for plain
+     * @param encoding   the character encoding or null for default
+     * @param unresolved collects the names of the variables that couldn't be resolved
+     * @return the number of substitutions made
+     * @throws IllegalArgumentException     if unknown file type specified
+     * @throws UnsupportedEncodingException if encoding not supported
+     * @throws IOException                  if an I/O error occurs
+     */
+    int substitute(InputStream in, OutputStream out, SubstitutionType type, String encoding, Set<String> unresolved)
+            throws Exception;
+
     /**
      * Substitute method Variant that gets An Input Stream and returns A String
      *
@@ -128,6 +128,55 @@ public class XMLParserTest
         parser.parse(input, parseErrorXincludeFilename);
     }
 
+    @Test
+    public void testDirectLineNumber()
+    {
+        InputStream input = XMLParserTest.class.getResourceAsStream(lnFilename);
+        IXMLParser parser = new XMLParser(true);
+        checkEltLN(parser.parse(input));
+    }
+
+    @Test
+    public void testDirectXincludeLineNumber()
+    {
+        URL url = XMLParserTest.class.getResource(xlnFilename);
+        IXMLParser parser = new XMLParser(true);
+        checkEltLN(parser.parse(url));
+    }
+
+    /**
+     * Verifies that building the element tree directly produces the same tree as the style sheet.
+     */
+    @Test
+    public void testDirectParseSameAsTransform()
+    {
+        URL url = XMLParserTest.class.getResource(filename);
+        IXMLElement expected = new XMLParser().parse(url);
+        IXMLElement actual = new XMLParser(true).parse(url);
+        checkSameTree(expected, actual);
+    }
+
+    @Test(expected = XMLException.class)
+    public void testDirectXMLExceptionThrown()
+    {
+        InputStream input = XMLParserTest.class.getResourceAsStream(parseErrorFilename);
+        IXMLParser parser = new XMLParser(true);
+        parser.parse(input, parseErrorFilename);
+    }
+
+    private void checkSameTree(IXMLElement expected, IXMLElement actual)
+    {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getLineNr(), actual.getLineNr());
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+        assertEquals(expected.getContent(), actual.getContent());
+        assertEquals(expected.getChildrenCount(), actual.getChildrenCount());
+        for (int i = 0; i < expected.getChildrenCount(); ++i)
+        {
+            checkSameTree(expected.getChildAtIndex(i), actual.getChildAtIndex(i));
+        }
+    }
+
     @Test(expected = NullPointerException.class)
     public void testNPE()
     {
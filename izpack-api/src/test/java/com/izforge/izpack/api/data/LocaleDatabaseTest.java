@@ -20,12 +20,18 @@
 package com.izforge.izpack.api.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import com.izforge.izpack.api.resource.Locales;
+import com.izforge.izpack.api.resource.Messages;
 
 public class LocaleDatabaseTest
 {
@@ -54,6 +60,42 @@ public class LocaleDatabaseTest
         assertEquals("Argument1: 'one', Argument2: 'two'", db.get("string.with.quoted.arguments", "one", "two"));
     }
 
+    @Test
+    public void testAddOverlay()
+    {
+        LocaleDatabase overlay = new LocaleDatabase(db, Mockito.mock(Locales.class));
+        overlay.put("string", "Replaced Text");
+        overlay.put("added", "Added Text");
+        assertEquals("Replaced Text", overlay.get("string"));
+        assertEquals("Argument1: one, Argument2: two", overlay.get("string.with.arguments", "one", "two"));
+
+        // messages added later take precedence over those added individually
+        LocaleDatabase messages = new LocaleDatabase((Messages) null, Mockito.mock(Locales.class));
+        messages.put("added", "Overridden Text");
+        messages.add(overlay);
+        assertEquals("Added Text", messages.get("added"));
+        messages.add(db);
+        assertEquals("String Text", messages.get("string"));
+        assertEquals("Added Text", messages.get("added"));
+
+        // the overlay doesn't affect the messages it was added from
+        assertEquals("String Text", db.get("string"));
+        assertFalse(db.containsKey("added"));
+    }
+
+    @Test
+    public void testMapViews()
+    {
+        assertTrue(db.containsKey("string"));
+        assertFalse(db.containsKey("none"));
+        assertEquals(3, db.size());
+        assertEquals(Arrays.asList("string", "string.with.arguments", "string.with.quoted.arguments"),
+                     new ArrayList<String>(db.keySet()));
+        db.put("another", "Another Text");
+        assertEquals(4, db.getMessages().size());
+        assertTrue(db.getMessages().containsKey("another"));
+    }
+
     @Test
     public void testGetString() throws Exception
     {
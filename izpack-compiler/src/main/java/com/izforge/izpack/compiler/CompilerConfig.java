@@ -57,7 +57,6 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -90,6 +89,7 @@ import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.compiler.compressor.PackCompressorFactory;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.data.PropertyManager;
 import com.izforge.izpack.compiler.helper.AssertionHelper;
@@ -113,11 +113,13 @@ import com.izforge.izpack.core.variable.RegistryValue;
 import com.izforge.izpack.core.variable.ZipEntryConfigFileValue;
 import com.izforge.izpack.core.variable.filters.LocationFilter;
 import com.izforge.izpack.core.variable.filters.RegularExpressionFilter;
+import com.izforge.izpack.data.ArchiveEntrySource;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.ExecutableFile;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.PanelAction;
 import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.data.SourceArchive;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.installer.gui.IzPanel;
 import com.izforge.izpack.installer.unpacker.IUnpacker;
@@ -128,11 +130,12 @@ import com.izforge.izpack.panels.treepacks.PackValidator;
 import com.izforge.izpack.panels.userinput.UserInputPanel;
 import com.izforge.izpack.panels.userinput.field.UserInputPanelSpec;
 import com.izforge.izpack.util.FileUtil;
-import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.OsConstraintHelper;
 import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.file.DirectoryListingCache;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.FileUtils;
+import com.izforge.izpack.util.file.PathIndex;
 
 /**
  * A parser for the installer xml configuration. This parses a document conforming to the
@@ -211,6 +214,17 @@ public class CompilerConfig extends Thread
      */
     private final CompilerClassLoader classLoader;
 
+    /**
+     * Directory listings shared by the file sets of the installation, so that directories scanned by more than one
+     * file set are only listed once.
+     */
+    private final DirectoryListingCache listingCache = new DirectoryListingCache();
+
+    /**
+     * The archives whose content is added to packs without being extracted.
+     */
+    private final List<SourceArchive> archives = new ArrayList<SourceArchive>();
+
     private static final String TEMP_DIR_ELEMENT_NAME = "tempdir";
 
     private static final String TEMP_DIR_PREFIX_ATTRIBUTE = "prefix";
@@ -331,7 +345,33 @@ public class CompilerConfig extends Thread
         mergePacksLangFiles();
 
         // We ask the packager to create the installer
-        compiler.createInstaller();
+        try
+        {
+            compiler.createInstaller();
+        }
+        finally
+        {
+            closeArchives();
+        }
+    }
+
+    /**
+     * Closes the archives whose content was added to packs without being extracted.
+     */
+    private void closeArchives()
+    {
+        for (SourceArchive archive : archives)
+        {
+            try
+            {
+                archive.close();
+            }
+            catch (IOException exception)
+            {
+                logger.log(Level.WARNING, "Failed to close " + archive + ": " + exception.getMessage(), exception);
+            }
+        }
+        archives.clear();
     }
 
     /**
@@ -702,6 +742,34 @@ public class CompilerConfig extends Thread
         notifyCompilerListener("addPacks", CompilerListener.END, data);
     }
 
+    /**
+     * Returns the compression format of a pack.
+     * <p/>
+     * This is the value of the pack's <em>compression</em> attribute if specified. Otherwise, if the installer
+     * compression format may only be applied per pack, that format is used.
+     *
+     * @param packElement the pack element
+     * @return the compression format, or <tt>null</tt> if the pack uses the installer compression
+     * @throws CompilerException if the compression format is not supported
+     */
+    private String getPackCompression(IXMLElement packElement) throws CompilerException
+    {
+        String compression = packElement.getAttribute("compression");
+        if (compression == null)
+        {
+            String format = compilerData.getComprFormat();
+            if (PackCompressorFactory.isPackOnly(format))
+            {
+                compression = format;
+            }
+        }
+        else if (!PackCompressorFactory.isSupported(compression))
+        {
+            assertionHelper.parseError(packElement, "Unsupported pack compression format: " + compression);
+        }
+        return compression;
+    }
+
     /**
      * Add packs and their contents to the installer without checking the dependencies and includes.
      * <p/>
@@ -747,6 +815,7 @@ public class CompilerConfig extends Thread
             boolean hidden = Boolean.parseBoolean(packElement.getAttribute("hidden", "false"));
 
             String conditionid = packElement.getAttribute("condition");
+            String compression = getPackCompression(packElement);
 
             if (required && excludeGroup != null)
             {
@@ -761,6 +830,7 @@ public class CompilerConfig extends Thread
             pack.setParent(parent);
             pack.setCondition(conditionid);
             pack.setHidden(hidden);
+            pack.setCompression(compression);
 
             // unverified
             // if the pack belongs to an excludeGroup it's not preselected by default
@@ -808,10 +878,15 @@ public class CompilerConfig extends Thread
             processOnDeselect(packElement, pack);
 
             List<IXMLElement> parsableChildren = packElement.getChildrenNamed("parsable");
-            processParsableChildren(pack, parsableChildren);
-
             List<IXMLElement> executableChildren = packElement.getChildrenNamed("executable");
-            processExecutableChildren(pack, executableChildren);
+            PathIndex targetPaths = null;
+            if (!parsableChildren.isEmpty() || !executableChildren.isEmpty())
+            {
+                targetPaths = getTargetPaths(pack);
+            }
+            processParsableChildren(pack, parsableChildren, targetPaths);
+
+            processExecutableChildren(pack, executableChildren, targetPaths);
 
             // We get the dependencies
             for (IXMLElement dependsNode : packElement.getChildrenNamed("depends"))
@@ -933,9 +1008,10 @@ public class CompilerConfig extends Thread
         {
             try
             {
+                DirectoryScanner scanner = fs.getDirectoryScanner();
                 String[][] includedFilesAndDirs = new String[][]{
-                        fs.getDirectoryScanner().getIncludedDirectories(),
-                        fs.getDirectoryScanner().getIncludedFiles()
+                        scanner.getIncludedDirectories(),
+                        scanner.getIncludedFiles()
                 };
                 for (String[] filesOrDirs : includedFilesAndDirs)
                 {
@@ -1046,7 +1122,7 @@ public class CompilerConfig extends Thread
             String src = xmlCompilerHelper.requireAttribute(fileNode, "src");
             boolean unpack = Boolean.parseBoolean(fileNode.getAttribute("unpack"));
 
-            TargetFileSet fs = new TargetFileSet();
+            TargetFileSet fs = createFileSet();
             try
             {
                 File relsrcfile = new File(src);
@@ -1093,8 +1169,9 @@ public class CompilerConfig extends Thread
                 }
 
                 LinkedList<String> srcfiles = new LinkedList<String>();
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedDirectories());
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedFiles());
+                DirectoryScanner scanner = fs.getDirectoryScanner();
+                Collections.addAll(srcfiles, scanner.getIncludedDirectories());
+                Collections.addAll(srcfiles, scanner.getIncludedFiles());
                 for (String filePath : srcfiles)
                 {
                     if (!filePath.isEmpty())
@@ -1125,7 +1202,8 @@ public class CompilerConfig extends Thread
         }
     }
 
-    private void processExecutableChildren(PackInfo pack, List<IXMLElement> childrenNamed) throws CompilerException
+    private void processExecutableChildren(PackInfo pack, List<IXMLElement> childrenNamed, PathIndex targetPaths)
+            throws CompilerException
     {
         for (IXMLElement executableNode : childrenNamed)
         {
@@ -1193,7 +1271,7 @@ public class CompilerConfig extends Thread
             for (IXMLElement fileSetElement : executableNode.getChildrenNamed("fileset"))
             {
                 String targetdir = fileSetElement.getAttribute("targetdir", "${INSTALL_PATH}");
-                Set<String> includedFiles = getFilesetIncludedFiles(pack, fileSetElement, targetdir);
+                Set<String> includedFiles = getFilesetIncludedFiles(targetPaths, fileSetElement, targetdir);
                 for (String filePath : includedFiles)
                 {
                     addNewExecutableFile(pack, filePath, condition, osList, executionStage, type, mainClass,
@@ -1225,7 +1303,8 @@ public class CompilerConfig extends Thread
         pack.addExecutable(executable);
     }
 
-    private void processParsableChildren(PackInfo pack, List<IXMLElement> parsableChildren) throws CompilerException
+    private void processParsableChildren(PackInfo pack, List<IXMLElement> parsableChildren, PathIndex targetPaths)
+            throws CompilerException
     {
         for (IXMLElement parsableNode : parsableChildren)
         {
@@ -1244,7 +1323,7 @@ public class CompilerConfig extends Thread
             for (IXMLElement fileSetElement : parsableNode.getChildrenNamed("fileset"))
             {
                 String targetdir = fileSetElement.getAttribute("targetdir", "${INSTALL_PATH}");
-                Set<String> includedFiles = getFilesetIncludedFiles(pack, fileSetElement, targetdir);
+                Set<String> includedFiles = getFilesetIncludedFiles(targetPaths, fileSetElement, targetdir);
                 for (String filePath : includedFiles)
                 {
                     ParsableFile parsable = new ParsableFile(filePath, type, encoding, osList);
@@ -1256,7 +1335,23 @@ public class CompilerConfig extends Thread
         }
     }
 
-    private Set<String> getFilesetIncludedFiles(PackInfo info, IXMLElement fileSetElement, String targetDir)
+    /**
+     * Returns the target paths of the files in a pack, indexed for pattern matching.
+     *
+     * @param pack the pack
+     * @return the target paths of the pack files
+     */
+    private PathIndex getTargetPaths(PackInfo pack)
+    {
+        List<String> paths = new ArrayList<String>();
+        for (PackFile file : pack.getPackFiles())
+        {
+            paths.add(file.getTargetPath());
+        }
+        return new PathIndex(paths);
+    }
+
+    private Set<String> getFilesetIncludedFiles(PathIndex targetPaths, IXMLElement fileSetElement, String targetDir)
     throws CompilerException
     {
         boolean casesensitive = xmlCompilerHelper.validateYesNoAttribute(fileSetElement, "casesensitive", YES);
@@ -1336,26 +1431,14 @@ public class CompilerConfig extends Thread
         for (String include : includes)
         {
             logger.fine("Processing include: \"" + include+"\"");
-            for (PackFile s:info.getPackFiles()) {
-                String targetPath = s.getTargetPath();
-                if (matcher.match(targetDir + "/" + include, targetPath, casesensitive))
-                {
-                    matches.add(targetPath);
-                }
-            }
+            matches.addAll(matcher.compile(targetDir + "/" + include, casesensitive).match(targetPaths));
         }
 
-        if (excludes != null)
+        if (excludes != null && !matches.isEmpty())
         {
-            for (int i = 0; i < excludes.length; i++)
+            for (String exclude : excludes)
             {
-                for (PackFile s:info.getPackFiles()) {
-                    String targetPath = s.getTargetPath();
-                    if (matcher.match(excludes[i], targetPath, casesensitive))
-                    {
-                        matches.remove(targetPath);
-                    }
-                }
+                matches.removeAll(matcher.compile(exclude, casesensitive).match(targetPaths));
             }
         }
 
@@ -1447,6 +1530,8 @@ public class CompilerConfig extends Thread
 
     /**
      * Add files in an archive to a pack
+     * <p/>
+     * The archive entries aren't extracted; their content is read from the archive when the packs are written.
      *
      * @param archive     the archive file to unpack
      * @param targetdir   the target directory where the content of the archive will be installed
@@ -1461,60 +1546,45 @@ public class CompilerConfig extends Thread
                                      Blockable blockable, PackInfo pack, Map additionals,
                                      String condition) throws IOException
     {
+        SourceArchive source = new SourceArchive(archive);
+        archives.add(source);
+        List<ArchiveEntrySource> entries;
+        try
+        {
+            entries = source.getEntries();
+        }
+        finally
+        {
+            // reopened on demand when the packs are written
+            source.close();
+        }
 
-        FileInputStream fin = new FileInputStream(archive);
-        ZipInputStream zin = new ZipInputStream(fin);
-        List<String> allDirList = new ArrayList<String>();
-        while (true)
+        Map<String, ArchiveEntrySource> allDirList = new TreeMap<String, ArchiveEntrySource>();
+        for (ArchiveEntrySource entry : entries)
         {
-            ZipEntry zentry = zin.getNextEntry();
-            if (zentry == null)
-            {
-                break;
-            }
-            if (zentry.isDirectory())
+            if (entry.isDirectory())
             {
                 // add to all dir listing/empty dir needs to be handle
-                String dName = zentry.getName().substring(0, zentry.getName().length() - 1);
-                allDirList.add(dName);
+                String dName = entry.getEntryName().substring(0, entry.getEntryName().length() - 1);
+                allDirList.put(dName, entry);
                 continue;
             }
 
-            try
-            {
-                File temp = FileUtils.createTempFile("izpack", null);
-                temp.deleteOnExit();
-
-                FileOutputStream out = new FileOutputStream(temp);
-                IoHelper.copyStream(zin, out);
-                out.close();
-
-                String target = targetdir + "/" + zentry.getName();
-                logger.info("Adding file " + zentry.getName() + " from archive as target file=" + target);
-                pack.addFile(baseDir, temp, target, osList, override,
-                             overrideRenameTo, blockable, additionals, condition);
-            }
-            catch (IOException e)
-            {
-                throw new IOException("Couldn't create temporary file for " + zentry.getName()
-                                              + " in archive " + archive + " (" + e.getMessage() + ")");
-            }
-
+            String target = targetdir + "/" + entry.getEntryName();
+            logger.info("Adding file " + entry.getEntryName() + " from archive as target file=" + target);
+            pack.addFile(entry, entry.getEntryName(), target, osList, override,
+                         overrideRenameTo, blockable, additionals, condition);
         }
 
         // This corrects issues that could arise due to subfolders
-        Collections.sort(allDirList);
-        for (String dirName : allDirList)
+        for (Map.Entry<String, ArchiveEntrySource> dir : allDirList.entrySet())
         {
-            File tmp = new File(dirName);
-            org.apache.commons.io.FileUtils.forceMkdir(tmp);
-            org.apache.commons.io.FileUtils.forceDeleteOnExit(tmp);
+            String dirName = dir.getKey();
             String target = targetdir + "/" + dirName;
-            logger.info("Adding file: " + tmp + ", as target file=" + target);
-            pack.addFile(baseDir, tmp, target, osList,
+            logger.info("Adding directory " + dirName + " from archive as target file=" + target);
+            pack.addFile(dir.getValue(), dirName, target, osList,
                          override, overrideRenameTo, blockable, additionals, condition);
         }
-        fin.close();
     }
 
     /**
@@ -1950,7 +2020,22 @@ public class CompilerConfig extends Thread
 
         // Pack200 support
         IXMLElement pack200 = root.getFirstChildNamed("pack200");
-        info.setPack200Compression(pack200 != null);
+        if (pack200 != null && !isPack200Available())
+        {
+            assertionHelper.parseWarn(pack200, "Pack200 is not supported by this Java version, "
+                    + "using <solidjars/> instead");
+            info.setSolidJarCompression(true);
+        }
+        else
+        {
+            info.setPack200Compression(pack200 != null);
+        }
+
+        // Jars compressed along with their pack
+        if (root.getFirstChildNamed("solidjars") != null)
+        {
+            info.setSolidJarCompression(true);
+        }
 
         // Privileged execution
         IXMLElement privileged = root.getFirstChildNamed("run-privileged");
@@ -2108,6 +2193,24 @@ public class CompilerConfig extends Thread
         notifyCompilerListener("addInfo", CompilerListener.END, data);
     }
 
+    /**
+     * Determines if Pack200 is available. It was removed in Java 14.
+     *
+     * @return {@code true} if Pack200 is available
+     */
+    private static boolean isPack200Available()
+    {
+        try
+        {
+            Class.forName("java.util.jar.Pack200");
+            return true;
+        }
+        catch (ClassNotFoundException exception)
+        {
+            return false;
+        }
+    }
+
     /**
      * Variable declaration is a fragment of the xml file. For example:
      * <p/>
@@ -2873,7 +2976,7 @@ public class CompilerConfig extends Thread
         OutputStream os = null;
         try
         {
-            IXMLParser parser = new XMLParser();
+            IXMLParser parser = new XMLParser(true);
 
             // loop through all packsLang resources, e.g. packsLang.xml_eng, packsLang.xml_deu, ...
             for (String id : packsLangUrlMap.keySet())
@@ -3041,9 +3144,23 @@ public class CompilerConfig extends Thread
         return fslist;
     }
 
-    private TargetFileSet readFileSet(IXMLElement fileSetNode) throws CompilerException
+    /**
+     * Creates a file set that scans using the configured number of threads, and shares directory listings with the
+     * other file sets of the installation.
+     *
+     * @return a new file set
+     */
+    private TargetFileSet createFileSet()
     {
         TargetFileSet fs = new TargetFileSet();
+        fs.setScanThreads(compilerData.getScanThreads());
+        fs.setListingCache(listingCache);
+        return fs;
+    }
+
+    private TargetFileSet readFileSet(IXMLElement fileSetNode) throws CompilerException
+    {
+        TargetFileSet fs = createFileSet();
 
         fs.setTargetDir(fileSetNode.getAttribute("targetdir", "${INSTALL_PATH}"));
         List<OsModel> osList = OsConstraintHelper.getOsList(fileSetNode); // TODO: unverified
@@ -45,6 +45,10 @@ public class CliAnalyzer {
     private static final String ARG_OUTPUT = "o";
     private static final String ARG_COMPRESSION_FORMAT = "c";
     private static final String ARG_COMPRESSION_LEVEL = "l";
+    private static final String ARG_PACK_THREADS = "t";
+    private static final String ARG_PACK_CACHE = "cache";
+    private static final String ARG_SCAN_THREADS = "scanthreads";
+    private static final String ARG_CDS_JAVA = "cds";
 
 
     /**
@@ -66,6 +70,16 @@ public class CliAnalyzer {
                 "default is the internal deflate compression\n");
         options.addOption(ARG_COMPRESSION_LEVEL, true, "compression-level : indicates the level for the used compression format"
                 + " if supported. Only integer are valid\n");
+        options.addOption(ARG_PACK_THREADS, true, "threads : indicates the number of threads used to write packs"
+                + " with the default compression. Default is 1\n");
+        options.addOption(ARG_PACK_CACHE, true, "cache-directory : indicates a directory where compressed packs are"
+                + " cached between builds. Unchanged packs are reused rather than compressed again\n");
+        options.addOption(ARG_SCAN_THREADS, true, "threads : indicates the number of threads used to list directories"
+                + " when scanning filesets. Default is 1\n");
+        options.addOption(ARG_CDS_JAVA, true, "java-home : generates a class data sharing archive next to the"
+                + " installer, using the given Java 13+ installation. The installer starts faster when launched"
+                + " by that installation with -XX:SharedArchiveFile. Only classes loaded by console startup are"
+                + " archived\n");
         return options;
     }
 
@@ -109,6 +123,14 @@ public class CliAnalyzer {
         System.out.println("-> Kind        : " + result.getKind());
         System.out.println("-> Compression : " + result.getComprFormat());
         System.out.println("-> Compr. level: " + result.getComprLevel());
+        System.out.println("-> Pack threads: " + result.getPackThreads());
+        System.out.println("-> Scan threads: " + result.getScanThreads());
+        if (result.getPackCache() != null) {
+            System.out.println("-> Pack cache  : " + result.getPackCache());
+        }
+        if (result.getClassDataSharingJava() != null) {
+            System.out.println("-> CDS Java    : " + result.getClassDataSharingJava());
+        }
         System.out.println("-> IzPack home : " + CompilerData.IZPACK_HOME);
         System.out.println("");
     }
@@ -164,6 +186,18 @@ public class CliAnalyzer {
         if (commandLine.hasOption(ARG_COMPRESSION_LEVEL)) {
             compilerData.setComprLevel(Integer.parseInt(commandLine.getOptionValue(ARG_COMPRESSION_LEVEL).trim()));
         }
+        if (commandLine.hasOption(ARG_PACK_THREADS)) {
+            compilerData.setPackThreads(Integer.parseInt(commandLine.getOptionValue(ARG_PACK_THREADS).trim()));
+        }
+        if (commandLine.hasOption(ARG_SCAN_THREADS)) {
+            compilerData.setScanThreads(Integer.parseInt(commandLine.getOptionValue(ARG_SCAN_THREADS).trim()));
+        }
+        if (commandLine.hasOption(ARG_PACK_CACHE)) {
+            compilerData.setPackCache(commandLine.getOptionValue(ARG_PACK_CACHE).trim());
+        }
+        if (commandLine.hasOption(ARG_CDS_JAVA)) {
+            compilerData.setClassDataSharingJava(commandLine.getOptionValue(ARG_CDS_JAVA).trim());
+        }
         if (commandLine.hasOption(ARG_IZPACK_HOME)) {
             CompilerData.setIzpackHome(commandLine.getOptionValue(ARG_IZPACK_HOME).trim());
         }
@@ -0,0 +1,77 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.compressor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.izforge.izpack.core.io.ChunkedLZ4InputStream;
+import com.izforge.izpack.core.io.ChunkedLZ4OutputStream;
+
+
+/**
+ * This class implements the PackCompressor for the compression format "lz4".
+ * <p/>
+ * LZ4 compresses less than deflate, but decompresses several times faster. Packs are written in independently
+ * compressed chunks, so back references can skip directly to the chunk they refer to. The codec is part of
+ * IzPack, so no classes need to be merged into the installer.
+ */
+public class LZ4PackCompressor extends PackCompressorBase
+{
+
+    private static final String[] THIS_FORMAT_NAMES = {"lz4"};
+    private static final String THIS_DECODER_MAPPER = ChunkedLZ4InputStream.class.getName();
+    private static final String THIS_ENCODER_CLASS_NAME = ChunkedLZ4OutputStream.class.getName();
+
+    /**
+     * Constructs an <tt>LZ4PackCompressor</tt>.
+     */
+    public LZ4PackCompressor()
+    {
+        formatNames = THIS_FORMAT_NAMES;
+        decoderMapper = THIS_DECODER_MAPPER;
+        encoderClassName = THIS_ENCODER_CLASS_NAME;
+    }
+
+    /**
+     * Returns a newly created output stream which encodes to the given stream.
+     *
+     * @param os the stream to write the encoded data to
+     * @return a newly created encoding output stream
+     */
+    @Override
+    public OutputStream getOutputStream(OutputStream os) throws IOException
+    {
+        return new ChunkedLZ4OutputStream(os);
+    }
+
+    /**
+     * Determines if the encoding output stream needs to be buffered.
+     * <p/>
+     * The encoder buffers a chunk at a time, so no further buffering is required.
+     *
+     * @return <tt>false</tt>
+     */
+    @Override
+    public boolean needsBufferedOutputStream()
+    {
+        return false;
+    }
+}
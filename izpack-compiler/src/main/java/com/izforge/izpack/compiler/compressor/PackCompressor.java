@@ -22,6 +22,9 @@
 
 package com.izforge.izpack.compiler.compressor;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 /**
  * IzPack will be able to support different compression methods for the
  * packs included in the installation jar file.
@@ -45,9 +48,9 @@ public interface PackCompressor
      *
      * @param os output stream to be used as listener
      * @return a newly created encoding output stream
-     * @throws Exception
+     * @throws IOException if the stream cannot be created
      */
-//    OutputStream getOutputStream(OutputStream os) throws Exception;
+    OutputStream getOutputStream(OutputStream os) throws IOException;
 
     /**
      * Returns all symbolic names which are used for this compressor.
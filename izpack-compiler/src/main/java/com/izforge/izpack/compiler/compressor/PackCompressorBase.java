@@ -22,6 +22,10 @@
 
 package com.izforge.izpack.compiler.compressor;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+
 /**
  * IzPack will be able to support different compression methods for the
  * packs included in the installation jar file.
@@ -58,6 +62,34 @@ public abstract class PackCompressorBase implements PackCompressor
         return (encoderClassName);
     }
 
+    /**
+     * Returns a newly created output stream which encodes to the given stream.
+     * <p/>
+     * This creates an instance of the {@link #getEncoderClassName() encoder} via reflection, using its constructor
+     * that takes an <tt>OutputStream</tt>.
+     *
+     * @param os the stream to write the encoded data to
+     * @return a newly created encoding output stream
+     * @throws IOException if the stream cannot be created
+     */
+    public OutputStream getOutputStream(OutputStream os) throws IOException
+    {
+        if (encoderClassName == null)
+        {
+            throw new IOException("No encoder for compression format: " + formatNames[0]);
+        }
+        try
+        {
+            Class<?> encoder = Class.forName(encoderClassName);
+            Constructor<?> constructor = encoder.getConstructor(OutputStream.class);
+            return (OutputStream) constructor.newInstance(os);
+        }
+        catch (Exception exception)
+        {
+            throw new IOException("Failed to create encoder: " + encoderClassName, exception);
+        }
+    }
+
     /* (non-Javadoc)
      * @see com.izforge.izpack.compressor.PackCompressor#useStandardCompression()
      */
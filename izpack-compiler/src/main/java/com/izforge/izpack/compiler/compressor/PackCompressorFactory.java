@@ -0,0 +1,97 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.compressor;
+
+import com.izforge.izpack.merge.MergeManager;
+
+
+/**
+ * Factory for {@link PackCompressor}s, by compression format name.
+ */
+public class PackCompressorFactory
+{
+
+    /**
+     * The supported compression formats.
+     */
+    private static final String[] FORMATS = {"default", "deflate", "zip", "lz77", "raw", "uncompressed", "bzip2",
+            "xz", "lzma2", "lz4"};
+
+    /**
+     * Creates a pack compressor for the specified compression format.
+     * <p/>
+     * Any classes required to decode the packs are added to the merge manager.
+     *
+     * @param format       the compression format name
+     * @param mergeManager the merge manager
+     * @return a new pack compressor. Unsupported formats get the default compressor
+     */
+    public static PackCompressor create(String format, MergeManager mergeManager)
+    {
+        if (format.equals("bzip2"))
+        {
+            return new BZip2PackCompressor(mergeManager);
+        }
+        else if (format.equals("raw") || format.equals("uncompressed"))
+        {
+            return new RawPackCompressor();
+        }
+        else if (format.equals("xz") || format.equals("lzma2"))
+        {
+            return new XZPackCompressor(mergeManager);
+        }
+        else if (format.equals("lz4"))
+        {
+            return new LZ4PackCompressor();
+        }
+        return new DefaultPackCompressor();
+    }
+
+    /**
+     * Determines if a compression format is supported.
+     *
+     * @param format the compression format name
+     * @return <tt>true</tt> if the format is supported, otherwise <tt>false</tt>
+     */
+    public static boolean isSupported(String format)
+    {
+        for (String supported : FORMATS)
+        {
+            if (supported.equals(format))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a compression format can only be applied per pack, rather than to the installer as a whole.
+     * <p/>
+     * These formats compress each pack to a separate stream.
+     *
+     * @param format the compression format name
+     * @return <tt>true</tt> if the format can only be applied per pack
+     */
+    public static boolean isPackOnly(String format)
+    {
+        return format.equals("xz") || format.equals("lzma2") || format.equals("lz4");
+    }
+}
@@ -21,10 +21,9 @@ package com.izforge.izpack.compiler.container.provider;
 
 import org.picocontainer.injectors.Provider;
 
-import com.izforge.izpack.compiler.compressor.BZip2PackCompressor;
 import com.izforge.izpack.compiler.compressor.DefaultPackCompressor;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
-import com.izforge.izpack.compiler.compressor.RawPackCompressor;
+import com.izforge.izpack.compiler.compressor.PackCompressorFactory;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.merge.MergeManager;
 
@@ -38,14 +37,11 @@ public class PackCompressorProvider implements Provider
     public PackCompressor provide(CompilerData compilerData, MergeManager mergeManager)
     {
         String format = compilerData.getComprFormat();
-        if (format.equals("bzip2"))
+        if (PackCompressorFactory.isPackOnly(format))
         {
-            return new BZip2PackCompressor(mergeManager);
+            // applied to each pack by the packager, see CompilerConfig
+            return new DefaultPackCompressor();
         }
-        else if (format.equals("raw"))
-        {
-            return new RawPackCompressor();
-        }
-        return new DefaultPackCompressor();
+        return PackCompressorFactory.create(format, mergeManager);
     }
 }
@@ -90,6 +90,26 @@ public class CompilerData
      */
     private int comprLevel = -1;
 
+    /**
+     * The number of threads used to write packs. Values greater than 1 enable parallel pack writing.
+     */
+    private int packThreads = 1;
+
+    /**
+     * The directory used to cache compressed packs between builds. May be <tt>null</tt>.
+     */
+    private String packCache;
+
+    /**
+     * The number of threads used to list directories when scanning filesets.
+     */
+    private int scanThreads = 1;
+
+    /**
+     * The Java installation used to generate a class data sharing archive for the installer. May be <tt>null</tt>.
+     */
+    private String classDataSharingJava;
+
     /**
      * External Information
      */
@@ -228,6 +248,98 @@ public class CompilerData
         this.comprLevel = comprLevel;
     }
 
+    /**
+     * Returns the number of threads used to serialize and compress packs.
+     *
+     * @return the number of pack threads. A value of {@code 1} writes packs sequentially
+     */
+    public int getPackThreads()
+    {
+        return packThreads;
+    }
+
+    /**
+     * Sets the number of threads used to serialize and compress packs.
+     * <p/>
+     * Values less than {@code 1} are treated as {@code 1}.
+     *
+     * @param packThreads the number of pack threads
+     */
+    public void setPackThreads(int packThreads)
+    {
+        this.packThreads = Math.max(packThreads, 1);
+    }
+
+    /**
+     * Returns the directory used to cache compressed packs between builds.
+     *
+     * @return the pack cache directory, or <tt>null</tt> if packs aren't cached
+     */
+    public String getPackCache()
+    {
+        return packCache;
+    }
+
+    /**
+     * Sets the directory used to cache compressed packs between builds.
+     * <p/>
+     * Packs whose files and compression settings are unchanged since they were cached are copied from the cache
+     * rather than compressed again.
+     *
+     * @param packCache the pack cache directory. May be <tt>null</tt> to disable caching
+     */
+    public void setPackCache(String packCache)
+    {
+        this.packCache = packCache;
+    }
+
+    /**
+     * Returns the number of threads used to list directories when scanning filesets.
+     *
+     * @return the number of scan threads. A value of {@code 1} scans sequentially
+     */
+    public int getScanThreads()
+    {
+        return scanThreads;
+    }
+
+    /**
+     * Sets the number of threads used to list directories when scanning filesets.
+     * <p/>
+     * Values less than {@code 1} are treated as {@code 1}.
+     *
+     * @param scanThreads the number of scan threads
+     */
+    public void setScanThreads(int scanThreads)
+    {
+        this.scanThreads = Math.max(scanThreads, 1);
+    }
+
+    /**
+     * Returns the Java installation used to generate a class data sharing archive for the installer.
+     *
+     * @return the Java home directory or executable, or <tt>null</tt> if no archive is generated
+     */
+    public String getClassDataSharingJava()
+    {
+        return classDataSharingJava;
+    }
+
+    /**
+     * Sets the Java installation used to generate a class data sharing archive for the installer.
+     * <p/>
+     * The archive is written next to the installer jar, with the extension <em>.jsa</em>. It can only be used by the
+     * same Java installation that generated it, which must support dynamic archives (Java 13 or later). It only
+     * contains the classes loaded by console installer startup; GUI classes are not archived.
+     *
+     * @param classDataSharingJava the Java home directory or executable. May be <tt>null</tt> to not generate an
+     *                             archive
+     */
+    public void setClassDataSharingJava(String classDataSharingJava)
+    {
+        this.classDataSharingJava = classDataSharingJava;
+    }
+
     public Info getExternalInfo()
     {
         return this.externalInfo;
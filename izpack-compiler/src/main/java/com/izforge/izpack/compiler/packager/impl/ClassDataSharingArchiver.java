@@ -0,0 +1,206 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.exception.CompilerException;
+import com.izforge.izpack.installer.util.StartupTimings;
+
+
+/**
+ * Generates a class data sharing (CDS) archive for an installer.
+ * <p/>
+ * The installer is started once, in console mode, with a JVM that records the classes loaded as it starts and
+ * writes them to an archive when it exits. The installer exits once it has started, without installing anything.
+ * <p/>
+ * Launching the installer with the archive skips parsing and verifying those classes:
+ * <pre>
+ * java -XX:SharedArchiveFile=install.jsa -jar install.jar
+ * </pre>
+ * The archive is only used by the same Java installation that generated it, and when the installer is launched from
+ * its own directory, as in the above. Otherwise, the JVM ignores it.
+ * <p/>
+ * The archive only contains the classes loaded by console installer startup: the installer container, install data,
+ * resources, variables, conditions and language packs. The installer is run headless so that archives can be
+ * generated on build machines without a display, and because GUI startup blocks on the language selection dialog.
+ * Swing and installer GUI classes are therefore not archived, and are loaded as usual by GUI installations.
+ */
+class ClassDataSharingArchiver
+{
+
+    /**
+     * The java executable.
+     */
+    private final File java;
+
+    /**
+     * The number of lines of installer output to include in errors.
+     */
+    private static final int OUTPUT_LINES = 20;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ClassDataSharingArchiver.class.getName());
+
+
+    /**
+     * Constructs a <tt>ClassDataSharingArchiver</tt>.
+     *
+     * @param java the Java home directory, or the java executable
+     * @throws CompilerException if the java executable cannot be found
+     */
+    public ClassDataSharingArchiver(String java)
+    {
+        File file = new File(java);
+        if (file.isDirectory())
+        {
+            File bin = new File(file, "bin");
+            file = new File(bin, "java");
+            if (!file.isFile())
+            {
+                file = new File(bin, "java.exe");
+            }
+        }
+        if (!file.isFile())
+        {
+            throw new CompilerException("Cannot find java executable to generate class data sharing archive: "
+                                                + java);
+        }
+        this.java = file;
+    }
+
+    /**
+     * Returns the archive file for an installer.
+     *
+     * @param installer the installer jar
+     * @return the archive file
+     */
+    public static File getArchive(File installer)
+    {
+        String name = installer.getName();
+        if (name.toLowerCase().endsWith(".jar"))
+        {
+            name = name.substring(0, name.length() - 4);
+        }
+        return new File(installer.getAbsoluteFile().getParentFile(), name + ".jsa");
+    }
+
+    /**
+     * Returns the command to generate the archive for an installer.
+     * <p/>
+     * The command runs the installer from its own directory, using relative paths, so that the class path recorded in
+     * the archive matches that of the documented launch command.
+     *
+     * @param installer the installer jar
+     * @return the command
+     */
+    public List<String> getCommand(File installer)
+    {
+        List<String> command = new ArrayList<String>();
+        command.add(java.getPath());
+        command.add("-XX:ArchiveClassesAtExit=" + getArchive(installer).getName());
+        command.add("-Djava.awt.headless=true");
+        command.add("-D" + StartupTimings.EXIT_PROPERTY + "=true");
+        command.add("-jar");
+        command.add(installer.getName());
+        command.add("-console");
+        return command;
+    }
+
+    /**
+     * Generates the archive for an installer.
+     *
+     * @param installer the installer jar
+     * @return the archive file
+     * @throws IOException       if the installer cannot be run
+     * @throws CompilerException if the archive cannot be generated
+     */
+    public File createArchive(File installer) throws IOException
+    {
+        File archive = getArchive(installer);
+        // the JVM creates archives read-only
+        if (archive.exists() && !(archive.setWritable(true) && archive.delete()))
+        {
+            throw new CompilerException("Failed to delete " + archive);
+        }
+
+        List<String> command = getCommand(installer);
+        logger.fine("Generating class data sharing archive: " + command);
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(archive.getParentFile());
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        process.getOutputStream().close();
+
+        LinkedList<String> output = new LinkedList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                logger.fine(line);
+                output.add(line);
+                if (output.size() > OUTPUT_LINES)
+                {
+                    output.removeFirst();
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        int exitCode;
+        try
+        {
+            exitCode = process.waitFor();
+        }
+        catch (InterruptedException exception)
+        {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new CompilerException("Interrupted generating class data sharing archive", exception);
+        }
+        if (exitCode != 0 || !archive.isFile())
+        {
+            StringBuilder message = new StringBuilder("Failed to generate class data sharing archive using ")
+                    .append(java).append(" (exit code ").append(exitCode)
+                    .append("). Java 13 or later is required. Output:");
+            for (String line : output)
+            {
+                message.append('\n').append(line);
+            }
+            throw new CompilerException(message.toString());
+        }
+        return archive;
+    }
+}
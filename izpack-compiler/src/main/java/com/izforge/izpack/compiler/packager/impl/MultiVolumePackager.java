@@ -22,8 +22,8 @@
 package com.izforge.izpack.compiler.packager.impl;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.util.List;
 import java.util.Properties;
@@ -44,6 +44,7 @@ import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.core.io.FileSpanningOutputStream;
 import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.PackFileSource;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.data.ParsableFile;
 import com.izforge.izpack.data.UpdateCheck;
@@ -319,19 +320,35 @@ public class MultiVolumePackager extends PackagerBase
         for (PackFile packfile : files)
         {
             XPackFile pf = new XPackFile(packfile);
-            File file = packInfo.getFile(packfile);
-            logger.fine("Next file: " + file.getAbsolutePath());
+            PackFileSource source = packInfo.getSource(packfile);
+            logger.fine("Next file: " + source.getName());
 
             if (!pf.isDirectory())
             {
                 if (!pack.isLoose())
                 {
-                    writePackFile(file, volumes, pf);
+                    writePackFile(source, volumes, pf);
                 }
                 else
                 {
                     // just copy the file to the target directory
-                    FileUtils.copyFile(file, new File(targetDir, pf.getRelativeSourcePath()));
+                    File target = new File(targetDir, pf.getRelativeSourcePath());
+                    if (source.getFile() != null)
+                    {
+                        FileUtils.copyFile(source.getFile(), target);
+                    }
+                    else
+                    {
+                        InputStream in = source.getInputStream();
+                        try
+                        {
+                            FileUtils.copyInputStreamToFile(in, target);
+                        }
+                        finally
+                        {
+                            in.close();
+                        }
+                    }
                 }
             }
 
@@ -351,12 +368,13 @@ public class MultiVolumePackager extends PackagerBase
     /**
      * Writes a pack file to the volumes.
      *
-     * @param file     the file to write
+     * @param source   the source of the file content
      * @param volumes  the volumes
      * @param packFile the pack file
      * @throws IOException for any I/O error
      */
-    private void writePackFile(File file, FileSpanningOutputStream volumes, XPackFile packFile) throws IOException
+    private void writePackFile(PackFileSource source, FileSpanningOutputStream volumes, XPackFile packFile)
+            throws IOException
     {
         long beforePosition = volumes.getFilePointer();
         packFile.setArchiveFilePosition(beforePosition);
@@ -364,14 +382,22 @@ public class MultiVolumePackager extends PackagerBase
         // write the file to the volumes
         int volumeCount = volumes.getVolumes();
 
-        FileInputStream in = new FileInputStream(file);
-        long bytesWritten = IoHelper.copyStream(in, volumes);
+        InputStream in = source.getInputStream();
+        long bytesWritten;
+        try
+        {
+            bytesWritten = IoHelper.copyStream(in, volumes);
+        }
+        finally
+        {
+            in.close();
+        }
         long afterPosition = volumes.getFilePointer();
         logger.fine("File (" + packFile.sourcePath + ") " + beforePosition + " <-> " + afterPosition);
 
         if (volumes.getFilePointer() != (beforePosition + bytesWritten))
         {
-            logger.fine("file: " + file.getName());
+            logger.fine("file: " + source.getName());
             logger.fine("(Filepos/BytesWritten/ExpectedNewFilePos/NewFilePointer) ("
                                 + beforePosition + "/" + bytesWritten + "/" + (beforePosition + bytesWritten)
                                 + "/" + volumes.getFilePointer() + ")");
@@ -381,9 +407,8 @@ public class MultiVolumePackager extends PackagerBase
 
         if (bytesWritten != packFile.length())
         {
-            throw new IOException("File size mismatch when reading " + file);
+            throw new IOException("File size mismatch when reading " + source.getName());
         }
-        in.close();
     }
 
 }
\ No newline at end of file
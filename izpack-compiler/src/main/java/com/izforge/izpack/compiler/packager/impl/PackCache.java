@@ -0,0 +1,388 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * An on-disk cache of compressed pack segments, keyed on a fingerprint of the pack.
+ * <p/>
+ * Each entry consists of the segment, and a descriptor holding the segment CRC and the offsets of the files stored
+ * in the pack. Entries are written to temporary files and renamed into place, so a cache may be shared by
+ * concurrent builds.
+ *
+ * @see Packager
+ */
+class PackCache
+{
+
+    /**
+     * The cache directory.
+     */
+    private final File directory;
+
+    /**
+     * The buffer size used when verifying segments.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of packs reused from the cache.
+     */
+    private final AtomicInteger hits = new AtomicInteger();
+
+    /**
+     * The number of packs not found in the cache.
+     */
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(PackCache.class.getName());
+
+
+    /**
+     * Constructs a <tt>PackCache</tt>.
+     *
+     * @param directory the cache directory. Created if it doesn't exist
+     * @throws IOException if the directory cannot be created
+     */
+    public PackCache(File directory) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Failed to create pack cache directory: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Returns a cached pack segment.
+     * <p/>
+     * The segment is verified against the length and CRC recorded in its descriptor. Entries that fail verification,
+     * e.g. because the segment was truncated, are removed.
+     *
+     * @param key the pack fingerprint
+     * @return the cached segment, or <tt>null</tt> if there is no valid entry for the key
+     */
+    public Entry get(String key)
+    {
+        Entry result = null;
+        File segment = getSegmentFile(key);
+        File descriptor = getDescriptorFile(key);
+        if (segment.isFile() && descriptor.isFile())
+        {
+            try
+            {
+                DataInputStream in = new DataInputStream(new FileInputStream(descriptor));
+                try
+                {
+                    long length = in.readLong();
+                    long crc = in.readLong();
+                    long[] offsets = new long[in.readInt()];
+                    for (int i = 0; i < offsets.length; ++i)
+                    {
+                        offsets[i] = in.readLong();
+                    }
+                    if (length == segment.length() && crc == getCrc(segment))
+                    {
+                        result = new Entry(segment, crc, offsets);
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+                if (result == null)
+                {
+                    logger.warning("Removing corrupt pack cache entry: " + segment);
+                    delete(descriptor);
+                    delete(segment);
+                }
+            }
+            catch (IOException exception)
+            {
+                logger.log(Level.WARNING, "Ignoring unreadable pack cache entry: " + descriptor, exception);
+            }
+        }
+        if (result != null)
+        {
+            hits.incrementAndGet();
+        }
+        else
+        {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Adds a pack segment to the cache.
+     * <p/>
+     * Failure to add the segment is logged, but not propagated, as the pack can still be written.
+     *
+     * @param key     the pack fingerprint
+     * @param segment the segment file. This is copied
+     * @param crc     the CRC-32 of the segment
+     * @param offsets the offsets of the files stored in the pack, in pack order
+     */
+    public void put(String key, File segment, long crc, long[] offsets)
+    {
+        File segmentTemp = null;
+        File descriptorTemp = null;
+        try
+        {
+            segmentTemp = File.createTempFile(key, ".tmp", directory);
+            InputStream in = new FileInputStream(segment);
+            try
+            {
+                OutputStream out = new FileOutputStream(segmentTemp);
+                try
+                {
+                    IoHelper.copyStream(in, out);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+
+            descriptorTemp = File.createTempFile(key, ".tmp", directory);
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(descriptorTemp));
+            try
+            {
+                out.writeLong(segment.length());
+                out.writeLong(crc);
+                out.writeInt(offsets.length);
+                for (long offset : offsets)
+                {
+                    out.writeLong(offset);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+
+            // the descriptor is renamed last, as an entry is only valid once both files are present
+            if (rename(segmentTemp, getSegmentFile(key)))
+            {
+                rename(descriptorTemp, getDescriptorFile(key));
+            }
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.WARNING, "Failed to add pack to cache: " + key, exception);
+        }
+        finally
+        {
+            delete(segmentTemp);
+            delete(descriptorTemp);
+        }
+    }
+
+    /**
+     * Returns the number of packs reused from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public int getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of packs not found in the cache.
+     *
+     * @return the number of cache misses
+     */
+    public int getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Returns the segment file for a key.
+     *
+     * @param key the pack fingerprint
+     * @return the segment file
+     */
+    private File getSegmentFile(String key)
+    {
+        return new File(directory, key + ".segment");
+    }
+
+    /**
+     * Returns the descriptor file for a key.
+     *
+     * @param key the pack fingerprint
+     * @return the descriptor file
+     */
+    private File getDescriptorFile(String key)
+    {
+        return new File(directory, key + ".info");
+    }
+
+    /**
+     * Calculates the CRC-32 of a file.
+     *
+     * @param file the file
+     * @return the CRC-32 of the file content
+     * @throws IOException for any I/O error
+     */
+    private long getCrc(File file) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                crc.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Renames a file, replacing any existing file.
+     *
+     * @param from the file to rename
+     * @param to   the new file
+     * @return <tt>true</tt> if the file was renamed
+     */
+    private boolean rename(File from, File to)
+    {
+        if (!from.renameTo(to))
+        {
+            // the target may exist on platforms that don't replace on rename
+            if (!to.delete() || !from.renameTo(to))
+            {
+                logger.warning("Failed to rename " + from + " to " + to);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deletes a file, if it exists.
+     *
+     * @param file the file. May be <tt>null</tt>
+     */
+    private void delete(File file)
+    {
+        if (file != null && file.exists() && !file.delete())
+        {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * A cached pack segment.
+     */
+    public static class Entry
+    {
+
+        /**
+         * The segment file.
+         */
+        private final File file;
+
+        /**
+         * The CRC-32 of the segment.
+         */
+        private final long crc;
+
+        /**
+         * The offsets of the files stored in the pack, in pack order.
+         */
+        private final long[] offsets;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param file    the segment file
+         * @param crc     the CRC-32 of the segment
+         * @param offsets the offsets of the files stored in the pack, in pack order
+         */
+        public Entry(File file, long crc, long[] offsets)
+        {
+            this.file = file;
+            this.crc = crc;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Returns the segment file.
+         *
+         * @return the segment file
+         */
+        public File getFile()
+        {
+            return file;
+        }
+
+        /**
+         * Returns the CRC-32 of the segment.
+         *
+         * @return the CRC-32 of the segment
+         */
+        public long getCrc()
+        {
+            return crc;
+        }
+
+        /**
+         * Returns the offsets of the files stored in the pack.
+         *
+         * @return the offsets, in pack order
+         */
+        public long[] getOffsets()
+        {
+            return offsets;
+        }
+    }
+}
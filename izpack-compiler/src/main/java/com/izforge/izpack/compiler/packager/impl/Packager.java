@@ -20,22 +20,44 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Pack200;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.output.NullOutputStream;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
@@ -44,13 +66,20 @@ import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
 import com.izforge.izpack.core.io.ByteCountingOutputStream;
+import com.izforge.izpack.core.io.ChunkedDeflaterOutputStream;
+import com.izforge.izpack.core.io.ChunkedInflaterInputStream;
 import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.PackFileSource;
 import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.data.PackMetadataWriter;
 import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.data.SolidJarWriter;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.util.FileUtil;
 import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.file.FileUtils;
 
 /**
  * The packager class. The packager is used by the compiler to put files into an installer, and
@@ -68,6 +97,12 @@ public class Packager extends PackagerBase
      */
     private final OutputStream outputStream;
 
+    /**
+     * The version of the pack cache fingerprint. Changing how packs are written requires a new version, so that
+     * segments written by earlier versions are no longer reused.
+     */
+    private static final int CACHE_VERSION = 2;
+
 
     /**
      * Constructs a <tt>Packager</tt>.
@@ -92,6 +127,24 @@ public class Packager extends PackagerBase
         this.outputStream = outputStream;
     }
 
+    /**
+     * Sets the installer information.
+     * <p/>
+     * If packs are compressed by the packager, each pack is stored as a chunked deflated stream, so the installer
+     * is told to inflate pack streams itself.
+     *
+     * @param info the installer information
+     */
+    @Override
+    public void setInfo(Info info)
+    {
+        super.setInfo(info);
+        if (isSegmentedPackaging())
+        {
+            info.setPackDecoderClassName(ChunkedInflaterInputStream.class.getName());
+        }
+    }
+
     /**
      * Write packs to the installer jar, or each to a separate jar.
      *
@@ -104,147 +157,382 @@ public class Packager extends PackagerBase
         final int num = packs.size();
         sendMsg("Writing " + num + " Pack" + (num > 1 ? "s" : "") + " into installer");
 
-        // Map to remember pack number and bytes offsets of back references
-        Map<File, Object[]> storedFiles = new HashMap<File, Object[]>();
+        // Maps to remember pack names and bytes offsets of stored files and back references
+        Map<PackFile, StoredFile> storedFiles = new HashMap<PackFile, StoredFile>();
+        Map<PackFile, StoredFile> references = new HashMap<PackFile, StoredFile>();
 
         // Pack200 files map
         Map<Integer, File> pack200Map = new HashMap<Integer, File>();
-        int pack200Counter = 0;
+
+        preparePacks(packs, storedFiles, references, pack200Map);
 
         // Force UTF-8 encoding in order to have proper ZipEntry names.
         JarOutputStream installerJar = getInstallerJar();
         installerJar.setEncoding("utf-8");
 
+        PackCache cache = createPackCache();
+
         // First write the serialized files and file metadata data for each pack
         // while counting bytes.
+        if (isSegmentedPackaging())
+        {
+            writePacksSegmented(packs, storedFiles, references, cache);
+        }
+        else
+        {
+            writePacksSequential(packs, storedFiles, references, cache);
+        }
 
-        int packNumber = 0;
-        IXMLElement root = new XMLElementImpl("packs");
+        if (cache != null)
+        {
+            int hits = cache.getHits();
+            int misses = cache.getMisses();
+            sendMsg("Pack cache: " + hits + " hit" + (hits != 1 ? "s" : "") + ", " + misses + " miss"
+                            + (misses != 1 ? "es" : ""));
+        }
 
+        IXMLElement root = new XMLElementImpl("packs");
         for (PackInfo packInfo : packs)
         {
             Pack pack = packInfo.getPack();
-            pack.setFileSize(0);
+            IXMLElement child = new XMLElementImpl("pack", root);
+            child.setAttribute("name", pack.getName());
+            child.setAttribute("size", Long.toString(pack.getSize()));
+            child.setAttribute("fileSize", Long.toString(pack.getFileSize()));
+            if (pack.getLangPackId() != null)
+            {
+                child.setAttribute("id", pack.getLangPackId());
+            }
+            root.addChild(child);
+        }
 
-            // create a pack specific jar if required
-            // REFACTOR : Repare web installer
-            // REFACTOR : Use a mergeManager for each packages that will be added to the main merger
+        // Now that we know sizes, write pack metadata to primary jar.
+        installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs.info"));
+        ObjectOutputStream out = new ObjectOutputStream(installerJar);
+        out.writeInt(packs.size());
 
-//            if (packJarsSeparate) {
-            // See installer.Unpacker#getPackAsStream for the counterpart
-//                String name = baseFile.getName() + ".pack-" + pack.id + ".jar";
-//                packStream = IoHelper.getJarOutputStream(name, baseFile.getParentFile());
-//            }
+        for (PackInfo packInfo : packs)
+        {
+            out.writeObject(packInfo.getPack());
+        }
+        out.flush();
+        installerJar.closeEntry();
 
-            sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
+        // Pack200 files. The packer is only created when needed, as Pack200 was removed in Java 14
+        Pack200.Packer packer = pack200Map.isEmpty() ? null : createAgressivePack200Packer();
+        for (Integer key : pack200Map.keySet())
+        {
+            File file = pack200Map.get(key);
+            installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key));
+            JarFile jar = new JarFile(file);
+            packer.pack(jar, installerJar);
+            jar.close();
+            installerJar.closeEntry();
+        }
+    }
 
-            // Retrieve the correct output stream
-            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
-                    RESOURCES_PATH + "packs/pack-" + pack.getName());
-            installerJar.putNextEntry(entry);
-            installerJar.flush(); // flush before we start counting
+    /**
+     * Determines if packs are compressed by the packager into seekable segments, rather than by the installer jar.
+     * <p/>
+     * This is the case for the default compression, when all packs are written to the installer jar. Segments
+     * are written by {@link CompilerData#getPackThreads()} threads, and are deflated in independently compressed
+     * chunks so that the installer can resolve back references without inflating the whole of the previous pack.
+     *
+     * @return {@code true} if packs are compressed into segments
+     */
+    protected boolean isSegmentedPackaging()
+    {
+        return getCompressor().useStandardCompression() && !packSeparateJars();
+    }
 
-            ByteCountingOutputStream dos = new ByteCountingOutputStream(outputStream);
-            ObjectOutputStream objOut = new ObjectOutputStream(dos);
+    /**
+     * Creates the cache of compressed packs, if one is configured.
+     * <p/>
+     * Only packs that are compressed into segments by the packager can be cached. These are all packs when using
+     * the default compression, and otherwise those packs that specify their own compression format.
+     *
+     * @return the pack cache, or <tt>null</tt> if packs aren't cached
+     * @throws IOException if the cache directory cannot be created
+     */
+    private PackCache createPackCache() throws IOException
+    {
+        String path = getCompilerData().getPackCache();
+        if (path == null || path.length() == 0)
+        {
+            return null;
+        }
+        File directory = FileUtil.getAbsoluteFile(path, getCompilerData().getBasedir());
+        sendMsg("Using pack cache " + directory, PackagerListener.MSG_VERBOSE);
+        return new PackCache(directory);
+    }
 
-            // We write the actual pack files
-            objOut.writeInt(packInfo.getPackFiles().size());
+    /**
+     * Determines which pack files are stored, and which are back references to files stored in a previous pack.
+     * <p/>
+     * This must be done in pack declaration order, before any pack is written, so that packs may be written
+     * independently of each other.
+     * <p/>
+     * A file is written once, the first time it is encountered. Subsequent occurrences of the same file, or of
+     * another file with identical content, are written as back references.
+     *
+     * @param packs       the packs
+     * @param storedFiles collects the pack files whose content is stored in their pack
+     * @param references  collects the pack files that refer to the content of a previously stored file
+     * @param pack200Map  collects the jars to be compressed with Pack200, keyed on identifier
+     * @throws IOException for any I/O error
+     */
+    private void preparePacks(List<PackInfo> packs, Map<PackFile, StoredFile> storedFiles,
+                              Map<PackFile, StoredFile> references, Map<Integer, File> pack200Map)
+            throws IOException
+    {
+        Map<PackFileSource, StoredFile> files = new HashMap<PackFileSource, StoredFile>();
+        Map<String, StoredFile> contents = new HashMap<String, StoredFile>();
+        Set<Long> lengths = getDuplicateLengths(packs);
+        int pack200Counter = 0;
+        int solidJars = 0;
+        int duplicates = 0;
+        long savedBytes = 0;
 
+        for (PackInfo packInfo : packs)
+        {
+            Pack pack = packInfo.getPack();
             for (PackFile packFile : packInfo.getPackFiles())
             {
-                boolean addFile = !pack.isLoose();
                 boolean pack200 = false;
-                File file = packInfo.getFile(packFile);
+                PackFileSource source = packInfo.getSource(packFile);
+                File file = source.getFile();
 
-                if (file.getName().toLowerCase().endsWith(".jar") && getInfo().isPack200Compression()
+                if (file != null && file.getName().toLowerCase().endsWith(".jar") && getInfo().isPack200Compression()
                         && isNotSignedJar(file))
                 {
                     packFile.setPack200Jar(true);
                     pack200 = true;
                 }
+                else if (file != null && file.getName().toLowerCase().endsWith(".jar") && !pack.isLoose()
+                        && getInfo().isSolidJarCompression() && SolidJarWriter.isSupported(file))
+                {
+                    packFile.setSolidJar(true);
+                }
 
                 // use a back reference if file was in previous pack, and in
                 // same jar
-                Object[] info = storedFiles.get(file);
-                if (info != null && !packSeparateJars())
+                StoredFile stored = files.get(source);
+                String hash = null;
+                if (stored == null && !pack200 && !pack.isLoose() && !packFile.isDirectory() && !packSeparateJars()
+                        && packFile.length() > 0 && lengths.contains(packFile.length()))
                 {
-                    packFile.setPreviousPackFileRef((String) info[0], (Long) info[1]);
-                    addFile = false;
+                    // only files whose length matches that of another file can have the same content
+                    hash = getContentHash(source);
+                    if (packFile.isSolidJar())
+                    {
+                        // solid jars are stored differently, so can only refer to each other
+                        hash = "solid:" + hash;
+                    }
+                    stored = contents.get(hash);
+                    if (stored != null)
+                    {
+                        files.put(source, stored);
+                        duplicates++;
+                        savedBytes += packFile.length();
+                    }
                 }
 
-                objOut.writeObject(packFile); // base info
-
-                if (addFile && !packFile.isDirectory())
+                if (stored != null && !packSeparateJars())
                 {
-                    long pos = dos.getByteCount(); // get the position
-
+                    references.put(packFile, stored);
+                }
+                else if (!pack.isLoose() && !packFile.isDirectory())
+                {
+                    int pack200Id = -1;
                     if (pack200)
                     {
-                        /*
-                         * Warning!
-                         *
-                         * Pack200 archives must be stored in separated streams, as the Pack200 unpacker
-                         * reads the entire stream...
-                         *
-                         * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
-                         */
                         pack200Map.put(pack200Counter, file);
-                        objOut.writeInt(pack200Counter);
+                        pack200Id = pack200Counter;
                         pack200Counter = pack200Counter + 1;
                     }
-                    else
+                    if (packFile.isSolidJar())
                     {
-                        FileInputStream inStream = new FileInputStream(file);
-                        long bytesWritten = IoHelper.copyStream(inStream, objOut);
-                        inStream.close();
-                        if (bytesWritten != packFile.length())
-                        {
-                            throw new IOException("File size mismatch when reading " + file);
-                        }
+                        solidJars++;
+                    }
+                    stored = new StoredFile(pack.getName(), pack200Id);
+                    storedFiles.put(packFile, stored);
+                    // later occurrences of the same source, in this or another pack, refer to this copy
+                    files.put(source, stored);
+                    if (hash != null)
+                    {
+                        contents.put(hash, stored);
                     }
-
-                    storedFiles.put(file, new Object[]{pack.getName(), pos}); // TODO - see IZPACK-799
                 }
-
-                // even if not written, it counts towards pack size
-                pack.addFileSize(packFile.size());
-            }
-
-            if (pack.getFileSize() > pack.getSize())
-            {
-                pack.setSize(pack.getFileSize());
             }
+        }
 
-            // Write out information about parsable files
-            objOut.writeInt(packInfo.getParsables().size());
+        if (solidJars != 0)
+        {
+            sendMsg("Storing " + solidJars + " jar" + (solidJars > 1 ? "s" : "")
+                            + " uncompressed, to be compressed with their pack");
+        }
+        if (duplicates != 0)
+        {
+            sendMsg("De-duplicated " + duplicates + " file" + (duplicates > 1 ? "s" : "")
+                            + " with identical content, saving " + savedBytes + " bytes");
+        }
+    }
 
-            for (ParsableFile parsableFile : packInfo.getParsables())
+    /**
+     * Returns the lengths shared by more than one distinct file stored in the packs.
+     * <p/>
+     * Only files with these lengths are candidates for de-duplication by content, which avoids hashing files that
+     * cannot have a duplicate.
+     *
+     * @param packs the packs
+     * @return the lengths shared by more than one file
+     */
+    private Set<Long> getDuplicateLengths(List<PackInfo> packs)
+    {
+        Set<PackFileSource> files = new HashSet<PackFileSource>();
+        Set<Long> lengths = new HashSet<Long>();
+        Set<Long> duplicates = new HashSet<Long>();
+        for (PackInfo packInfo : packs)
+        {
+            if (!packInfo.getPack().isLoose())
             {
-                objOut.writeObject(parsableFile);
+                for (PackFile packFile : packInfo.getPackFiles())
+                {
+                    if (!packFile.isDirectory() && files.add(packInfo.getSource(packFile))
+                            && !lengths.add(packFile.length()))
+                    {
+                        duplicates.add(packFile.length());
+                    }
+                }
             }
+        }
+        return duplicates;
+    }
 
-            // Write out information about executable files
-            objOut.writeInt(packInfo.getExecutables().size());
-            for (ExecutableFile executableFile : packInfo.getExecutables())
+    /**
+     * Returns the SHA-256 hash of a file's content, as a hexadecimal string.
+     *
+     * @param source the source of the file content
+     * @return the content hash
+     * @throws IOException for any I/O error
+     */
+    private String getContentHash(PackFileSource source) throws IOException
+    {
+        MessageDigest digest = createDigest();
+        InputStream in = source.getInputStream();
+        try
+        {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
             {
-                objOut.writeObject(executableFile);
+                digest.update(buffer, 0, read);
             }
+        }
+        finally
+        {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
 
-            // Write out information about updatecheck files
-            objOut.writeInt(packInfo.getUpdateChecks().size());
-            for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
-            {
-                objOut.writeObject(updateCheck);
-            }
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return a new digest
+     * @throws IOException if the digest algorithm is not available
+     */
+    private MessageDigest createDigest() throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException("Failed to create content digest", exception);
+        }
+    }
+
+    /**
+     * Converts a digest to a hexadecimal string.
+     *
+     * @param digest the digest
+     * @return the hexadecimal string
+     */
+    private String toHex(byte[] digest)
+    {
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest)
+        {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Writes each pack to the installer jar in turn.
+     *
+     * @param packs       the packs to write
+     * @param storedFiles the pack files whose content is stored in their pack
+     * @param references  the pack files that refer to the content of a previously stored file
+     * @param cache       the pack cache. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private void writePacksSequential(List<PackInfo> packs, Map<PackFile, StoredFile> storedFiles,
+                                      Map<PackFile, StoredFile> references, PackCache cache) throws IOException
+    {
+        JarOutputStream installerJar = getInstallerJar();
+        int packNumber = 0;
+
+        for (PackInfo packInfo : packs)
+        {
+            Pack pack = packInfo.getPack();
+
+            // create a pack specific jar if required
+            // REFACTOR : Repare web installer
+            // REFACTOR : Use a mergeManager for each packages that will be added to the main merger
+
+//            if (packJarsSeparate) {
+            // See installer.Unpacker#getPackAsStream for the counterpart
+//                String name = baseFile.getName() + ".pack-" + pack.id + ".jar";
+//                packStream = IoHelper.getJarOutputStream(name, baseFile.getParentFile());
+//            }
+
+            sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
 
-            // Cleanup
-            objOut.flush();
-            if (!getCompressor().useStandardCompression())
+            // Retrieve the correct output stream
+            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(
+                    RESOURCES_PATH + "packs/pack-" + pack.getName());
+            if (getPackCompressor(packInfo) != null)
             {
-                outputStream.close();
+                // the pack is compressed in its own format, independently of the installer compression
+                PackSegment segment = new PackSegmentWriter(packInfo, storedFiles, references, cache).call();
+                try
+                {
+                    segment.write(installerJar, entry.getName());
+                    sendMessages(segment);
+                }
+                finally
+                {
+                    segment.delete();
+                }
             }
+            else
+            {
+                installerJar.putNextEntry(entry);
+                installerJar.flush(); // flush before we start counting
 
-            installerJar.closeEntry();
+                writePack(packInfo, outputStream, storedFiles, references);
+
+                // Cleanup
+                if (!getCompressor().useStandardCompression())
+                {
+                    outputStream.close();
+                }
+
+                installerJar.closeEntry();
+            }
 
             // close pack specific jar if required
             if (packSeparateJars())
@@ -252,50 +540,433 @@ public class Packager extends PackagerBase
                 installerJar.closeAlways();
             }
 
-            IXMLElement child = new XMLElementImpl("pack", root);
-            child.setAttribute("name", pack.getName());
-            child.setAttribute("size", Long.toString(pack.getSize()));
-            child.setAttribute("fileSize", Long.toString(pack.getFileSize()));
-            if (pack.getLangPackId() != null)
-            {
-                child.setAttribute("id", pack.getLangPackId());
-            }
-            root.addChild(child);
-
             packNumber++;
         }
+    }
 
-        // Now that we know sizes, write pack metadata to primary jar.
-        installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs.info"));
-        ObjectOutputStream out = new ObjectOutputStream(installerJar);
-        out.writeInt(packs.size());
+    /**
+     * Serializes and compresses packs on a pool of threads, each to a temporary segment, and then copies the
+     * segments to the installer jar in pack declaration order.
+     * <p/>
+     * The segments are deflated by the packager in chunks, and stored in the installer jar without further
+     * compression, so that the installer can skip directly to the chunk containing a back reference.
+     *
+     * @param packs       the packs to write
+     * @param storedFiles the pack files whose content is stored in their pack
+     * @param references  the pack files that refer to the content of a previously stored file
+     * @param cache       the pack cache. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private void writePacksSegmented(List<PackInfo> packs, Map<PackFile, StoredFile> storedFiles,
+                                    Map<PackFile, StoredFile> references, PackCache cache) throws IOException
+    {
+        int threads = Math.max(1, Math.min(getCompilerData().getPackThreads(), packs.size()));
+        sendMsg("Writing packs using " + threads + " thread" + (threads > 1 ? "s" : ""), PackagerListener.MSG_VERBOSE);
 
-        for (PackInfo packInfo : packs)
+        // Tasks are started in declaration order, so a pack waiting for the offset of a back reference only ever
+        // waits on a pack that is already being written
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<PackSegment>> segments = new ArrayList<Future<PackSegment>>();
+        try
         {
-            out.writeObject(packInfo.getPack());
+            for (PackInfo packInfo : packs)
+            {
+                segments.add(executor.submit(new PackSegmentWriter(packInfo, storedFiles, references, cache)));
+            }
+
+            JarOutputStream installerJar = getInstallerJar();
+            int packNumber = 0;
+            for (Future<PackSegment> future : segments)
+            {
+                PackSegment segment = getSegment(future);
+                try
+                {
+                    sendMsg("Writing Pack " + packNumber + ": " + segment.getName(), PackagerListener.MSG_VERBOSE);
+                    segment.write(installerJar, RESOURCES_PATH + "packs/pack-" + segment.getName());
+                    sendMessages(segment);
+                }
+                finally
+                {
+                    segment.delete();
+                }
+                packNumber++;
+            }
         }
-        out.flush();
-        installerJar.closeEntry();
+        finally
+        {
+            executor.shutdownNow();
+            for (Future<PackSegment> future : segments)
+            {
+                if (future.isDone() && !future.isCancelled())
+                {
+                    try
+                    {
+                        future.get().delete();
+                    }
+                    catch (Exception ignore)
+                    {
+                        // failed segments are deleted by their writer
+                    }
+                }
+            }
+        }
+    }
 
-        // Pack200 files
-        Pack200.Packer packer = createAgressivePack200Packer();
-        for (Integer key : pack200Map.keySet())
+    /**
+     * Sends the messages collected while writing a pack segment.
+     * <p/>
+     * Segments may be written on other threads, but the listener is only notified from this one, in pack order.
+     *
+     * @param segment the segment
+     */
+    private void sendMessages(PackSegment segment)
+    {
+        for (String message : segment.getMessages())
         {
-            File file = pack200Map.get(key);
-            installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + "packs/pack200-" + key));
-            JarFile jar = new JarFile(file);
-            packer.pack(jar, installerJar);
-            jar.close();
-            installerJar.closeEntry();
+            sendMsg(message, PackagerListener.MSG_VERBOSE);
         }
     }
 
-    private Pack200.Packer createAgressivePack200Packer()
+    /**
+     * Waits for a pack segment to be written.
+     *
+     * @param future the segment future
+     * @return the segment
+     * @throws IOException if the segment could not be written, or the wait was interrupted
+     */
+    private PackSegment getSegment(Future<PackSegment> future) throws IOException
     {
-        Pack200.Packer packer = Pack200.newPacker();
-        Map<String, String> packerProperties = packer.properties();
-        packerProperties.put(Pack200.Packer.EFFORT, "9");
-        packerProperties.put(Pack200.Packer.SEGMENT_LIMIT, "-1");
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            throw new InterruptedIOException("Interrupted while writing packs");
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Failed to write pack", cause);
+        }
+    }
+
+    /**
+     * Writes the serialized files and file metadata of a pack.
+     *
+     * @param packInfo    the pack to write
+     * @param out         the stream to write to
+     * @param storedFiles the pack files whose content is stored in their pack
+     * @param references  the pack files that refer to the content of a previously stored file
+     * @throws IOException for any I/O error
+     */
+    private void writePack(PackInfo packInfo, OutputStream out, Map<PackFile, StoredFile> storedFiles,
+                           Map<PackFile, StoredFile> references) throws IOException
+    {
+        ByteCountingOutputStream dos = new ByteCountingOutputStream(out);
+        ObjectOutputStream objOut = new ObjectOutputStream(new BlockOutputStream(dos));
+        PackMetadataWriter writer = new PackMetadataWriter(objOut);
+
+        // Parsable files written along with their pack file, so the installer can parse them as they are unpacked
+        Map<PackFile, ParsableFile> parsables = getUnpackParsables(packInfo);
+
+        // We write the actual pack files
+        writer.writeFileCount(packInfo.getPackFiles().size());
+
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            StoredFile reference = references.get(packFile);
+            if (reference != null)
+            {
+                packFile.setPreviousPackFileRef(reference.getPackName(), reference.getOffset());
+            }
+
+            writer.writePackFile(packFile, parsables.get(packFile)); // base info
+
+            StoredFile stored = storedFiles.get(packFile);
+            if (stored != null)
+            {
+                objOut.flush(); // write out buffered meta-data, so the content starts a new block
+                stored.setOffset(dos.getByteCount()); // get the position
+
+                if (stored.isPack200())
+                {
+                    /*
+                     * Warning!
+                     *
+                     * Pack200 archives must be stored in separated streams, as the Pack200 unpacker
+                     * reads the entire stream...
+                     *
+                     * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
+                     */
+                    objOut.writeInt(stored.getPack200Id());
+                }
+                else if (packFile.isSolidJar())
+                {
+                    new SolidJarWriter(objOut).write(packInfo.getSource(packFile).getFile());
+                }
+                else
+                {
+                    PackFileSource source = packInfo.getSource(packFile);
+                    InputStream inStream = source.getInputStream();
+                    long bytesWritten;
+                    try
+                    {
+                        bytesWritten = IoHelper.copyStream(inStream, objOut);
+                    }
+                    finally
+                    {
+                        inStream.close();
+                    }
+                    if (bytesWritten != packFile.length())
+                    {
+                        throw new IOException("File size mismatch when reading " + source.getName());
+                    }
+                }
+            }
+        }
+
+        updatePackSize(packInfo);
+        writePackTrailer(packInfo, parsables, writer);
+
+        objOut.flush();
+        dos.flush();
+    }
+
+    /**
+     * Updates the size of a pack from that of its files.
+     * <p/>
+     * Files that refer to the content of a file in another pack still count towards the pack size.
+     *
+     * @param packInfo the pack
+     */
+    private void updatePackSize(PackInfo packInfo)
+    {
+        Pack pack = packInfo.getPack();
+        pack.setFileSize(0);
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            pack.addFileSize(packFile.size());
+        }
+        if (pack.getFileSize() > pack.getSize())
+        {
+            pack.setSize(pack.getFileSize());
+        }
+    }
+
+    /**
+     * Writes the metadata that follows the files of a pack.
+     *
+     * @param packInfo  the pack
+     * @param parsables the parsable files written along with their pack file
+     * @param writer    the metadata writer
+     * @throws IOException for any I/O error
+     */
+    private void writePackTrailer(PackInfo packInfo, Map<PackFile, ParsableFile> parsables,
+                                  PackMetadataWriter writer) throws IOException
+    {
+        // Write out information about the remaining parsable files
+        List<ParsableFile> remaining = new ArrayList<ParsableFile>(packInfo.getParsables());
+        remaining.removeAll(parsables.values());
+        writer.writeCount(remaining.size());
+
+        for (ParsableFile parsableFile : remaining)
+        {
+            writer.writeParsableFile(parsableFile);
+        }
+
+        // Write out information about executable files
+        writer.writeCount(packInfo.getExecutables().size());
+        for (ExecutableFile executableFile : packInfo.getExecutables())
+        {
+            writer.writeExecutableFile(executableFile);
+        }
+
+        // Write out information about updatecheck files
+        writer.writeCount(packInfo.getUpdateChecks().size());
+        for (UpdateCheck updateCheck : packInfo.getUpdateChecks())
+        {
+            writer.writeUpdateCheck(updateCheck);
+        }
+    }
+
+    /**
+     * Returns a fingerprint of a pack, identifying its compressed segment in the pack cache.
+     * <p/>
+     * The fingerprint covers the pack metadata as it would be written, including the location of any back
+     * references, and the compression settings. File content is identified by the path, length and modification
+     * time of the source file, rather than by reading it.
+     * <p/>
+     * Back references to earlier packs are resolved first, so this waits for any earlier pack the pack refers to.
+     * Back references within the pack are identified by the file they refer to, as its offset follows from the
+     * fingerprinted content before it.
+     *
+     * @param packInfo    the pack
+     * @param storedFiles the pack files whose content is stored in their pack
+     * @param references  the pack files that refer to the content of a previously stored file
+     * @return the fingerprint, as a hexadecimal string
+     * @throws IOException for any I/O error
+     */
+    private String getFingerprint(PackInfo packInfo, Map<PackFile, StoredFile> storedFiles,
+                                  Map<PackFile, StoredFile> references) throws IOException
+    {
+        MessageDigest digest = createDigest();
+        ObjectOutputStream objOut = new ObjectOutputStream(new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest));
+        Pack pack = packInfo.getPack();
+        PackCompressor packCompressor = getPackCompressor(packInfo);
+
+        objOut.writeInt(CACHE_VERSION);
+        objOut.writeUTF(pack.getName());
+        objOut.writeUTF(packCompressor != null ? packCompressor.getClass().getName() : "");
+        objOut.writeUTF(pack.getCompression() != null ? pack.getCompression() : "");
+        objOut.writeInt(getDeflateLevel());
+        objOut.writeInt(getCompilerData().getComprLevel());
+
+        PackMetadataWriter writer = new PackMetadataWriter(objOut);
+        Map<PackFile, ParsableFile> parsables = getUnpackParsables(packInfo);
+        List<StoredFile> packStoredFiles = new ArrayList<StoredFile>();
+        writer.writeFileCount(packInfo.getPackFiles().size());
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            StoredFile reference = references.get(packFile);
+            boolean internal = reference != null && reference.getPackName().equals(pack.getName());
+            if (reference != null && !internal)
+            {
+                packFile.setPreviousPackFileRef(reference.getPackName(), reference.getOffset());
+            }
+            writer.writePackFile(packFile, parsables.get(packFile));
+            if (internal)
+            {
+                objOut.writeInt(packStoredFiles.indexOf(reference));
+            }
+
+            StoredFile stored = storedFiles.get(packFile);
+            objOut.writeBoolean(stored != null);
+            if (stored != null)
+            {
+                packStoredFiles.add(stored);
+                if (stored.isPack200())
+                {
+                    objOut.writeInt(stored.getPack200Id());
+                }
+                else
+                {
+                    objOut.writeUTF(packInfo.getSource(packFile).getContentKey());
+                }
+            }
+        }
+        writePackTrailer(packInfo, parsables, writer);
+        objOut.close();
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Determines which parsable files can be written along with the pack file they parse.
+     * <p/>
+     * A parsable file is matched to a pack file by target path. Parsable files whose target is not unique to a
+     * single pack file in the pack are left to be parsed after the pack is unpacked.
+     *
+     * @param packInfo the pack
+     * @return the parsable files, keyed on the pack file they parse
+     */
+    private Map<PackFile, ParsableFile> getUnpackParsables(PackInfo packInfo)
+    {
+        Map<PackFile, ParsableFile> result = new HashMap<PackFile, ParsableFile>();
+        if (!packInfo.getParsables().isEmpty())
+        {
+            Map<String, PackFile> targets = new HashMap<String, PackFile>();
+            Set<String> duplicates = new HashSet<String>();
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                if (!packFile.isDirectory() && !packFile.isPack200Jar() && !packFile.isSolidJar()
+                        && targets.put(packFile.getTargetPath(), packFile) != null)
+                {
+                    duplicates.add(packFile.getTargetPath());
+                }
+            }
+            Set<String> parsed = new HashSet<String>();
+            for (ParsableFile parsable : packInfo.getParsables())
+            {
+                String path = parsable.getPath().replace(File.separatorChar, '/');
+                PackFile packFile = targets.get(path);
+                if (packFile != null && !duplicates.contains(path) && parsed.add(path))
+                {
+                    result.put(packFile, parsable);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a stream to compress a pack.
+     * <p/>
+     * Packs that specify their own compression format are written using their compressor, and record the decoder
+     * the installer needs to read them. Other packs are deflated in chunks.
+     *
+     * @param packInfo the pack
+     * @param out      the stream to write the compressed pack to
+     * @return a new stream to write the pack to
+     * @throws IOException if the stream cannot be created
+     */
+    private OutputStream createPackStream(PackInfo packInfo, OutputStream out) throws IOException
+    {
+        setPackDecoder(packInfo);
+        PackCompressor packCompressor = getPackCompressor(packInfo);
+        if (packCompressor == null || packCompressor.useStandardCompression())
+        {
+            return new ChunkedDeflaterOutputStream(out, getDeflateLevel());
+        }
+        return packCompressor.getOutputStream(out);
+    }
+
+    /**
+     * Records the decoder the installer needs to read a pack that specifies its own compression format.
+     *
+     * @param packInfo the pack
+     */
+    private void setPackDecoder(PackInfo packInfo)
+    {
+        PackCompressor packCompressor = getPackCompressor(packInfo);
+        if (packCompressor != null)
+        {
+            Pack pack = packInfo.getPack();
+            if (packCompressor.useStandardCompression())
+            {
+                pack.setPackDecoderClassName(ChunkedInflaterInputStream.class.getName());
+            }
+            else
+            {
+                pack.setPackDecoderClassName(packCompressor.getDecoderMapperName());
+            }
+        }
+    }
+
+    /**
+     * Returns the deflate level used for pack segments, consistent with that of the installer jar.
+     *
+     * @return the deflate level
+     */
+    private int getDeflateLevel()
+    {
+        int level = getCompilerData().getComprLevel();
+        return (level >= 0 && level < 10) ? level : Deflater.BEST_COMPRESSION;
+    }
+
+    private Pack200.Packer createAgressivePack200Packer()
+    {
+        Pack200.Packer packer = Pack200.newPacker();
+        Map<String, String> packerProperties = packer.properties();
+        packerProperties.put(Pack200.Packer.EFFORT, "9");
+        packerProperties.put(Pack200.Packer.SEGMENT_LIMIT, "-1");
         packerProperties.put(Pack200.Packer.KEEP_FILE_ORDER, Pack200.Packer.FALSE);
         packerProperties.put(Pack200.Packer.DEFLATE_HINT, Pack200.Packer.FALSE);
         packerProperties.put(Pack200.Packer.MODIFICATION_TIME, Pack200.Packer.LATEST);
@@ -337,4 +1008,390 @@ public class Packager extends PackagerBase
         // TODO Auto-generated method stub
 
     }
+
+    /**
+     * The location of a pack file whose content is stored in a pack.
+     * <p/>
+     * The offset is only known once the owning pack has been written, so readers block until it is available.
+     */
+    private static class StoredFile
+    {
+
+        /**
+         * The name of the pack storing the file.
+         */
+        private final String packName;
+
+        /**
+         * The Pack200 identifier, or {@code -1} if the file is not Pack200 compressed.
+         */
+        private final int pack200Id;
+
+        /**
+         * The offset of the file content in the uncompressed pack stream, or {@code -1} if not yet known.
+         */
+        private long offset = -1;
+
+        /**
+         * Determines if the owning pack failed to be written.
+         */
+        private boolean failed;
+
+        public StoredFile(String packName, int pack200Id)
+        {
+            this.packName = packName;
+            this.pack200Id = pack200Id;
+        }
+
+        public String getPackName()
+        {
+            return packName;
+        }
+
+        public boolean isPack200()
+        {
+            return pack200Id != -1;
+        }
+
+        public int getPack200Id()
+        {
+            return pack200Id;
+        }
+
+        public synchronized void setOffset(long offset)
+        {
+            this.offset = offset;
+            notifyAll();
+        }
+
+        /**
+         * Marks the file as failed, if its offset is not yet known.
+         */
+        public synchronized void fail()
+        {
+            if (offset == -1)
+            {
+                failed = true;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Returns the offset of the file content, waiting for it to be written if required.
+         *
+         * @return the offset of the file content
+         * @throws IOException if the owning pack could not be written, or the wait was interrupted
+         */
+        public synchronized long getOffset() throws IOException
+        {
+            while (offset == -1 && !failed)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException exception)
+                {
+                    throw new InterruptedIOException("Interrupted waiting for pack " + packName);
+                }
+            }
+            if (failed)
+            {
+                throw new IOException("Failed to write pack " + packName);
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * A compressed pack written to a temporary file, or reused from the pack cache.
+     */
+    private static class PackSegment
+    {
+
+        /**
+         * The pack name.
+         */
+        private final String name;
+
+        /**
+         * The segment file.
+         */
+        private final File file;
+
+        /**
+         * The CRC-32 of the segment file.
+         */
+        private final long crc;
+
+        /**
+         * Determines if the segment file is temporary, and deleted once written.
+         */
+        private final boolean temporary;
+
+        /**
+         * The verbose messages collected while writing the segment.
+         */
+        private final List<String> messages;
+
+        public PackSegment(String name, File file, long crc, boolean temporary, List<String> messages)
+        {
+            this.name = name;
+            this.file = file;
+            this.crc = crc;
+            this.temporary = temporary;
+            this.messages = messages;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public List<String> getMessages()
+        {
+            return messages;
+        }
+
+        /**
+         * Copies the segment to a stored jar entry.
+         *
+         * @param jar       the jar to write to
+         * @param entryName the entry name
+         * @throws IOException for any I/O error
+         */
+        public void write(JarOutputStream jar, String entryName) throws IOException
+        {
+            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(entryName);
+            entry.setMethod(org.apache.tools.zip.ZipEntry.STORED);
+            entry.setSize(file.length());
+            entry.setCrc(crc);
+            jar.putNextEntry(entry);
+            InputStream in = new FileInputStream(file);
+            try
+            {
+                IoHelper.copyStream(in, jar);
+            }
+            finally
+            {
+                in.close();
+            }
+            jar.closeEntry();
+        }
+
+        public void delete()
+        {
+            if (temporary && file.exists() && !file.delete())
+            {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Serializes and compresses a pack to a temporary segment.
+     * <p/>
+     * If a pack cache is used, the segment is reused from the cache when the pack is unchanged, and otherwise added
+     * to it once written.
+     */
+    private class PackSegmentWriter implements Callable<PackSegment>
+    {
+
+        /**
+         * The pack to write.
+         */
+        private final PackInfo packInfo;
+
+        /**
+         * The pack files whose content is stored in their pack.
+         */
+        private final Map<PackFile, StoredFile> storedFiles;
+
+        /**
+         * The pack files that refer to the content of a previously stored file.
+         */
+        private final Map<PackFile, StoredFile> references;
+
+        /**
+         * The pack cache. May be <tt>null</tt>.
+         */
+        private final PackCache cache;
+
+        /**
+         * The verbose messages to send once the segment is written, as the listener may only be notified by the
+         * packaging thread.
+         */
+        private final List<String> messages = new ArrayList<String>();
+
+        public PackSegmentWriter(PackInfo packInfo, Map<PackFile, StoredFile> storedFiles,
+                                 Map<PackFile, StoredFile> references, PackCache cache)
+        {
+            this.packInfo = packInfo;
+            this.storedFiles = storedFiles;
+            this.references = references;
+            this.cache = cache;
+        }
+
+        @Override
+        public PackSegment call() throws IOException
+        {
+            String name = packInfo.getPack().getName();
+            File file = null;
+            boolean success = false;
+            try
+            {
+                String key = null;
+                if (cache != null)
+                {
+                    key = getFingerprint(packInfo, storedFiles, references);
+                    PackSegment segment = getCached(key);
+                    if (segment != null)
+                    {
+                        success = true;
+                        return segment;
+                    }
+                }
+
+                file = FileUtils.createTempFile("pack-", ".segment");
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(file)), new CRC32());
+                OutputStream out = createPackStream(packInfo, checked);
+                try
+                {
+                    writePack(packInfo, out, storedFiles, references);
+                }
+                finally
+                {
+                    out.close();
+                }
+                long crc = checked.getChecksum().getValue();
+                if (cache != null)
+                {
+                    cache.put(key, file, crc, getOffsets());
+                }
+                success = true;
+                return new PackSegment(name, file, crc, true, messages);
+            }
+            finally
+            {
+                if (!success)
+                {
+                    // release any packs waiting on back references to this one
+                    for (PackFile packFile : packInfo.getPackFiles())
+                    {
+                        StoredFile stored = storedFiles.get(packFile);
+                        if (stored != null)
+                        {
+                            stored.fail();
+                        }
+                    }
+                    if (file != null && !file.delete())
+                    {
+                        file.deleteOnExit();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the cached segment for the pack, restoring the state that writing the pack would have set.
+         *
+         * @param key the pack fingerprint
+         * @return the cached segment, or <tt>null</tt> if the pack isn't cached
+         * @throws IOException if the offset of a back reference isn't available
+         */
+        private PackSegment getCached(String key) throws IOException
+        {
+            PackCache.Entry entry = cache.get(key);
+            if (entry == null)
+            {
+                return null;
+            }
+            List<StoredFile> stored = getStoredFiles();
+            long[] offsets = entry.getOffsets();
+            for (int i = 0; i < offsets.length; ++i)
+            {
+                stored.get(i).setOffset(offsets[i]);
+            }
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                StoredFile reference = references.get(packFile);
+                if (reference != null)
+                {
+                    packFile.setPreviousPackFileRef(reference.getPackName(), reference.getOffset());
+                }
+            }
+            setPackDecoder(packInfo);
+            updatePackSize(packInfo);
+            messages.add("Reusing cached pack " + packInfo.getPack().getName());
+            return new PackSegment(packInfo.getPack().getName(), entry.getFile(), entry.getCrc(), false, messages);
+        }
+
+        /**
+         * Returns the offsets of the files stored in the pack, once written.
+         *
+         * @return the offsets, in pack order
+         * @throws IOException if an offset isn't available
+         */
+        private long[] getOffsets() throws IOException
+        {
+            List<StoredFile> stored = getStoredFiles();
+            long[] result = new long[stored.size()];
+            for (int i = 0; i < result.length; ++i)
+            {
+                result[i] = stored.get(i).getOffset();
+            }
+            return result;
+        }
+
+        /**
+         * Returns the files stored in the pack.
+         *
+         * @return the stored files, in pack order
+         */
+        private List<StoredFile> getStoredFiles()
+        {
+            List<StoredFile> result = new ArrayList<StoredFile>();
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                StoredFile stored = storedFiles.get(packFile);
+                if (stored != null)
+                {
+                    result.add(stored);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Output stream that doesn't propagate flushes.
+     * <p/>
+     * This allows the <tt>ObjectOutputStream</tt> used to write a pack to be flushed to write out its buffered block
+     * data, without forcing a write to the underlying stream for each file.
+     */
+    private static class BlockOutputStream extends FilterOutputStream
+    {
+
+        /**
+         * Constructs a <tt>BlockOutputStream</tt>.
+         *
+         * @param out the stream to write to
+         */
+        public BlockOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+    }
 }
@@ -47,12 +47,14 @@ import com.izforge.izpack.api.data.InstallerRequirement;
 import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
+import com.izforge.izpack.compiler.compressor.PackCompressorFactory;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.merge.PanelMerge;
 import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.resource.MetadataWriter;
 import com.izforge.izpack.data.CustomData;
 import com.izforge.izpack.data.PackInfo;
 import com.izforge.izpack.merge.MergeManager;
@@ -141,6 +143,11 @@ public abstract class PackagerBase implements IPackager
      */
     private final List<PackInfo> packsList = new ArrayList<PackInfo>();
 
+    /**
+     * The compressors of packs that specify their own compression format, keyed on pack name.
+     */
+    private final Map<String, PackCompressor> packCompressors = new HashMap<String, PackCompressor>();
+
     /**
      * The ordered language pack locale names.
      */
@@ -261,6 +268,14 @@ public abstract class PackagerBase implements IPackager
     public void addPack(PackInfo pack)
     {
         packsList.add(pack);
+        String compression = pack.getCompression();
+        if (compression != null)
+        {
+            // created up front, as the decoder must be merged before the packs are written
+            PackCompressor packCompressor = PackCompressorFactory.create(compression, mergeManager);
+            packCompressor.setCompressionLevel(compilerData.getComprLevel());
+            packCompressors.put(pack.getPack().getName(), packCompressor);
+        }
     }
 
     @Override
@@ -365,9 +380,29 @@ public abstract class PackagerBase implements IPackager
         // which close method will be blocked.
         getInstallerJar().closeAlways();
 
+        if (compilerData.getClassDataSharingJava() != null)
+        {
+            writeClassDataSharingArchive();
+        }
+
         sendStop();
     }
 
+    /**
+     * Generates a class data sharing archive next to the installer jar, to reduce the installer start up time.
+     *
+     * @throws IOException for any I/O error
+     */
+    protected void writeClassDataSharingArchive() throws IOException
+    {
+        File installer = new File(compilerData.getOutput());
+        sendMsg("Generating class data sharing archive " + ClassDataSharingArchiver.getArchive(installer));
+        ClassDataSharingArchiver archiver = new ClassDataSharingArchiver(compilerData.getClassDataSharingJava());
+        File archive = archiver.createArchive(installer);
+        sendMsg("Launch the installer with: java -XX:SharedArchiveFile=" + archive.getName() + " -jar "
+                        + installer.getName());
+    }
+
     /**
      * Determines if each pack is to be included in a separate jar.
      *
@@ -389,16 +424,7 @@ public abstract class PackagerBase implements IPackager
         writeManifest();
         writeSkeletonInstaller();
 
-        writeInstallerObject("info", info);
-        writeInstallerObject("vars", properties);
-        writeInstallerObject("GUIPrefs", guiPrefs);
-        writeInstallerObject("panelsOrder", panelList);
-        writeInstallerObject("customData", customDataList);
-        writeInstallerObject("langpacks.info", langpackNameList);
-        writeInstallerObject("rules", rules);
-        writeInstallerObject("dynvariables", dynamicVariables);
-        writeInstallerObject("dynconditions", dynamicInstallerRequirements);
-        writeInstallerObject("installerrequirements", installerRequirements);
+        writeInstallerMetadata();
 
         writeInstallerResources();
         writeIncludedJars();
@@ -449,6 +475,39 @@ public abstract class PackagerBase implements IPackager
         mergeManager.merge(installerJar);
     }
 
+    /**
+     * Writes the installer metadata, read back by the installer through
+     * {@link com.izforge.izpack.api.resource.Resources#getObject(String)}.
+     * <p/>
+     * The objects needed to show the first panel are written first, in the compact metadata encoding.
+     *
+     * @throws IOException for any I/O error
+     */
+    protected void writeInstallerMetadata() throws IOException
+    {
+        MetadataWriter metadata = new MetadataWriter();
+        addMetadata(metadata, "info", info);
+        addMetadata(metadata, "vars", properties);
+        addMetadata(metadata, "GUIPrefs", guiPrefs);
+        addMetadata(metadata, "panelsOrder", panelList);
+        addMetadata(metadata, "langpacks.info", langpackNameList);
+        addMetadata(metadata, "customData", customDataList);
+        addMetadata(metadata, "rules", rules);
+        addMetadata(metadata, "dynvariables", dynamicVariables);
+        addMetadata(metadata, "dynconditions", dynamicInstallerRequirements);
+        addMetadata(metadata, "installerrequirements", installerRequirements);
+
+        installerJar.putNextEntry(new org.apache.tools.zip.ZipEntry(RESOURCES_PATH + MetadataWriter.RESOURCE_NAME));
+        try
+        {
+            metadata.write(installerJar);
+        }
+        finally
+        {
+            installerJar.closeEntry();
+        }
+    }
+
     /**
      * Write an arbitrary object to installer jar.
      *
@@ -474,6 +533,29 @@ public abstract class PackagerBase implements IPackager
         }
     }
 
+    /**
+     * Adds an object to the installer metadata.
+     *
+     * @param metadata the metadata
+     * @param name     the object name
+     * @param object   the object. May be {@code null}
+     * @throws IOException if the object cannot be encoded
+     */
+    private void addMetadata(MetadataWriter metadata, String name, Object object) throws IOException
+    {
+        try
+        {
+            metadata.add(name, object);
+        }
+        catch (IOException e)
+        {
+            throw new IOException("Error serializing instance of " + object.getClass().getName()
+                                          + " as entry \"" + name + "\"", e);
+        }
+        sendMsg("Writing " + (metadata.isCompact(name) ? "compact" : "serialized") + " installer metadata: "
+                        + name, PackagerListener.MSG_VERBOSE);
+    }
+
     /**
      * Write the data referenced by URL to installer jar.
      *
@@ -537,6 +619,16 @@ public abstract class PackagerBase implements IPackager
         return installerJar;
     }
 
+    /**
+     * Returns the compiler data.
+     *
+     * @return the compiler data
+     */
+    protected CompilerData getCompilerData()
+    {
+        return compilerData;
+    }
+
     /**
      * Returns the pack compressor.
      *
@@ -547,6 +639,17 @@ public abstract class PackagerBase implements IPackager
         return compressor;
     }
 
+    /**
+     * Returns the compressor for a pack that specifies its own compression format.
+     *
+     * @param pack the pack
+     * @return the pack compressor, or <tt>null</tt> if the pack is compressed using the installer compression format
+     */
+    protected PackCompressor getPackCompressor(PackInfo pack)
+    {
+        return packCompressors.get(pack.getPack().getName());
+    }
+
     /**
      * Dispatches a message to the listeners.
      *
@@ -158,7 +158,7 @@ public class ResourceFinder
      */
     public IXMLElement getXMLTree() throws IOException
     {
-        IXMLParser parser = new XMLParser();
+        IXMLParser parser = new XMLParser(true);
         IXMLElement data;
         if (compilerData.getInstallFile() != null)
         {
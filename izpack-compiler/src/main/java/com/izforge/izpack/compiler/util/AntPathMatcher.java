@@ -1,8 +1,12 @@
 package com.izforge.izpack.compiler.util;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.izforge.izpack.util.file.PathIndex;
+
 /**
  * PathMatcher implementation for Ant-style path patterns. Examples are provided below.
  *
@@ -23,6 +27,11 @@ public class AntPathMatcher {
 
     private static final Pattern VAR_PATTERN = Pattern.compile("\\$\\{([^/]+?)\\}");
 
+    /**
+     * Characters that have a special meaning in the translated pattern.
+     */
+    private static final String SPECIAL_CHARACTERS = "*?+()[]{}|^$\\";
+
     /**
      * Match the given <code>path</code> against the given <code>pattern</code>,
      * according to this PathMatcher's matching strategy.
@@ -33,8 +42,20 @@ public class AntPathMatcher {
      * <code>false</code> if it didn't
      */
     public boolean match(String pattern, String path, boolean caseSensitive) {
+        return compile(pattern, caseSensitive).matches(path);
+    }
+
+    /**
+     * Compiles a pattern so that it can be matched against many paths without being translated each time.
+     *
+     * @param pattern the pattern to compile
+     * @param caseSensitive whether matching should be case sensitive
+     * @return the compiled pattern
+     */
+    public CompiledPattern compile(String pattern, boolean caseSensitive) {
 
         pattern = pattern.replaceAll("\\\\", "/");
+        String prefix = getLiteralPrefix(pattern);
         pattern = pattern.replaceAll("\\.", "\\\\.");
         pattern = pattern.replaceAll("\\*", "[^/]*");
         pattern = pattern.replaceAll("(\\[\\^/\\]\\*){2}", ".*");
@@ -51,8 +72,97 @@ public class AntPathMatcher {
         {
             flags |= Pattern.CASE_INSENSITIVE;
         }
-        Pattern p = Pattern.compile(s.toString(), flags);
+        return new CompiledPattern(Pattern.compile(s.toString(), flags), prefix, caseSensitive);
+    }
+
+    /**
+     * Returns the leading part of a pattern that any matching path must start with.
+     * <p/>
+     * This stops at the first character that the pattern translation leaves with a special meaning, so it may be
+     * shorter than strictly necessary, but never longer.
+     *
+     * @param pattern the pattern, with separators normalized to '/'
+     * @return the literal prefix. May be empty
+     */
+    private static String getLiteralPrefix(String pattern) {
+        if (pattern.indexOf('|') != -1) {
+            // alternation applies to the whole expression
+            return "";
+        }
+        int i = 0;
+        while (i < pattern.length()) {
+            char ch = pattern.charAt(i);
+            if (ch == '$') {
+                // a variable reference is quoted, unless it contains characters that have been translated already
+                Matcher m = VAR_PATTERN.matcher(pattern).region(i, pattern.length());
+                if (!m.lookingAt() || containsAny(m.group(1), SPECIAL_CHARACTERS + ".")) {
+                    break;
+                }
+                i = m.end();
+            } else if (ch == '?' || ch == '{') {
+                // a quantifier that can make the preceding character optional
+                return pattern.substring(0, Math.max(i - 1, 0));
+            } else if (SPECIAL_CHARACTERS.indexOf(ch) != -1) {
+                break;
+            } else {
+                ++i;
+            }
+        }
+        return pattern.substring(0, i);
+    }
 
-        return p.matcher(path).matches();
+    private static boolean containsAny(String value, String chars) {
+        for (int i = 0; i < value.length(); ++i) {
+            if (chars.indexOf(value.charAt(i)) != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A pattern compiled by {@link AntPathMatcher#compile(String, boolean)}.
+     */
+    public static class CompiledPattern {
+
+        private final Pattern pattern;
+
+        private final String prefix;
+
+        private final boolean caseSensitive;
+
+        private CompiledPattern(Pattern pattern, String prefix, boolean caseSensitive) {
+            this.pattern = pattern;
+            this.prefix = prefix;
+            this.caseSensitive = caseSensitive;
+        }
+
+        /**
+         * Determines if a path matches this pattern.
+         *
+         * @param path the path String to test
+         * @return <code>true</code> if the path matched, <code>false</code> if it didn't
+         */
+        public boolean matches(String path) {
+            return pattern.matcher(path).matches();
+        }
+
+        /**
+         * Returns the paths from an index that match this pattern.
+         * <p/>
+         * Only the paths sharing the literal prefix of the pattern are tested.
+         *
+         * @param paths the paths to match
+         * @return the matching paths
+         */
+        public List<String> match(PathIndex paths) {
+            List<String> result = new ArrayList<String>();
+            for (String path : paths.getPaths(prefix, caseSensitive)) {
+                if (matches(path)) {
+                    result.add(path);
+                }
+            }
+            return result;
+        }
     }
 }
@@ -61,7 +61,7 @@ public class CompilerConfigSamplesTest
         jar = testContainer.getComponent(JarFile.class);
         assertThat((ZipFile)jar, ZipMatcher.isZipContainingFiles(
                 "com/izforge/izpack/panels/checkedhello/CheckedHelloPanel.class",
-                "resources/vars",
+                "resources/installer.metadata",
                 "com/izforge/izpack/img/JFrameIcon.png"));
     }
 
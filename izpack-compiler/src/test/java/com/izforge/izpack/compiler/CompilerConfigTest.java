@@ -76,7 +76,7 @@ public class CompilerConfigTest
         assertThat(jar, ZipMatcher.isZipContainingFiles(
                 "com/izforge/izpack/installer/bootstrap/Installer.class",
                 "com/izforge/izpack/panels/hello/HelloPanel.class",
-                "resources/vars",
+                "resources/installer.metadata",
                 "com/izforge/izpack/img/JFrameIcon.png"));
     }
 
@@ -186,7 +186,7 @@ public abstract class AbstractPackagerTest
      * @return a stream to the content
      * @throws IOException for any I/O error
      */
-    private InputStream getJarEntry(String name, File jar) throws IOException
+    protected InputStream getJarEntry(String name, File jar) throws IOException
     {
         JarInputStream input = new JarInputStream(new FileInputStream(jar));
         JarEntry entry;
@@ -208,7 +208,7 @@ public abstract class AbstractPackagerTest
      * @return the new file
      * @throws IOException for any I/O error
      */
-    private File createTextFile(String text) throws IOException
+    protected File createTextFile(String text) throws IOException
     {
         File file = File.createTempFile("data", ".txt");
         PrintStream printStream = new PrintStream(file);
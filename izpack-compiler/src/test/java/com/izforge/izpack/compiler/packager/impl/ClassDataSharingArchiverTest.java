@@ -0,0 +1,136 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.exception.CompilerException;
+
+
+/**
+ * Tests the {@link ClassDataSharingArchiver} class.
+ */
+public class ClassDataSharingArchiverTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+
+    /**
+     * Verifies that the archive is named after the installer jar, and placed next to it.
+     */
+    @Test
+    public void testGetArchive()
+    {
+        File dir = temporaryFolder.getRoot();
+        assertEquals(new File(dir, "install.jsa"), ClassDataSharingArchiver.getArchive(new File(dir, "install.jar")));
+        assertEquals(new File(dir, "setup.jsa"), ClassDataSharingArchiver.getArchive(new File(dir, "setup.JAR")));
+        assertEquals(new File(dir, "installer.jsa"), ClassDataSharingArchiver.getArchive(new File(dir, "installer")));
+    }
+
+    /**
+     * Verifies the command used to generate the archive, when the java executable is located via the Java home
+     * directory.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCommandForJavaHome() throws IOException
+    {
+        File home = temporaryFolder.newFolder("jdk");
+        File java = createJava(home);
+        File installer = new File(temporaryFolder.getRoot(), "install.jar");
+
+        ClassDataSharingArchiver archiver = new ClassDataSharingArchiver(home.getPath());
+        assertEquals(Arrays.asList(java.getPath(), "-XX:ArchiveClassesAtExit=install.jsa", "-Djava.awt.headless=true",
+                                   "-Dizpack.startup.exit=true", "-jar", "install.jar", "-console"),
+                     archiver.getCommand(installer));
+    }
+
+    /**
+     * Verifies the command used to generate the archive, when the java executable is specified.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCommandForJavaExecutable() throws IOException
+    {
+        File java = createJava(temporaryFolder.newFolder("jdk"));
+        File installer = new File(temporaryFolder.getRoot(), "setup.jar");
+
+        ClassDataSharingArchiver archiver = new ClassDataSharingArchiver(java.getPath());
+        assertEquals(Arrays.asList(java.getPath(), "-XX:ArchiveClassesAtExit=setup.jsa", "-Djava.awt.headless=true",
+                                   "-Dizpack.startup.exit=true", "-jar", "setup.jar", "-console"),
+                     archiver.getCommand(installer));
+    }
+
+    /**
+     * Verifies that a {@link CompilerException} is thrown if the java executable cannot be found.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testMissingJava() throws IOException
+    {
+        File home = temporaryFolder.newFolder("jre");
+        try
+        {
+            new ClassDataSharingArchiver(home.getPath());
+            fail("Expected CompilerException");
+        }
+        catch (CompilerException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Creates a dummy java executable in a Java home directory.
+     *
+     * @param home the Java home directory
+     * @return the java executable
+     * @throws IOException for any I/O error
+     */
+    private File createJava(File home) throws IOException
+    {
+        File bin = new File(home, "bin");
+        File java = new File(bin, "java");
+        if (!bin.mkdir() || !java.createNewFile())
+        {
+            throw new IOException("Failed to create " + java);
+        }
+        return java;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link PackCache} class.
+ */
+public class PackCacheTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that a segment added to the cache can be retrieved.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPutGet() throws Exception
+    {
+        PackCache cache = new PackCache(temporaryFolder.newFolder("cache"));
+        File segment = createSegment("0123456789");
+        long crc = getCrc("0123456789");
+
+        assertNull(cache.get("key"));
+        cache.put("key", segment, crc, new long[]{0, 4});
+
+        PackCache.Entry entry = cache.get("key");
+        assertNotNull(entry);
+        assertEquals(crc, entry.getCrc());
+        assertTrue(Arrays.equals(new long[]{0, 4}, entry.getOffsets()));
+        assertEquals(10, entry.getFile().length());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Verifies that a truncated segment is rejected, and removed from the cache.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testTruncatedSegment() throws Exception
+    {
+        PackCache cache = new PackCache(temporaryFolder.newFolder("cache"));
+        cache.put("key", createSegment("0123456789"), getCrc("0123456789"), new long[0]);
+        File file = cache.get("key").getFile();
+
+        RandomAccessFile segment = new RandomAccessFile(file, "rw");
+        segment.setLength(5);
+        segment.close();
+
+        assertNull(cache.get("key"));
+        assertFalse(file.exists());
+    }
+
+    /**
+     * Verifies that a segment whose content doesn't match the recorded CRC is rejected, even if its length is
+     * unchanged.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCorruptSegment() throws Exception
+    {
+        PackCache cache = new PackCache(temporaryFolder.newFolder("cache"));
+        cache.put("key", createSegment("0123456789"), getCrc("0123456789"), new long[0]);
+        File file = cache.get("key").getFile();
+
+        RandomAccessFile segment = new RandomAccessFile(file, "rw");
+        segment.seek(3);
+        segment.write('X');
+        segment.close();
+
+        assertNull(cache.get("key"));
+        assertFalse(file.exists());
+    }
+
+    /**
+     * Creates a segment file.
+     *
+     * @param content the segment content
+     * @return a new file
+     * @throws IOException for any I/O error
+     */
+    private File createSegment(String content) throws IOException
+    {
+        File file = temporaryFolder.newFile("segment");
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(content.getBytes("UTF-8"));
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Calculates the CRC-32 of a string.
+     *
+     * @param content the string
+     * @return the CRC-32 of its UTF-8 encoding
+     * @throws IOException for any I/O error
+     */
+    private long getCrc(String content) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        crc.update(content.getBytes("UTF-8"));
+        return crc.getValue();
+    }
+}
@@ -19,16 +19,41 @@
 
 package com.izforge.izpack.compiler.packager.impl;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
+import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.compiler.compressor.PackCompressor;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.stream.JarOutputStream;
+import com.izforge.izpack.core.io.ChunkedInflaterInputStream;
+import com.izforge.izpack.data.ArchiveEntrySource;
+import com.izforge.izpack.data.PackInfo;
+import com.izforge.izpack.data.PackMetadataReader;
+import com.izforge.izpack.data.SourceArchive;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 
@@ -38,6 +63,250 @@ import com.izforge.izpack.merge.resolve.MergeableResolver;
 public class PackagerTest extends AbstractPackagerTest
 {
 
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that packs can be written in parallel, and that back references to files stored in a previous pack
+     * resolve to the stored content.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testParallelPacks() throws Exception
+    {
+        File file = createTextFile("This is a test");
+        File jar = File.createTempFile("installer", ".jar");
+
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+
+        PackCompressor compressor = Mockito.mock(PackCompressor.class);
+        Mockito.when(compressor.useStandardCompression()).thenReturn(true);
+        CompilerData data = new CompilerData("", "", "", true);
+        data.setPackThreads(2);
+        Packager packager = new Packager(new Properties(), null, output, compressor, output,
+                                         Mockito.mock(MergeManager.class), Mockito.mock(CompilerPathResolver.class),
+                                         Mockito.mock(MergeableResolver.class), data);
+        Info info = new Info();
+        packager.setInfo(info);
+        assertEquals(ChunkedInflaterInputStream.class.getName(), info.getPackDecoderClassName());
+
+        for (String name : new String[]{"Core", "Docs"})
+        {
+            PackInfo packInfo = new PackInfo(name, name, null, true, false, null, true, 0);
+            packInfo.addFile(file.getParentFile(), file, "$INSTALL_PATH/" + name + "/" + file.getName(), null,
+                             OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+            packager.addPack(packInfo);
+        }
+        packager.writePacks();
+        output.closeAlways();
+
+        ObjectInputStream core = new ObjectInputStream(getPackStream("Core", jar));
+        PackMetadataReader coreReader = new PackMetadataReader(core);
+        assertEquals(1, coreReader.readFileCount());
+        assertFalse(coreReader.readPackFile().isBackReference());
+        core.close();
+
+        ObjectInputStream docs = new ObjectInputStream(getPackStream("Docs", jar));
+        PackMetadataReader docsReader = new PackMetadataReader(docs);
+        assertEquals(1, docsReader.readFileCount());
+        PackFile reference = docsReader.readPackFile();
+        docs.close();
+        assertTrue(reference.isBackReference());
+        assertEquals("Core", reference.previousPackId);
+
+        // resolve the back reference the same way as the unpacker
+        InputStream in = getPackStream("Core", jar);
+        ObjectInputStream stream = new ObjectInputStream(in);
+        assertEquals(reference.offsetInPreviousPack - 4, in.skip(reference.offsetInPreviousPack - 4));
+        byte[] content = new byte[(int) reference.length()];
+        stream.readFully(content);
+        stream.close();
+        assertEquals("This is a test", new String(content));
+
+        assertTrue(file.delete());
+        assertTrue(jar.delete());
+    }
+
+    /**
+     * Verifies that files with identical content are only stored once, with subsequent copies written as back
+     * references.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDuplicateContent() throws Exception
+    {
+        File file1 = createTextFile("This is a test");
+        File file2 = createTextFile("This is a test");
+        File jar = File.createTempFile("installer", ".jar");
+
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+        PackagerBase packager = createPackager(output, Mockito.mock(MergeManager.class));
+
+        PackInfo core = new PackInfo("Core", "Core", null, true, false, null, true, 0);
+        core.addFile(file1.getParentFile(), file1, "$INSTALL_PATH/" + file1.getName(), null,
+                     OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+        packager.addPack(core);
+        PackInfo docs = new PackInfo("Docs", "Docs", null, true, false, null, true, 0);
+        docs.addFile(file2.getParentFile(), file2, "$INSTALL_PATH/" + file2.getName(), null,
+                     OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+        packager.addPack(docs);
+        packager.writePacks();
+        output.closeAlways();
+
+        ObjectInputStream stream = new ObjectInputStream(getJarEntry("resources/packs/pack-Docs", jar));
+        PackMetadataReader reader = new PackMetadataReader(stream);
+        assertEquals(1, reader.readFileCount());
+        PackFile reference = reader.readPackFile();
+        stream.close();
+        assertTrue(reference.isBackReference());
+        assertEquals("Core", reference.previousPackId);
+
+        assertTrue(file1.delete());
+        assertTrue(file2.delete());
+        assertTrue(jar.delete());
+    }
+
+    /**
+     * Verifies that packs are reused from the pack cache when unchanged, and that back references into a cached
+     * pack still resolve.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPackCache() throws Exception
+    {
+        File file = createTextFile("This is a test");
+        File cache = temporaryFolder.newFolder("cache");
+        File jar1 = temporaryFolder.newFile("installer1.jar");
+        File jar2 = temporaryFolder.newFile("installer2.jar");
+
+        PackagerListener listener1 = Mockito.mock(PackagerListener.class);
+        writeCachedPacks(file, cache, jar1, listener1);
+        Mockito.verify(listener1).packagerMsg("Pack cache: 0 hits, 2 misses", PackagerListener.MSG_INFO);
+
+        PackagerListener listener2 = Mockito.mock(PackagerListener.class);
+        writeCachedPacks(file, cache, jar2, listener2);
+        Mockito.verify(listener2).packagerMsg("Pack cache: 2 hits, 0 misses", PackagerListener.MSG_INFO);
+
+        // messages from the pack writing threads are sent in pack order, after each pack is written
+        InOrder order = Mockito.inOrder(listener2);
+        order.verify(listener2).packagerMsg("Writing Pack 0: Core", PackagerListener.MSG_VERBOSE);
+        order.verify(listener2).packagerMsg("Reusing cached pack Core", PackagerListener.MSG_VERBOSE);
+        order.verify(listener2).packagerMsg("Writing Pack 1: Docs", PackagerListener.MSG_VERBOSE);
+        order.verify(listener2).packagerMsg("Reusing cached pack Docs", PackagerListener.MSG_VERBOSE);
+
+        for (String name : new String[]{"Core", "Docs"})
+        {
+            String entry = "resources/packs/pack-" + name;
+            assertArrayEquals(IOUtils.toByteArray(getJarEntry(entry, jar1)),
+                              IOUtils.toByteArray(getJarEntry(entry, jar2)));
+        }
+
+        ObjectInputStream docs = new ObjectInputStream(getPackStream("Docs", jar2));
+        PackMetadataReader reader = new PackMetadataReader(docs);
+        assertEquals(1, reader.readFileCount());
+        PackFile reference = reader.readPackFile();
+        docs.close();
+        assertTrue(reference.isBackReference());
+        assertEquals("Core", reference.previousPackId);
+
+        // a changed file invalidates the pack storing it, and the pack referring to it
+        assertTrue(file.setLastModified(file.lastModified() - 60000));
+        PackagerListener listener3 = Mockito.mock(PackagerListener.class);
+        writeCachedPacks(file, cache, temporaryFolder.newFile("installer3.jar"), listener3);
+        Mockito.verify(listener3).packagerMsg("Pack cache: 0 hits, 2 misses", PackagerListener.MSG_INFO);
+
+        assertTrue(file.delete());
+    }
+
+    /**
+     * Verifies that archive entries are written to a pack directly from the archive.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testArchiveEntries() throws Exception
+    {
+        File zip = temporaryFolder.newFile("content.zip");
+        ZipOutputStream zipOut = new ZipOutputStream(new FileOutputStream(zip));
+        zipOut.putNextEntry(new ZipEntry("docs/"));
+        zipOut.putNextEntry(new ZipEntry("docs/readme.txt"));
+        zipOut.write("This is a test".getBytes("UTF-8"));
+        zipOut.close();
+
+        File jar = temporaryFolder.newFile("installer.jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+        PackagerBase packager = createPackager(output, Mockito.mock(MergeManager.class));
+
+        SourceArchive archive = new SourceArchive(zip);
+        PackInfo packInfo = new PackInfo("Core", "Core", null, true, false, null, true, 0);
+        for (ArchiveEntrySource entry : archive.getEntries())
+        {
+            packInfo.addFile(entry, entry.getEntryName(), "$INSTALL_PATH/" + entry.getEntryName(), null,
+                             OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+        }
+        archive.close(); // reopened on demand when the pack is written
+        packager.addPack(packInfo);
+        packager.writePacks();
+        output.closeAlways();
+        archive.close();
+
+        ObjectInputStream stream = new ObjectInputStream(getJarEntry("resources/packs/pack-Core", jar));
+        PackMetadataReader reader = new PackMetadataReader(stream);
+        assertEquals(2, reader.readFileCount());
+        PackFile directory = reader.readPackFile();
+        assertTrue(directory.isDirectory());
+        assertEquals("$INSTALL_PATH/docs", directory.getTargetPath());
+        PackFile file = reader.readPackFile();
+        assertFalse(file.isDirectory());
+        assertEquals("$INSTALL_PATH/docs/readme.txt", file.getTargetPath());
+        byte[] content = new byte[(int) file.length()];
+        stream.readFully(content);
+        stream.close();
+        assertEquals("This is a test", new String(content, "UTF-8"));
+    }
+
+    /**
+     * Helper to write two packs containing the same file, using a pack cache.
+     *
+     * @param file     the file to pack
+     * @param cache    the pack cache directory
+     * @param jar      the installer jar
+     * @param listener the packager listener
+     * @throws Exception for any error
+     */
+    private void writeCachedPacks(File file, File cache, File jar, PackagerListener listener) throws Exception
+    {
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+        output.setPreventClose(true);
+
+        PackCompressor compressor = Mockito.mock(PackCompressor.class);
+        Mockito.when(compressor.useStandardCompression()).thenReturn(true);
+        CompilerData data = new CompilerData("", "", "", true);
+        data.setPackCache(cache.getPath());
+        Packager packager = new Packager(new Properties(), listener, output, compressor, output,
+                                         Mockito.mock(MergeManager.class), Mockito.mock(CompilerPathResolver.class),
+                                         Mockito.mock(MergeableResolver.class), data);
+        packager.setInfo(new Info());
+        for (String name : new String[]{"Core", "Docs"})
+        {
+            PackInfo packInfo = new PackInfo(name, name, null, true, false, null, true, 0);
+            packInfo.addFile(file.getParentFile(), file, "$INSTALL_PATH/" + name + "/" + file.getName(), null,
+                             OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null, null);
+            packager.addPack(packInfo);
+        }
+        packager.writePacks();
+        output.closeAlways();
+    }
+
     /**
      * Helper to create a packager that writes to the provided jar.
      *
@@ -59,4 +328,17 @@ public class PackagerTest extends AbstractPackagerTest
         packager.setInfo(new Info());
         return packager;
     }
+
+    /**
+     * Returns a stream to the content of a pack compressed by the packager.
+     *
+     * @param name the pack name
+     * @param jar  the installer jar
+     * @return a stream to the inflated pack
+     * @throws Exception for any error
+     */
+    private InputStream getPackStream(String name, File jar) throws Exception
+    {
+        return new ChunkedInflaterInputStream(new BufferedInputStream(getJarEntry("resources/packs/pack-" + name, jar)));
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.izforge.izpack.util.file.PathIndex;
+
+
+/**
+ * Tests the {@link AntPathMatcher}.
+ */
+public class AntPathMatcherTest
+{
+
+    /**
+     * The paths to match.
+     */
+    private static final List<String> PATHS = Arrays.asList(
+            "${INSTALL_PATH}/bin/run.sh", "${INSTALL_PATH}/bin/run.bat", "${INSTALL_PATH}/bin/sub/setup.sh",
+            "${INSTALL_PATH}/BIN/Other.SH", "${INSTALL_PATH}/lib/app.jar", "${INSTALL_PATH}/readme.txt",
+            "$INSTALL_PATH/bin/legacy.sh");
+
+    /**
+     * The matcher.
+     */
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+
+    /**
+     * Tests matching single paths.
+     */
+    @Test
+    public void testMatch()
+    {
+        assertTrue(matcher.match("${INSTALL_PATH}/bin/*.sh", "${INSTALL_PATH}/bin/run.sh", true));
+        assertFalse(matcher.match("${INSTALL_PATH}/bin/*.sh", "${INSTALL_PATH}/bin/sub/setup.sh", true));
+        assertTrue(matcher.match("${INSTALL_PATH}/bin/**.sh", "${INSTALL_PATH}/bin/sub/setup.sh", true));
+        assertFalse(matcher.match("${INSTALL_PATH}/bin/*.sh", "${INSTALL_PATH}/BIN/Other.SH", true));
+        assertTrue(matcher.match("${INSTALL_PATH}\\bin\\*.sh", "${INSTALL_PATH}/BIN/Other.SH", false));
+    }
+
+    /**
+     * Verifies that matching a compiled pattern against a {@link PathIndex} gives the same results as matching each
+     * path in turn.
+     */
+    @Test
+    public void testMatchIndex()
+    {
+        PathIndex index = new PathIndex(PATHS);
+        String[] patterns = {"${INSTALL_PATH}/bin/*.sh", "${INSTALL_PATH}/bin/**", "${INSTALL_PATH}/**.sh",
+                "**/*.jar", "$INSTALL_PATH/bin/*", "${INSTALL_PATH}/readme.txt", "${INSTALL_PATH}/bin/?/run.sh",
+                "${INSTALL_PATH}/nomatch/*"};
+        for (String pattern : patterns)
+        {
+            for (boolean caseSensitive : new boolean[]{true, false})
+            {
+                HashSet<String> expected = new HashSet<String>();
+                for (String path : PATHS)
+                {
+                    if (matcher.match(pattern, path, caseSensitive))
+                    {
+                        expected.add(path);
+                    }
+                }
+                List<String> actual = matcher.compile(pattern, caseSensitive).match(index);
+                assertEquals(pattern, expected, new HashSet<String>(actual));
+            }
+        }
+        assertEquals(2, matcher.compile("${INSTALL_PATH}/bin/*.sh", false).match(index).size());
+        assertEquals(3, matcher.compile("${INSTALL_PATH}/bin/**.sh", false).match(index).size());
+    }
+}
@@ -22,17 +22,23 @@
 package com.izforge.izpack.core.data;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.data.DynamicVariable;
+import com.izforge.izpack.api.data.Value;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
 
@@ -60,11 +66,30 @@ public class DefaultVariables implements Variables
      */
     private final VariableSubstitutor replacer;
 
+    /**
+     * Evaluates dynamic variables, reusing results whose inputs haven't changed.
+     */
+    private final DynamicVariableEvaluator evaluator;
+
     /**
      * The rules for evaluating dynamic variable conditions.
      */
     private RulesEngine rules;
 
+    /**
+     * The number of changes made to the variables.
+     */
+    private long changes;
+
+    /**
+     * The change number at which each variable was last changed, keyed on variable name.
+     */
+    private final Map<String, Long> changed = new HashMap<String, Long>();
+
+    /**
+     * The variables being read by each thread, when recording.
+     */
+    private final ThreadLocal<Recording> recording = new ThreadLocal<Recording>();
 
     /**
      * The logger.
@@ -87,7 +112,27 @@ public class DefaultVariables implements Variables
     public DefaultVariables(Properties properties)
     {
         this.properties = properties;
-        replacer = new VariableSubstitutorImpl(properties);
+        replacer = new VariableSubstitutorImpl(properties)
+        {
+            @Override
+            public Value getValue(String name)
+            {
+                read(name);
+                return super.getValue(name);
+            }
+
+            @Override
+            public String substitute(String str, SubstitutionType type)
+            {
+                if (str != null && str.contains("SYSTEM"))
+                {
+                    // system properties aren't tracked
+                    read(null);
+                }
+                return super.substitute(str, type);
+            }
+        };
+        evaluator = new DynamicVariableEvaluator(this, replacer);
     }
 
     /**
@@ -109,6 +154,7 @@ public class DefaultVariables implements Variables
     @Override
     public void set(String name, String value)
     {
+        String previous = properties.getProperty(name);
         if (value != null)
         {
             properties.setProperty(name, value);
@@ -119,6 +165,13 @@ public class DefaultVariables implements Variables
             properties.remove(name);
             logger.fine("Dynamic variable '" + name + "' unset");
         }
+        if (value != null ? !value.equals(previous) : previous != null)
+        {
+            synchronized (changed)
+            {
+                changed.put(name, ++changes);
+            }
+        }
     }
 
     /**
@@ -130,6 +183,7 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name)
     {
+        read(name);
         return properties.getProperty(name);
     }
 
@@ -304,46 +358,51 @@ public class DefaultVariables implements Variables
 
         Properties setVariables = new Properties();
         Set<String> unsetVariables = new HashSet<String>();
+        List<DynamicVariable> active = new ArrayList<DynamicVariable>();
+        Set<DynamicVariable> disabled = Collections.newSetFromMap(new IdentityHashMap<DynamicVariable, Boolean>());
 
         for (DynamicVariable variable : dynamicVariables)
         {
-            String name = variable.getName();
             String conditionId = variable.getConditionid();
             if (conditionId == null || rules.isConditionTrue(conditionId))
             {
                 if (!(variable.isCheckonce() && variable.isChecked()))
                 {
-                    String newValue;
-                    try
-                    {
-                        newValue = variable.evaluate(replacer);
-                    }
-                    catch (IzPackException exception)
-                    {
-                        throw exception;
-                    }
-                    catch (Exception exception)
-                    {
-                        throw new IzPackException("Failed to refresh dynamic variables (" + name + ")", exception);
-                    }
-                    if (newValue == null)
-                    {
-                        // Mark unset if dynamic variable cannot be evaluated and failOnError set
-                        unsetVariables.add(name);
-                    }
-                    else
-                    {
-                        setVariables.put(name, newValue);
-                    }
-                    variable.setChecked();
+                    active.add(variable);
+                }
+            }
+            else
+            {
+                disabled.add(variable);
+            }
+        }
+
+        // all evaluations see the variables as they were prior to the refresh, so can be done up front
+        Map<DynamicVariable, String> values = evaluator.evaluate(active);
+
+        for (DynamicVariable variable : dynamicVariables)
+        {
+            String name = variable.getName();
+            if (values.containsKey(variable))
+            {
+                String newValue = values.get(variable);
+                if (newValue == null)
+                {
+                    // Mark unset if dynamic variable cannot be evaluated and failOnError set
+                    unsetVariables.add(name);
                 }
                 else
                 {
-                    String oldvalue = properties.getProperty(name);
-                    if (oldvalue != null)
-                    {
-                        setVariables.put(name, oldvalue);
-                    }
+                    setVariables.put(name, newValue);
+                }
+                variable.setChecked();
+            }
+            else if (!disabled.contains(variable))
+            {
+                String oldvalue = properties.getProperty(name);
+                if (oldvalue != null)
+                {
+                    setVariables.put(name, oldvalue);
                 }
             }
             else
@@ -377,7 +436,118 @@ public class DefaultVariables implements Variables
     @Override
     public Properties getProperties()
     {
+        // the caller may read any variable
+        read(null);
         return properties;
     }
 
+    /**
+     * Starts recording the names of the variables read by the current thread.
+     * <p/>
+     * Recordings may be nested; variables read during a nested recording are also recorded by the enclosing one.
+     * Each call must be paired with a call to {@link #stopRecording()}.
+     *
+     * @return the current change number, for use with {@link #isChanged(Set, long)}
+     */
+    public long startRecording()
+    {
+        recording.set(new Recording(recording.get()));
+        synchronized (changed)
+        {
+            return changes;
+        }
+    }
+
+    /**
+     * Stops recording the names of the variables read by the current thread.
+     *
+     * @return the names of the variables read since the matching {@link #startRecording()}, or {@code null} if
+     *         they cannot be determined
+     */
+    public Set<String> stopRecording()
+    {
+        Recording current = recording.get();
+        recording.set(current.parent);
+        if (current.parent != null)
+        {
+            if (current.names != null && current.parent.names != null)
+            {
+                current.parent.names.addAll(current.names);
+            }
+            else
+            {
+                current.parent.names = null;
+            }
+        }
+        return current.names;
+    }
+
+    /**
+     * Determines if any of the named variables has changed since the specified change number.
+     *
+     * @param names  the variable names
+     * @param change the change number, as returned by {@link #startRecording()}
+     * @return {@code true} if any of the variables has changed
+     */
+    public boolean isChanged(Set<String> names, long change)
+    {
+        synchronized (changed)
+        {
+            if (changes != change)
+            {
+                for (String name : names)
+                {
+                    Long last = changed.get(name);
+                    if (last != null && last > change)
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records that a variable has been read, if the current thread is recording.
+     *
+     * @param name the variable name, or {@code null} if the variables read cannot be determined
+     */
+    private void read(String name)
+    {
+        Recording current = recording.get();
+        if (current != null && current.names != null)
+        {
+            if (name != null)
+            {
+                current.names.add(name);
+            }
+            else
+            {
+                current.names = null;
+            }
+        }
+    }
+
+    /**
+     * The names of the variables read by a thread.
+     */
+    private static class Recording
+    {
+        /**
+         * The enclosing recording. May be {@code null}.
+         */
+        private final Recording parent;
+
+        /**
+         * The variable names, or {@code null} if they cannot be determined.
+         */
+        private Set<String> names = new HashSet<String>();
+
+        public Recording(Recording parent)
+        {
+            this.parent = parent;
+        }
+    }
+
 }
@@ -0,0 +1,385 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.data;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.DynamicVariable;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.data.ValueFilter;
+import com.izforge.izpack.api.exception.IzPackException;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.variable.EnvironmentValue;
+import com.izforge.izpack.core.variable.ExecValue;
+import com.izforge.izpack.core.variable.JarEntryConfigValue;
+import com.izforge.izpack.core.variable.PlainConfigFileValue;
+import com.izforge.izpack.core.variable.PlainValue;
+import com.izforge.izpack.core.variable.ZipEntryConfigFileValue;
+import com.izforge.izpack.core.variable.filters.LocationFilter;
+import com.izforge.izpack.core.variable.filters.RegularExpressionFilter;
+
+
+/**
+ * Evaluates dynamic variables for {@link DefaultVariables#refresh()}, avoiding evaluations whose result cannot have
+ * changed.
+ * <p/>
+ * Each evaluation records the variables it read. A subsequent evaluation of the same dynamic variable is skipped if
+ * none of those variables has changed since, and, for values read from configuration files, the file's timestamp
+ * and length are unchanged. This only applies to the built-in values and filters whose results depend solely on
+ * variables, the environment and files; others, such as {@link ExecValue} and registry values, are always
+ * evaluated.
+ * <p/>
+ * All evaluations of a refresh see the variables as they were before the refresh, so they are independent of each
+ * other. Those that run processes or read files are evaluated concurrently.
+ */
+class DynamicVariableEvaluator
+{
+
+    /**
+     * The maximum no. of threads to evaluate variables with.
+     */
+    private static final int MAX_THREADS = 4;
+
+    /**
+     * The variables to evaluate against.
+     */
+    private final DefaultVariables variables;
+
+    /**
+     * The substitutor to pass to dynamic variables.
+     */
+    private final VariableSubstitutor replacer;
+
+    /**
+     * The most recent evaluation of each dynamic variable.
+     */
+    private final Map<DynamicVariable, Evaluation> evaluations = new IdentityHashMap<DynamicVariable, Evaluation>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(DynamicVariableEvaluator.class.getName());
+
+
+    /**
+     * Constructs a <tt>DynamicVariableEvaluator</tt>.
+     *
+     * @param variables the variables to evaluate against
+     * @param replacer  the substitutor to pass to dynamic variables. This must record variable reads with
+     *                  <tt>variables</tt>
+     */
+    public DynamicVariableEvaluator(DefaultVariables variables, VariableSubstitutor replacer)
+    {
+        this.variables = variables;
+        this.replacer = replacer;
+    }
+
+    /**
+     * Evaluates dynamic variables.
+     *
+     * @param dynamicVariables the dynamic variables to evaluate
+     * @return the values of the dynamic variables. A {@code null} value indicates the variable should be unset
+     * @throws IzPackException if a variable cannot be evaluated
+     */
+    public Map<DynamicVariable, String> evaluate(List<DynamicVariable> dynamicVariables)
+    {
+        List<DynamicVariable> concurrent = new ArrayList<DynamicVariable>();
+        int reused = 0;
+        for (DynamicVariable variable : dynamicVariables)
+        {
+            if (isCurrent(variable))
+            {
+                ++reused;
+            }
+            else if (isConcurrent(variable))
+            {
+                concurrent.add(variable);
+            }
+            else
+            {
+                evaluations.put(variable, evaluate(variable));
+            }
+        }
+        if (concurrent.size() > 1)
+        {
+            evaluateConcurrently(concurrent);
+        }
+        else if (!concurrent.isEmpty())
+        {
+            evaluations.put(concurrent.get(0), evaluate(concurrent.get(0)));
+        }
+        logger.fine("Evaluated " + (dynamicVariables.size() - reused) + " dynamic variables, reused " + reused);
+
+        Map<DynamicVariable, String> result = new IdentityHashMap<DynamicVariable, String>();
+        for (DynamicVariable variable : dynamicVariables)
+        {
+            result.put(variable, evaluations.get(variable).value);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the most recent evaluation of a variable is still current.
+     *
+     * @param variable the variable
+     * @return {@code true} if the variable doesn't need to be evaluated again
+     */
+    private boolean isCurrent(DynamicVariable variable)
+    {
+        Evaluation evaluation = evaluations.get(variable);
+        if (evaluation == null || evaluation.names == null
+                || variables.isChanged(evaluation.names, evaluation.change))
+        {
+            return false;
+        }
+        String stamp = getStamp(variable);
+        return (stamp != null) ? stamp.equals(evaluation.stamp) : evaluation.stamp == null;
+    }
+
+    /**
+     * Evaluates a variable, recording the variables it reads.
+     *
+     * @param variable the variable
+     * @return the evaluation
+     * @throws IzPackException if the variable cannot be evaluated
+     */
+    private Evaluation evaluate(DynamicVariable variable)
+    {
+        boolean cacheable = isCacheable(variable);
+        // determine the stamp first, so that a file changed during evaluation is re-read next time
+        String stamp = cacheable ? getStamp(variable) : null;
+        String value;
+        Set<String> names;
+        long change = variables.startRecording();
+        try
+        {
+            value = variable.evaluate(replacer);
+        }
+        catch (IzPackException exception)
+        {
+            throw exception;
+        }
+        catch (Exception exception)
+        {
+            throw new IzPackException("Failed to refresh dynamic variables (" + variable.getName() + ")", exception);
+        }
+        finally
+        {
+            names = variables.stopRecording();
+        }
+        return new Evaluation(value, cacheable ? names : null, change, stamp);
+    }
+
+    /**
+     * Evaluates variables on a pool of threads.
+     *
+     * @param list the variables to evaluate
+     * @throws IzPackException if a variable cannot be evaluated
+     */
+    private void evaluateConcurrently(List<DynamicVariable> list)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(list.size(), MAX_THREADS));
+        try
+        {
+            List<Future<Evaluation>> futures = new ArrayList<Future<Evaluation>>();
+            for (final DynamicVariable variable : list)
+            {
+                futures.add(executor.submit(new Callable<Evaluation>()
+                {
+                    @Override
+                    public Evaluation call()
+                    {
+                        return evaluate(variable);
+                    }
+                }));
+            }
+            for (int i = 0; i < list.size(); ++i)
+            {
+                evaluations.put(list.get(i), futures.get(i).get());
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IzPackException("Interrupted refreshing dynamic variables", exception);
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IzPackException)
+            {
+                throw (IzPackException) cause;
+            }
+            throw new IzPackException("Failed to refresh dynamic variables", cause);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Determines if the result of evaluating a variable may be reused while the variables it read are unchanged.
+     * <p/>
+     * Subclasses of the built-in types are excluded, as they may evaluate differently.
+     *
+     * @param variable the variable
+     * @return {@code true} if the result may be reused
+     */
+    private boolean isCacheable(DynamicVariable variable)
+    {
+        if (variable.getClass() != DynamicVariableImpl.class)
+        {
+            return false;
+        }
+        Value value = variable.getValue();
+        Class<?> type = (value != null) ? value.getClass() : null;
+        if (type != null && type != PlainValue.class && type != EnvironmentValue.class
+                && type != PlainConfigFileValue.class && type != ZipEntryConfigFileValue.class
+                && type != JarEntryConfigValue.class)
+        {
+            return false;
+        }
+        List<ValueFilter> filters = variable.getFilters();
+        if (filters != null)
+        {
+            for (ValueFilter filter : filters)
+            {
+                if (filter.getClass() != RegularExpressionFilter.class && filter.getClass() != LocationFilter.class)
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a variable may be evaluated concurrently with others.
+     * <p/>
+     * This is limited to values that run processes or read files, as these are the expensive ones, and are known
+     * to be safe to evaluate on other threads.
+     *
+     * @param variable the variable
+     * @return {@code true} if the variable may be evaluated concurrently
+     */
+    private boolean isConcurrent(DynamicVariable variable)
+    {
+        Value value = variable.getValue();
+        return variable.getClass() == DynamicVariableImpl.class && value != null
+                && (value.getClass() == ExecValue.class || getPath(value) != null);
+    }
+
+    /**
+     * Returns a stamp identifying the version of the file a variable reads.
+     *
+     * @param variable the variable
+     * @return the stamp, or {@code null} if the variable doesn't read a file
+     */
+    private String getStamp(DynamicVariable variable)
+    {
+        String path = getPath(variable.getValue());
+        if (path == null)
+        {
+            return null;
+        }
+        File file = new File(replacer.substitute(path));
+        return file.isFile() ? file.lastModified() + ":" + file.length() : "";
+    }
+
+    /**
+     * Returns the unresolved path of the file that a value reads.
+     *
+     * @param value the value. May be {@code null}
+     * @return the path, or {@code null} if the value doesn't read a file
+     */
+    private String getPath(Value value)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+        Class<?> type = value.getClass();
+        if (type == PlainConfigFileValue.class)
+        {
+            return ((PlainConfigFileValue) value).getLocation();
+        }
+        if (type == ZipEntryConfigFileValue.class || type == JarEntryConfigValue.class)
+        {
+            return ((ZipEntryConfigFileValue) value).getFilename();
+        }
+        return null;
+    }
+
+    /**
+     * The result of evaluating a dynamic variable.
+     */
+    private static class Evaluation
+    {
+
+        /**
+         * The value, or {@code null} if the variable should be unset.
+         */
+        private final String value;
+
+        /**
+         * The names of the variables read, or {@code null} if the evaluation cannot be reused.
+         */
+        private final Set<String> names;
+
+        /**
+         * The change number when the evaluation started.
+         */
+        private final long change;
+
+        /**
+         * The stamp of the file read, or {@code null} if no file was read.
+         */
+        private final String stamp;
+
+        /**
+         * Constructs an <tt>Evaluation</tt>.
+         *
+         * @param value  the value. May be {@code null}
+         * @param names  the names of the variables read. May be {@code null}
+         * @param change the change number when the evaluation started
+         * @param stamp  the stamp of the file read. May be {@code null}
+         */
+        public Evaluation(String value, Set<String> names, long change, String stamp)
+        {
+            this.value = value;
+            this.names = names;
+            this.change = change;
+            this.stamp = stamp;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * An output stream that deflates its data in independently compressed chunks.
+ * <p/>
+ * Each chunk holds zlib compressed data.
+ *
+ * @see ChunkedInflaterInputStream
+ */
+public class ChunkedDeflaterOutputStream extends ChunkedOutputStream
+{
+
+    /**
+     * The deflater.
+     */
+    private final Deflater deflater;
+
+    /**
+     * Buffer for deflated data.
+     */
+    private final byte[] buffer = new byte[64 * 1024];
+
+
+    /**
+     * Constructs a <tt>ChunkedDeflaterOutputStream</tt> with the default chunk size.
+     *
+     * @param out   the stream to write to
+     * @param level the compression level
+     */
+    public ChunkedDeflaterOutputStream(OutputStream out, int level)
+    {
+        this(out, level, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a <tt>ChunkedDeflaterOutputStream</tt>.
+     *
+     * @param out       the stream to write to
+     * @param level     the compression level
+     * @param chunkSize the uncompressed chunk size
+     */
+    public ChunkedDeflaterOutputStream(OutputStream out, int level, int chunkSize)
+    {
+        super(out, chunkSize);
+        deflater = new Deflater(level);
+    }
+
+    /**
+     * Deflates a chunk.
+     *
+     * @param data   the uncompressed data
+     * @param length the number of bytes of data
+     * @param target the stream to write the compressed data to
+     */
+    @Override
+    protected void compress(byte[] data, int length, ByteArrayOutputStream target)
+    {
+        deflater.reset();
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        while (!deflater.finished())
+        {
+            int n = deflater.deflate(buffer);
+            target.write(buffer, 0, n);
+        }
+    }
+
+    /**
+     * Releases the deflater.
+     */
+    @Override
+    protected void end()
+    {
+        deflater.end();
+    }
+}
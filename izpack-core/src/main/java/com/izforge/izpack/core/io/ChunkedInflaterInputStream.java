@@ -0,0 +1,95 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * An input stream that reads data written by {@link ChunkedDeflaterOutputStream}.
+ */
+public class ChunkedInflaterInputStream extends ChunkedInputStream
+{
+
+    /**
+     * The inflater.
+     */
+    private final Inflater inflater = new Inflater();
+
+
+    /**
+     * Constructs a <tt>ChunkedInflaterInputStream</tt>.
+     *
+     * @param in the stream to read from
+     */
+    public ChunkedInflaterInputStream(InputStream in)
+    {
+        super(in);
+    }
+
+    /**
+     * Inflates a chunk.
+     *
+     * @param compressed       the compressed data
+     * @param compressedLength the number of bytes of compressed data
+     * @param data             the buffer to inflate to
+     * @param length           the expected uncompressed length
+     * @throws IOException if the chunk is corrupt
+     */
+    @Override
+    protected void decompress(byte[] compressed, int compressedLength, byte[] data, int length) throws IOException
+    {
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        int inflated = 0;
+        try
+        {
+            while (inflated < length && !inflater.finished())
+            {
+                int n = inflater.inflate(data, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                inflated += n;
+            }
+        }
+        catch (DataFormatException exception)
+        {
+            throw new IOException("Corrupt chunk: " + exception.getMessage(), exception);
+        }
+        if (inflated != length)
+        {
+            throw new IOException("Corrupt chunk: expected " + length + " bytes but inflated " + inflated);
+        }
+    }
+
+    /**
+     * Releases the inflater.
+     */
+    @Override
+    protected void end()
+    {
+        inflater.end();
+    }
+}
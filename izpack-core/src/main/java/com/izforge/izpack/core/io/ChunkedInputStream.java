@@ -0,0 +1,315 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that reads data written by {@link ChunkedOutputStream}.
+ * <p/>
+ * Skipping uses the chunk headers to pass over whole chunks without decompressing them. If the underlying stream can
+ * skip without reading (e.g. a stored jar entry), seeking to an offset costs at most one chunk decompression.
+ * <p/>
+ * Subclasses provide the decompression of individual chunks.
+ */
+public abstract class ChunkedInputStream extends FilterInputStream
+{
+
+    /**
+     * The uncompressed data of the current chunk.
+     */
+    private byte[] chunk = new byte[0];
+
+    /**
+     * The compressed data of the current chunk.
+     */
+    private byte[] compressed = new byte[0];
+
+    /**
+     * The read position in the current chunk.
+     */
+    private int pos;
+
+    /**
+     * The number of bytes in the current chunk.
+     */
+    private int limit;
+
+    /**
+     * Determines if the end of the stream has been reached.
+     */
+    private boolean eof;
+
+
+    /**
+     * Constructs a <tt>ChunkedInputStream</tt>.
+     *
+     * @param in the stream to read from
+     */
+    public ChunkedInputStream(InputStream in)
+    {
+        super(in);
+    }
+
+    /**
+     * Reads a byte.
+     *
+     * @return the byte, or {@code -1} if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public int read() throws IOException
+    {
+        if (pos == limit && !readChunk())
+        {
+            return -1;
+        }
+        return chunk[pos++] & 0xff;
+    }
+
+    /**
+     * Reads up to {@code len} bytes.
+     *
+     * @param b   the buffer to read into
+     * @param off the start offset in the buffer
+     * @param len the maximum number of bytes to read
+     * @return the number of bytes read, or {@code -1} if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (pos == limit && !readChunk())
+        {
+            return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(chunk, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    /**
+     * Skips over bytes.
+     * <p/>
+     * Chunks that lie entirely within the skipped range are passed over without being decompressed.
+     *
+     * @param n the number of bytes to skip
+     * @return the number of bytes skipped
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public long skip(long n) throws IOException
+    {
+        long remaining = n;
+        int buffered = Math.min(limit - pos, (int) Math.min(remaining, Integer.MAX_VALUE));
+        pos += buffered;
+        remaining -= buffered;
+        while (remaining > 0 && !eof)
+        {
+            int length = readHeader();
+            if (length == -1)
+            {
+                break;
+            }
+            int compressedLength = readInt();
+            if (length <= remaining)
+            {
+                skipFully(compressedLength);
+                remaining -= length;
+            }
+            else
+            {
+                load(length, compressedLength);
+                pos = (int) remaining;
+                remaining = 0;
+            }
+        }
+        return n - remaining;
+    }
+
+    /**
+     * Returns the number of bytes that can be read without blocking.
+     *
+     * @return the number of bytes remaining in the current chunk
+     */
+    @Override
+    public int available()
+    {
+        return limit - pos;
+    }
+
+    /**
+     * Marks are not supported.
+     *
+     * @return {@code false}
+     */
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        end();
+        super.close();
+    }
+
+    /**
+     * Decompresses a chunk.
+     *
+     * @param compressed       the compressed data
+     * @param compressedLength the number of bytes of compressed data
+     * @param data             the buffer to decompress to
+     * @param length           the expected uncompressed length
+     * @throws IOException for any I/O error, or if the chunk is corrupt
+     */
+    protected abstract void decompress(byte[] compressed, int compressedLength, byte[] data, int length)
+            throws IOException;
+
+    /**
+     * Invoked when the stream is closed, to release any decompression resources.
+     */
+    protected void end()
+    {
+    }
+
+    /**
+     * Reads and decompresses the next chunk.
+     *
+     * @return {@code true} if a chunk was read, {@code false} if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean readChunk() throws IOException
+    {
+        if (eof)
+        {
+            return false;
+        }
+        int length = readHeader();
+        if (length == -1)
+        {
+            return false;
+        }
+        load(length, readInt());
+        return limit != 0 || readChunk();
+    }
+
+    /**
+     * Reads the uncompressed length of the next chunk.
+     *
+     * @return the uncompressed length, or {@code -1} if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    private int readHeader() throws IOException
+    {
+        int first = in.read();
+        if (first == -1)
+        {
+            eof = true;
+            pos = limit = 0;
+            return -1;
+        }
+        return (first << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    /**
+     * Reads and decompresses a chunk into the chunk buffer.
+     *
+     * @param length           the uncompressed length
+     * @param compressedLength the compressed length
+     * @throws IOException for any I/O error, or if the chunk is corrupt
+     */
+    private void load(int length, int compressedLength) throws IOException
+    {
+        if (compressed.length < compressedLength)
+        {
+            compressed = new byte[compressedLength];
+        }
+        readFully(compressed, compressedLength);
+        if (chunk.length < length)
+        {
+            chunk = new byte[length];
+        }
+        decompress(compressed, compressedLength, chunk, length);
+        pos = 0;
+        limit = length;
+    }
+
+    private int readInt() throws IOException
+    {
+        return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    private int readByte() throws IOException
+    {
+        int b = in.read();
+        if (b == -1)
+        {
+            throw new EOFException("Unexpected end of chunked stream");
+        }
+        return b;
+    }
+
+    private void readFully(byte[] buffer, int length) throws IOException
+    {
+        int read = 0;
+        while (read < length)
+        {
+            int n = in.read(buffer, read, length - read);
+            if (n == -1)
+            {
+                throw new EOFException("Unexpected end of chunked stream");
+            }
+            read += n;
+        }
+    }
+
+    private void skipFully(long length) throws IOException
+    {
+        long remaining = length;
+        while (remaining > 0)
+        {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0)
+            {
+                // some streams don't skip at the end of their buffer; fall back to reading
+                readByte();
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+        pos = limit = 0;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.io;
+
+import static com.izforge.izpack.core.io.ChunkedLZ4OutputStream.MIN_MATCH;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that reads data written by {@link ChunkedLZ4OutputStream}.
+ */
+public class ChunkedLZ4InputStream extends ChunkedInputStream
+{
+
+    /**
+     * Constructs a <tt>ChunkedLZ4InputStream</tt>.
+     *
+     * @param in the stream to read from
+     */
+    public ChunkedLZ4InputStream(InputStream in)
+    {
+        super(in);
+    }
+
+    /**
+     * Decompresses an LZ4 block.
+     *
+     * @param compressed       the compressed data
+     * @param compressedLength the number of bytes of compressed data
+     * @param data             the buffer to decompress to
+     * @param length           the expected uncompressed length
+     * @throws IOException if the chunk is corrupt
+     */
+    @Override
+    protected void decompress(byte[] compressed, int compressedLength, byte[] data, int length) throws IOException
+    {
+        int ip = 0;
+        int op = 0;
+        try
+        {
+            while (true)
+            {
+                if (ip >= compressedLength)
+                {
+                    throw new IOException("Corrupt chunk: truncated data");
+                }
+                int token = compressed[ip++] & 0xff;
+
+                // copy the literals
+                int literals = token >>> 4;
+                if (literals == 15)
+                {
+                    int b;
+                    do
+                    {
+                        b = compressed[ip++] & 0xff;
+                        literals += b;
+                    }
+                    while (b == 255);
+                }
+                if (op + literals > length || ip + literals > compressedLength)
+                {
+                    throw new IOException("Corrupt chunk: literals exceed chunk");
+                }
+                System.arraycopy(compressed, ip, data, op, literals);
+                ip += literals;
+                op += literals;
+                if (ip == compressedLength)
+                {
+                    break;
+                }
+
+                // copy the match
+                int offset = (compressed[ip] & 0xff) | (compressed[ip + 1] & 0xff) << 8;
+                ip += 2;
+                int matchLength = token & 0x0f;
+                if (matchLength == 15)
+                {
+                    int b;
+                    do
+                    {
+                        b = compressed[ip++] & 0xff;
+                        matchLength += b;
+                    }
+                    while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < 0 || op + matchLength > length)
+                {
+                    throw new IOException("Corrupt chunk: invalid match");
+                }
+                if (offset >= matchLength)
+                {
+                    System.arraycopy(data, ref, data, op, matchLength);
+                    op += matchLength;
+                }
+                else
+                {
+                    // overlapping match: the copy repeats the bytes just written
+                    for (int i = 0; i < matchLength; ++i)
+                    {
+                        data[op++] = data[ref++];
+                    }
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException exception)
+        {
+            throw new IOException("Corrupt chunk: truncated data", exception);
+        }
+        if (op != length)
+        {
+            throw new IOException("Corrupt chunk: expected " + length + " bytes but decompressed " + op);
+        }
+    }
+}
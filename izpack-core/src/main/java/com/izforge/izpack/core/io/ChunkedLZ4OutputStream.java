@@ -0,0 +1,260 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * An output stream that compresses its data in independently compressed chunks, using the LZ4 block format.
+ * <p/>
+ * LZ4 trades compression ratio for speed: it compresses several times faster than deflate, and decompresses an
+ * order of magnitude faster, which suits large, already dense payloads such as media.
+ *
+ * @see ChunkedLZ4InputStream
+ */
+public class ChunkedLZ4OutputStream extends ChunkedOutputStream
+{
+
+    /**
+     * The minimum match length.
+     */
+    static final int MIN_MATCH = 4;
+
+    /**
+     * The maximum distance of a match.
+     */
+    static final int MAX_DISTANCE = 0xFFFF;
+
+    /**
+     * The no. of trailing bytes that are always written as literals.
+     */
+    private static final int LAST_LITERALS = 5;
+
+    /**
+     * A match may not start within this many bytes of the end of a chunk.
+     */
+    private static final int MF_LIMIT = 12;
+
+    /**
+     * The no. of bits used to index the hash table.
+     */
+    private static final int HASH_BITS = 14;
+
+    /**
+     * The no. of unsuccessful match attempts before the search starts skipping bytes.
+     */
+    private static final int SKIP_TRIGGER = 6;
+
+    /**
+     * Maps the hash of 4 bytes to the position they were last seen at.
+     */
+    private final int[] table = new int[1 << HASH_BITS];
+
+    /**
+     * Buffer for compressed data.
+     */
+    private byte[] buffer = new byte[0];
+
+
+    /**
+     * Constructs a <tt>ChunkedLZ4OutputStream</tt> with the default chunk size.
+     *
+     * @param out the stream to write to
+     */
+    public ChunkedLZ4OutputStream(OutputStream out)
+    {
+        this(out, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a <tt>ChunkedLZ4OutputStream</tt>.
+     *
+     * @param out       the stream to write to
+     * @param chunkSize the uncompressed chunk size
+     */
+    public ChunkedLZ4OutputStream(OutputStream out, int chunkSize)
+    {
+        super(out, chunkSize);
+    }
+
+    /**
+     * Compresses a chunk.
+     *
+     * @param data   the uncompressed data
+     * @param length the number of bytes of data
+     * @param target the stream to write the compressed data to
+     */
+    @Override
+    protected void compress(byte[] data, int length, ByteArrayOutputStream target)
+    {
+        int bound = length + length / 255 + 16;
+        if (buffer.length < bound)
+        {
+            buffer = new byte[bound];
+        }
+        int size = compress(data, length, buffer);
+        target.write(buffer, 0, size);
+    }
+
+    /**
+     * Compresses data to an LZ4 block.
+     *
+     * @param src    the data to compress
+     * @param length the number of bytes to compress
+     * @param dest   the buffer to compress to
+     * @return the compressed length
+     */
+    private int compress(byte[] src, int length, byte[] dest)
+    {
+        int anchor = 0;
+        int op = 0;
+        if (length > MF_LIMIT)
+        {
+            Arrays.fill(table, -1);
+            int limit = length - MF_LIMIT;
+            int matchLimit = length - LAST_LITERALS;
+            int ip = 0;
+            int attempts = 1 << SKIP_TRIGGER;
+            while (ip < limit)
+            {
+                int sequence = readInt(src, ip);
+                int hash = hash(sequence);
+                int ref = table[hash];
+                table[hash] = ip;
+                if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence)
+                {
+                    ip += attempts++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+                attempts = 1 << SKIP_TRIGGER;
+
+                // extend the match backwards, then forwards
+                while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1])
+                {
+                    --ip;
+                    --ref;
+                }
+                int matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength])
+                {
+                    ++matchLength;
+                }
+
+                op = writeSequence(src, anchor, ip - anchor, dest, op, ip - ref, matchLength);
+                ip += matchLength;
+                anchor = ip;
+            }
+        }
+        return writeLiterals(src, anchor, length - anchor, dest, op);
+    }
+
+    /**
+     * Writes a sequence of literals followed by a match.
+     *
+     * @param src         the source data
+     * @param start       the start of the literals in the source data
+     * @param literals    the number of literals
+     * @param dest        the buffer to write to
+     * @param op          the position in the buffer to write to
+     * @param offset      the distance back to the match
+     * @param matchLength the match length
+     * @return the new position in the buffer
+     */
+    private int writeSequence(byte[] src, int start, int literals, byte[] dest, int op, int offset, int matchLength)
+    {
+        int token = op++;
+        int extra = matchLength - MIN_MATCH;
+        dest[token] = (byte) ((Math.min(literals, 15) << 4) | Math.min(extra, 15));
+        op = writeLength(literals, dest, op);
+        System.arraycopy(src, start, dest, op, literals);
+        op += literals;
+        dest[op++] = (byte) offset;
+        dest[op++] = (byte) (offset >>> 8);
+        return writeLength(extra, dest, op);
+    }
+
+    /**
+     * Writes the final run of literals.
+     *
+     * @param src      the source data
+     * @param start    the start of the literals in the source data
+     * @param literals the number of literals
+     * @param dest     the buffer to write to
+     * @param op       the position in the buffer to write to
+     * @return the new position in the buffer
+     */
+    private int writeLiterals(byte[] src, int start, int literals, byte[] dest, int op)
+    {
+        dest[op++] = (byte) (Math.min(literals, 15) << 4);
+        op = writeLength(literals, dest, op);
+        System.arraycopy(src, start, dest, op, literals);
+        return op + literals;
+    }
+
+    /**
+     * Writes the part of a length that doesn't fit in a token.
+     *
+     * @param length the length
+     * @param dest   the buffer to write to
+     * @param op     the position in the buffer to write to
+     * @return the new position in the buffer
+     */
+    private int writeLength(int length, byte[] dest, int op)
+    {
+        if (length >= 15)
+        {
+            length -= 15;
+            while (length >= 255)
+            {
+                dest[op++] = (byte) 255;
+                length -= 255;
+            }
+            dest[op++] = (byte) length;
+        }
+        return op;
+    }
+
+    /**
+     * Reads 4 bytes as a little-endian int.
+     *
+     * @param data the data
+     * @param pos  the position to read from
+     * @return the int
+     */
+    private static int readInt(byte[] data, int pos)
+    {
+        return (data[pos] & 0xff) | (data[pos + 1] & 0xff) << 8 | (data[pos + 2] & 0xff) << 16
+                | (data[pos + 3] & 0xff) << 24;
+    }
+
+    /**
+     * Hashes 4 bytes.
+     *
+     * @param sequence the bytes, as an int
+     * @return the hash table index
+     */
+    private static int hash(int sequence)
+    {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+}
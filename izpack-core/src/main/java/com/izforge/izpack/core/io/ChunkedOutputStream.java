@@ -0,0 +1,209 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.core.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that compresses its data in independently compressed chunks.
+ * <p/>
+ * Each chunk is written as its uncompressed length, its compressed length, and the compressed data. The chunk
+ * headers act as an index over the stream: a reader can skip a chunk without decompressing it, so it can seek to an
+ * offset in the uncompressed data by decompressing at most one chunk.
+ * <p/>
+ * Subclasses provide the compression of individual chunks.
+ *
+ * @see ChunkedInputStream
+ */
+public abstract class ChunkedOutputStream extends FilterOutputStream
+{
+
+    /**
+     * The default uncompressed chunk size.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * The uncompressed data of the current chunk.
+     */
+    private final byte[] chunk;
+
+    /**
+     * The number of bytes in the current chunk.
+     */
+    private int count;
+
+    /**
+     * The compressed data of the current chunk.
+     */
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    /**
+     * The stream to write chunk headers to.
+     */
+    private final DataOutputStream header;
+
+    /**
+     * Determines if the stream has been finished.
+     */
+    private boolean finished;
+
+
+    /**
+     * Constructs a <tt>ChunkedOutputStream</tt>.
+     *
+     * @param out       the stream to write to
+     * @param chunkSize the uncompressed chunk size
+     */
+    public ChunkedOutputStream(OutputStream out, int chunkSize)
+    {
+        super(out);
+        chunk = new byte[chunkSize];
+        header = new DataOutputStream(out);
+    }
+
+    /**
+     * Writes a byte.
+     *
+     * @param b the byte to write
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void write(int b) throws IOException
+    {
+        chunk[count++] = (byte) b;
+        if (count == chunk.length)
+        {
+            writeChunk();
+        }
+    }
+
+    /**
+     * Writes an array of bytes.
+     *
+     * @param b   the data
+     * @param off the start offset in the data
+     * @param len the number of bytes to write
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        while (len > 0)
+        {
+            int n = Math.min(len, chunk.length - count);
+            System.arraycopy(b, off, chunk, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == chunk.length)
+            {
+                writeChunk();
+            }
+        }
+    }
+
+    /**
+     * Flushes the underlying stream.
+     * <p/>
+     * The current chunk is not written, to avoid producing small chunks.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    /**
+     * Writes any remaining data to the underlying stream, without closing it.
+     *
+     * @throws IOException for any I/O error
+     */
+    public void finish() throws IOException
+    {
+        if (!finished)
+        {
+            writeChunk();
+            end();
+            finished = true;
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes any remaining data and closes the underlying stream.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            finish();
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Compresses a chunk.
+     *
+     * @param data   the uncompressed data
+     * @param length the number of bytes of data
+     * @param target the stream to write the compressed data to
+     * @throws IOException for any I/O error
+     */
+    protected abstract void compress(byte[] data, int length, ByteArrayOutputStream target) throws IOException;
+
+    /**
+     * Invoked when the stream is finished, to release any compression resources.
+     */
+    protected void end()
+    {
+    }
+
+    /**
+     * Compresses and writes the current chunk.
+     *
+     * @throws IOException for any I/O error
+     */
+    private void writeChunk() throws IOException
+    {
+        if (count != 0)
+        {
+            compressed.reset();
+            compress(chunk, count, compressed);
+            header.writeInt(count);
+            header.writeInt(compressed.size());
+            compressed.writeTo(out);
+            count = 0;
+        }
+    }
+}
@@ -21,6 +21,7 @@
 
 package com.izforge.izpack.core.resource;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -49,6 +50,16 @@ public abstract class AbstractResources implements Resources
      */
     private final ClassLoader loader;
 
+    /**
+     * The installer metadata, or {@code null} if it hasn't been read or doesn't exist.
+     */
+    private MetadataReader metadata;
+
+    /**
+     * Determines if the installer metadata has been looked up.
+     */
+    private boolean metadataLoaded;
+
 
     /**
      * Constructs an {@code AbstractResources} using the default class loader.
@@ -173,6 +184,19 @@ public abstract class AbstractResources implements Resources
     @Override
     public Object getObject(String name) throws ResourceException, ResourceNotFoundException
     {
+        MetadataReader reader = getMetadata();
+        if (reader != null && reader.contains(name))
+        {
+            try
+            {
+                return reader.read(name);
+            }
+            catch (Exception exception)
+            {
+                throw new ResourceException("Failed to read resource: " + name, exception);
+            }
+        }
+
         Object result;
         InputStream in = getInputStream(name);
         ObjectInputStream objectIn = null;
@@ -269,6 +293,40 @@ public abstract class AbstractResources implements Resources
         return loader;
     }
 
+    /**
+     * Returns the installer metadata written by {@link MetadataWriter}.
+     * <p/>
+     * The metadata index is read once; objects not in the metadata are read from their own serialized resources.
+     *
+     * @return the installer metadata, or {@code null} if there is none
+     * @throws ResourceException if the metadata cannot be read
+     */
+    private synchronized MetadataReader getMetadata()
+    {
+        if (!metadataLoaded)
+        {
+            InputStream in = loader.getResourceAsStream(resolveName(MetadataWriter.RESOURCE_NAME));
+            if (in != null)
+            {
+                try
+                {
+                    metadata = new MetadataReader(new BufferedInputStream(in));
+                }
+                catch (IOException exception)
+                {
+                    throw new ResourceException("Failed to read resource: " + MetadataWriter.RESOURCE_NAME,
+                                                exception);
+                }
+                finally
+                {
+                    FileUtils.close(in);
+                }
+            }
+            metadataLoaded = true;
+        }
+        return metadata;
+    }
+
     /**
      * Reads a string resource.
      *
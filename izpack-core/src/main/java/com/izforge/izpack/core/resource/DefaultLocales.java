@@ -82,6 +82,16 @@ public class DefaultLocales implements Locales
      */
     private List<String> isoCodes = new ArrayList<String>();
 
+    /**
+     * The named messages read for the current locale, keyed on resource name.
+     * <p/>
+     * Each resource is only read once; the messages returned by {@link #getMessages(String)} share its tables.
+     * <p/>
+     * Messages may be requested by both the unpacker and the event dispatch threads, so all access must synchronize
+     * on the map.
+     */
+    private final Map<String, LocaleDatabase> namedMessages = new HashMap<String, LocaleDatabase>();
+
     /**
      * The logger.
      */
@@ -272,8 +282,20 @@ public class DefaultLocales implements Locales
     @Override
     public Messages getMessages(String name)
     {
-        InputStream in = resources.getInputStream(name);
-        return new LocaleDatabase(in, this);
+        LocaleDatabase named;
+        synchronized (namedMessages)
+        {
+            named = namedMessages.get(name);
+            if (named == null)
+            {
+                InputStream in = resources.getInputStream(name);
+                named = new LocaleDatabase(in, this);
+                namedMessages.put(name, named);
+            }
+        }
+        LocaleDatabase result = new LocaleDatabase((Messages) null, this);
+        result.add(named);
+        return result;
     }
 
     /**
@@ -359,6 +381,10 @@ public class DefaultLocales implements Locales
      */
     private boolean changeLocale(String code)
     {
+        synchronized (namedMessages)
+        {
+            namedMessages.clear();
+        }
         if (code == null || code.equals(""))
         {
             locale = null;
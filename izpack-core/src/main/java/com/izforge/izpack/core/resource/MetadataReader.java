@@ -0,0 +1,431 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.resource;
+
+import static com.izforge.izpack.core.resource.MetadataWriter.ACTION;
+import static com.izforge.izpack.core.resource.MetadataWriter.ARRAY_LIST;
+import static com.izforge.izpack.core.resource.MetadataWriter.AUTHOR;
+import static com.izforge.izpack.core.resource.MetadataWriter.COMPACT;
+import static com.izforge.izpack.core.resource.MetadataWriter.EMPTY_LIST;
+import static com.izforge.izpack.core.resource.MetadataWriter.FALSE;
+import static com.izforge.izpack.core.resource.MetadataWriter.GUI_PREFS;
+import static com.izforge.izpack.core.resource.MetadataWriter.HASH_MAP;
+import static com.izforge.izpack.core.resource.MetadataWriter.HASH_SET;
+import static com.izforge.izpack.core.resource.MetadataWriter.HELP;
+import static com.izforge.izpack.core.resource.MetadataWriter.INFO;
+import static com.izforge.izpack.core.resource.MetadataWriter.INT;
+import static com.izforge.izpack.core.resource.MetadataWriter.MAGIC;
+import static com.izforge.izpack.core.resource.MetadataWriter.NULL;
+import static com.izforge.izpack.core.resource.MetadataWriter.OS_MODEL;
+import static com.izforge.izpack.core.resource.MetadataWriter.PANEL;
+import static com.izforge.izpack.core.resource.MetadataWriter.PANEL_ACTION;
+import static com.izforge.izpack.core.resource.MetadataWriter.PROPERTIES;
+import static com.izforge.izpack.core.resource.MetadataWriter.SERIALIZED;
+import static com.izforge.izpack.core.resource.MetadataWriter.STRING;
+import static com.izforge.izpack.core.resource.MetadataWriter.STRING_REF;
+import static com.izforge.izpack.core.resource.MetadataWriter.TEMP_DIR;
+import static com.izforge.izpack.core.resource.MetadataWriter.TREE_MAP;
+import static com.izforge.izpack.core.resource.MetadataWriter.TRUE;
+import static com.izforge.izpack.core.resource.MetadataWriter.VERSION;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.izforge.izpack.api.data.GUIPrefs;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.api.data.PanelActionConfiguration;
+import com.izforge.izpack.api.data.binding.Action;
+import com.izforge.izpack.api.data.binding.ActionStage;
+import com.izforge.izpack.api.data.binding.Help;
+import com.izforge.izpack.api.data.binding.OsModel;
+
+
+/**
+ * Reads the installer metadata resource written by {@link MetadataWriter}.
+ * <p/>
+ * Sections are decoded on each {@link #read(String)}, so callers get their own copy of the object, as they would
+ * reading a serialized resource.
+ */
+class MetadataReader
+{
+
+    /**
+     * The section names, in order of appearance.
+     */
+    private final String[] names;
+
+    /**
+     * The section encodings.
+     */
+    private final int[] encodings;
+
+    /**
+     * The section offsets into {@link #data}.
+     */
+    private final int[] offsets;
+
+    /**
+     * The section data.
+     */
+    private final byte[] data;
+
+
+    /**
+     * Constructs a {@code MetadataReader}, reading the section index and data.
+     * <p/>
+     * The stream is not closed.
+     *
+     * @param stream the stream to read from
+     * @throws IOException if the stream is not a supported metadata resource, or for any I/O error
+     */
+    MetadataReader(InputStream stream) throws IOException
+    {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC)
+        {
+            throw new StreamCorruptedException("Invalid installer metadata header");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+        {
+            throw new StreamCorruptedException("Unsupported installer metadata version " + version);
+        }
+        int count = readLength(in);
+        names = new String[count];
+        encodings = new int[count];
+        offsets = new int[count + 1];
+        for (int i = 0; i < count; ++i)
+        {
+            names[i] = in.readUTF();
+            encodings[i] = in.readUnsignedByte();
+            offsets[i + 1] = offsets[i] + readLength(in);
+        }
+        data = new byte[offsets[count]];
+        in.readFully(data);
+    }
+
+    /**
+     * Determines if a section exists.
+     *
+     * @param name the section name
+     * @return {@code true} if the section exists
+     */
+    boolean contains(String name)
+    {
+        return indexOf(name) != -1;
+    }
+
+    /**
+     * Decodes a section.
+     *
+     * @param name the section name
+     * @return the section value. May be {@code null}
+     * @throws IOException            if the section doesn't exist or cannot be decoded
+     * @throws ClassNotFoundException if a serialized class cannot be found
+     */
+    Object read(String name) throws IOException, ClassNotFoundException
+    {
+        int index = indexOf(name);
+        if (index == -1)
+        {
+            throw new IOException("Installer metadata section not found: " + name);
+        }
+        InputStream in = new ByteArrayInputStream(data, offsets[index], offsets[index + 1] - offsets[index]);
+        switch (encodings[index])
+        {
+            case COMPACT:
+                return new Decoder(in).readValue();
+            case SERIALIZED:
+                return new ObjectInputStream(in).readObject();
+            default:
+                throw new StreamCorruptedException("Unsupported encoding " + encodings[index] + " of installer "
+                                                           + "metadata section: " + name);
+        }
+    }
+
+    /**
+     * Returns the index of a section.
+     *
+     * @param name the section name
+     * @return the section index, or {@code -1} if it doesn't exist
+     */
+    private int indexOf(String name)
+    {
+        for (int i = 0; i < names.length; ++i)
+        {
+            if (names[i].equals(name))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a length written by {@link MetadataWriter#writeLength}.
+     *
+     * @param in the stream to read from
+     * @return the length
+     * @throws IOException for any I/O error
+     */
+    static int readLength(DataInputStream in) throws IOException
+    {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+        throw new StreamCorruptedException("Invalid length in installer metadata");
+    }
+
+    /**
+     * Decodes a single compact section.
+     */
+    private static class Decoder
+    {
+        private final DataInputStream in;
+
+        private final List<String> strings = new ArrayList<String>();
+
+        Decoder(InputStream in)
+        {
+            this.in = new DataInputStream(in);
+        }
+
+        @SuppressWarnings("unchecked")
+        Object readValue() throws IOException
+        {
+            int tag = in.readUnsignedByte();
+            switch (tag)
+            {
+                case NULL:
+                    return null;
+                case STRING:
+                {
+                    byte[] bytes = new byte[readLength(in)];
+                    in.readFully(bytes);
+                    String result = new String(bytes, "UTF-8");
+                    strings.add(result);
+                    return result;
+                }
+                case STRING_REF:
+                    return strings.get(readLength(in));
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT:
+                    return in.readInt();
+                case ARRAY_LIST:
+                {
+                    int size = readLength(in);
+                    return readCollection(new ArrayList<Object>(size), size);
+                }
+                case EMPTY_LIST:
+                    return Collections.emptyList();
+                case HASH_SET:
+                {
+                    int size = readLength(in);
+                    return readCollection(new HashSet<Object>(Math.max(size * 4 / 3 + 1, 16)), size);
+                }
+                case HASH_MAP:
+                {
+                    int size = readLength(in);
+                    return readMap(new HashMap<Object, Object>(Math.max(size * 4 / 3 + 1, 16)), size);
+                }
+                case TREE_MAP:
+                    return readMap(new TreeMap<Object, Object>(), readLength(in));
+                case PROPERTIES:
+                    return readMap(new Properties(), readLength(in));
+                case INFO:
+                    return readInfo();
+                case AUTHOR:
+                    return new Info.Author(readString(), readString());
+                case TEMP_DIR:
+                    return new Info.TempDir(readString(), readString(), readString());
+                case GUI_PREFS:
+                {
+                    GUIPrefs prefs = new GUIPrefs();
+                    prefs.resizable = in.readBoolean();
+                    prefs.width = in.readInt();
+                    prefs.height = in.readInt();
+                    prefs.lookAndFeelMapping = (Map<String, String>) readValue();
+                    prefs.lookAndFeelParams = (Map<String, Map<String, String>>) readValue();
+                    prefs.modifier = (Map<String, String>) readValue();
+                    return prefs;
+                }
+                case PANEL:
+                    return readPanel();
+                case OS_MODEL:
+                    return new OsModel(readString(), readString(), readString(), readString(), readString());
+                case ACTION:
+                {
+                    String className = readString();
+                    String stage = readString();
+                    return new Action(className, stage != null ? ActionStage.valueOf(stage) : null);
+                }
+                case PANEL_ACTION:
+                {
+                    PanelActionConfiguration action = new PanelActionConfiguration(readString());
+                    action.setProperties((Map<String, String>) readValue());
+                    return action;
+                }
+                case HELP:
+                    return new Help(readString(), readString());
+                default:
+                    throw new StreamCorruptedException("Invalid tag " + tag + " in installer metadata");
+            }
+        }
+
+        private String readString() throws IOException
+        {
+            return (String) readValue();
+        }
+
+        private Collection<Object> readCollection(Collection<Object> result, int size) throws IOException
+        {
+            for (int i = 0; i < size; ++i)
+            {
+                result.add(readValue());
+            }
+            return result;
+        }
+
+        private Map<Object, Object> readMap(Map<Object, Object> result, int size) throws IOException
+        {
+            for (int i = 0; i < size; ++i)
+            {
+                Object key = readValue();
+                result.put(key, readValue());
+            }
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Info readInfo() throws IOException
+        {
+            Info info = new Info();
+            info.setAppName(readString());
+            info.setAppVersion(readString());
+            info.setInstallationSubPath(readString());
+            for (Info.Author author : (List<Info.Author>) readValue())
+            {
+                info.addAuthor(author);
+            }
+            info.setAppURL(readString());
+            info.setJavaVersion(readString());
+            info.setJdkRequired(in.readBoolean());
+            info.setInstallerBase(readString());
+            info.setWebDirURL(readString());
+            info.setUninstallerName(readString());
+            info.setUninstallerPath(readString());
+            info.setUninstallerCondition(readString());
+            info.setSummaryLogFilePath(readString());
+            info.setPackDecoderClassName(readString());
+            info.setUnpackerClassName(readString());
+            info.setWriteInstallationInformation(in.readBoolean());
+            info.setPack200Compression(in.readBoolean());
+            info.setSolidJarCompression(in.readBoolean());
+            info.setRequirePrivilegedExecution(in.readBoolean());
+            info.setRequirePrivilegedExecutionUninstaller(in.readBoolean());
+            info.setPrivilegedExecutionConditionID(readString());
+            info.setRebootAction(in.readInt());
+            info.setRebootActionConditionID(readString());
+            Collection<Info.TempDir> tempDirs = (Collection<Info.TempDir>) readValue();
+            if (tempDirs != null)
+            {
+                for (Info.TempDir dir : tempDirs)
+                {
+                    info.addTempDir(dir);
+                }
+            }
+            return info;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Panel readPanel() throws IOException
+        {
+            Panel panel = new Panel();
+            panel.setClassName(readString());
+            panel.setOsConstraints((List<OsModel>) readValue());
+            panel.setPanelId(readString());
+            panel.setCondition(readString());
+            int validators = readLength(in);
+            for (int i = 0; i < validators; ++i)
+            {
+                panel.addValidator(readString(), readString());
+            }
+            panel.setActions((List<Action>) readValue());
+            for (PanelActionConfiguration action : readActions())
+            {
+                panel.addPreConstructionAction(action);
+            }
+            for (PanelActionConfiguration action : readActions())
+            {
+                panel.addPreActivationAction(action);
+            }
+            for (PanelActionConfiguration action : readActions())
+            {
+                panel.addPreValidationAction(action);
+            }
+            for (PanelActionConfiguration action : readActions())
+            {
+                panel.addPostValidationAction(action);
+            }
+            panel.setHelps((List<Help>) readValue());
+            Map<String, String> configuration = (Map<String, String>) readValue();
+            if (configuration != null)
+            {
+                for (Map.Entry<String, String> entry : configuration.entrySet())
+                {
+                    panel.addConfiguration(entry.getKey(), entry.getValue());
+                }
+            }
+            return panel;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<PanelActionConfiguration> readActions() throws IOException
+        {
+            List<PanelActionConfiguration> result = (List<PanelActionConfiguration>) readValue();
+            return result != null ? result : Collections.<PanelActionConfiguration>emptyList();
+        }
+    }
+
+}
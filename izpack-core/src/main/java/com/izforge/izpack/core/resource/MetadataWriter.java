@@ -0,0 +1,450 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.izforge.izpack.api.data.GUIPrefs;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.api.data.PanelActionConfiguration;
+import com.izforge.izpack.api.data.binding.Action;
+import com.izforge.izpack.api.data.binding.Help;
+import com.izforge.izpack.api.data.binding.OsModel;
+
+
+/**
+ * Writes the installer metadata resource.
+ * <p/>
+ * The metadata is a versioned archive of named sections, each holding one of the objects returned by
+ * {@link AbstractResources#getObject(String)}. The section index is read when the first object is requested, but a
+ * section is only decoded when its object is requested.
+ * <p/>
+ * Sections holding strings, primitives, collections and the {@link Info}, {@link GUIPrefs} and {@link Panel} types
+ * are written in a compact tagged format, which is decoded without reflection or class descriptors. Sections holding
+ * any other type, such as conditions or dynamic variables, are written using Java serialization.
+ */
+public class MetadataWriter
+{
+
+    /**
+     * The name of the metadata resource.
+     */
+    public static final String RESOURCE_NAME = "installer.metadata";
+
+    /**
+     * The metadata file identifier, "IZMD".
+     */
+    static final int MAGIC = 0x495A4D44;
+
+    /**
+     * The metadata format version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Section encodings.
+     */
+    static final int COMPACT = 0;
+    static final int SERIALIZED = 1;
+
+    /**
+     * Value tags of the compact encoding.
+     */
+    static final int NULL = 0;
+    static final int STRING = 1;
+    static final int STRING_REF = 2;
+    static final int TRUE = 3;
+    static final int FALSE = 4;
+    static final int INT = 5;
+    static final int ARRAY_LIST = 6;
+    static final int EMPTY_LIST = 7;
+    static final int HASH_SET = 8;
+    static final int HASH_MAP = 9;
+    static final int TREE_MAP = 10;
+    static final int PROPERTIES = 11;
+    static final int INFO = 12;
+    static final int AUTHOR = 13;
+    static final int TEMP_DIR = 14;
+    static final int GUI_PREFS = 15;
+    static final int PANEL = 16;
+    static final int OS_MODEL = 17;
+    static final int ACTION = 18;
+    static final int PANEL_ACTION = 19;
+    static final int HELP = 20;
+
+    /**
+     * The sections, keyed on name.
+     */
+    private final Map<String, Section> sections = new LinkedHashMap<String, Section>();
+
+
+    /**
+     * Adds a section.
+     *
+     * @param name  the section name, as passed to {@link AbstractResources#getObject(String)}
+     * @param value the section value. May be {@code null}
+     * @throws IOException if the value cannot be encoded
+     */
+    public void add(String name, Object value) throws IOException
+    {
+        Section section;
+        try
+        {
+            section = new Section(COMPACT, new Encoder().encode(value));
+        }
+        catch (UnsupportedTypeException exception)
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            section = new Section(SERIALIZED, bytes.toByteArray());
+        }
+        sections.put(name, section);
+    }
+
+    /**
+     * Determines if a section is written in the compact encoding.
+     *
+     * @param name the section name
+     * @return {@code true} if the section exists and is compact
+     */
+    public boolean isCompact(String name)
+    {
+        Section section = sections.get(name);
+        return section != null && section.encoding == COMPACT;
+    }
+
+    /**
+     * Writes the metadata.
+     * <p/>
+     * The stream is not closed.
+     *
+     * @param stream the stream to write to
+     * @throws IOException for any I/O error
+     */
+    public void write(OutputStream stream) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeLength(out, sections.size());
+        for (Map.Entry<String, Section> entry : sections.entrySet())
+        {
+            out.writeUTF(entry.getKey());
+            out.writeByte(entry.getValue().encoding);
+            writeLength(out, entry.getValue().data.length);
+        }
+        for (Section section : sections.values())
+        {
+            out.write(section.data);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes a non-negative length in 7-bit groups, low group first.
+     *
+     * @param out    the stream to write to
+     * @param length the length
+     * @throws IOException for any I/O error
+     */
+    static void writeLength(DataOutputStream out, int length) throws IOException
+    {
+        while ((length & ~0x7F) != 0)
+        {
+            out.writeByte((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.writeByte(length);
+    }
+
+    /**
+     * An encoded section.
+     */
+    private static class Section
+    {
+        final int encoding;
+
+        final byte[] data;
+
+        Section(int encoding, byte[] data)
+        {
+            this.encoding = encoding;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Thrown when a value has no compact encoding.
+     */
+    private static class UnsupportedTypeException extends IOException
+    {
+        UnsupportedTypeException(Object value)
+        {
+            super("No compact encoding for " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Encodes a single section.
+     * <p/>
+     * Each distinct string is written once; repeats refer back to it by index, in order of first occurrence.
+     */
+    private static class Encoder
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        byte[] encode(Object value) throws IOException
+        {
+            writeValue(value);
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private void writeValue(Object value) throws IOException
+        {
+            if (value == null)
+            {
+                out.writeByte(NULL);
+                return;
+            }
+            // match exact classes, so that subclasses and their extra state are left to serialization
+            Class type = value.getClass();
+            if (type == String.class)
+            {
+                writeString((String) value);
+            }
+            else if (type == Boolean.class)
+            {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            }
+            else if (type == Integer.class)
+            {
+                out.writeByte(INT);
+                out.writeInt((Integer) value);
+            }
+            else if (type == ArrayList.class)
+            {
+                writeCollection(ARRAY_LIST, (Collection) value);
+            }
+            else if (value == Collections.EMPTY_LIST)
+            {
+                out.writeByte(EMPTY_LIST);
+            }
+            else if (type == HashSet.class)
+            {
+                writeCollection(HASH_SET, (Collection) value);
+            }
+            else if (type == HashMap.class)
+            {
+                writeMap(HASH_MAP, (Map) value);
+            }
+            else if (type == TreeMap.class && ((TreeMap) value).comparator() == null)
+            {
+                writeMap(TREE_MAP, (Map) value);
+            }
+            else if (type == Properties.class)
+            {
+                writeMap(PROPERTIES, (Map) value);
+            }
+            else if (type == Info.class)
+            {
+                writeInfo((Info) value);
+            }
+            else if (type == Info.Author.class)
+            {
+                Info.Author author = (Info.Author) value;
+                out.writeByte(AUTHOR);
+                writeValue(author.getName());
+                writeValue(author.getEmail());
+            }
+            else if (type == Info.TempDir.class)
+            {
+                Info.TempDir dir = (Info.TempDir) value;
+                out.writeByte(TEMP_DIR);
+                writeValue(dir.getVariableName());
+                writeValue(dir.getPrefix());
+                writeValue(dir.getSuffix());
+            }
+            else if (type == GUIPrefs.class)
+            {
+                GUIPrefs prefs = (GUIPrefs) value;
+                out.writeByte(GUI_PREFS);
+                out.writeBoolean(prefs.resizable);
+                out.writeInt(prefs.width);
+                out.writeInt(prefs.height);
+                writeValue(prefs.lookAndFeelMapping);
+                writeValue(prefs.lookAndFeelParams);
+                writeValue(prefs.modifier);
+            }
+            else if (type == Panel.class)
+            {
+                writePanel((Panel) value);
+            }
+            else if (type == OsModel.class)
+            {
+                OsModel model = (OsModel) value;
+                out.writeByte(OS_MODEL);
+                writeValue(model.getArch());
+                writeValue(model.getFamily());
+                writeValue(model.getJre());
+                writeValue(model.getName());
+                writeValue(model.getVersion());
+            }
+            else if (type == Action.class)
+            {
+                Action action = (Action) value;
+                out.writeByte(ACTION);
+                writeValue(action.getClassname());
+                writeValue(action.getActionStage() != null ? action.getActionStage().name() : null);
+            }
+            else if (type == PanelActionConfiguration.class)
+            {
+                PanelActionConfiguration action = (PanelActionConfiguration) value;
+                out.writeByte(PANEL_ACTION);
+                writeValue(action.getActionClassName());
+                writeValue(action.getProperties());
+            }
+            else if (type == Help.class)
+            {
+                Help help = (Help) value;
+                out.writeByte(HELP);
+                writeValue(help.getIso3());
+                writeValue(help.getSrc());
+            }
+            else
+            {
+                throw new UnsupportedTypeException(value);
+            }
+        }
+
+        private void writeString(String value) throws IOException
+        {
+            Integer index = strings.get(value);
+            if (index != null)
+            {
+                out.writeByte(STRING_REF);
+                writeLength(out, index);
+            }
+            else
+            {
+                strings.put(value, strings.size());
+                byte[] data = value.getBytes("UTF-8");
+                out.writeByte(STRING);
+                writeLength(out, data.length);
+                out.write(data);
+            }
+        }
+
+        private void writeCollection(int tag, Collection<?> values) throws IOException
+        {
+            out.writeByte(tag);
+            writeLength(out, values.size());
+            for (Object value : values)
+            {
+                writeValue(value);
+            }
+        }
+
+        private void writeMap(int tag, Map<?, ?> map) throws IOException
+        {
+            out.writeByte(tag);
+            writeLength(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet())
+            {
+                writeValue(entry.getKey());
+                writeValue(entry.getValue());
+            }
+        }
+
+        private void writeInfo(Info info) throws IOException
+        {
+            out.writeByte(INFO);
+            writeValue(info.getAppName());
+            writeValue(info.getAppVersion());
+            writeValue(info.getInstallationSubPath());
+            writeValue(info.getAuthors());
+            writeValue(info.getAppURL());
+            writeValue(info.getJavaVersion());
+            out.writeBoolean(info.isJdkRequired());
+            writeValue(info.getInstallerBase());
+            writeValue(info.getWebDirURL());
+            writeValue(info.getUninstallerName());
+            writeValue(info.getUninstallerPath());
+            writeValue(info.getUninstallerCondition());
+            writeValue(info.getSummaryLogFilePath());
+            writeValue(info.getPackDecoderClassName());
+            writeValue(info.getUnpackerClassName());
+            out.writeBoolean(info.isWriteInstallationInformation());
+            out.writeBoolean(info.isPack200Compression());
+            out.writeBoolean(info.isSolidJarCompression());
+            out.writeBoolean(info.isPrivilegedExecutionRequired());
+            out.writeBoolean(info.isPrivilegedExecutionRequiredUninstaller());
+            writeValue(info.getPrivilegedExecutionConditionID());
+            out.writeInt(info.getRebootAction());
+            writeValue(info.getRebootActionConditionID());
+            writeValue(info.getTempDirs());
+        }
+
+        private void writePanel(Panel panel) throws IOException
+        {
+            out.writeByte(PANEL);
+            writeValue(panel.getClassName());
+            writeValue(panel.getOsConstraints());
+            writeValue(panel.getPanelId());
+            writeValue(panel.getCondition());
+            List<String> validators = panel.getValidators();
+            writeLength(out, validators.size());
+            for (int i = 0; i < validators.size(); ++i)
+            {
+                writeValue(validators.get(i));
+                writeValue(panel.getValidatorCondition(i));
+            }
+            writeValue(panel.getActions());
+            writeValue(panel.getPreConstructionActions());
+            writeValue(panel.getPreActivationActions());
+            writeValue(panel.getPreValidationActions());
+            writeValue(panel.getPostValidationActions());
+            writeValue(panel.getHelps());
+            writeValue(panel.getConfiguration());
+        }
+    }
+
+}
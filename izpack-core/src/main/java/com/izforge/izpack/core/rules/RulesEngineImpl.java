@@ -34,6 +34,7 @@ import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.ConditionReference;
 import com.izforge.izpack.api.rules.ConditionWithMultipleOperands;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.core.data.DefaultVariables;
 import com.izforge.izpack.core.rules.logic.AndCondition;
 import com.izforge.izpack.core.rules.logic.NotCondition;
 import com.izforge.izpack.core.rules.logic.OrCondition;
@@ -46,6 +47,7 @@ import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -67,6 +69,30 @@ public class RulesEngineImpl implements RulesEngine
 
     private final Set<ConditionReference> refConditions = new HashSet<ConditionReference>();
 
+    /**
+     * The maximum number of compiled expressions to cache.
+     */
+    private static final int EXPRESSION_CACHE_SIZE = 1024;
+
+    /**
+     * Compiled condition expressions, keyed on expression. Unresolvable expressions are cached as <tt>null</tt>.
+     * <p/>
+     * This is cleared whenever a condition is registered, as that may change how an expression resolves.
+     */
+    private final Map<String, Condition> expressions = new LinkedHashMap<String, Condition>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Condition> eldest)
+        {
+            return size() > EXPRESSION_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * The last result of each memoizable condition.
+     */
+    private final Map<Condition, Result> results = new WeakHashMap<Condition, Result>();
+
     private final InstallData installData;
 
     private final ConditionContainer container;
@@ -122,7 +148,7 @@ public class RulesEngineImpl implements RulesEngine
             // skip BuiltinConditions - these must be created by initStandardConditions().
             if (!(condition instanceof BuiltinCondition))
             {
-                conditionsMap.put(entry.getKey(), condition);
+                putCondition(entry.getKey(), condition);
                 condition.setInstallData(installData);
                 resolveBuiltinConditions(condition);
             }
@@ -175,7 +201,7 @@ public class RulesEngineImpl implements RulesEngine
                 result.setId(id);
                 result.setInstallData(installData);
                 result.readFromXML(condition);
-                conditionsMap.put(id, result);
+                putCondition(id, result);
                 if (result instanceof ConditionReference)
                 {
                     refConditions.add((ConditionReference) result);
@@ -227,7 +253,7 @@ public class RulesEngineImpl implements RulesEngine
                     if ((condid != null) && !("UNKNOWN".equals(condid)))
                     {
                         resolveBuiltinConditions(cond);
-                        conditionsMap.put(condid, cond);
+                        putCondition(condid, cond);
                     }
                 }
             }
@@ -279,16 +305,39 @@ public class RulesEngineImpl implements RulesEngine
         Condition result = conditionsMap.get(id);
         if (result == null)
         {
-            if (id.startsWith("@"))
+            synchronized (expressions)
             {
-                result = parseComplexCondition(id.substring(1));
+                if (expressions.containsKey(id))
+                {
+                    result = expressions.get(id);
+                }
+                else
+                {
+                    result = compile(id);
+                    expressions.put(id, result);
+                }
             }
-            else
+        }
+        return result;
+    }
+
+    /**
+     * Compiles the conditions referred to by the supplied ids, so that they needn't be parsed when first evaluated.
+     * <p/>
+     * Each id may be a condition identifier or an expression, as per {@link #getCondition(String)}.
+     *
+     * @param ids the condition ids. <tt>null</tt> elements are ignored
+     */
+    @Override
+    public void compileConditions(Collection<String> ids)
+    {
+        for (String id : ids)
+        {
+            if (id != null && getCondition(id) == null)
             {
-                result = getConditionByExpr(new StringBuffer(id));
+                logger.warning("Condition " + id + " not found");
             }
         }
-        return result;
     }
 
     @Override
@@ -336,8 +385,11 @@ public class RulesEngineImpl implements RulesEngine
         {
             cond.setInstallData(this.installData);
         }
-        boolean value = cond.isTrue();
-        logger.fine("Condition " + cond.getId() + ": " + Boolean.toString(value));
+        boolean value = evaluate(cond);
+        if (logger.isLoggable(Level.FINE))
+        {
+            logger.fine("Condition " + cond.getId() + ": " + Boolean.toString(value));
+        }
         return value;
     }
 
@@ -358,7 +410,7 @@ public class RulesEngineImpl implements RulesEngine
             return true;
         }
         Condition condition = getCondition(this.panelConditions.get(panelId));
-        boolean b = condition.isTrue();
+        boolean b = evaluate(condition);
         logger.fine("Panel " + panelId + ": activation depends on condition "
                             + condition.getId() + " -> " + b);
         return b;
@@ -404,7 +456,7 @@ public class RulesEngineImpl implements RulesEngine
             return true;
         }
         Condition condition = getCondition(this.packConditions.get(packid));
-        boolean b = condition.isTrue();
+        boolean b = evaluate(condition);
         logger.fine("Package " + packid + ": installation depends on condition "
                 + condition.getId() + " -> " + b);
         return b;
@@ -448,7 +500,7 @@ public class RulesEngineImpl implements RulesEngine
             }
             else
             {
-                conditionsMap.put(id, condition);
+                putCondition(id, condition);
             }
         }
         else
@@ -489,6 +541,159 @@ public class RulesEngineImpl implements RulesEngine
         return xml;
     }
 
+    /**
+     * Evaluates a condition.
+     * <p/>
+     * If the condition only depends on variables, the result is memoized until one of the variables it read changes.
+     *
+     * @param condition the condition to evaluate
+     * @return the result of the condition
+     */
+    private boolean evaluate(Condition condition)
+    {
+        InstallData data = (condition.getInstallData() != null) ? condition.getInstallData() : installData;
+        if (data == null || !(data.getVariables() instanceof DefaultVariables))
+        {
+            return condition.isTrue();
+        }
+        DefaultVariables variables = (DefaultVariables) data.getVariables();
+        if (!isMemoizable(condition, variables))
+        {
+            return condition.isTrue();
+        }
+        synchronized (results)
+        {
+            Result result = results.get(condition);
+            if (result != null && result.variables == variables && !variables.isChanged(result.names, result.change))
+            {
+                return result.value;
+            }
+        }
+
+        boolean value;
+        Set<String> names;
+        long change = variables.startRecording();
+        try
+        {
+            value = condition.isTrue();
+        }
+        finally
+        {
+            names = variables.stopRecording();
+        }
+        if (names != null)
+        {
+            synchronized (results)
+            {
+                results.put(condition, new Result(variables, names, change, value));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Determines if the result of a condition may be memoized.
+     * <p/>
+     * This is only the case for the built-in conditions whose results depend solely on variables, and for logical
+     * combinations of these. Subclasses are excluded, as they may evaluate differently.
+     *
+     * @param condition the condition
+     * @param variables the variables the condition must evaluate against
+     * @return <tt>true</tt> if the condition may be memoized
+     */
+    private boolean isMemoizable(Condition condition, Variables variables)
+    {
+        Class<?> type = condition.getClass();
+        if (type == StaticCondition.class)
+        {
+            return true;
+        }
+        if (type == VariableCondition.class || type == CompareNumericsCondition.class
+                || type == CompareVersionsCondition.class)
+        {
+            return isEvaluatedAgainst(condition, variables);
+        }
+        if (type == ExistsCondition.class)
+        {
+            return ((ExistsCondition) condition).getContentType() == ExistsCondition.ContentType.VARIABLE
+                    && isEvaluatedAgainst(condition, variables);
+        }
+        if (type == EmptyCondition.class)
+        {
+            EmptyCondition.ContentType contentType = ((EmptyCondition) condition).getContentType();
+            return (contentType == EmptyCondition.ContentType.STRING
+                    || contentType == EmptyCondition.ContentType.VARIABLE)
+                    && isEvaluatedAgainst(condition, variables);
+        }
+        if (type == ContainsCondition.class)
+        {
+            ContainsCondition.ContentType contentType = ((ContainsCondition) condition).getContentType();
+            return (contentType == ContainsCondition.ContentType.STRING
+                    || contentType == ContainsCondition.ContentType.VARIABLE)
+                    && isEvaluatedAgainst(condition, variables);
+        }
+        if (type == AndCondition.class || type == OrCondition.class || type == XorCondition.class)
+        {
+            for (Condition operand : ((ConditionWithMultipleOperands) condition).getOperands())
+            {
+                if (!isMemoizable(operand, variables))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (type == NotCondition.class || type == RefCondition.class)
+        {
+            Condition referenced = ((ConditionReference) condition).getReferencedCondition();
+            return referenced != null && isMemoizable(referenced, variables);
+        }
+        return false;
+    }
+
+    /**
+     * Determines if a condition reads the specified variables.
+     *
+     * @param condition the condition
+     * @param variables the variables
+     * @return <tt>true</tt> if the condition's installation data holds <tt>variables</tt>
+     */
+    private boolean isEvaluatedAgainst(Condition condition, Variables variables)
+    {
+        InstallData data = condition.getInstallData();
+        return data != null && data.getVariables() == variables;
+    }
+
+    /**
+     * Registers a condition, discarding any compiled expressions.
+     *
+     * @param id        the condition identifier
+     * @param condition the condition
+     */
+    private void putCondition(String id, Condition condition)
+    {
+        conditionsMap.put(id, condition);
+        synchronized (expressions)
+        {
+            expressions.clear();
+        }
+    }
+
+    /**
+     * Compiles a condition expression.
+     *
+     * @param expression a simple expression, or a complex expression beginning with <em>@</em>
+     * @return the corresponding condition, or <tt>null</tt> if the expression refers to an undefined condition
+     */
+    private Condition compile(String expression)
+    {
+        if (expression.startsWith("@"))
+        {
+            return parseComplexCondition(expression.substring(1));
+        }
+        return getConditionByExpr(new StringBuffer(expression));
+    }
+
     /**
      * initializes built-in conditions like os conditions and package conditions.
      *
@@ -897,6 +1102,40 @@ public class RulesEngineImpl implements RulesEngine
         }
     }
 
+    /**
+     * The memoized result of a condition.
+     */
+    private static class Result
+    {
+        /**
+         * The variables the condition was evaluated against.
+         */
+        private final DefaultVariables variables;
+
+        /**
+         * The names of the variables read by the condition.
+         */
+        private final Set<String> names;
+
+        /**
+         * The variables change number, prior to evaluation.
+         */
+        private final long change;
+
+        /**
+         * The result of the condition.
+         */
+        private final boolean value;
+
+        public Result(DefaultVariables variables, Set<String> names, long change, boolean value)
+        {
+            this.variables = variables;
+            this.names = names;
+            this.change = change;
+            this.value = value;
+        }
+    }
+
     /**
      * A pre-evaluated condition.
      */
@@ -30,6 +30,7 @@ import com.izforge.izpack.util.IoHelper;
 import java.io.*;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -195,6 +196,24 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      */
     public int substitute(InputStream in, OutputStream out, SubstitutionType type, String encoding)
             throws Exception
+    {
+        return substitute(in, out, type, encoding, null);
+    }
+
+    /**
+     * Substitutes the variables found in the specified input stream, collecting the names of the variables that
+     * couldn't be resolved. References to such variables are left as is.
+     *
+     * @param in         the input stream to read
+     * @param out        the output stream to write
+     * @param type       the file type or null for plain
+     * @param encoding   the character encoding or null for default
+     * @param unresolved collects the names of the variables that couldn't be resolved. May be <tt>null</tt>
+     * @return the number of substitutions made
+     * @throws IOException
+     */
+    public int substitute(InputStream in, OutputStream out, SubstitutionType type, String encoding,
+                          Set<String> unresolved) throws Exception
     {
         // Check if file type specific default encoding known
         if (encoding == null)
@@ -222,7 +241,7 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
                 : new OutputStreamWriter(out));
 
         // Copy the data and substitute variables
-        int subs = substitute(reader, writer, type);
+        int subs = substitute(reader, writer, type, unresolved);
 
         // Flush the write so that everything gets written out
         writer.flush();
@@ -290,6 +309,23 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
      * @throws IOException
      */
     public int substitute(Reader reader, Writer writer, SubstitutionType type) throws Exception
+    {
+        return substitute(reader, writer, type, null);
+    }
+
+    /**
+     * Substitutes the variables found in the data read from the specified reader, collecting the names of the
+     * variables that couldn't be resolved. Escapes special characters using file type specific escaping if necessary.
+     *
+     * @param reader     the reader to read
+     * @param writer     the writer used to write data out
+     * @param type       the file type or null for plain
+     * @param unresolved collects the names of the variables that couldn't be resolved. May be <tt>null</tt>
+     * @return the number of substitutions made
+     * @throws IOException
+     */
+    protected int substitute(Reader reader, Writer writer, SubstitutionType type, Set<String> unresolved)
+            throws Exception
     {
         if (type == null)
         {
@@ -368,6 +404,7 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
 
             // Check if a legal and defined variable found
             String varvalue = null;
+            boolean legal = false;
 
             if (((!braces || c == '}') &&
                     (!braces || variable_end == '\0' || variable_end == c)
@@ -402,6 +439,7 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
                     }
                 }
 
+                legal = true;
                 subs++;
             }
 
@@ -417,6 +455,10 @@ public abstract class VariableSubstitutorBase implements VariableSubstitutor
             // ...or ignore it
             else
             {
+                if (legal && unresolved != null)
+                {
+                    unresolved.add(name);
+                }
                 writer.write(variable_start);
                 if (braces)
                 {
@@ -28,6 +28,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.tools.zip.ZipOutputStream;
 
@@ -49,12 +50,12 @@ public class FileMerge extends AbstractMerge
 
     private String destination;
 
-    public FileMerge(URL url, Map<OutputStream, List<String>> mergeContent)
+    public FileMerge(URL url, Map<OutputStream, Set<String>> mergeContent)
     {
         this(url, "", mergeContent);
     }
 
-    public FileMerge(URL url, String destination, Map<OutputStream, List<String>> mergeContent)
+    public FileMerge(URL url, String destination, Map<OutputStream, Set<String>> mergeContent)
     {
         this.mergeContent = mergeContent;
         this.sourceToCopy = FileUtil.convertUrlToFile(url);
@@ -126,14 +127,13 @@ public class FileMerge extends AbstractMerge
 
     public void merge(ZipOutputStream outputStream)
     {
-        List<String> mergeList = getMergeList(outputStream);
+        Set<String> mergeList = getMergeList(outputStream);
         try
         {
-            if (mergeList.contains(sourceToCopy.getAbsolutePath()))
+            if (!mergeList.add(sourceToCopy.getAbsolutePath()))
             {
                 return;
             }
-            mergeList.add(sourceToCopy.getAbsolutePath());
             copyFileToJar(sourceToCopy, outputStream);
         }
         catch (IOException e)
@@ -166,12 +166,11 @@ public class FileMerge extends AbstractMerge
         else
         {
             String entryName = resolveName(fileToCopy, this.destination);
-            List<String> mergeList = getMergeList(outputStream);
-            if (mergeList.contains(entryName))
+            Set<String> mergeList = getMergeList(outputStream);
+            if (!mergeList.add(entryName))
             {
                 return;
             }
-            mergeList.add(entryName);
             FileInputStream inputStream = new FileInputStream(fileToCopy);
             IoHelper.copyStreamToJar(inputStream, outputStream, entryName, fileToCopy.lastModified());
             inputStream.close();
@@ -193,12 +192,11 @@ public class FileMerge extends AbstractMerge
         }
 
         String entryName = resolveName(fileToCopy, this.destination);
-        List<String> mergeList = getMergeList(outputStream);
-        if (mergeList.contains(entryName))
+        Set<String> mergeList = getMergeList(outputStream);
+        if (!mergeList.add(entryName))
         {
             return;
         }
-        mergeList.add(entryName);        
         if(inputStream != null)
         {
             IoHelper.copyStreamToJar(inputStream, outputStream, entryName, fileToCopy.lastModified());
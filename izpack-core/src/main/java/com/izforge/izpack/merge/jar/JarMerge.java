@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -49,6 +50,16 @@ import com.izforge.izpack.util.IoHelper;
  */
 public class JarMerge extends AbstractMerge
 {
+    /**
+     * Matches signature files.
+     */
+    private static final Pattern SIGNATURE_FILE = Pattern.compile("/META-INF/.*\\.(SF|DSA|RSA)");
+
+    /**
+     * Matches signature block files.
+     */
+    private static final Pattern SIGNATURE_BLOCK = Pattern.compile("/META-INF/SIG-.*");
+
     private String jarPath;
 
     private String regexp;
@@ -62,7 +73,7 @@ public class JarMerge extends AbstractMerge
      * @param jarPath      Path to the jar to merge
      * @param mergeContent map linking outputstream to their content to avoir duplication
      */
-    public JarMerge(URL resource, String jarPath, Map<OutputStream, List<String>> mergeContent)
+    public JarMerge(URL resource, String jarPath, Map<OutputStream, Set<String>> mergeContent)
     {
         this.jarPath = jarPath;
         this.mergeContent = mergeContent;
@@ -93,7 +104,7 @@ public class JarMerge extends AbstractMerge
      * @param mergeContent  map linking outputstream to their content to avoir duplication
      */
     public JarMerge(String jarPath, String pathInsideJar, String destination,
-                    Map<OutputStream, List<String>> mergeContent)
+                    Map<OutputStream, Set<String>> mergeContent)
     {
         this.jarPath = jarPath;
         this.destination = destination;
@@ -185,7 +196,7 @@ public class JarMerge extends AbstractMerge
     private void mergeImpl(OutputStream outputStream)
     {
         Pattern pattern = Pattern.compile(regexp);
-        List<String> mergeList = getMergeList(outputStream);
+        Set<String> mergeList = getMergeList(outputStream);
         JarFile jarFile = null;
         JarEntry jarEntry;
         try
@@ -206,11 +217,10 @@ public class JarMerge extends AbstractMerge
                 Matcher matcher = pattern.matcher(jarEntry.getName());
                 if (matcher.matches() && !isSignature(jarEntry.getName()))
                 {
-                    if (mergeList.contains(jarEntry.getName()))
+                    if (!mergeList.add(jarEntry.getName()))
                     {
                         continue;
                     }
-                    mergeList.add(jarEntry.getName());
 
                     String matchFile = matcher.group(1);
                     StringBuilder dest = new StringBuilder(destination);
@@ -223,16 +233,24 @@ public class JarMerge extends AbstractMerge
                         dest.append(matchFile);
                     }
 
+                    String entryName = dest.toString().replace("//", "/");
                     InputStream inputStream = jarFile.getInputStream(jarEntry);
-                    if (outputStream instanceof ZipOutputStream)
+                    try
                     {
-                        IoHelper.copyStreamToJar(inputStream, (ZipOutputStream) outputStream, dest.toString().replaceAll("//", "/"),
-                                jarEntry.getTime());
+                        if (outputStream instanceof ZipOutputStream)
+                        {
+                            IoHelper.copyEntryToJar(inputStream, (ZipOutputStream) outputStream, entryName,
+                                                    jarEntry);
+                        }
+                        else if (outputStream instanceof java.util.zip.ZipOutputStream)
+                        {
+                            IoHelper.copyEntryToJar(inputStream, (java.util.zip.ZipOutputStream) outputStream,
+                                                    entryName, jarEntry);
+                        }
                     }
-                    else if (outputStream instanceof java.util.zip.ZipOutputStream)
+                    finally
                     {
-                        IoHelper.copyStreamToJar(inputStream, (java.util.zip.ZipOutputStream) outputStream, dest.toString().replaceAll("//", "/"),
-                                jarEntry.getTime());
+                        inputStream.close();
                     }
                 }
             }
@@ -300,7 +318,7 @@ public class JarMerge extends AbstractMerge
      */
     private boolean isSignature(String name)
     {
-        return name.matches("/META-INF/.*\\.(SF|DSA|RSA)") || name.matches("/META-INF/SIG-.*");
+        return SIGNATURE_FILE.matcher(name).matches() || SIGNATURE_BLOCK.matcher(name).matches();
     }
 
     /**
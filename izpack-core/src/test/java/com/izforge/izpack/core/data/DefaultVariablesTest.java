@@ -22,21 +22,35 @@
 package com.izforge.izpack.core.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.izforge.izpack.api.data.AutomatedInstallData;
 import com.izforge.izpack.api.data.DynamicVariable;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.rules.Condition;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.container.DefaultContainer;
 import com.izforge.izpack.core.rules.ConditionContainer;
 import com.izforge.izpack.core.rules.RulesEngineImpl;
 import com.izforge.izpack.core.rules.process.VariableCondition;
+import com.izforge.izpack.core.variable.ConfigFileValue;
+import com.izforge.izpack.core.variable.PlainConfigFileValue;
 import com.izforge.izpack.core.variable.PlainValue;
 import com.izforge.izpack.util.Platforms;
 
@@ -54,6 +68,12 @@ public class DefaultVariablesTest
      */
     private final Variables variables = new DefaultVariables();
 
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
 
     /**
      * Tests the {@link Variables#set(String, String)}, {@link Variables#get(String)} and
@@ -189,6 +209,46 @@ public class DefaultVariablesTest
         assertNull(variables.replace(null));
     }
 
+    /**
+     * Tests the {@link DefaultVariables#startRecording()}, {@link DefaultVariables#stopRecording()} and
+     * {@link DefaultVariables#isChanged(Set, long)} methods.
+     */
+    @Test
+    public void testRecording()
+    {
+        DefaultVariables variables = new DefaultVariables();
+        variables.set("var1", "Hello");
+        variables.set("var2", "world");
+
+        long change = variables.startRecording();
+        variables.get("var1");
+        long nested = variables.startRecording();
+        variables.replace("${var2} ${var3}");
+        Set<String> inner = variables.stopRecording();
+        Set<String> outer = variables.stopRecording();
+
+        assertEquals(new HashSet<String>(Arrays.asList("var2", "var3")), inner);
+        assertEquals(new HashSet<String>(Arrays.asList("var1", "var2", "var3")), outer);
+        assertEquals(change, nested);
+
+        // setting a variable to its existing value is not a change
+        variables.set("var1", "Hello");
+        variables.set("var4", "unrelated");
+        assertFalse(variables.isChanged(outer, change));
+
+        variables.set("var3", "!");
+        assertTrue(variables.isChanged(outer, change));
+
+        // reads that can't be tracked
+        variables.startRecording();
+        variables.replace("${SYSTEM[user.dir]}");
+        assertNull(variables.stopRecording());
+
+        variables.startRecording();
+        variables.getProperties();
+        assertNull(variables.stopRecording());
+    }
+
     /**
      * Tests simple dynamic variables.
      */
@@ -285,6 +345,89 @@ public class DefaultVariablesTest
     }
 
 
+    /**
+     * Verifies that dynamic variables are only re-evaluated if the variables or files they read have changed.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDynamicVariablesReused() throws Exception
+    {
+        File dir1 = folder.newFolder("dir1");
+        File dir2 = folder.newFolder("dir2");
+        File file1 = writeProperties(new File(dir1, "test.properties"), "key=foo\n");
+        writeProperties(new File(dir2, "test.properties"), "key=bar\n");
+
+        DynamicVariableImpl fromFile = new DynamicVariableImpl();
+        fromFile.setName("fromFile");
+        fromFile.setValue(new PlainConfigFileValue("${dir}/test.properties", ConfigFileValue.CONFIGFILE_TYPE_OPTIONS,
+                                                   null, "key", false));
+        variables.add(fromFile);
+
+        // values of other types are always re-evaluated
+        final AtomicInteger count = new AtomicInteger();
+        DynamicVariableImpl counter = new DynamicVariableImpl();
+        counter.setName("counter");
+        counter.setValue(new PlainValue("counter")
+        {
+            @Override
+            public String resolve(VariableSubstitutor... substitutors)
+            {
+                return Integer.toString(count.incrementAndGet());
+            }
+        });
+        variables.add(counter);
+
+        variables.set("dir", dir1.getPath());
+        variables.refresh();
+        assertEquals("foo", variables.get("fromFile"));
+        assertEquals("1", variables.get("counter"));
+
+        // change the file, but not its length or timestamp. The prior result should be used
+        long modified = file1.lastModified();
+        writeProperties(file1, "key=baz\n");
+        assertTrue(file1.setLastModified(modified));
+        variables.set("unrelated", "x");
+        variables.refresh();
+        assertEquals("foo", variables.get("fromFile"));
+        assertEquals("2", variables.get("counter"));
+
+        // change the file length
+        writeProperties(file1, "key=bazz\n");
+        assertTrue(file1.setLastModified(modified));
+        variables.refresh();
+        assertEquals("bazz", variables.get("fromFile"));
+
+        // change a variable the value depends on
+        variables.set("dir", dir2.getPath());
+        variables.refresh();
+        assertEquals("bar", variables.get("fromFile"));
+        assertEquals("4", variables.get("counter"));
+    }
+
+    /**
+     * Writes a properties file.
+     *
+     * @param file    the file to write
+     * @param content the file content
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private File writeProperties(File file, String content) throws IOException
+    {
+        FileWriter writer = new FileWriter(file);
+        try
+        {
+            writer.write(content);
+        }
+        finally
+        {
+            writer.close();
+        }
+        return file;
+    }
+
+
     /**
      * Creates a dynamic variable.
      *
@@ -0,0 +1,177 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link ChunkedDeflaterOutputStream}, {@link ChunkedInflaterInputStream}, {@link ChunkedLZ4OutputStream}
+ * and {@link ChunkedLZ4InputStream} classes.
+ */
+public class ChunkedStreamTest
+{
+
+    /**
+     * Verifies that data written in chunks can be read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testReadWrite() throws IOException
+    {
+        byte[] data = createData(10000);
+        byte[] chunked = write(data, 1000);
+
+        ChunkedInflaterInputStream in = new ChunkedInflaterInputStream(new ByteArrayInputStream(chunked));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[333];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        assertArrayEquals(data, out.toByteArray());
+    }
+
+    /**
+     * Verifies that skipping within and across chunks positions the stream correctly.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSkip() throws IOException
+    {
+        byte[] data = createData(10000);
+        byte[] chunked = write(data, 1000);
+
+        ChunkedInflaterInputStream in = new ChunkedInflaterInputStream(new ByteArrayInputStream(chunked));
+        assertEquals(data[0] & 0xff, in.read());
+        assertEquals(10, in.skip(10));             // within the first chunk
+        assertEquals(data[11] & 0xff, in.read());
+        assertEquals(4988, in.skip(4988));         // across several chunks
+        assertEquals(data[5000] & 0xff, in.read());
+        assertEquals(4999, in.skip(5000));         // past the end
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    /**
+     * Verifies that data written in LZ4 compressed chunks can be read back, and skipped.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testLZ4ReadWrite() throws IOException
+    {
+        byte[] data = createData(10000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChunkedLZ4OutputStream out = new ChunkedLZ4OutputStream(bytes, 1000);
+        out.write(data);
+        out.close();
+
+        ChunkedLZ4InputStream in = new ChunkedLZ4InputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        byte[] result = new byte[data.length];
+        assertEquals(data[0] & 0xff, in.read());
+        assertEquals(4999, in.skip(4999));
+        new DataInputStream(in).readFully(result, 0, 5000);
+        assertEquals(-1, in.read());
+        in.close();
+        for (int i = 0; i < 5000; ++i)
+        {
+            assertEquals(data[5000 + i], result[i]);
+        }
+    }
+
+    /**
+     * Verifies that incompressible data round trips through LZ4 compressed chunks.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testLZ4Incompressible() throws IOException
+    {
+        byte[] data = new byte[70000];
+        new Random(1).nextBytes(data);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChunkedLZ4OutputStream out = new ChunkedLZ4OutputStream(bytes);
+        out.write(data);
+        out.close();
+
+        ChunkedLZ4InputStream in = new ChunkedLZ4InputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            result.write(buffer, 0, read);
+        }
+        in.close();
+        assertArrayEquals(data, result.toByteArray());
+    }
+
+    /**
+     * Writes data using a {@link ChunkedDeflaterOutputStream}.
+     *
+     * @param data      the data to write
+     * @param chunkSize the chunk size
+     * @return the chunked data
+     * @throws IOException for any I/O error
+     */
+    private byte[] write(byte[] data, int chunkSize) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChunkedDeflaterOutputStream out = new ChunkedDeflaterOutputStream(bytes, Deflater.BEST_COMPRESSION,
+                                                                          chunkSize);
+        out.write(data, 0, 10);
+        out.write(data[10]);
+        out.write(data, 11, data.length - 11);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Creates compressible test data.
+     *
+     * @param size the data size
+     * @return the data
+     */
+    private byte[] createData(int size)
+    {
+        byte[] data = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; ++i)
+        {
+            data[i] = (byte) random.nextInt(16);
+        }
+        return data;
+    }
+}
@@ -25,15 +25,23 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import com.izforge.izpack.api.resource.Locales;
+import com.izforge.izpack.api.resource.Messages;
 import com.izforge.izpack.api.resource.Resources;
 
 
@@ -108,6 +116,80 @@ public class DefaultLocalesTest
         }
     }
 
+    /**
+     * Verifies that named messages requested concurrently are only read once, and are shared by all callers.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testNamedMessagesConcurrent() throws Exception
+    {
+        final AtomicInteger reads = new AtomicInteger();
+        ResourceManager resources = new ResourceManager()
+        {
+            @Override
+            public Object getObject(String name)
+            {
+                if (name.equals("langpacks.info"))
+                {
+                    return Arrays.asList("eng");
+                }
+                return super.getObject(name);
+            }
+
+            @Override
+            public InputStream getInputStream(String resource)
+            {
+                if (resource.equals("CustomLangPack.xml"))
+                {
+                    reads.incrementAndGet();
+                    try
+                    {
+                        Thread.sleep(50);
+                    }
+                    catch (InterruptedException exception)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    String xml = "<langpack><str id=\"custom\" txt=\"Custom\"/></langpack>";
+                    return new ByteArrayInputStream(xml.getBytes());
+                }
+                resource = resource.replaceFirst("^langpacks", "installer");
+                return super.getInputStream(resource);
+            }
+        };
+        resources.setResourceBasePath("/com/izforge/izpack/bin/langpacks/");
+        final Locales locales = new DefaultLocales(resources);
+        resources.setLocales(locales);
+        locales.setLocale("eng");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try
+        {
+            List<Future<Messages>> futures = new ArrayList<Future<Messages>>();
+            for (int i = 0; i < 4; ++i)
+            {
+                futures.add(executor.submit(new Callable<Messages>()
+                {
+                    @Override
+                    public Messages call() throws Exception
+                    {
+                        return locales.getMessages("CustomLangPack.xml");
+                    }
+                }));
+            }
+            for (Future<Messages> future : futures)
+            {
+                assertEquals("Custom", future.get().get("custom"));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertEquals(1, reads.get());
+    }
+
     /**
      * Verifies that the appropriate locale is selected if the language code is "en" (English).
      */
@@ -0,0 +1,329 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.GUIPrefs;
+import com.izforge.izpack.api.data.Info;
+import com.izforge.izpack.api.data.Panel;
+import com.izforge.izpack.api.data.PanelActionConfiguration;
+import com.izforge.izpack.api.data.binding.Action;
+import com.izforge.izpack.api.data.binding.ActionStage;
+import com.izforge.izpack.api.data.binding.Help;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
+
+/**
+ * Tests the {@link MetadataWriter} and {@link MetadataReader}.
+ */
+public class MetadataWriterTest
+{
+
+    /**
+     * Verifies that every field of an {@link Info} survives the compact encoding.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testInfo() throws Exception
+    {
+        Info info = new Info();
+        info.setAppName("Test");
+        info.setAppVersion("1.0");
+        info.setInstallationSubPath("test");
+        info.addAuthor(new Info.Author("Author", "author@example.com"));
+        info.addAuthor(new Info.Author("Other", null));
+        info.setAppURL("http://example.com");
+        info.setJavaVersion("1.6");
+        info.setJdkRequired(true);
+        info.setInstallerBase("install");
+        info.setWebDirURL("http://example.com/packs");
+        info.setUninstallerName("remove.jar");
+        info.setUninstallerPath("$INSTALL_PATH/remove");
+        info.setUninstallerCondition("uninstall.condition");
+        info.setSummaryLogFilePath("$INSTALL_PATH/summary.htm");
+        info.setPackDecoderClassName("com.example.Decoder");
+        info.setUnpackerClassName("com.example.Unpacker");
+        info.setWriteInstallationInformation(false);
+        info.setPack200Compression(true);
+        info.setSolidJarCompression(true);
+        info.setRequirePrivilegedExecution(true);
+        info.setRequirePrivilegedExecutionUninstaller(true);
+        info.setPrivilegedExecutionConditionID("privileged.condition");
+        info.setRebootAction(Info.REBOOT_ACTION_ASK);
+        info.setRebootActionConditionID("reboot.condition");
+        info.addTempDir(new Info.TempDir("TEMP", "pre", "suf"));
+
+        checkEquals("info", info, roundTrip(info, true));
+        checkEquals("info", new Info(), roundTrip(new Info(), true));
+    }
+
+    /**
+     * Verifies that every field of a {@link Panel} survives the compact encoding.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPanels() throws Exception
+    {
+        Panel panel = new Panel();
+        panel.setClassName("HelloPanel");
+        panel.setOsConstraints(new ArrayList<OsModel>(Arrays.asList(new OsModel("x86", "unix", null, "Linux",
+                                                                                null))));
+        panel.setPanelId("hello");
+        panel.setCondition("hello.condition");
+        panel.addValidator("com.example.Validator", null);
+        panel.addValidator("com.example.Validator", "validator.condition");
+        panel.setActions(new ArrayList<Action>(Arrays.asList(new Action("com.example.Action",
+                                                                         ActionStage.PREACTIVATE))));
+        PanelActionConfiguration action = new PanelActionConfiguration("com.example.PanelAction");
+        action.addProperty("key", "value");
+        panel.addPreConstructionAction(action);
+        panel.addPreActivationAction(action);
+        panel.addPreValidationAction(new PanelActionConfiguration("com.example.PanelAction"));
+        panel.addPostValidationAction(action);
+        panel.setHelps(new ArrayList<Help>(Arrays.asList(new Help("eng", "help.html"))));
+        panel.addConfiguration("key", "value");
+
+        List<Panel> panels = new ArrayList<Panel>(Arrays.asList(panel, new Panel()));
+        List<?> result = (List<?>) roundTrip(panels, true);
+        checkEquals("panels", panels, result);
+        assertEquals("validator.condition", ((Panel) result.get(0)).getValidatorCondition(1));
+        assertNull(((Panel) result.get(0)).getValidatorCondition(0));
+    }
+
+    /**
+     * Verifies {@link GUIPrefs}, properties and string lists survive the compact encoding.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPrefsAndVariables() throws Exception
+    {
+        GUIPrefs prefs = new GUIPrefs();
+        prefs.resizable = true;
+        prefs.width = 800;
+        prefs.height = 600;
+        prefs.lookAndFeelMapping.put("unix", "metal");
+        Map<String, String> params = new TreeMap<String, String>();
+        params.put("theme", "ocean");
+        prefs.lookAndFeelParams.put("metal", params);
+        prefs.modifier.put("useHeadingPanel", "yes");
+        checkEquals("prefs", prefs, roundTrip(prefs, true));
+
+        Properties properties = new Properties();
+        properties.setProperty("APP_NAME", "Test");
+        properties.setProperty("UNICODE", "é中😀");
+        checkEquals("vars", properties, roundTrip(properties, true));
+
+        List<String> langpacks = new ArrayList<String>(Arrays.asList("eng", "fra", "eng"));
+        List<?> result = (List<?>) roundTrip(langpacks, true);
+        assertEquals(langpacks, result);
+        assertSame(result.get(0), result.get(2));
+
+        Map<String, List<String>> map = new HashMap<String, List<String>>();
+        map.put("empty", new ArrayList<String>());
+        map.put("none", null);
+        checkEquals("map", map, roundTrip(map, true));
+        assertNull(roundTrip(null, true));
+    }
+
+    /**
+     * Verifies that objects with no compact encoding are serialized.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSerializedFallback() throws Exception
+    {
+        List<Object> list = new LinkedList<Object>(Arrays.asList("a", 1));
+        assertEquals(list, roundTrip(list, false));
+
+        List<Object> nested = new ArrayList<Object>(Arrays.<Object>asList("a", new Date(0)));
+        assertEquals(nested, roundTrip(nested, false));
+    }
+
+    /**
+     * Verifies that {@link AbstractResources#getObject(String)} reads objects from the metadata, and falls back to
+     * individual resources for objects not in it.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResources() throws Exception
+    {
+        MetadataWriter writer = new MetadataWriter();
+        writer.add("langpacks.info", Arrays.asList("eng"));
+        writer.add("vars", new Properties());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(bytes);
+
+        ClassLoader loader = new ClassLoader(null)
+        {
+            @Override
+            public InputStream getResourceAsStream(String name)
+            {
+                if (name.equals("resources/" + MetadataWriter.RESOURCE_NAME))
+                {
+                    return new ByteArrayInputStream(bytes.toByteArray());
+                }
+                return null;
+            }
+        };
+        ResourceManager resources = new ResourceManager(loader);
+        assertEquals(Arrays.asList("eng"), resources.getObject("langpacks.info"));
+        assertEquals(new Properties(), resources.getObject("vars"));
+        try
+        {
+            resources.getObject("rules");
+            throw new AssertionError("Expected ResourceNotFoundException");
+        }
+        catch (ResourceNotFoundException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Verifies that metadata with an unknown version is rejected.
+     *
+     * @throws Exception expected
+     */
+    @Test(expected = StreamCorruptedException.class)
+    public void testUnsupportedVersion() throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new MetadataWriter().write(bytes);
+        byte[] data = bytes.toByteArray();
+        data[4] = MetadataWriter.VERSION + 1;
+        new MetadataReader(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Writes an object as the only metadata section, and reads it back.
+     *
+     * @param value   the object
+     * @param compact determines if the object is expected to have a compact encoding
+     * @return the decoded object
+     * @throws Exception for any error
+     */
+    private Object roundTrip(Object value, boolean compact) throws Exception
+    {
+        MetadataWriter writer = new MetadataWriter();
+        writer.add("before", "padding");
+        writer.add("value", value);
+        writer.add("after", "padding");
+        assertEquals(compact, writer.isCompact("value"));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(bytes);
+
+        MetadataReader reader = new MetadataReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(reader.contains("value"));
+        assertFalse(reader.contains("missing"));
+        assertEquals("padding", reader.read("after"));
+        return reader.read("value");
+    }
+
+    /**
+     * Compares two objects field by field, as there are no equals() implementations for the metadata types.
+     *
+     * @param path     the path to the objects, for error reporting
+     * @param expected the expected object
+     * @param actual   the actual object
+     * @throws IllegalAccessException if a field cannot be read
+     */
+    private void checkEquals(String path, Object expected, Object actual) throws IllegalAccessException
+    {
+        if (expected == null || actual == null)
+        {
+            assertEquals(path, expected, actual);
+            return;
+        }
+        assertEquals(path, expected.getClass(), actual.getClass());
+        if (expected instanceof String || expected instanceof Number || expected instanceof Boolean
+                || expected instanceof Enum)
+        {
+            assertEquals(path, expected, actual);
+        }
+        else if (expected instanceof Collection)
+        {
+            Collection<?> expectedCollection = (Collection<?>) expected;
+            Collection<?> actualCollection = (Collection<?>) actual;
+            assertEquals(path, expectedCollection.size(), actualCollection.size());
+            Iterator<?> iterator = actualCollection.iterator();
+            int index = 0;
+            for (Object element : expectedCollection)
+            {
+                checkEquals(path + "[" + index++ + "]", element, iterator.next());
+            }
+        }
+        else if (expected instanceof Map)
+        {
+            Map<?, ?> expectedMap = (Map<?, ?>) expected;
+            Map<?, ?> actualMap = (Map<?, ?>) actual;
+            assertEquals(path, expectedMap.keySet(), actualMap.keySet());
+            for (Map.Entry<?, ?> entry : expectedMap.entrySet())
+            {
+                checkEquals(path + "[" + entry.getKey() + "]", entry.getValue(), actualMap.get(entry.getKey()));
+            }
+        }
+        else
+        {
+            for (Class type = expected.getClass(); type != Object.class; type = type.getSuperclass())
+            {
+                for (Field field : type.getDeclaredFields())
+                {
+                    int modifiers = field.getModifiers();
+                    if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers))
+                    {
+                        field.setAccessible(true);
+                        checkEquals(path + "." + field.getName(), field.get(expected), field.get(actual));
+                    }
+                }
+            }
+        }
+    }
+
+}
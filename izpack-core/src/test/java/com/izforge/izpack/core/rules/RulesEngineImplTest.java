@@ -22,6 +22,8 @@ package com.izforge.izpack.core.rules;
 
 import static junit.framework.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -31,6 +33,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -494,6 +497,66 @@ public class RulesEngineImplTest
         assertEquals(true ^ true && true ^ true, condition.isTrue());
     }
 
+    /**
+     * Verifies that expressions are compiled once, and recompiled when a condition is registered.
+     */
+    @Test
+    public void testCompiledExpressions()
+    {
+        engine.compileConditions(Arrays.asList("@true && !false", "true|undefined"));
+
+        Condition condition = engine.getCondition("@true && !false");
+        assertTrue(condition.isTrue());
+        assertSame(condition, engine.getCondition("@true && !false"));
+        assertNull(engine.getCondition("true|undefined"));
+
+        Condition undefined = new JavaCondition();
+        undefined.setId("undefined");
+        engine.addCondition(undefined);
+
+        condition = engine.getCondition("true|undefined");
+        assertTrue(condition.isTrue());
+        assertSame(condition, engine.getCondition("true|undefined"));
+
+        engine.compileConditions(Collections.<String>singletonList(null));
+    }
+
+    /**
+     * Verifies that condition results are reused until a variable they read changes.
+     */
+    @Test
+    public void testMemoizedResults()
+    {
+        DefaultVariables variables = new DefaultVariables();
+        RulesEngine rules = new RulesEngineImpl(new AutomatedInstallData(variables, Platforms.LINUX), null,
+                                                Platforms.LINUX);
+        variables.setRules(rules);
+
+        CountingCondition counting = new CountingCondition("var1");
+        counting.setId("counting");
+        VariableCondition other = new VariableCondition("var2", "b");
+        other.setId("other");
+        Map<String, Condition> conditions = new HashMap<String, Condition>();
+        conditions.put("counting", counting);
+        conditions.put("other", other);
+        rules.readConditionMap(conditions);
+
+        // subclasses aren't memoized
+        assertFalse(rules.isConditionTrue("counting"));
+        assertFalse(rules.isConditionTrue("counting"));
+        assertEquals(2, counting.count);
+
+        variables.set("var2", "b");
+        Condition condition = rules.getCondition("@other && !izpack.windowsinstall");
+        assertTrue(rules.isConditionTrue(condition));
+        variables.set("var1", "unrelated");
+        assertTrue(rules.isConditionTrue(condition));
+        variables.set("var2", "c");
+        assertFalse(rules.isConditionTrue(condition));
+        variables.set("var2", "b");
+        assertTrue(rules.isConditionTrue(condition));
+    }
+
     /**
      * Verifies that conditions read from a <tt>conditions.xml</tt> have the expected type.
      */
@@ -733,6 +796,24 @@ public class RulesEngineImplTest
         return rules;
     }
 
-}
 
+    /**
+     * A variable condition that counts its evaluations.
+     */
+    private static class CountingCondition extends VariableCondition
+    {
+        private int count;
+
+        public CountingCondition(String variable)
+        {
+            super(variable, "a");
+        }
 
+        @Override
+        public boolean isTrue()
+        {
+            ++count;
+            return super.isTrue();
+        }
+    }
+}
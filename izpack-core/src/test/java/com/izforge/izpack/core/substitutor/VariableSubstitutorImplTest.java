@@ -21,7 +21,12 @@ package com.izforge.izpack.core.substitutor;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.Properties;
+import java.util.Set;
 
 import org.hamcrest.core.Is;
 import org.junit.Before;
@@ -89,6 +94,17 @@ public class VariableSubstitutorImplTest
                 Is.is("onetwo"));
     }
 
+    @Test
+    public void shouldCollectUnresolved() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Set<String> unresolved = new LinkedHashSet<String>();
+        variableSubstitutor.substitute(new ByteArrayInputStream("${MY_PROP} $UNDEFINED ${OTHER} $1".getBytes()), out,
+                                       SubstitutionType.TYPE_PLAIN, null, unresolved);
+        assertThat(out.toString(), Is.is("one $UNDEFINED ${OTHER} $1"));
+        assertThat(unresolved, Is.is((Set<String>) new LinkedHashSet<String>(Arrays.asList("UNDEFINED", "OTHER"))));
+    }
+
     @Test
     public void testSystemPropertiesSubstition() throws Exception
     {
@@ -26,8 +26,8 @@ import java.io.FileFilter;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.hamcrest.core.Is;
 import org.junit.Test;
@@ -41,7 +41,7 @@ import com.izforge.izpack.matcher.MergeMatcher;
  */
 public class FileMergeTest
 {
-    private Map<OutputStream, List<String>> mergeContent = new HashMap<OutputStream, List<String>>();
+    private Map<OutputStream, Set<String>> mergeContent = new HashMap<OutputStream, Set<String>>();
 
     @Test
     public void testMergeSingleFile() throws Exception
@@ -20,8 +20,10 @@
 package com.izforge.izpack.merge.jar;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileOutputStream;
@@ -29,10 +31,14 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.hamcrest.core.Is;
 import org.hamcrest.text.StringContains;
@@ -187,7 +193,7 @@ public class JarMergeTest
         // now merge to a mocked JarOutputStream
         URL url = jar.toURI().toURL();
         String jarPath = ResolveUtils.processUrlToJarPath(url);
-        JarMerge merge = new JarMerge(url, jarPath, new HashMap<OutputStream, List<String>>());
+        JarMerge merge = new JarMerge(url, jarPath, new HashMap<OutputStream, Set<String>>());
         JarOutputStream output = Mockito.mock(JarOutputStream.class);
         merge.merge(output);
 
@@ -200,4 +206,54 @@ public class JarMergeTest
         assertEquals("META-INF/ok2", allValues.get(1).getName());
     }
 
+    /**
+     * Verifies that entries that are stored uncompressed in the source jar are copied without being compressed,
+     * and that other entries are compressed.
+     */
+    @Test
+    public void testCopyStoredEntries() throws IOException
+    {
+        byte[] data = new byte[4096];
+        Arrays.fill(data, (byte) 'x');
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        File jar = File.createTempFile("storedtest", ".jar");
+        JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar));
+        ZipEntry stored = new ZipEntry("test/stored");
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(data.length);
+        stored.setCrc(crc.getValue());
+        stream.putNextEntry(stored);
+        stream.write(data);
+        stream.closeEntry();
+        stream.putNextEntry(new ZipEntry("test/deflated"));
+        stream.write(data);
+        stream.closeEntry();
+        stream.close();
+
+        File merged = File.createTempFile("storedtest", ".jar");
+        JarOutputStream output = new JarOutputStream(new FileOutputStream(merged));
+        JarMerge merge = new JarMerge(jar.getPath(), "test", "copy", new HashMap<OutputStream, Set<String>>());
+        merge.merge(output);
+        output.close();
+
+        ZipFile zip = new ZipFile(merged);
+        try
+        {
+            ZipEntry entry = zip.getEntry("copy/stored");
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertEquals(crc.getValue(), entry.getCrc());
+            byte[] copy = new byte[data.length];
+            new DataInputStream(zip.getInputStream(entry)).readFully(copy);
+            assertArrayEquals(data, copy);
+
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("copy/deflated").getMethod());
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
 }
@@ -35,6 +35,7 @@ import com.izforge.izpack.installer.automation.AutomatedInstaller;
 import com.izforge.izpack.installer.console.ConsoleInstaller;
 import com.izforge.izpack.installer.container.impl.ConsoleInstallerContainer;
 import com.izforge.izpack.installer.container.impl.InstallerContainer;
+import com.izforge.izpack.installer.util.StartupTimings;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.StringTool;
 
@@ -68,6 +69,7 @@ public class Installer
         try
         {
             initializeLogging();
+            StartupTimings.begin();
             Installer installer = new Installer();
             installer.start(args);
         }
@@ -239,6 +241,7 @@ public class Installer
         InstallerContainer container = new ConsoleInstallerContainer();
         AutomatedInstaller automatedInstaller = container.getComponent(AutomatedInstaller.class);
         automatedInstaller.init(path, mediaDir, args);
+        StartupTimings.started("automated installer ready");
         automatedInstaller.doInstall();
     }
 
@@ -259,6 +262,7 @@ public class Installer
         }
         ConsoleInstaller consoleInstaller = container.getComponent(ConsoleInstaller.class);
         consoleInstaller.setMediaPath(mediaDir);
+        StartupTimings.started("console installer ready");
         consoleInstaller.run(consoleAction, path, args);
     }
 
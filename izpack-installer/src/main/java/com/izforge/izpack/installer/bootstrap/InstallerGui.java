@@ -29,6 +29,7 @@ import com.izforge.izpack.installer.container.impl.InstallerContainer;
 import com.izforge.izpack.installer.gui.InstallerController;
 import com.izforge.izpack.installer.gui.SplashScreen;
 import com.izforge.izpack.installer.language.LanguageDialog;
+import com.izforge.izpack.installer.util.StartupTimings;
 
 import javax.swing.*;
 
@@ -60,8 +61,13 @@ public class InstallerGui
 
                     InstallerController controller = installerContainer.getComponent(InstallerController.class);
                     splashScreen.removeSplashScreen();
+                    long start = StartupTimings.start();
                     installerContainer.getComponent(LanguageDialog.class).initLangPack();
-                    controller.buildInstallation().launchInstallation();
+                    StartupTimings.end("language selection", start);
+                    start = StartupTimings.start();
+                    controller.buildInstallation();
+                    StartupTimings.end("panel creation", start);
+                    controller.launchInstallation();
                 }
                 catch (Exception e)
                 {
@@ -37,6 +37,7 @@ import com.izforge.izpack.installer.requirement.LockFileChecker;
 import com.izforge.izpack.installer.requirement.RequirementsChecker;
 import com.izforge.izpack.installer.unpacker.FileQueueFactory;
 import com.izforge.izpack.installer.unpacker.IUnpacker;
+import com.izforge.izpack.installer.util.StartupTimings;
 import com.izforge.izpack.merge.MergeManagerImpl;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.merge.resolve.PathResolver;
@@ -75,8 +76,12 @@ public abstract class InstallerContainer extends AbstractContainer
     @Override
     protected void fillContainer(MutablePicoContainer container)
     {
+        long start = StartupTimings.start();
         registerComponents(container);
+        StartupTimings.end("container registration", start);
+        start = StartupTimings.start();
         resolveComponents(container);
+        StartupTimings.end("container resolution", start);
     }
 
     /**
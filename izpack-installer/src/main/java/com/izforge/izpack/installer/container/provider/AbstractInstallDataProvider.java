@@ -7,6 +7,7 @@ import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Locales;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.installer.util.StartupTimings;
 import com.izforge.izpack.util.*;
 import org.picocontainer.injectors.Provider;
 
@@ -55,6 +56,8 @@ public abstract class AbstractInstallDataProvider implements Provider
                                    PlatformModelMatcher matcher, Housekeeper housekeeper)
             throws IOException, ClassNotFoundException
     {
+        long start = StartupTimings.start();
+
         // We load the Info data
         Info info = (Info) resources.getObject("info");
 
@@ -108,8 +111,11 @@ public abstract class AbstractInstallDataProvider implements Provider
             }
         }
         objIn.close();
+        StartupTimings.end("info, panels and packs deserialization", start);
 
+        start = StartupTimings.start();
         setStandardVariables(installData, dir);
+        StartupTimings.end("standard variables", start);
 
         // We load the user variables
         Properties properties = (Properties) resources.getObject("vars");
@@ -322,6 +328,7 @@ public abstract class AbstractInstallDataProvider implements Provider
     @SuppressWarnings("unchecked")
     protected void loadDynamicVariables(Variables variables, InstallData installData, Resources resources)
     {
+        long start = StartupTimings.start();
         try
         {
             Map<String, List<DynamicVariable>> map
@@ -341,6 +348,7 @@ public abstract class AbstractInstallDataProvider implements Provider
         {
             logger.log(Level.WARNING, "Cannot find optional dynamic variables", e);
         }
+        StartupTimings.end("dynamic variables deserialization", start);
     }
 
     /**
@@ -352,6 +360,7 @@ public abstract class AbstractInstallDataProvider implements Provider
     @SuppressWarnings("unchecked")
     protected void loadDynamicConditions(AutomatedInstallData installData, Resources resources)
     {
+        long start = StartupTimings.start();
         try
         {
             List<DynamicInstallerRequirementValidator> conditions
@@ -362,6 +371,7 @@ public abstract class AbstractInstallDataProvider implements Provider
         {
             logger.log(Level.WARNING, "Cannot find optional dynamic conditions", e);
         }
+        StartupTimings.end("dynamic conditions deserialization", start);
     }
 
     /**
@@ -22,6 +22,7 @@ import com.izforge.izpack.core.data.DefaultVariables;
 import com.izforge.izpack.gui.ButtonFactory;
 import com.izforge.izpack.gui.LabelFactory;
 import com.izforge.izpack.installer.data.GUIInstallData;
+import com.izforge.izpack.installer.util.StartupTimings;
 import com.izforge.izpack.util.Housekeeper;
 import com.izforge.izpack.util.OsVersion;
 import com.izforge.izpack.util.PlatformModelMatcher;
@@ -91,7 +92,9 @@ public class GUIInstallDataProvider extends AbstractInstallDataProvider
         loadDefaultLocale(guiInstallData, locales);
         // Load custom langpack if exist.
         AbstractInstallDataProvider.addCustomLangpack(guiInstallData, locales);
+        long start = StartupTimings.start();
         loadLookAndFeel(guiInstallData);
+        StartupTimings.end("look and feel", start);
         if (UIManager.getColor("Button.background") != null)
         {
             guiInstallData.buttonsHColor = UIManager.getColor("Button.background");
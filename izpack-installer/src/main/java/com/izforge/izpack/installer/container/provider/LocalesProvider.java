@@ -26,6 +26,7 @@ import org.picocontainer.injectors.Provider;
 import com.izforge.izpack.api.resource.Locales;
 import com.izforge.izpack.core.resource.DefaultLocales;
 import com.izforge.izpack.core.resource.ResourceManager;
+import com.izforge.izpack.installer.util.StartupTimings;
 
 /**
  * Provider of {@link Locales}.
@@ -37,8 +38,10 @@ public class LocalesProvider implements Provider
 
     public Locales provide(ResourceManager resources)
     {
+        long start = StartupTimings.start();
         Locales locales = new DefaultLocales(resources);
         resources.setLocales(locales);
+        StartupTimings.end("langpack load", start);
         return locales;
     }
 }
@@ -22,7 +22,9 @@
 package com.izforge.izpack.installer.container.provider;
 
 import java.io.InputStream;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,6 +33,8 @@ import org.picocontainer.injectors.Provider;
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLParser;
 import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.Panel;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
@@ -39,6 +43,7 @@ import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.core.data.DefaultVariables;
 import com.izforge.izpack.core.rules.ConditionContainer;
 import com.izforge.izpack.core.rules.RulesEngineImpl;
+import com.izforge.izpack.installer.util.StartupTimings;
 
 /**
  * Injection provider for rules.
@@ -67,6 +72,7 @@ public class RulesProvider implements Provider
     public RulesEngine provide(AutomatedInstallData installData, DefaultVariables variables,
                                ConditionContainer conditionContainer, Resources resources)
     {
+        long start = StartupTimings.start();
         RulesEngine result = new RulesEngineImpl(installData, conditionContainer, installData.getPlatform());
         Map<String, Condition> conditions = readConditions(resources);
         if (conditions != null && !conditions.isEmpty())
@@ -81,11 +87,55 @@ public class RulesProvider implements Provider
                 result.analyzeXml(xml);
             }
         }
+        result.compileConditions(getConditionReferences(installData));
         installData.setRules(result);
         variables.setRules(result);
+        StartupTimings.end("rules", start);
         return result;
     }
 
+    /**
+     * Returns the conditions referred to by packs and panels.
+     * <p/>
+     * Conditions on pack files aren't known until the packs are read, so are compiled on first use.
+     *
+     * @param installData the installation data
+     * @return the condition identifiers and expressions
+     */
+    private Set<String> getConditionReferences(AutomatedInstallData installData)
+    {
+        Set<String> result = new LinkedHashSet<String>();
+        if (installData.getAllPacks() != null)
+        {
+            for (Pack pack : installData.getAllPacks())
+            {
+                addConditionReference(pack.getCondition(), result);
+            }
+        }
+        if (installData.getPanelsOrder() != null)
+        {
+            for (Panel panel : installData.getPanelsOrder())
+            {
+                addConditionReference(panel.getCondition(), result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a condition reference, if one is specified.
+     *
+     * @param condition  the condition identifier or expression. May be <tt>null</tt>
+     * @param references the references to add to
+     */
+    private void addConditionReference(String condition, Set<String> references)
+    {
+        if (condition != null && !condition.isEmpty())
+        {
+            references.add(condition);
+        }
+    }
+
     /**
      * Reads conditions using the resources.
      * <p/>
@@ -0,0 +1,240 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * A {@link ProgressListener} that limits the rate at which sub-step progress is passed to another listener.
+ * <p/>
+ * Calls to {@link #progress(int, String)} replace any update that hasn't yet been passed on; the latest update is
+ * passed on at most once per interval. This prevents listeners that update a user interface from being flooded when
+ * a pack contains many small files.
+ * <p/>
+ * All other notifications are passed on immediately, after any pending update, so that the listener always sees
+ * the final progress of a step.
+ */
+public class CoalescingProgressListener implements ProgressListener
+{
+
+    /**
+     * The default minimum interval between updates, in milliseconds.
+     */
+    public static final long DEFAULT_INTERVAL = 50;
+
+    /**
+     * The listener to pass notifications to.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The minimum interval between updates, in nanoseconds.
+     */
+    private final long interval;
+
+    /**
+     * The update that hasn't yet been passed on, or {@code null} if there is none.
+     */
+    private final AtomicReference<Update> pending = new AtomicReference<Update>();
+
+    /**
+     * The time when an update was last passed on, in nanoseconds.
+     */
+    private final AtomicLong lastUpdate;
+
+
+    /**
+     * Constructs a <tt>CoalescingProgressListener</tt> with the {@link #DEFAULT_INTERVAL default} interval.
+     *
+     * @param listener the listener to pass notifications to
+     */
+    public CoalescingProgressListener(ProgressListener listener)
+    {
+        this(listener, DEFAULT_INTERVAL);
+    }
+
+    /**
+     * Constructs a <tt>CoalescingProgressListener</tt>.
+     *
+     * @param listener the listener to pass notifications to
+     * @param interval the minimum interval between updates, in milliseconds
+     */
+    public CoalescingProgressListener(ProgressListener listener, long interval)
+    {
+        this.listener = listener;
+        this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+        lastUpdate = new AtomicLong(System.nanoTime() - this.interval);
+    }
+
+    /**
+     * Returns the listener that notifications are passed to.
+     *
+     * @return the listener
+     */
+    public ProgressListener getListener()
+    {
+        return listener;
+    }
+
+    /**
+     * Invoked when an action starts.
+     *
+     * @param name  the name of the action
+     * @param steps the number of steps the action consists of
+     */
+    @Override
+    public void startAction(String name, int steps)
+    {
+        flush();
+        listener.startAction(name, steps);
+    }
+
+    /**
+     * Invoked when an action finishes.
+     */
+    @Override
+    public void stopAction()
+    {
+        flush();
+        listener.stopAction();
+    }
+
+    /**
+     * Invoked when an action step starts.
+     *
+     * @param stepName the name of the step
+     * @param step     the step number
+     * @param subSteps the number of sub-steps the step consists of
+     */
+    @Override
+    public void nextStep(String stepName, int step, int subSteps)
+    {
+        flush();
+        listener.nextStep(stepName, step, subSteps);
+    }
+
+    /**
+     * Sets the number of sub-steps.
+     *
+     * @param subSteps the number of sub-steps
+     */
+    @Override
+    public void setSubStepNo(int subSteps)
+    {
+        flush();
+        listener.setSubStepNo(subSteps);
+    }
+
+    /**
+     * Invoked to notify progress.
+     * <p/>
+     * As the listener increments the current step, this is never coalesced.
+     *
+     * @param message a message describing the step
+     */
+    @Override
+    public void progress(String message)
+    {
+        flush();
+        listener.progress(message);
+    }
+
+    /**
+     * Invoked to notify progress.
+     * <p/>
+     * The update replaces any pending update, and is passed on if the interval since the last update has elapsed.
+     *
+     * @param subStep the sub-step which will be performed next
+     * @param message an additional message describing the sub-step
+     */
+    @Override
+    public void progress(int subStep, String message)
+    {
+        pending.set(new Update(subStep, message));
+        long now = System.nanoTime();
+        long last = lastUpdate.get();
+        if (now - last >= interval && lastUpdate.compareAndSet(last, now))
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Invoked when an action restarts.
+     *
+     * @param name           the name of the action
+     * @param overallMessage a message describing the overall progress
+     * @param tip            a tip describing the current progress
+     * @param steps          the number of steps the action consists of
+     */
+    @Override
+    public void restartAction(String name, String overallMessage, String tip, int steps)
+    {
+        flush();
+        listener.restartAction(name, overallMessage, tip, steps);
+    }
+
+    /**
+     * Passes on the pending update, if any.
+     */
+    public void flush()
+    {
+        Update update = pending.getAndSet(null);
+        if (update != null)
+        {
+            listener.progress(update.subStep, update.message);
+        }
+    }
+
+    /**
+     * A sub-step progress update.
+     */
+    private static class Update
+    {
+
+        /**
+         * The sub-step.
+         */
+        private final int subStep;
+
+        /**
+         * The message.
+         */
+        private final String message;
+
+        /**
+         * Constructs an <tt>Update</tt>.
+         *
+         * @param subStep the sub-step
+         * @param message the message
+         */
+        public Update(int subStep, String message)
+        {
+            this.subStep = subStep;
+            this.message = message;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import javax.swing.SwingUtilities;
 
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.installer.base.InstallDataConfiguratorWithRules;
+import com.izforge.izpack.installer.util.StartupTimings;
 
 /**
  * Installer frame controller
@@ -48,6 +49,7 @@ public class InstallerController
             {
                 installerFrame.setVisible(true);
                 installerFrame.navigateNext();
+                StartupTimings.started("first panel shown");
             }
         });
     }
@@ -83,6 +83,7 @@ import com.izforge.izpack.installer.data.GUIInstallData;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.data.UninstallDataWriter;
 import com.izforge.izpack.installer.debugger.Debugger;
+import com.izforge.izpack.installer.event.CoalescingProgressListener;
 import com.izforge.izpack.installer.unpacker.IUnpacker;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.Housekeeper;
@@ -715,12 +716,15 @@ public class InstallerFrame extends JFrame implements InstallerBase, InstallerVi
 
     /**
      * Launches the installation.
+     * <p/>
+     * Progress updates are coalesced before being passed to the listener, so that the event dispatch thread isn't
+     * flooded when installing many small files.
      *
      * @param listener The installation listener.
      */
     public void install(ProgressListener listener)
     {
-        unpacker.setProgressListener(listener);
+        unpacker.setProgressListener(new CoalescingProgressListener(listener));
         Thread unpackerthread = new Thread(unpacker, "IzPack - Unpacker thread");
         unpackerthread.start();
     }
@@ -24,8 +24,11 @@ package com.izforge.izpack.installer.unpacker;
 import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
 
 import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
@@ -49,6 +52,12 @@ public abstract class AbstractPackResources implements PackResources
      */
     private final InstallData installData;
 
+    /**
+     * The decoder class names of packs compressed in their own format, keyed on pack name.
+     * Lazily constructed on first access.
+     */
+    private Map<String, String> packDecoders;
+
     /**
      * Constructs an {@code AbstractPackResources}.
      *
@@ -84,7 +93,7 @@ public abstract class AbstractPackResources implements PackResources
         {
             result = getWebPackStream(name, webDirURL);
         }
-        String className = installData.getInfo().getPackDecoderClassName();
+        String className = getPackDecoderClassName(name);
         if (className != null)
         {
             result = getDecodingInputStream(result, className);
@@ -108,6 +117,45 @@ public abstract class AbstractPackResources implements PackResources
         return resources.getInputStream(name);
     }
 
+    /**
+     * Returns the name of the class used to decode a pack.
+     * <p/>
+     * Packs compressed in their own format specify their own decoder, if any. Other packs use the installer decoder.
+     *
+     * @param name the pack name
+     * @return the decoding input stream class name, or {@code null} if the pack isn't encoded
+     */
+    protected String getPackDecoderClassName(String name)
+    {
+        Map<String, String> decoders = getPackDecoders();
+        if (decoders.containsKey(name))
+        {
+            return decoders.get(name);
+        }
+        return installData.getInfo().getPackDecoderClassName();
+    }
+
+    /**
+     * Returns the decoder class names of packs compressed in their own format.
+     *
+     * @return the decoder class names, keyed on pack name. A {@code null} value indicates the pack isn't encoded
+     */
+    private synchronized Map<String, String> getPackDecoders()
+    {
+        if (packDecoders == null)
+        {
+            packDecoders = new HashMap<String, String>();
+            for (Pack pack : installData.getAllPacks())
+            {
+                if (pack.getCompression() != null && !packDecoders.containsKey(pack.getName()))
+                {
+                    packDecoders.put(pack.getName(), pack.getPackDecoderClassName());
+                }
+            }
+        }
+        return packDecoders;
+    }
+
     /**
      * Returns a stream that decodes the supplied stream.
      *
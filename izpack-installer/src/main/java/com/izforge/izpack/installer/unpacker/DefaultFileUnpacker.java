@@ -23,6 +23,7 @@ package com.izforge.izpack.installer.unpacker;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 
 import com.izforge.izpack.api.data.PackFile;
@@ -64,4 +65,17 @@ public class DefaultFileUnpacker extends FileUnpacker
     {
         copy(file, packInputStream, target);
     }
+
+    /**
+     * Unpacks a pack file from a stream containing just its content.
+     *
+     * @param file   the pack file meta-data
+     * @param in     the pack file content
+     * @param target the target
+     * @throws IOException for any I/O error
+     */
+    public void unpack(PackFile file, InputStream in, File target) throws IOException
+    {
+        copy(file, in, target);
+    }
 }
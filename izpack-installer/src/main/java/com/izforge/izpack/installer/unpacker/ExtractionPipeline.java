@@ -0,0 +1,321 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.exception.ResourceInterruptedException;
+import com.izforge.izpack.installer.event.InstallerListeners;
+
+
+/**
+ * Decouples decoding of a pack stream from writing its files to disk.
+ * <p/>
+ * The thread reading the pack stream decodes each file into an in-memory buffer, and hands it to a pool of writer
+ * threads. The total size of buffered files is bounded; when the bound would be exceeded, the reading thread waits
+ * for the oldest outstanding files to be written.
+ * <p/>
+ * Completed files are reported to the {@link InstallerListeners#afterFile} in the order they were submitted, on the
+ * thread reading the pack stream.
+ */
+public class ExtractionPipeline
+{
+
+    /**
+     * The writer threads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The maximum no. of bytes to buffer.
+     */
+    private final long maxBuffered;
+
+    /**
+     * The listeners to notify when files have been written.
+     */
+    private final InstallerListeners listeners;
+
+    /**
+     * The extractions that haven't been completed, in submission order.
+     */
+    private final LinkedList<Extraction> pending = new LinkedList<Extraction>();
+
+    /**
+     * The targets of the pending extractions.
+     */
+    private final Set<File> targets = new HashSet<File>();
+
+    /**
+     * The no. of bytes currently buffered.
+     */
+    private long buffered;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ExtractionPipeline.class.getName());
+
+
+    /**
+     * Constructs an <tt>ExtractionPipeline</tt>.
+     *
+     * @param threads     the no. of writer threads
+     * @param maxBuffered the maximum no. of bytes to buffer
+     * @param listeners   the listeners to notify when files have been written
+     */
+    public ExtractionPipeline(int threads, long maxBuffered, InstallerListeners listeners)
+    {
+        executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        this.maxBuffered = maxBuffered;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Determines if a pack file can be extracted via the pipeline.
+     *
+     * @param file the pack file
+     * @return <tt>true</tt> if the file can be buffered, otherwise <tt>false</tt>
+     */
+    public boolean canExtract(PackFile file)
+    {
+        return file.length() <= maxBuffered;
+    }
+
+    /**
+     * Determines if a file is waiting to be written.
+     *
+     * @param target the target file
+     * @return <tt>true</tt> if the file is waiting to be written
+     */
+    public boolean isPending(File target)
+    {
+        return targets.contains(target);
+    }
+
+    /**
+     * Reads a pack file from the pack stream, and queues it for writing.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream
+     * @param target          the target
+     * @param pack            the pack that the pack file comes from
+     * @param unpacker        the unpacker to write the file with
+     * @throws IOException                  for any I/O error
+     * @throws ResourceInterruptedException if the pipeline is interrupted
+     * @throws InstallerException           for any installer error
+     */
+    public void extract(PackFile file, ObjectInputStream packInputStream, File target, Pack pack,
+                        DefaultFileUnpacker unpacker) throws IOException
+    {
+        long length = file.length();
+        while (!pending.isEmpty() && buffered + length > maxBuffered)
+        {
+            complete(pending.removeFirst());
+        }
+        byte[] data = new byte[(int) length];
+        packInputStream.readFully(data);
+
+        Extraction extraction = new Extraction(file, data, target, pack, unpacker);
+        extraction.future = executor.submit(extraction);
+        pending.add(extraction);
+        targets.add(target);
+        buffered += length;
+    }
+
+    /**
+     * Waits for all pending files to be written.
+     *
+     * @throws IOException                  for any I/O error
+     * @throws ResourceInterruptedException if the pipeline is interrupted
+     * @throws InstallerException           for any installer error
+     */
+    public void drain() throws IOException
+    {
+        while (!pending.isEmpty())
+        {
+            complete(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Shuts down the pipeline.
+     * <p/>
+     * Any pending files that haven't been written are discarded.
+     */
+    public void close()
+    {
+        for (Extraction extraction : pending)
+        {
+            extraction.future.cancel(true);
+        }
+        pending.clear();
+        targets.clear();
+        executor.shutdownNow();
+        try
+        {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            {
+                logger.warning("Timed out waiting for file writers to terminate");
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for an extraction to complete, and notifies listeners.
+     *
+     * @param extraction the extraction
+     * @throws IOException                  for any I/O error
+     * @throws ResourceInterruptedException if the pipeline is interrupted
+     * @throws InstallerException           for any installer error
+     */
+    private void complete(Extraction extraction) throws IOException
+    {
+        try
+        {
+            extraction.future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new ResourceInterruptedException("Interrupted writing: " + extraction.target, exception);
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new InstallerException("Failed to write: " + extraction.target, cause);
+        }
+        buffered -= extraction.file.length();
+        targets.remove(extraction.target);
+        if (!extraction.unpacker.isQueued())
+        {
+            listeners.afterFile(extraction.target, extraction.file, extraction.pack);
+        }
+    }
+
+    /**
+     * Writes a buffered pack file to its target.
+     */
+    private static class Extraction implements Callable<Void>
+    {
+
+        /**
+         * The pack file meta-data.
+         */
+        private final PackFile file;
+
+        /**
+         * The pack file content. Released once written.
+         */
+        private byte[] data;
+
+        /**
+         * The target.
+         */
+        private final File target;
+
+        /**
+         * The pack that the pack file comes from.
+         */
+        private final Pack pack;
+
+        /**
+         * The unpacker.
+         */
+        private final DefaultFileUnpacker unpacker;
+
+        /**
+         * The result of the write.
+         */
+        private Future<Void> future;
+
+        /**
+         * Constructs an <tt>Extraction</tt>.
+         *
+         * @param file     the pack file meta-data
+         * @param data     the pack file content
+         * @param target   the target
+         * @param pack     the pack that the pack file comes from
+         * @param unpacker the unpacker
+         */
+        public Extraction(PackFile file, byte[] data, File target, Pack pack, DefaultFileUnpacker unpacker)
+        {
+            this.file = file;
+            this.data = data;
+            this.target = target;
+            this.pack = pack;
+            this.unpacker = unpacker;
+        }
+
+        /**
+         * Writes the file.
+         *
+         * @return <tt>null</tt>
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public Void call() throws IOException
+        {
+            try
+            {
+                unpacker.unpack(file, new ByteArrayInputStream(data), target);
+            }
+            finally
+            {
+                data = null;
+            }
+            return null;
+        }
+    }
+
+}
@@ -33,6 +33,8 @@ import java.util.logging.Logger;
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.util.OsVersion;
+import com.izforge.izpack.util.file.FilePermissions;
 import com.izforge.izpack.util.file.FileUtils;
 import com.izforge.izpack.util.os.FileQueue;
 import com.izforge.izpack.util.os.FileQueueMove;
@@ -73,6 +75,11 @@ public abstract class FileUnpacker
      */
     private boolean queued;
 
+    /**
+     * The progress to update as the file is copied. May be {@code null}.
+     */
+    private PackProgress progress;
+
     /**
      * The logger.
      */
@@ -113,6 +120,38 @@ public abstract class FileUnpacker
         return queued;
     }
 
+    /**
+     * Sets the progress to update as files are copied.
+     *
+     * @param progress the progress. May be {@code null}
+     */
+    void setProgress(PackProgress progress)
+    {
+        this.progress = progress;
+    }
+
+    /**
+     * Returns the progress to update as files are copied.
+     *
+     * @return the progress. May be {@code null}
+     */
+    protected PackProgress getProgress()
+    {
+        return progress;
+    }
+
+    /**
+     * Returns the file actually written to by {@link #getTarget(PackFile, File)}.
+     * <p/>
+     * This is a temporary file if the target is blockable.
+     *
+     * @return the file written to. May be {@code null} if no file has been written
+     */
+    protected File getOutputFile()
+    {
+        return (tmpTarget != null) ? tmpTarget : target;
+    }
+
     /**
      * Copies an input stream to a target, setting its timestamp to that of the pack file.
      * <p/>
@@ -139,6 +178,10 @@ public abstract class FileUnpacker
                     throw new InterruptedIOException("Copy operation cancelled");
                 }
                 bytesCopied = copy(file, buffer, in, out, bytesCopied);
+                if (progress != null)
+                {
+                    progress.copied(bytesCopied);
+                }
             }
         }
         finally
@@ -149,13 +192,15 @@ public abstract class FileUnpacker
     }
 
     /**
-     * Invoked after copying is complete to set the last modified timestamp, and queue blockable files.
+     * Invoked after copying is complete to set the permissions and last modified timestamp, and queue blockable
+     * files.
      *
      * @param file the pack file meta-data
      * @throws IOException for any I/O error
      */
     protected void postCopy(PackFile file) throws IOException
     {
+        setPermissions(file);
         setLastModified(file);
 
         if (isBlockable(file))
@@ -250,6 +295,27 @@ public abstract class FileUnpacker
         }
     }
 
+    /**
+     * Grants execute permission on a file, if the source was executable when the installer was compiled.
+     * <p/>
+     * Only the execute bits are added to the permissions the file was created with, so these still reflect the
+     * umask of the installing user.
+     *
+     * @param file the pack file meta-data
+     */
+    protected void setPermissions(PackFile file)
+    {
+        int execute = file.getMode() & FilePermissions.EXECUTE;
+        if (execute != 0)
+        {
+            File f = (tmpTarget != null) ? tmpTarget : target;
+            if (!FilePermissions.addExecute(f, execute) && OsVersion.IS_UNIX)
+            {
+                logger.warning("Failed to set permissions for: " + target);
+            }
+        }
+    }
+
     /**
      * Determines if a pack file is blockable.
      * <p/>
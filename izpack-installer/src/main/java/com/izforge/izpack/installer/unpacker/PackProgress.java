@@ -0,0 +1,171 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * Reports the progress of unpacking a pack to a {@link ProgressListener}.
+ * <p/>
+ * Where the size of the pack is known, the sub-steps of the listener represent bytes, so that large files advance
+ * the progress as they are copied, and small files advance it in proportion to their size. The byte counts are
+ * scaled down if required to fit an <tt>int</tt>.<br/>
+ * Where the size isn't known, there is one sub-step per file.
+ */
+class PackProgress
+{
+
+    /**
+     * The maximum no. of intermediate updates to report while copying the files of a pack.
+     */
+    private static final int UPDATES = 1000;
+
+    /**
+     * The listener to notify.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The no. of sub-steps.
+     */
+    private final int steps;
+
+    /**
+     * The no. of bits to shift byte counts right by to get the sub-step, or <tt>-1</tt> if there is one sub-step
+     * per file.
+     */
+    private final int shift;
+
+    /**
+     * The minimum no. of bytes to copy between intermediate updates.
+     */
+    private final long delta;
+
+    /**
+     * The no. of bytes in files that have been processed.
+     */
+    private long processed;
+
+    /**
+     * The no. of bytes processed when the listener was last notified.
+     */
+    private long reported;
+
+    /**
+     * The message describing the current file.
+     */
+    private String message;
+
+
+    /**
+     * Constructs a <tt>PackProgress</tt>.
+     *
+     * @param listener  the listener to notify
+     * @param pack      the pack
+     * @param fileCount the no. of files in the pack
+     */
+    public PackProgress(ProgressListener listener, Pack pack, int fileCount)
+    {
+        this.listener = listener;
+        long size = pack.getFileSize();
+        if (size > 0)
+        {
+            int bits = 0;
+            while ((size >> bits) > Integer.MAX_VALUE)
+            {
+                ++bits;
+            }
+            shift = bits;
+            steps = (int) (size >> bits);
+            delta = Math.max(1, size / UPDATES);
+        }
+        else
+        {
+            shift = -1;
+            steps = fileCount;
+            delta = 0;
+        }
+    }
+
+    /**
+     * Returns the no. of sub-steps to pass to {@link ProgressListener#nextStep}.
+     *
+     * @return the no. of sub-steps
+     */
+    public int getSteps()
+    {
+        return steps;
+    }
+
+    /**
+     * Invoked when a file is about to be unpacked.
+     *
+     * @param fileNo  the file number
+     * @param message a message describing the file
+     */
+    public void start(int fileNo, String message)
+    {
+        this.message = message;
+        reported = processed;
+        listener.progress(shift < 0 ? fileNo : scale(processed), message);
+    }
+
+    /**
+     * Invoked as the current file is copied.
+     * <p/>
+     * The listener is only notified if a significant no. of bytes have been copied since it was last notified.
+     *
+     * @param bytes the no. of bytes of the current file copied so far
+     */
+    public void copied(long bytes)
+    {
+        long current = processed + bytes;
+        if (shift >= 0 && current - reported >= delta)
+        {
+            reported = current;
+            listener.progress(scale(current), message);
+        }
+    }
+
+    /**
+     * Invoked when a file has been unpacked or skipped.
+     *
+     * @param file the pack file
+     */
+    public void processed(PackFile file)
+    {
+        processed += file.length();
+    }
+
+    /**
+     * Converts a byte count to a sub-step.
+     *
+     * @param bytes the byte count
+     * @return the corresponding sub-step
+     */
+    private int scale(long bytes)
+    {
+        return (int) Math.min(bytes >> shift, steps);
+    }
+}
@@ -0,0 +1,399 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.util.file.FileUtils;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * A file unpacker that substitutes variables in a {@link ParsableFile parsable file} as it is unpacked.
+ * <p/>
+ * This writes the parsed file once, rather than writing it and then parsing it after the pack is unpacked. The
+ * content is streamed from the pack to the target, so files of any size may be parsed.
+ * <p/>
+ * If any variable referenced by the file is not yet defined, the reference is left as is, and
+ * {@link #isResolved()} returns <tt>false</tt>. As the variable may be set by a later pack, a temporary copy of the
+ * original content is retained in a {@link Deferred}, which re-parses it once all packs are unpacked, if any of the
+ * variables have since been defined. References to variables that are never defined, such as shell variables in
+ * scripts, therefore don't cause the file to be written again.
+ */
+class ParsableFileUnpacker extends FileUnpacker
+{
+
+    /**
+     * Determines if unpacking should be cancelled.
+     */
+    private final Cancellable cancellable;
+
+    /**
+     * The parsable file meta-data.
+     */
+    private final ParsableFile parsable;
+
+    /**
+     * The variable substitutor.
+     */
+    private final VariableSubstitutor substitutor;
+
+    /**
+     * The deferred parse, if the file referred to variables that weren't defined when it was unpacked.
+     */
+    private Deferred deferred;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ParsableFileUnpacker.class.getName());
+
+    /**
+     * Constructs a <tt>ParsableFileUnpacker</tt>.
+     *
+     * @param cancellable determines if unpacking should be cancelled
+     * @param queue       the file queue. May be {@code null}
+     * @param parsable    the parsable file meta-data
+     * @param substitutor the variable substitutor
+     */
+    public ParsableFileUnpacker(Cancellable cancellable, FileQueue queue, ParsableFile parsable,
+                                VariableSubstitutor substitutor)
+    {
+        super(cancellable, queue);
+        this.cancellable = cancellable;
+        this.parsable = parsable;
+        this.substitutor = substitutor;
+    }
+
+    /**
+     * Unpacks a pack file, substituting variables as it is written.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream
+     * @param target          the target
+     * @throws IOException        for any I/O error
+     * @throws InstallerException if the file cannot be parsed
+     */
+    @Override
+    public void unpack(PackFile file, ObjectInputStream packInputStream, File target)
+            throws IOException, InstallerException
+    {
+        deferred = null;
+
+        // the original content is copied in case it must be parsed again
+        File copy = FileUtils.createTempFile("izpp", null);
+        OutputStream copyOut = null;
+        OutputStream out = null;
+        Set<String> unresolved = new LinkedHashSet<String>();
+        try
+        {
+            copyOut = new BufferedOutputStream(new FileOutputStream(copy), 5120);
+            out = new BufferedOutputStream(getTarget(file, target), 5120);
+            ContentInputStream in = new ContentInputStream(packInputStream, file.length(), copyOut);
+            substitutor.substitute(in, out, parsable.getType(), parsable.getEncoding(), unresolved);
+
+            // leave the pack stream positioned after the file content
+            in.skip(file.length());
+            copyOut.close();
+            if (!unresolved.isEmpty())
+            {
+                deferred = new Deferred(parsable, getOutputFile(), file.lastModified(), copy, unresolved);
+            }
+        }
+        catch (Exception exception)
+        {
+            throw new InstallerException("Failed to parse: " + target, exception);
+        }
+        finally
+        {
+            FileUtils.close(copyOut);
+            FileUtils.close(out);
+            if (deferred == null && !copy.delete())
+            {
+                copy.deleteOnExit();
+            }
+        }
+
+        postCopy(file);
+    }
+
+    /**
+     * Determines if all variable references in the file were resolved.
+     *
+     * @return <tt>true</tt> if all references were resolved, <tt>false</tt> if the file must be parsed again
+     */
+    public boolean isResolved()
+    {
+        return deferred == null;
+    }
+
+    /**
+     * Returns the deferred parse of the file.
+     *
+     * @return the deferred parse, or {@code null} if all references were resolved
+     */
+    public Deferred getDeferred()
+    {
+        return deferred;
+    }
+
+    /**
+     * A parse of a file that has been deferred until all packs are unpacked.
+     * <p/>
+     * The original content is held in a temporary file, which must be removed using {@link #delete()}.
+     */
+    public static class Deferred
+    {
+
+        /**
+         * The parsable file meta-data.
+         */
+        private final ParsableFile parsable;
+
+        /**
+         * The file to write to.
+         */
+        private final File target;
+
+        /**
+         * The last-modified timestamp to apply, or <tt>-1</tt> if none was recorded.
+         */
+        private final long lastModified;
+
+        /**
+         * The temporary file holding the original file content.
+         */
+        private final File content;
+
+        /**
+         * The names of the variables that were undefined when the file was unpacked.
+         */
+        private final Set<String> unresolved;
+
+        /**
+         * Constructs a <tt>Deferred</tt>.
+         *
+         * @param parsable     the parsable file meta-data
+         * @param target       the file to write to
+         * @param lastModified the last-modified timestamp to apply, or <tt>-1</tt> if none was recorded
+         * @param content      the temporary file holding the original file content
+         * @param unresolved   the names of the variables that were undefined when the file was unpacked
+         */
+        public Deferred(ParsableFile parsable, File target, long lastModified, File content,
+                        Set<String> unresolved)
+        {
+            this.parsable = parsable;
+            this.target = target;
+            this.lastModified = lastModified;
+            this.content = content;
+            this.unresolved = unresolved;
+        }
+
+        /**
+         * Returns the parsable file meta-data.
+         *
+         * @return the parsable file meta-data
+         */
+        public ParsableFile getParsable()
+        {
+            return parsable;
+        }
+
+        /**
+         * Determines if the file needs to be parsed again, i.e. if any of the unresolved variables is now defined.
+         *
+         * @param variables the variables
+         * @return <tt>true</tt> if the file needs to be parsed again
+         */
+        public boolean isRequired(Variables variables)
+        {
+            for (String name : unresolved)
+            {
+                if (variables.get(name) != null)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Parses the original content again, overwriting the target.
+         *
+         * @param substitutor the variable substitutor
+         * @throws IOException        for any I/O error
+         * @throws InstallerException if the file cannot be parsed
+         */
+        public void parse(VariableSubstitutor substitutor) throws IOException, InstallerException
+        {
+            InputStream in = new BufferedInputStream(new FileInputStream(content), 5120);
+            OutputStream out = null;
+            try
+            {
+                out = new BufferedOutputStream(new FileOutputStream(target), 5120);
+                substitutor.substitute(in, out, parsable.getType(), parsable.getEncoding());
+            }
+            catch (Exception exception)
+            {
+                throw new InstallerException("Failed to parse: " + target, exception);
+            }
+            finally
+            {
+                FileUtils.close(in);
+                FileUtils.close(out);
+            }
+            if (lastModified >= 0 && !target.setLastModified(lastModified))
+            {
+                logger.warning("Failed to set last modified timestamp for: " + target);
+            }
+        }
+
+        /**
+         * Deletes the temporary copy of the original content.
+         */
+        public void delete()
+        {
+            if (content.exists() && !content.delete())
+            {
+                content.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Stream limited to the content of a pack file, that copies the content as it is read, and updates the progress.
+     * <p/>
+     * Closing this stream does not close the pack stream.
+     */
+    private class ContentInputStream extends FilterInputStream
+    {
+
+        /**
+         * The stream to copy the content to.
+         */
+        private final OutputStream copy;
+
+        /**
+         * The no. of bytes remaining.
+         */
+        private long remaining;
+
+        /**
+         * The no. of bytes copied.
+         */
+        private long copied;
+
+        /**
+         * Constructs a <tt>ContentInputStream</tt>.
+         *
+         * @param in     the pack stream
+         * @param length the length of the pack file content
+         * @param copy   the stream to copy the content to
+         */
+        public ContentInputStream(InputStream in, long length, OutputStream copy)
+        {
+            super(in);
+            this.copy = copy;
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) == -1) ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (cancellable.isCancelled())
+            {
+                throw new InterruptedIOException("Copy operation cancelled");
+            }
+            if (remaining == 0)
+            {
+                return -1;
+            }
+            int count = in.read(b, off, (int) Math.min(len, remaining));
+            if (count == -1)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            copy.write(b, off, count);
+            remaining -= count;
+            copied += count;
+            if (getProgress() != null)
+            {
+                getProgress().copied(copied);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            byte[] buffer = new byte[(int) Math.min(n, 5120)];
+            long skipped = 0;
+            int read;
+            while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1)
+            {
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException
+        {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        @Override
+        public void close()
+        {
+            // the pack stream is closed by the caller
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.data.SolidJarReader;
+import com.izforge.izpack.util.file.FileUtils;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * A file unpacker for jars whose entries were stored uncompressed in the pack by
+ * {@link com.izforge.izpack.data.SolidJarWriter}.
+ */
+class SolidJarFileUnpacker extends FileUnpacker
+{
+
+    /**
+     * Constructs a <tt>SolidJarFileUnpacker</tt>.
+     *
+     * @param cancellable determines if unpacking should be cancelled
+     * @param queue       the file queue. May be {@code null}
+     */
+    public SolidJarFileUnpacker(Cancellable cancellable, FileQueue queue)
+    {
+        super(cancellable, queue);
+    }
+
+    /**
+     * Unpacks a pack file, rebuilding the jar.
+     *
+     * @param file            the pack file meta-data
+     * @param packInputStream the pack input stream
+     * @param target          the target
+     * @throws IOException        for any I/O error
+     * @throws InstallerException for any installer exception
+     */
+    @Override
+    public void unpack(PackFile file, ObjectInputStream packInputStream, File target)
+            throws IOException, InstallerException
+    {
+        OutputStream out = new BufferedOutputStream(getTarget(file, target));
+        try
+        {
+            new SolidJarReader(packInputStream).read(out);
+        }
+        finally
+        {
+            FileUtils.close(out);
+        }
+
+        postCopy(file);
+    }
+
+}
@@ -35,7 +35,9 @@ import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.handler.ProgressHandler;
 import com.izforge.izpack.core.handler.PromptUIHandler;
 import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.PackMetadataReader;
 import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.data.SolidJarReader;
 import com.izforge.izpack.data.UpdateCheck;
 import com.izforge.izpack.installer.bootstrap.Installer;
 import com.izforge.izpack.installer.data.UninstallData;
@@ -45,6 +47,7 @@ import com.izforge.izpack.util.FileExecutor;
 import com.izforge.izpack.util.Housekeeper;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.PlatformProbe;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.FileUtils;
 import com.izforge.izpack.util.file.GlobPatternMapper;
@@ -72,6 +75,18 @@ import static com.izforge.izpack.installer.bootstrap.Installer.INSTALLER_AUTO;
 public abstract class UnpackerBase implements IUnpacker
 {
 
+    /**
+     * Variable specifying the no. of threads used to write unpacked files.
+     * <p/>
+     * If greater than <tt>1</tt>, files are decoded from the pack stream into memory and written concurrently.
+     */
+    public static final String UNPACK_THREADS = "izpack.unpack.threads";
+
+    /**
+     * The maximum no. of bytes to buffer when writing files concurrently.
+     */
+    private static final long MAX_BUFFERED = 16 * 1024 * 1024;
+
     /**
      * The installation data.
      */
@@ -170,6 +185,30 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private Messages packMessages;
 
+    /**
+     * The pipeline used to write the files of the pack being unpacked concurrently, or <tt>null</tt> if files are
+     * written as they are read.
+     */
+    private ExtractionPipeline pipeline;
+
+    /**
+     * The pipeline shared by all packs of the installation. Created when first required, and shut down by
+     * {@link #cleanup()}.
+     */
+    private ExtractionPipeline extractionPipeline;
+
+    /**
+     * The progress of the pack being unpacked, or <tt>null</tt> if no pack is being unpacked.
+     */
+    private PackProgress progress;
+
+    /**
+     * Parsable files that refer to variables undefined when they were unpacked. These are parsed again once all
+     * packs have been unpacked, if any of the variables have since been defined.
+     */
+    private final List<ParsableFileUnpacker.Deferred> deferredParsables
+            = new ArrayList<ParsableFileUnpacker.Deferred>();
+
     /**
      * The logger.
      */
@@ -375,38 +414,43 @@ public abstract class UnpackerBase implements IUnpacker
 
     /**
      * Unpacks the selected packs.
+     * <p/>
+     * The parsable and executable files of each pack are processed once, after the pack is unpacked. Update checks
+     * are collected, and performed once all packs have been unpacked, by {@link #postUnpack}.
      *
      * @param packs        the packs to unpack
      * @param queue        the file queue, or {@code null} if queuing is not supported
-     * @param parsables    used to collect parsable files in the pack
-     * @param executables  used to collect executable files files in the pack
-     * @param updateChecks used to collect update checks in the pack
+     * @param parsables    used to collect the parsable files of all packs
+     * @param executables  used to collect the executable files of all packs
+     * @param updateChecks used to collect the update checks of all packs
      * @throws ResourceInterruptedException if unpacking is cancelled
      * @throws IzPackException              for any error
      */
     protected void unpack(List<Pack> packs, FileQueue queue, List<ParsableFile> parsables,
                           List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
     {
+        deferredParsables.clear();
         int count = packs.size();
         for (int i = 0; i < count; i++)
         {
             Pack pack = packs.get(i);
             if (shouldUnpack(pack))
             {
-                listeners.beforePack(pack, i, listener);
-                unpack(pack, i, queue, parsables, executables, updateChecks);
-                checkInterrupt();
+                List<ParsableFile> packParsables = new ArrayList<ParsableFile>();
+                List<ExecutableFile> packExecutables = new ArrayList<ExecutableFile>();
 
-                logger.fine("Found " + parsables.size() + " parsable files");
-                parseFiles(parsables);
+                listeners.beforePack(pack, i, listener);
+                unpack(pack, i, queue, packParsables, packExecutables, updateChecks);
                 checkInterrupt();
 
-                logger.fine("Found " + parsables.size() + " executable files");
-                executeFiles(executables);
+                logger.fine("Found " + packParsables.size() + " parsable files");
+                parseFiles(packParsables);
+                parsables.addAll(packParsables);
                 checkInterrupt();
 
-                // update checks should be done _after_ uninstaller was put, so we don't delete it. TODO
-                performUpdateChecks(updateChecks);
+                logger.fine("Found " + packExecutables.size() + " executable files");
+                executeFiles(packExecutables);
+                executables.addAll(packExecutables);
                 checkInterrupt();
 
                 listeners.afterPack(pack, i, listener);
@@ -435,29 +479,54 @@ public abstract class UnpackerBase implements IUnpacker
             in = resources.getPackStream(pack.getName());
             packInputStream = new ObjectInputStream(in);
 
-            int fileCount = packInputStream.readInt();
+            int threads = getUnpackThreads();
+            if (threads > 1 && !pack.isLoose())
+            {
+                if (extractionPipeline == null)
+                {
+                    extractionPipeline = new ExtractionPipeline(threads, MAX_BUFFERED, listeners);
+                }
+                pipeline = extractionPipeline;
+            }
+
+            PackMetadataReader reader = new PackMetadataReader(packInputStream);
+            int fileCount = reader.readFileCount();
 
             String stepName = getStepName(pack);
-            listener.nextStep(stepName, packNo + 1, fileCount);
+            progress = new PackProgress(listener, pack, fileCount);
+            listener.nextStep(stepName, packNo + 1, progress.getSteps());
 
             for (int i = 0; i < fileCount; ++i)
             {
                 // read the header
-                PackFile file = (PackFile) packInputStream.readObject();
+                PackFile file = reader.readPackFile();
+                ParsableFile parsable = getParsableFile(reader);
+                boolean parsed = false;
                 if (shouldUnpack(file))
                 {
                     // unpack the file
-                    unpack(file, packInputStream, i, pack, queue);
+                    parsed = unpack(file, packInputStream, i, pack, queue, parsable);
                 }
                 else
                 {
                     // condition is not fulfilled, so skip it
                     skip(file, pack, packInputStream);
                 }
+                if (parsable != null && !parsed)
+                {
+                    // parse it once the pack has been unpacked
+                    parsables.add(parsable);
+                }
+                progress.processed(file);
             }
-            readParsableFiles(packInputStream, parsables);
-            readExecutableFiles(packInputStream, executables);
-            readUpdateChecks(packInputStream, updateChecks);
+            if (pipeline != null)
+            {
+                // all files must be written before they are parsed or executed
+                pipeline.drain();
+            }
+            readParsableFiles(reader, parsables);
+            readExecutableFiles(reader, executables);
+            readUpdateChecks(reader, updateChecks);
         }
         catch (IzPackException exception)
         {
@@ -469,6 +538,8 @@ public abstract class UnpackerBase implements IUnpacker
         }
         finally
         {
+            progress = null;
+            pipeline = null;
             FileUtils.close(packInputStream);
             FileUtils.close(in);
         }
@@ -502,11 +573,15 @@ public abstract class UnpackerBase implements IUnpacker
      * @param fileNo          the pack file number
      * @param pack            the pack that the pack file comes from
      * @param queue           the file queue, or {@code null} if queuing is not supported
+     * @param parsable        the parsable file meta-data, if the file is to be parsed as it is unpacked. May be
+     *                        {@code null}
+     * @return {@code true} if the file was parsed as it was unpacked, {@code false} if it must be parsed once the
+     *         pack has been unpacked
      * @throws IOException     for any I/O error
      * @throws IzPackException for any other error
      */
-    protected void unpack(PackFile file, ObjectInputStream packInputStream, int fileNo, Pack pack, FileQueue queue)
-            throws IOException
+    protected boolean unpack(PackFile file, ObjectInputStream packInputStream, int fileNo, Pack pack,
+                             FileQueue queue, ParsableFile parsable) throws IOException
     {
         if (logger.isLoggable(Level.FINE))
         {
@@ -530,33 +605,42 @@ public abstract class UnpackerBase implements IUnpacker
 
         if (file.isDirectory())
         {
-            return;
+            return false;
+        }
+
+        if (pipeline != null && pipeline.isPending(target))
+        {
+            // the target is still being written by an earlier pack file
+            pipeline.drain();
         }
 
         listeners.beforeFile(target, file, pack);
 
-        listener.progress(fileNo, path);
+        if (progress != null)
+        {
+            progress.start(fileNo, path);
+        }
+        else
+        {
+            listener.progress(fileNo, path);
+        }
+
+        boolean parsed = false;
 
         // if this file exists and should not be overwritten, check what to do
         if (target.exists() && (file.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(file, target))
         {
             if (!file.isBackReference() && !pack.isLoose())
             {
-                if (file.isPack200Jar())
-                {
-                    skip(packInputStream, Integer.SIZE / 8);
-                }
-                else
-                {
-                    skip(packInputStream, file.length());
-                }
+                skipContent(file, packInputStream);
             }
         }
         else
         {
             handleOverrideRename(file, target);
-            extract(file, target, packInputStream, pack, queue);
+            parsed = extract(file, target, packInputStream, pack, queue, parsable);
         }
+        return parsed;
     }
 
     /**
@@ -567,13 +651,18 @@ public abstract class UnpackerBase implements IUnpacker
      * @param packInputStream the pack file input stream
      * @param pack            the pack that the pack file comes from
      * @param queue           the file queue, or {@code null} if queuing is not supported
+     * @param parsable        the parsable file meta-data, if the file is to be parsed as it is extracted. May be
+     *                        {@code null}
+     * @return {@code true} if the file was parsed as it was extracted. Files referring to variables that are not yet
+     *         defined are parsed again once all packs are unpacked
      * @throws IOException                  for any I/O error
      * @throws ResourceInterruptedException if installation is cancelled
      * @throws IzPackException              for any IzPack error
      */
-    protected void extract(PackFile file, File target, ObjectInputStream packInputStream, Pack pack, FileQueue queue)
-            throws IOException
+    protected boolean extract(PackFile file, File target, ObjectInputStream packInputStream, Pack pack,
+                              FileQueue queue, ParsableFile parsable) throws IOException
     {
+        boolean parsed = false;
         ObjectInputStream packStream = packInputStream;
         InputStream in = null;
         try
@@ -591,12 +680,40 @@ public abstract class UnpackerBase implements IUnpacker
             }
 
             unpacker = createFileUnpacker(file, pack, queue, cancellable);
-            unpacker.unpack(file, packStream, target);
-            checkInterrupt();
-
-            if (!unpacker.isQueued())
+            if (parsable != null && unpacker.getClass() == DefaultFileUnpacker.class)
             {
-                listeners.afterFile(target, file, pack);
+                unpacker = new ParsableFileUnpacker(cancellable, queue, parsable, variableSubstitutor);
+            }
+            if (pipeline != null && packStream == packInputStream && isPipelined(file, unpacker, queue))
+            {
+                pipeline.extract(file, packStream, target, pack, (DefaultFileUnpacker) unpacker);
+                checkInterrupt();
+            }
+            else
+            {
+                if (pipeline != null)
+                {
+                    // preserve the order that listeners are notified in
+                    pipeline.drain();
+                }
+                unpacker.setProgress(progress);
+                unpacker.unpack(file, packStream, target);
+                checkInterrupt();
+
+                if (unpacker instanceof ParsableFileUnpacker)
+                {
+                    parsed = true;
+                    ParsableFileUnpacker.Deferred deferred = ((ParsableFileUnpacker) unpacker).getDeferred();
+                    if (deferred != null)
+                    {
+                        // the variables may be set by a later pack
+                        deferredParsables.add(deferred);
+                    }
+                }
+                if (!unpacker.isQueued())
+                {
+                    listeners.afterFile(target, file, pack);
+                }
             }
         }
         finally
@@ -607,6 +724,49 @@ public abstract class UnpackerBase implements IUnpacker
                 FileUtils.close(packStream);
             }
         }
+        return parsed;
+    }
+
+    /**
+     * Determines if a pack file can be written by the {@link ExtractionPipeline}.
+     * <p/>
+     * Only plain files small enough to buffer are written concurrently. Blockable files are written by the unpacking
+     * thread, so that they are added to the file queue in order.
+     *
+     * @param file     the pack file
+     * @param unpacker the unpacker for the file
+     * @param queue    the file queue, or {@code null} if queuing is not supported
+     * @return <tt>true</tt> if the file can be written by the pipeline
+     */
+    private boolean isPipelined(PackFile file, FileUnpacker unpacker, FileQueue queue)
+    {
+        return unpacker.getClass() == DefaultFileUnpacker.class && pipeline.canExtract(file)
+                && (queue == null || file.blockable() == Blockable.BLOCKABLE_NONE);
+    }
+
+    /**
+     * Returns the no. of threads to use to write unpacked files.
+     * <p/>
+     * This is determined by the {@link #UNPACK_THREADS} variable.
+     *
+     * @return the no. of threads. A value <tt>&lt;= 1</tt> indicates files are written as they are read
+     */
+    protected int getUnpackThreads()
+    {
+        int result = 1;
+        String value = installData.getVariable(UNPACK_THREADS);
+        if (value != null)
+        {
+            try
+            {
+                result = Integer.parseInt(value.trim());
+            }
+            catch (NumberFormatException exception)
+            {
+                logger.warning("Invalid " + UNPACK_THREADS + ": " + value);
+            }
+        }
+        return result;
     }
 
     /**
@@ -625,6 +785,29 @@ public abstract class UnpackerBase implements IUnpacker
         }
 
         if (!pack.isLoose() && !file.isBackReference())
+        {
+            skipContent(file, packInputStream);
+        }
+    }
+
+    /**
+     * Skips the content of a pack file stored in the pack.
+     *
+     * @param file            the pack file
+     * @param packInputStream the pack stream
+     * @throws IOException if the content cannot be skipped
+     */
+    protected void skipContent(PackFile file, ObjectInputStream packInputStream) throws IOException
+    {
+        if (file.isPack200Jar())
+        {
+            skip(packInputStream, Integer.SIZE / 8);
+        }
+        else if (file.isSolidJar())
+        {
+            new SolidJarReader(packInputStream).skip();
+        }
+        else
         {
             skip(packInputStream, file.length());
         }
@@ -653,6 +836,10 @@ public abstract class UnpackerBase implements IUnpacker
         {
             unpacker = new Pack200FileUnpacker(cancellable, resources, getPack200Unpacker(), queue);
         }
+        else if (file.isSolidJar())
+        {
+            unpacker = new SolidJarFileUnpacker(cancellable, queue);
+        }
         else
         {
             unpacker = new DefaultFileUnpacker(cancellable, queue);
@@ -661,13 +848,14 @@ public abstract class UnpackerBase implements IUnpacker
     }
 
     /**
-     * Invoked after each pack has been unpacked.
+     * Invoked after all packs have been unpacked.
+     * <p/>
+     * This parses files whose variables were undefined when they were unpacked, and performs the update checks of
+     * all packs, scanning the installation directory once.
      *
      * @param packs        the packs
      * @param queue        the file queue, or {@code null} if queuing is not supported
-     * @param parsables    used to collect parsable files in the pack
-     * @param executables  used to collect executable files files in the pack
-     * @param updateChecks used to collect update checks in the pack
+     * @param updateChecks the update checks of all packs
      * @throws ResourceInterruptedException if installation is cancelled
      * @throws IOException                  for any I/O error
      */
@@ -675,6 +863,14 @@ public abstract class UnpackerBase implements IUnpacker
     {
         InstallData installData = getInstallData();
 
+        logger.fine("Found " + deferredParsables.size() + " deferred parsable files");
+        parseDeferred(deferredParsables);
+        checkInterrupt();
+
+        // update checks should be done _after_ uninstaller was put, so we don't delete it. TODO
+        performUpdateChecks(updateChecks);
+        checkInterrupt();
+
         // commit the file queue if there are potentially blocked files
         if (queue != null && !queue.isEmpty())
         {
@@ -698,6 +894,16 @@ public abstract class UnpackerBase implements IUnpacker
      */
     protected void cleanup()
     {
+        if (extractionPipeline != null)
+        {
+            // discards any files not written if unpacking failed
+            extractionPipeline.close();
+            extractionPipeline = null;
+        }
+        deleteDeferred(deferredParsables);
+
+        // the free space cached before unpacking no longer applies
+        PlatformProbe.clearFreeSpace();
         state = State.READY;
     }
 
@@ -859,7 +1065,7 @@ public abstract class UnpackerBase implements IUnpacker
      * @throws InstallerException           if parsing fails
      * @throws ResourceInterruptedException if installation is interrupted
      */
-    private void parseFiles(List<ParsableFile> files)
+    protected void parseFiles(List<ParsableFile> files)
     {
         if (!files.isEmpty())
         {
@@ -879,13 +1085,58 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Parses files that referred to undefined variables when they were unpacked, if any of those variables have
+     * since been defined.
+     * <p/>
+     * The original content is parsed, so values substituted when the file was unpacked aren't substituted twice.
+     *
+     * @param files the deferred parses
+     * @throws InstallerException           if parsing fails
+     * @throws ResourceInterruptedException if installation is interrupted
+     */
+    private void parseDeferred(List<ParsableFileUnpacker.Deferred> files)
+    {
+        Variables variables = getInstallData().getVariables();
+        for (ParsableFileUnpacker.Deferred file : files)
+        {
+            if (file.isRequired(variables))
+            {
+                try
+                {
+                    file.parse(getVariableSubstitutor());
+                }
+                catch (Exception exception)
+                {
+                    throw new InstallerException("Failed to parse: " + file.getParsable().getPath(), exception);
+                }
+                checkInterrupt();
+            }
+        }
+        deleteDeferred(files);
+    }
+
+    /**
+     * Deletes the temporary copies of the content of deferred parses.
+     *
+     * @param files the deferred parses
+     */
+    private void deleteDeferred(List<ParsableFileUnpacker.Deferred> files)
+    {
+        for (ParsableFileUnpacker.Deferred file : files)
+        {
+            file.delete();
+        }
+        files.clear();
+    }
+
     /**
      * Runs {@link ExecutableFile} instances collected during unpacking.
      *
      * @param executables the executables to run
      * @throws InstallerException if an executable fails
      */
-    private void executeFiles(List<ExecutableFile> executables)
+    protected void executeFiles(List<ExecutableFile> executables)
     {
         if (!executables.isEmpty())
         {
@@ -1300,18 +1551,18 @@ public abstract class UnpackerBase implements IUnpacker
     /**
      * Reads {@link ParsableFile parseable files} from the supplied stream.
      *
-     * @param stream    the stream to read from
+     * @param reader    the reader to read from
      * @param parsables used to collect the read objects
      * @throws IOException            for any I/O error
      * @throws ClassNotFoundException if the class of a serialised object cannot be found
      */
-    protected void readParsableFiles(ObjectInputStream stream, List<ParsableFile> parsables)
+    protected void readParsableFiles(PackMetadataReader reader, List<ParsableFile> parsables)
             throws IOException, ClassNotFoundException
     {
-        int count = stream.readInt();
+        int count = reader.readCount();
         for (int i = 0; i < count; ++i)
         {
-            ParsableFile file = (ParsableFile) stream.readObject();
+            ParsableFile file = reader.readParsableFile();
             logger.fine("Unpacked parsable: " + file.toString());
             if (!file.hasCondition() || isConditionTrue(file.getCondition()))
             {
@@ -1322,22 +1573,51 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Returns the parsable file meta-data of the last pack file read, if it is to be parsed.
+     *
+     * @param reader the reader
+     * @return the parsable file, or {@code null} if the pack file is not parsable, or its condition is not satisfied
+     */
+    private ParsableFile getParsableFile(PackMetadataReader reader)
+    {
+        ParsableFile result = reader.getParsableFile();
+        if (result != null)
+        {
+            if (!result.hasCondition() || isConditionTrue(result.getCondition()))
+            {
+                String path = IoHelper.translatePath(result.getPath(), installData.getVariables());
+                result.setPath(path);
+                if (!matcher.matchesCurrentPlatform(result.getOsConstraints()))
+                {
+                    // not parsed on this platform
+                    result = null;
+                }
+            }
+            else
+            {
+                result = null;
+            }
+        }
+        return result;
+    }
+
     /**
      * Reads {@link ExecutableFile executable files} from the supplied stream.
      *
-     * @param stream      the stream to read from
+     * @param reader      the reader to read from
      * @param executables used to collect the read objects
      * @throws IOException            for any I/O error
      * @throws ClassNotFoundException if the class of a serialised object cannot be found
      */
-    protected void readExecutableFiles(ObjectInputStream stream, List<ExecutableFile> executables)
+    protected void readExecutableFiles(PackMetadataReader reader, List<ExecutableFile> executables)
             throws IOException, ClassNotFoundException
     {
         // Load information about executable files
-        int count = stream.readInt();
+        int count = reader.readCount();
         for (int i = 0; i < count; ++i)
         {
-            ExecutableFile file = (ExecutableFile) stream.readObject();
+            ExecutableFile file = reader.readExecutableFile();
             logger.fine("Unpacked executable: " + file.toString());
             if (!file.hasCondition() || isConditionTrue(file.getCondition()))
             {
@@ -1364,18 +1644,18 @@ public abstract class UnpackerBase implements IUnpacker
     /**
      * Reads {@link UpdateCheck update checks} from the supplied stream.
      *
-     * @param stream       the stream to read from
+     * @param reader       the reader to read from
      * @param updateChecks used to collect the read objects
      * @throws IOException            for any I/O error
      * @throws ClassNotFoundException if the class of a serialised object cannot be found
      */
-    protected void readUpdateChecks(ObjectInputStream stream, List<UpdateCheck> updateChecks)
+    protected void readUpdateChecks(PackMetadataReader reader, List<UpdateCheck> updateChecks)
             throws IOException, ClassNotFoundException
     {
-        int count = stream.readInt();
+        int count = reader.readCount();
         for (int i = 0; i < count; ++i)
         {
-            UpdateCheck check = (UpdateCheck) stream.readObject();
+            UpdateCheck check = reader.readUpdateCheck();
             updateChecks.add(check);
         }
     }
@@ -0,0 +1,143 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Records how long each phase of installer startup takes.
+ * <p/>
+ * Phase timings are logged at {@code FINE} level, or at {@code INFO} level if the {@link #TIMINGS_PROPERTY} system
+ * property is {@code true}.
+ * <p/>
+ * If the {@link #EXIT_PROPERTY} system property is {@code true}, the installer exits as soon as it has started,
+ * without installing anything. The compiler uses this to load the startup classes when generating a class data
+ * sharing archive for the installer.
+ */
+public class StartupTimings
+{
+
+    /**
+     * System property to log startup timings at {@code INFO} level.
+     */
+    public static final String TIMINGS_PROPERTY = "izpack.startup.timings";
+
+    /**
+     * System property to exit the installer once it has started.
+     */
+    public static final String EXIT_PROPERTY = "izpack.startup.exit";
+
+    /**
+     * The time that startup began, in nanoseconds.
+     */
+    private static long begin = System.nanoTime();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(StartupTimings.class.getName());
+
+
+    /**
+     * Marks the beginning of startup.
+     * <p/>
+     * This should be invoked on entry to the installer.
+     */
+    public static void begin()
+    {
+        begin = System.nanoTime();
+        if (Boolean.getBoolean(TIMINGS_PROPERTY))
+        {
+            // only query the JVM start time on request, as it loads the management classes
+            long jvm = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+            logger.info("Startup: JVM started " + jvm + " ms before installer");
+        }
+    }
+
+    /**
+     * Returns the current time, for passing to {@link #end}.
+     *
+     * @return the current time, in nanoseconds
+     */
+    public static long start()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * Logs the time taken by a startup phase.
+     *
+     * @param phase the phase name
+     * @param start the time the phase started, as returned by {@link #start()}
+     */
+    public static void end(String phase, long start)
+    {
+        Level level = getLevel();
+        if (logger.isLoggable(level))
+        {
+            logger.log(level, "Startup: " + phase + " took " + toMillis(System.nanoTime() - start) + " ms");
+        }
+    }
+
+    /**
+     * Logs the time since startup began, when the installer has started.
+     * <p/>
+     * If the {@link #EXIT_PROPERTY} system property is {@code true}, this exits the JVM.
+     *
+     * @param milestone a description of what has been reached
+     */
+    public static void started(String milestone)
+    {
+        Level level = getLevel();
+        if (logger.isLoggable(level))
+        {
+            logger.log(level, "Startup: " + milestone + " after " + toMillis(System.nanoTime() - begin) + " ms");
+        }
+        if (Boolean.getBoolean(EXIT_PROPERTY))
+        {
+            logger.info("Exiting after startup, as requested by " + EXIT_PROPERTY);
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Returns the level to log timings at.
+     *
+     * @return the log level
+     */
+    private static Level getLevel()
+    {
+        return Boolean.getBoolean(TIMINGS_PROPERTY) ? Level.INFO : Level.FINE;
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     *
+     * @param nanos the time in nanoseconds
+     * @return the time in milliseconds
+     */
+    private static long toMillis(long nanos)
+    {
+        return nanos / 1000000;
+    }
+}
@@ -71,6 +71,7 @@ import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
 import com.izforge.izpack.util.FileExecutor;
 import com.izforge.izpack.util.StringTool;
+import com.izforge.izpack.util.file.FilePermissions;
 import com.izforge.izpack.util.unix.ShellScript;
 import com.izforge.izpack.util.unix.UnixHelper;
 import com.izforge.izpack.util.unix.UnixUser;
@@ -683,7 +684,11 @@ public class Unix_Shortcut extends Shortcut implements Unix_ShortcutConstants
         myXdgDesktopIconCmd = new String(shortCutLocation + FS
                                                  + "IzPackLocaleEnabledXdgDesktopIconScript.sh");
         myXdgDesktopIconScript.write(myXdgDesktopIconCmd);
-        FileExecutor.getExecOutput(new String[]{UnixHelper.getCustomCommand("chmod"), "+x", myXdgDesktopIconCmd}, true);
+        if (!FilePermissions.chmod(new File(myXdgDesktopIconCmd), "+x"))
+        {
+            FileExecutor.getExecOutput(new String[]{UnixHelper.getCustomCommand("chmod"), "+x", myXdgDesktopIconCmd},
+                                       true);
+        }
     }
 
 
@@ -773,7 +778,10 @@ public class Unix_Shortcut extends Shortcut implements Unix_ShortcutConstants
 
         // Debug.log("Wrote Tempfile: " + tempFile.toString());
 
-        FileExecutor.getExecOutput(new String[]{chmod, "uga+rwx", tempFile.toString()});
+        if (!FilePermissions.chmod(tempFile, "uga+rwx"))
+        {
+            FileExecutor.getExecOutput(new String[]{chmod, "uga+rwx", tempFile.toString()});
+        }
 
         // su marc.eppelmann -c "/bin/cp /home/marc.eppelmann/backup.job.out.txt
         // /home/marc.eppelmann/backup.job.out2.txt"
@@ -0,0 +1,165 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.event;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * Tests the {@link CoalescingProgressListener} class.
+ */
+public class CoalescingProgressListenerTest
+{
+
+    /**
+     * Records the notifications passed on.
+     */
+    private final Recorder recorder = new Recorder();
+
+    /**
+     * Verifies that sub-step progress is coalesced until the interval elapses, and that the latest update is passed
+     * on before the next step starts.
+     */
+    @Test
+    public void testCoalesce()
+    {
+        CoalescingProgressListener listener = new CoalescingProgressListener(recorder, 3600000);
+        listener.startAction("Unpacking", 1);
+        listener.nextStep("pack", 1, 1000);
+        for (int i = 0; i < 1000; ++i)
+        {
+            listener.progress(i, "file" + i);
+        }
+        listener.stopAction();
+
+        assertEquals(Arrays.asList("startAction Unpacking 1", "nextStep pack 1 1000", "progress 0 file0",
+                                   "progress 999 file999", "stopAction"), recorder.events);
+    }
+
+    /**
+     * Verifies that every update is passed on when the interval is zero.
+     */
+    @Test
+    public void testNoInterval()
+    {
+        CoalescingProgressListener listener = new CoalescingProgressListener(recorder, 0);
+        listener.progress(1, "a");
+        listener.progress(2, "b");
+        listener.progress(3, "c");
+
+        assertEquals(Arrays.asList("progress 1 a", "progress 2 b", "progress 3 c"), recorder.events);
+    }
+
+    /**
+     * Verifies that step progress, which increments the current step, is never coalesced.
+     */
+    @Test
+    public void testStepProgress()
+    {
+        CoalescingProgressListener listener = new CoalescingProgressListener(recorder, 3600000);
+        listener.progress(1, "a");
+        listener.progress(2, "b");
+        listener.progress("x");
+        listener.progress("y");
+        listener.setSubStepNo(5);
+        listener.restartAction("action", "overall", "tip", 2);
+
+        assertEquals(Arrays.asList("progress 1 a", "progress 2 b", "progress x", "progress y", "setSubStepNo 5",
+                                   "restartAction action overall tip 2"), recorder.events);
+    }
+
+    /**
+     * Verifies that {@link CoalescingProgressListener#flush()} passes on the pending update once only.
+     */
+    @Test
+    public void testFlush()
+    {
+        CoalescingProgressListener listener = new CoalescingProgressListener(recorder, 3600000);
+        listener.progress(1, "a");
+        listener.progress(2, "b");
+        listener.flush();
+        listener.flush();
+
+        assertEquals(Arrays.asList("progress 1 a", "progress 2 b"), recorder.events);
+    }
+
+    /**
+     * A {@link ProgressListener} that records the notifications it receives.
+     */
+    private static class Recorder implements ProgressListener
+    {
+
+        /**
+         * The notifications.
+         */
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void startAction(String name, int steps)
+        {
+            events.add("startAction " + name + " " + steps);
+        }
+
+        @Override
+        public void stopAction()
+        {
+            events.add("stopAction");
+        }
+
+        @Override
+        public void nextStep(String stepName, int step, int subSteps)
+        {
+            events.add("nextStep " + stepName + " " + step + " " + subSteps);
+        }
+
+        @Override
+        public void setSubStepNo(int subSteps)
+        {
+            events.add("setSubStepNo " + subSteps);
+        }
+
+        @Override
+        public void progress(String message)
+        {
+            events.add("progress " + message);
+        }
+
+        @Override
+        public void progress(int subStep, String message)
+        {
+            events.add("progress " + subStep + " " + message);
+        }
+
+        @Override
+        public void restartAction(String name, String overallMessage, String tip, int steps)
+        {
+            events.add("restartAction " + name + " " + overallMessage + " " + tip + " " + steps);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.PrintWriter;
@@ -46,7 +47,9 @@ import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.Librarian;
+import com.izforge.izpack.util.OsVersion;
 import com.izforge.izpack.util.Platforms;
+import com.izforge.izpack.util.file.FilePermissions;
 import com.izforge.izpack.util.os.FileQueue;
 
 
@@ -132,6 +135,41 @@ public abstract class AbstractFileUnpackerTest
         checkQueue(Blockable.BLOCKABLE_FORCE);
     }
 
+    /**
+     * Verifies that the execute permission of a source is added to the permissions the target is created with, for
+     * those that may read it.
+     * <p/>
+     * Permissions are only changed on Unix, so this does nothing on other platforms.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testExecutable() throws Exception
+    {
+        if (OsVersion.IS_UNIX)
+        {
+            int created = getCreatedMode();
+            assertEquals(created | (0111 & (created >> 2)), unpack(0111));
+            assertEquals(created | (0100 & (created >> 2)), unpack(0100));
+        }
+    }
+
+    /**
+     * Verifies that the target of a source that isn't executable keeps the permissions it is created with.
+     * <p/>
+     * Permissions are only changed on Unix, so this does nothing on other platforms.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testNotExecutable() throws Exception
+    {
+        if (OsVersion.IS_UNIX)
+        {
+            assertEquals(getCreatedMode(), unpack(0));
+        }
+    }
+
     /**
      * Creates a new source file.
      *
@@ -216,6 +254,49 @@ public abstract class AbstractFileUnpackerTest
         return librarian;
     }
 
+    /**
+     * Unpacks a file with the specified execute permission bits.
+     *
+     * @param execute the execute permission bits recorded for the source
+     * @return the permission bits of the target
+     * @throws Exception for any error
+     */
+    private int unpack(int execute) throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        if (target.exists() && !target.delete())
+        {
+            throw new IOException("Failed to delete " + target);
+        }
+
+        FileQueue queue = new FileQueueFactory(Platforms.UNIX, librarian).create();
+        FileUnpacker unpacker = createUnpacker(baseDir.getAbsoluteFile(), queue);
+
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        file.setMode(execute);
+        unpacker.unpack(file, createPackStream(source), target);
+
+        checkTarget(source, target);
+        return FilePermissions.getMode(target);
+    }
+
+    /**
+     * Returns the permission bits new files are created with, as determined by the umask.
+     *
+     * @return the permission bits
+     * @throws IOException for any I/O error
+     */
+    private int getCreatedMode() throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), "created.txt");
+        new FileOutputStream(file).close();
+        int result = FilePermissions.getMode(file);
+        assertTrue(file.delete());
+        return result;
+    }
+
     /**
      * Verifies the target matches the source.
      *
@@ -0,0 +1,214 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Tests the {@link ExtractionPipeline} class.
+ */
+public class ExtractionPipelineTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Never cancels.
+     */
+    private final Cancellable cancellable = new Cancellable()
+    {
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+    };
+
+    /**
+     * Verifies that files are written with the correct content and timestamp, and that listeners are notified in
+     * the order that the files were read, when the buffer bound forces the reader to wait on the writers.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testExtract() throws Exception
+    {
+        File sourceDir = temporaryFolder.newFolder("source");
+        File targetDir = temporaryFolder.newFolder("target");
+        List<File> sources = new ArrayList<File>();
+        for (int i = 0; i < 20; ++i)
+        {
+            sources.add(createSourceFile(sourceDir, "file" + i, 100 + i * 50));
+        }
+        Pack pack = new Pack("pack", null, null, null, null, true, true, false, null, true, 0);
+        ObjectInputStream packStream = createPackStream(sources);
+        InstallerListeners listeners = Mockito.mock(InstallerListeners.class);
+
+        List<File> targets = new ArrayList<File>();
+        List<PackFile> files = new ArrayList<PackFile>();
+        ExtractionPipeline pipeline = new ExtractionPipeline(4, 1000, listeners);
+        try
+        {
+            for (File source : sources)
+            {
+                PackFile file = new PackFile(sourceDir, source, source.getName(), null, OverrideType.OVERRIDE_TRUE,
+                                             null, Blockable.BLOCKABLE_NONE);
+                File target = new File(targetDir, source.getName());
+                assertTrue(pipeline.canExtract(file));
+                pipeline.extract(file, packStream, target, pack, new DefaultFileUnpacker(cancellable, null));
+                files.add(file);
+                targets.add(target);
+            }
+            pipeline.drain();
+            assertFalse(pipeline.isPending(targets.get(targets.size() - 1)));
+        }
+        finally
+        {
+            pipeline.close();
+        }
+
+        InOrder order = Mockito.inOrder(listeners);
+        for (int i = 0; i < sources.size(); ++i)
+        {
+            File source = sources.get(i);
+            File target = targets.get(i);
+            assertEquals(source.lastModified(), target.lastModified());
+            assertArrayEquals(getContent(source), getContent(target));
+            order.verify(listeners).afterFile(target, files.get(i), pack);
+        }
+    }
+
+    /**
+     * Verifies that files larger than the buffer bound cannot be extracted.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCanExtract() throws Exception
+    {
+        File sourceDir = temporaryFolder.newFolder("source");
+        File source = createSourceFile(sourceDir, "large", 2000);
+        PackFile file = new PackFile(sourceDir, source, source.getName(), null, OverrideType.OVERRIDE_TRUE, null,
+                                     Blockable.BLOCKABLE_NONE);
+        ExtractionPipeline pipeline = new ExtractionPipeline(2, 1000, Mockito.mock(InstallerListeners.class));
+        try
+        {
+            assertFalse(pipeline.canExtract(file));
+        }
+        finally
+        {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Creates a source file.
+     *
+     * @param dir    the directory to create the file in
+     * @param name   the file name
+     * @param length the file length
+     * @return a new file
+     * @throws IOException for any I/O error
+     */
+    private File createSourceFile(File dir, String name, int length) throws IOException
+    {
+        File file = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        for (int i = 0; i < length; ++i)
+        {
+            out.write(name.charAt(i % name.length()) + i);
+        }
+        out.close();
+        assertTrue(file.setLastModified(1000000000000L + length * 1000L));
+        return file;
+    }
+
+    /**
+     * Creates a pack stream containing the contents of each source file.
+     *
+     * @param sources the source files
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    private ObjectInputStream createPackStream(List<File> sources) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        for (File source : sources)
+        {
+            FileInputStream in = new FileInputStream(source);
+            IoHelper.copyStream(in, objectOut);
+            in.close();
+        }
+        objectOut.close();
+        return new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Returns the contents of a file as a byte array.
+     *
+     * @param file the file
+     * @return the contents of the file
+     * @throws IOException for any I/O error
+     */
+    private byte[] getContent(File file) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileInputStream in = new FileInputStream(file);
+        IoHelper.copyStream(in, out);
+        in.close();
+        out.close();
+        return out.toByteArray();
+    }
+
+}
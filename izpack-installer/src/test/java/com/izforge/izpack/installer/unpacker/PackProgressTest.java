@@ -0,0 +1,181 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.event.ProgressListener;
+
+
+/**
+ * Tests the {@link PackProgress} class.
+ */
+public class PackProgressTest
+{
+
+    /**
+     * The sub-steps reported to the listener.
+     */
+    private final List<Integer> subSteps = new ArrayList<Integer>();
+
+    /**
+     * Verifies that progress is reported in bytes when the pack size is known.
+     */
+    @Test
+    public void testBytes()
+    {
+        PackProgress progress = new PackProgress(createListener(), createPack(10000), 3);
+        assertEquals(10000, progress.getSteps());
+
+        PackFile small = createFile(100);
+        PackFile large = createFile(9900);
+        progress.start(0, "small");
+        progress.copied(5);                   // less than the minimum delta, so not reported
+        progress.processed(small);
+        progress.start(1, "large");
+        progress.copied(5);                   // not reported
+        progress.copied(5000);
+        progress.copied(9900);
+        progress.processed(large);
+        progress.start(2, "directory");
+
+        assertEquals(5, subSteps.size());
+        assertEquals(0, subSteps.get(0).intValue());
+        assertEquals(100, subSteps.get(1).intValue());
+        assertEquals(5100, subSteps.get(2).intValue());
+        assertEquals(10000, subSteps.get(3).intValue());
+        assertEquals(10000, subSteps.get(4).intValue());
+    }
+
+    /**
+     * Verifies that byte counts are scaled to fit an <tt>int</tt> for packs larger than 2GB.
+     */
+    @Test
+    public void testLargePack()
+    {
+        long size = 6L * Integer.MAX_VALUE;
+        PackProgress progress = new PackProgress(createListener(), createPack(size), 1);
+        assertEquals((int) (size >> 3), progress.getSteps());
+
+        progress.start(0, "large");
+        progress.copied(size / 2);
+        progress.processed(createFile(size));
+        progress.start(1, "end");
+
+        assertEquals(3, subSteps.size());
+        assertEquals(0, subSteps.get(0).intValue());
+        assertEquals((int) ((size / 2) >> 3), subSteps.get(1).intValue());
+        assertEquals(progress.getSteps(), subSteps.get(2).intValue());
+    }
+
+    /**
+     * Verifies that there is one sub-step per file when the pack size isn't known.
+     */
+    @Test
+    public void testUnknownSize()
+    {
+        PackProgress progress = new PackProgress(createListener(), createPack(0), 2);
+        assertEquals(2, progress.getSteps());
+
+        progress.start(0, "a");
+        progress.copied(1000);                // not reported
+        progress.processed(createFile(1000));
+        progress.start(1, "b");
+
+        assertEquals(2, subSteps.size());
+        assertEquals(0, subSteps.get(0).intValue());
+        assertEquals(1, subSteps.get(1).intValue());
+    }
+
+    /**
+     * Creates a pack.
+     *
+     * @param fileSize the size of the files in the pack
+     * @return a new pack
+     */
+    private Pack createPack(long fileSize)
+    {
+        Pack pack = new Pack("pack", null, null, null, null, true, true, false, null, true, 0);
+        pack.setFileSize(fileSize);
+        return pack;
+    }
+
+    /**
+     * Creates a pack file.
+     *
+     * @param length the file length
+     * @return a new pack file
+     */
+    private PackFile createFile(long length)
+    {
+        return new PackFile("file", "target", null, length, 0, false, OverrideType.OVERRIDE_TRUE, null,
+                            Blockable.BLOCKABLE_NONE, null);
+    }
+
+    /**
+     * Creates a listener that records the sub-steps it is notified of.
+     *
+     * @return a new listener
+     */
+    private ProgressListener createListener()
+    {
+        return new ProgressListener()
+        {
+            public void startAction(String name, int steps)
+            {
+            }
+
+            public void stopAction()
+            {
+            }
+
+            public void nextStep(String stepName, int step, int subSteps)
+            {
+            }
+
+            public void setSubStepNo(int subSteps)
+            {
+            }
+
+            public void progress(String message)
+            {
+            }
+
+            public void progress(int subStep, String message)
+            {
+                subSteps.add(subStep);
+            }
+
+            public void restartAction(String name, String overallMessage, String tip, int steps)
+            {
+            }
+        };
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+
+import org.junit.Test;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Tests the {@link ParsableFileUnpacker} class.
+ */
+public class ParsableFileUnpackerTest extends AbstractFileUnpackerTest
+{
+
+    /**
+     * The variables.
+     */
+    private final Variables variables = new DefaultVariables();
+
+    /**
+     * The variable substitutor.
+     */
+    private final VariableSubstitutor substitutor = new VariableSubstitutorImpl(variables);
+
+    /**
+     * Verifies that variables are substituted as the file is unpacked, and that the pack stream is left positioned
+     * after the file content.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSubstitute() throws Exception
+    {
+        variables.set("NAME", "world");
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.txt");
+        PrintWriter writer = new PrintWriter(source);
+        writer.print("hello ${NAME}");
+        writer.close();
+        File target = getTargetFile(baseDir);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        IoHelper.copyStream(new FileInputStream(source), out);
+        out.writeInt(42);
+        out.close();
+        ObjectInputStream packStream = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        ParsableFileUnpacker unpacker = (ParsableFileUnpacker) createUnpacker(baseDir, null);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        unpacker.unpack(file, packStream, target);
+
+        assertTrue(unpacker.isResolved());
+        assertNull(unpacker.getDeferred());
+        assertEquals("hello world", getText(target));
+        assertEquals(source.lastModified(), target.lastModified());
+        assertEquals(42, packStream.readInt());
+    }
+
+    /**
+     * Verifies that references to undefined variables are left as is, and flagged as unresolved.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnresolved() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.txt");
+        PrintWriter writer = new PrintWriter(source);
+        writer.print("hello ${UNDEFINED}");
+        writer.close();
+        File target = getTargetFile(baseDir);
+
+        ParsableFileUnpacker unpacker = (ParsableFileUnpacker) createUnpacker(baseDir, null);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        unpacker.unpack(file, createPackStream(source), target);
+
+        assertFalse(unpacker.isResolved());
+        assertEquals("hello ${UNDEFINED}", getText(target));
+
+        ParsableFileUnpacker.Deferred deferred = unpacker.getDeferred();
+        assertNotNull(deferred);
+        assertFalse(deferred.isRequired(variables));
+
+        // simulate a later pack defining the variable
+        variables.set("UNDEFINED", "world");
+        assertTrue(deferred.isRequired(variables));
+        deferred.parse(substitutor);
+        assertEquals("hello world", getText(target));
+    }
+
+    /**
+     * Verifies that values containing <tt>$</tt> are only substituted once, when a script also refers to shell
+     * variables that are never defined.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testShellVariables() throws Exception
+    {
+        variables.set("APP_HOME", "/opt/$app");
+        variables.set("app", "wrong");
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.txt");
+        PrintWriter writer = new PrintWriter(source);
+        writer.print("cd ${APP_HOME}; exec $JAVA_HOME/bin/java \"$1\"");
+        writer.close();
+        File target = getTargetFile(baseDir);
+
+        ParsableFileUnpacker unpacker = (ParsableFileUnpacker) createUnpacker(baseDir, null);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        unpacker.unpack(file, createPackStream(source), target);
+
+        String expected = "cd /opt/$app; exec $JAVA_HOME/bin/java \"$1\"";
+        assertEquals(expected, getText(target));
+
+        // the shell variable is never defined, so the file isn't parsed again
+        ParsableFileUnpacker.Deferred deferred = unpacker.getDeferred();
+        assertNotNull(deferred);
+        assertFalse(deferred.isRequired(variables));
+
+        // if it is defined, the original content is parsed, rather than the substituted output
+        variables.set("JAVA_HOME", "/usr/java");
+        assertTrue(deferred.isRequired(variables));
+        deferred.parse(substitutor);
+        assertEquals("cd /opt/$app; exec /usr/java/bin/java \"$1\"", getText(target));
+    }
+
+    /**
+     * Verifies that deleting a deferred parse removes the copy of the original content.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDeleteDeferred() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = new File(baseDir, "source.txt");
+        PrintWriter writer = new PrintWriter(source);
+        writer.print("hello ${UNDEFINED}");
+        writer.close();
+        File target = getTargetFile(baseDir);
+
+        ParsableFileUnpacker unpacker = (ParsableFileUnpacker) createUnpacker(baseDir, null);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        unpacker.unpack(file, createPackStream(source), target);
+
+        ParsableFileUnpacker.Deferred deferred = unpacker.getDeferred();
+        assertNotNull(deferred);
+        deferred.delete();
+
+        variables.set("UNDEFINED", "world");
+        try
+        {
+            deferred.parse(substitutor);
+            fail("Expected parse to fail");
+        }
+        catch (FileNotFoundException expected)
+        {
+            // expected
+        }
+        assertEquals("hello ${UNDEFINED}", getText(target));
+    }
+
+    /**
+     * Creates a pack file stream.
+     *
+     * @param source the source
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    @Override
+    protected ObjectInputStream createPackStream(File source) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        IoHelper.copyStream(new FileInputStream(source), objectOut);
+        objectOut.close();
+        return new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * Helper to create an unpacker.
+     *
+     * @param sourceDir the source directory
+     * @param queue     the file queue. May be {@code null}
+     * @return a new unpacker
+     */
+    @Override
+    protected FileUnpacker createUnpacker(File sourceDir, FileQueue queue)
+    {
+        ParsableFile parsable = new ParsableFile("target.txt", SubstitutionType.TYPE_PLAIN, null, null);
+        return new ParsableFileUnpacker(getCancellable(), queue, parsable, substitutor);
+    }
+
+    /**
+     * Returns the content of a file as a string.
+     *
+     * @param file the file
+     * @return the file content
+     * @throws IOException for any I/O error
+     */
+    private String getText(File file) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileInputStream in = new FileInputStream(file);
+        IoHelper.copyStream(in, out);
+        in.close();
+        return out.toString();
+    }
+}
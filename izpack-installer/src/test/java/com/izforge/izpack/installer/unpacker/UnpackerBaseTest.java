@@ -0,0 +1,181 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.installer.unpacker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.event.ProgressListener;
+import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.data.ExecutableFile;
+import com.izforge.izpack.data.ParsableFile;
+import com.izforge.izpack.data.UpdateCheck;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.util.Librarian;
+import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.Platforms;
+import com.izforge.izpack.util.os.FileQueue;
+
+
+/**
+ * Tests the {@link UnpackerBase} class.
+ */
+public class UnpackerBaseTest
+{
+
+    /**
+     * Verifies that the parsable and executable files of each pack are processed once, after the pack is unpacked,
+     * and that update checks are performed once, after all packs are unpacked.
+     */
+    @Test
+    public void testPostProcessing()
+    {
+        AutomatedInstallData installData = new AutomatedInstallData(new DefaultVariables(), Platforms.LINUX);
+        List<Pack> packs = Arrays.asList(createPack("pack1"), createPack("pack2"), createPack("pack3"));
+        installData.setSelectedPacks(packs);
+
+        TestUnpacker unpacker = createUnpacker(installData);
+        unpacker.unpack();
+
+        List<String> expected = Arrays.asList(
+                "unpack pack1", "parse [pack1.txt]", "execute [pack1.sh]",
+                "unpack pack2", "parse [pack2.txt]", "execute [pack2.sh]",
+                "unpack pack3", "parse [pack3.txt]", "execute [pack3.sh]",
+                "update checks 3");
+        assertEquals(expected, unpacker.events);
+    }
+
+    /**
+     * Creates a pack.
+     *
+     * @param name the pack name
+     * @return a new pack
+     */
+    private Pack createPack(String name)
+    {
+        return new Pack(name, null, null, null, null, false, true, false, null, true, 0);
+    }
+
+    /**
+     * Creates an unpacker.
+     *
+     * @param installData the installation data
+     * @return a new unpacker
+     */
+    private TestUnpacker createUnpacker(AutomatedInstallData installData)
+    {
+        Prompt prompt = Mockito.mock(Prompt.class);
+        FileQueueFactory queue = new FileQueueFactory(Platforms.LINUX, Mockito.mock(Librarian.class));
+        PlatformModelMatcher matcher = new PlatformModelMatcher(new Platforms(), Platforms.LINUX);
+        TestUnpacker unpacker = new TestUnpacker(installData, Mockito.mock(RulesEngine.class), queue,
+                                                 new InstallerListeners(installData, prompt), prompt, matcher);
+        unpacker.setProgressListener(Mockito.mock(ProgressListener.class));
+        return unpacker;
+    }
+
+    /**
+     * Unpacker that records the unpacking and post-processing steps, rather than performing them.
+     */
+    private static class TestUnpacker extends UnpackerBase
+    {
+
+        /**
+         * The steps performed.
+         */
+        private final List<String> events = new ArrayList<String>();
+
+        /**
+         * Constructs a <tt>TestUnpacker</tt>.
+         *
+         * @param installData the installation data
+         * @param rules       the rules engine
+         * @param factory     the file queue factory
+         * @param listeners   the listeners
+         * @param prompt      the prompt
+         * @param matcher     the platform-model matcher
+         */
+        public TestUnpacker(AutomatedInstallData installData, RulesEngine rules, FileQueueFactory factory,
+                            InstallerListeners listeners, Prompt prompt, PlatformModelMatcher matcher)
+        {
+            super(installData, null, rules, new VariableSubstitutorImpl(installData.getVariables()),
+                  new UninstallData(), factory, null, listeners, prompt, matcher);
+        }
+
+        @Override
+        protected void unpack(Pack pack, int packNo, FileQueue queue, List<ParsableFile> parsables,
+                              List<ExecutableFile> executables, List<UpdateCheck> updateChecks)
+        {
+            events.add("unpack " + pack.getName());
+            parsables.add(new ParsableFile(pack.getName() + ".txt", SubstitutionType.TYPE_PLAIN, null, null));
+            ExecutableFile executable = new ExecutableFile();
+            executable.path = pack.getName() + ".sh";
+            executables.add(executable);
+            updateChecks.add(new UpdateCheck());
+        }
+
+        @Override
+        protected void parseFiles(List<ParsableFile> files)
+        {
+            List<String> paths = new ArrayList<String>();
+            for (ParsableFile file : files)
+            {
+                paths.add(file.getPath());
+            }
+            events.add("parse " + paths);
+        }
+
+        @Override
+        protected void executeFiles(List<ExecutableFile> executables)
+        {
+            List<String> paths = new ArrayList<String>();
+            for (ExecutableFile file : executables)
+            {
+                paths.add(file.path);
+            }
+            events.add("execute " + paths);
+        }
+
+        @Override
+        protected void performUpdateChecks(List<UpdateCheck> checks)
+        {
+            events.add("update checks " + checks.size());
+        }
+
+        @Override
+        protected void writeInstallationInformation()
+        {
+            // no-op
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.izforge.izpack.installer.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link StartupTimings} class.
+ */
+public class StartupTimingsTest
+{
+
+    /**
+     * The {@link StartupTimings} logger.
+     */
+    private final Logger logger = Logger.getLogger(StartupTimings.class.getName());
+
+    /**
+     * The records logged.
+     */
+    private final List<LogRecord> records = new ArrayList<LogRecord>();
+
+    /**
+     * Handler to collect the records logged.
+     */
+    private final Handler handler = new Handler()
+    {
+        @Override
+        public void publish(LogRecord record)
+        {
+            records.add(record);
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    };
+
+    /**
+     * The original logger level.
+     */
+    private Level level;
+
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        level = logger.getLevel();
+        handler.setLevel(Level.ALL);
+        logger.addHandler(handler);
+    }
+
+    /**
+     * Cleans up after the test case.
+     */
+    @After
+    public void tearDown()
+    {
+        logger.removeHandler(handler);
+        logger.setLevel(level);
+        System.clearProperty(StartupTimings.TIMINGS_PROPERTY);
+    }
+
+    /**
+     * Verifies that phase timings are logged at {@code FINE} level by default.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testEnd() throws Exception
+    {
+        logger.setLevel(Level.INFO);
+        StartupTimings.end("rules", StartupTimings.start());
+        assertEquals(0, records.size());
+
+        logger.setLevel(Level.FINE);
+        long start = StartupTimings.start();
+        Thread.sleep(20);
+        StartupTimings.end("rules", start);
+        assertEquals(1, records.size());
+        assertEquals(Level.FINE, records.get(0).getLevel());
+        assertTrue(getMillis("Startup: rules took (\\d+) ms", records.get(0)) >= 20);
+    }
+
+    /**
+     * Verifies that the time since startup began is logged when the installer has started.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testStarted() throws Exception
+    {
+        logger.setLevel(Level.FINE);
+        StartupTimings.begin();
+        Thread.sleep(20);
+        StartupTimings.started("console installer ready");
+        assertEquals(1, records.size());
+        assertEquals(Level.FINE, records.get(0).getLevel());
+        assertTrue(getMillis("Startup: console installer ready after (\\d+) ms", records.get(0)) >= 20);
+    }
+
+    /**
+     * Verifies that timings, including the JVM start time, are logged at {@code INFO} level when the
+     * {@link StartupTimings#TIMINGS_PROPERTY} system property is {@code true}.
+     */
+    @Test
+    public void testTimingsProperty()
+    {
+        System.setProperty(StartupTimings.TIMINGS_PROPERTY, "true");
+        logger.setLevel(Level.INFO);
+        StartupTimings.begin();
+        StartupTimings.end("langpack load", StartupTimings.start());
+        StartupTimings.started("automated installer ready");
+
+        assertEquals(3, records.size());
+        for (LogRecord record : records)
+        {
+            assertEquals(Level.INFO, record.getLevel());
+        }
+        assertTrue(getMillis("Startup: JVM started (\\d+) ms before installer", records.get(0)) >= 0);
+        assertTrue(getMillis("Startup: langpack load took (\\d+) ms", records.get(1)) >= 0);
+        assertTrue(getMillis("Startup: automated installer ready after (\\d+) ms", records.get(2)) >= 0);
+    }
+
+    /**
+     * Returns the milliseconds from a logged timing.
+     *
+     * @param regexp the expected message, with a group for the milliseconds
+     * @param record the log record
+     * @return the milliseconds
+     */
+    private long getMillis(String regexp, LogRecord record)
+    {
+        Matcher matcher = Pattern.compile(regexp).matcher(record.getMessage());
+        assertTrue("Unexpected message: " + record.getMessage(), matcher.matches());
+        return Long.parseLong(matcher.group(1));
+    }
+}
@@ -98,6 +98,37 @@ public class IzPackNewMojo extends AbstractMojo
      */
     private int comprLevel;
 
+    /**
+     * Number of threads used to serialize and compress packs. Values greater than 1 write packs in parallel
+     * when using the default compression.
+     *
+     * @parameter default-value="1"
+     */
+    private int packThreads;
+
+    /**
+     * Directory used to cache compressed packs between builds. Packs that are unchanged since the previous build
+     * are reused rather than compressed again. Caching is disabled if not set.
+     *
+     * @parameter
+     */
+    private File packCache;
+
+    /**
+     * Number of threads used to list directories when scanning filesets.
+     *
+     * @parameter default-value="1"
+     */
+    private int scanThreads;
+
+    /**
+     * Java installation used to generate a class data sharing archive next to the installer, to reduce its start up
+     * time. Requires Java 13 or later.
+     *
+     * @parameter
+     */
+    private File classDataSharingJava;
+
     /**
      * Whether to automatically include project.url from Maven into
      * IzPack info header
@@ -281,8 +312,19 @@ public class IzPackNewMojo extends AbstractMojo
                 info.setAppURL(project.getUrl());
             }
         }
-        return new CompilerData(comprFormat, kind, installFile, null, baseDir, jarFile.getPath(),
-                                mkdirs, comprLevel, info);
+        CompilerData compilerData = new CompilerData(comprFormat, kind, installFile, null, baseDir,
+                                                     jarFile.getPath(), mkdirs, comprLevel, info);
+        compilerData.setPackThreads(packThreads);
+        compilerData.setScanThreads(scanThreads);
+        if (classDataSharingJava != null)
+        {
+            compilerData.setClassDataSharingJava(classDataSharingJava.getPath());
+        }
+        if (packCache != null)
+        {
+            compilerData.setPackCache(packCache.getPath());
+        }
+        return compilerData;
     }
 
 }
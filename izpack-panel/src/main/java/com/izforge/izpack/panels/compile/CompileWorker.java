@@ -36,10 +36,20 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
+import javax.tools.JavaCompiler;
+
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
 import com.izforge.izpack.api.adaptator.impl.XMLParser;
@@ -84,6 +94,16 @@ public class CompileWorker implements Runnable
 
     private static final String ECLIPSE_COMPILER_CLASS = "org.eclipse.jdt.internal.compiler.batch.Main";
 
+    /**
+     * The name of the compiler of the running JDK, invoked in-process via <tt>javax.tools</tt>.
+     */
+    static final String SYSTEM_COMPILER_NAME = "Integrated Java Compiler";
+
+    /**
+     * The compiler of the running JDK, or <tt>null</tt> if the installer isn't running on a JDK.
+     */
+    private final JavaCompiler systemCompiler;
+
     private VariableSubstitutor vs;
 
     private IXMLElement spec;
@@ -126,6 +146,24 @@ public class CompileWorker implements Runnable
     public CompileWorker(InstallData installData, CompileHandler handler, VariableSubstitutor variableSubstitutor,
                          Resources resources, PlatformModelMatcher matcher) throws IOException
     {
+        this(installData, handler, variableSubstitutor, resources, matcher, InProcessCompiler.getSystemCompiler());
+    }
+
+    /**
+     * Constructs a <tt>CompileWorker</tt>.
+     *
+     * @param installData         the installation data
+     * @param handler             the handler to notify of progress
+     * @param variableSubstitutor the variable substituter
+     * @param resources           the resources
+     * @param matcher             The platform-model matcher
+     * @param systemCompiler      the compiler of the running JDK, or <tt>null</tt> if it isn't available
+     * @throws IOException for any I/O error
+     */
+    CompileWorker(InstallData installData, CompileHandler handler, VariableSubstitutor variableSubstitutor,
+                  Resources resources, PlatformModelMatcher matcher, JavaCompiler systemCompiler) throws IOException
+    {
+        this.systemCompiler = systemCompiler;
         this.idata = installData;
         this.handler = handler;
         this.vs = variableSubstitutor;
@@ -144,7 +182,14 @@ public class CompileWorker implements Runnable
      */
     public ArrayList<String> getAvailableCompilers()
     {
-        readChoices(this.compilerSpec, this.compilerList);
+        if (this.compilerSpec != null)
+        {
+            readChoices(this.compilerSpec, this.compilerList);
+        }
+        if (this.compilerList.isEmpty())
+        {
+            addDefaultCompilers();
+        }
         return this.compilerList;
     }
 
@@ -177,7 +222,14 @@ public class CompileWorker implements Runnable
      */
     public ArrayList<String> getAvailableArguments()
     {
-        readChoices(this.compilerArgumentsSpec, this.compilerArgumentsList);
+        if (this.compilerArgumentsSpec != null)
+        {
+            readChoices(this.compilerArgumentsSpec, this.compilerArgumentsList);
+        }
+        if (this.compilerArgumentsList.isEmpty())
+        {
+            addDefaultArguments();
+        }
         return this.compilerArgumentsList;
     }
 
@@ -312,21 +364,42 @@ public class CompileWorker implements Runnable
         // supply default values if no useful ones where found
         if (this.compilerList.size() == 0)
         {
-            this.compilerList.add("javac");
-            this.compilerList.add("jikes");
+            addDefaultCompilers();
         }
 
         if (this.compilerArgumentsList.size() == 0)
         {
-            this.compilerArgumentsList.add("-O -g:none");
-            this.compilerArgumentsList.add("-O");
-            this.compilerArgumentsList.add("-g");
-            this.compilerArgumentsList.add("");
+            addDefaultArguments();
         }
 
         return true;
     }
 
+    /**
+     * Adds the default compilers, for when the specification doesn't supply any.
+     */
+    private void addDefaultCompilers()
+    {
+        // prefer the in-process compiler when running on a JDK; specs listing compilers keep their own order
+        if (this.systemCompiler != null)
+        {
+            this.compilerList.add(SYSTEM_COMPILER_NAME);
+        }
+        this.compilerList.add("javac");
+        this.compilerList.add("jikes");
+    }
+
+    /**
+     * Adds the default compiler arguments, for when the specification doesn't supply any.
+     */
+    private void addDefaultArguments()
+    {
+        this.compilerArgumentsList.add("-O -g:none");
+        this.compilerArgumentsList.add("-O");
+        this.compilerArgumentsList.add("-g");
+        this.compilerArgumentsList.add("");
+    }
+
     // helper function
 
     private void readChoices(IXMLElement element, ArrayList<String> choiceList)
@@ -367,6 +440,14 @@ public class CompileWorker implements Runnable
                             // ignore, just don't add it as a choice
                         }
                     }
+                    else if (value.equalsIgnoreCase(SYSTEM_COMPILER_NAME))
+                    {
+                        // only available if running on a JDK
+                        if (this.systemCompiler != null)
+                        {
+                            choiceList.add(value);
+                        }
+                    }
                     else
                     {
                         try
@@ -422,6 +503,11 @@ public class CompileWorker implements Runnable
             args.add(tokenizer.nextToken());
         }
 
+        if (this.compilerToUse.equalsIgnoreCase(SYSTEM_COMPILER_NAME))
+        {
+            return compileJobsInProcess(args);
+        }
+
         Iterator<CompilationJob> job_it = this.jobs.iterator();
 
         this.handler.startAction("Compilation", this.jobs.size());
@@ -459,6 +545,215 @@ public class CompileWorker implements Runnable
         return new CompileResult();
     }
 
+    /**
+     * Performs the compilation using the compiler of the running JDK.
+     * <p/>
+     * Jobs are compiled concurrently, except that a job is only started once the earlier jobs whose classes are on
+     * its class path have succeeded, or have failed and the user has chosen to continue. Progress and errors are
+     * reported from this thread, in job order. If the user stops after an error, jobs not yet started are cancelled.
+     *
+     * @param args the compiler arguments
+     * @return the result
+     */
+    private CompileResult compileJobsInProcess(final List<String> args)
+    {
+        Messages messages = this.idata.getMessages();
+
+        this.handler.startAction("Compilation", this.jobs.size());
+
+        if (this.jobs.isEmpty())
+        {
+            return new CompileResult();
+        }
+
+        JavaCompiler javac = this.systemCompiler;
+        CompilationJob first_job = this.jobs.get(0);
+        if (javac == null)
+        {
+            CompileResult result = new CompileResult(messages.get("CompilePanel.error.compilernotfound"),
+                                                     first_job.getCommandLine(SYSTEM_COMPILER_NAME, args), "", "");
+            this.handler.handleCompileError(result);
+            return result.isContinue() ? new CompileResult() : result;
+        }
+
+        final InProcessCompiler compiler = new InProcessCompiler(javac);
+
+        // check the arguments before starting any compilation
+        String invalid = compiler.checkOptions(first_job.getOptions(args));
+        if (invalid != null)
+        {
+            CompileResult result = new CompileResult(messages.get("CompilePanel.error.invalidarguments"),
+                                                     first_job.getCommandLine(SYSTEM_COMPILER_NAME, args), "",
+                                                     invalid);
+            this.handler.handleCompileError(result);
+            if (!result.isContinue())
+            {
+                compiler.close();
+                return result;
+            }
+        }
+
+        int size = this.jobs.size();
+        List<List<Integer>> dependencies = new ArrayList<List<Integer>>();
+        List<Future<InProcessCompiler.Result>> futures = new ArrayList<Future<InProcessCompiler.Result>>();
+        for (int i = 0; i < size; ++i)
+        {
+            List<Integer> jobDependencies = new ArrayList<Integer>();
+            for (int j = 0; j < i; ++j)
+            {
+                if (this.jobs.get(i).dependsOn(this.jobs.get(j), args))
+                {
+                    jobDependencies.add(j);
+                }
+            }
+            dependencies.add(jobDependencies);
+            futures.add(null);
+        }
+        InProcessCompiler.Result[] results = new InProcessCompiler.Result[size];
+
+        int threads = Math.min(size, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CompletionService<InProcessCompiler.Result> completion
+                = new ExecutorCompletionService<InProcessCompiler.Result>(executor);
+        try
+        {
+            submitJobs(completion, compiler, args, dependencies, results, futures, 0);
+            for (int i = 0; i < size; ++i)
+            {
+                CompilationJob job = this.jobs.get(i);
+                this.handler.nextStep(job.getName(), job.getSize(), i);
+
+                while (results[i] == null)
+                {
+                    Future<InProcessCompiler.Result> done = completion.take();
+                    results[futures.indexOf(done)] = done.get();
+                    submitJobs(completion, compiler, args, dependencies, results, futures, i);
+                }
+                InProcessCompiler.Result job_result = results[i];
+
+                this.handler.progress(job.getSize(), job.getName());
+
+                if (!job_result.isSuccess())
+                {
+                    CompileResult result = new CompileResult(messages.get("CompilePanel.error"),
+                                                             job.getCommandLine(SYSTEM_COMPILER_NAME, args),
+                                                             job_result.getOutput(),
+                                                             job_result.formatDiagnostics());
+                    this.handler.handleCompileError(result);
+                    if (!result.isContinue())
+                    {
+                        return result;
+                    }
+                    // start the jobs that were waiting on this one
+                    submitJobs(completion, compiler, args, dependencies, results, futures, i + 1);
+                }
+                else
+                {
+                    logger.fine("Job " + job.getName() + " done (" + job.getSize() + " files compiled)");
+                }
+            }
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            return new CompileResult(exception);
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            return new CompileResult((cause instanceof Exception) ? (Exception) cause : exception);
+        }
+        finally
+        {
+            for (Future<InProcessCompiler.Result> future : futures)
+            {
+                if (future != null)
+                {
+                    future.cancel(false);
+                }
+            }
+            shutdown(executor);
+            compiler.close();
+        }
+
+        logger.fine("Compilation finished");
+        return new CompileResult();
+    }
+
+    /**
+     * Submits each job that hasn't been submitted, and whose dependencies have all succeeded, or have failed and been
+     * reported.
+     *
+     * @param completion   the service to submit jobs to
+     * @param compiler     the compiler
+     * @param args         the compiler arguments
+     * @param dependencies the indexes of the jobs that each job depends on
+     * @param results      the results of the completed jobs
+     * @param futures      the submitted jobs. Unsubmitted jobs have a <tt>null</tt> entry
+     * @param reported     the number of jobs whose results have been reported
+     */
+    private void submitJobs(CompletionService<InProcessCompiler.Result> completion, final InProcessCompiler compiler,
+                            final List<String> args, List<List<Integer>> dependencies,
+                            InProcessCompiler.Result[] results, List<Future<InProcessCompiler.Result>> futures,
+                            int reported)
+    {
+        for (int i = 0; i < futures.size(); ++i)
+        {
+            if (futures.get(i) == null)
+            {
+                boolean ready = true;
+                for (int j : dependencies.get(i))
+                {
+                    if (results[j] == null || (!results[j].isSuccess() && j >= reported))
+                    {
+                        ready = false;
+                        break;
+                    }
+                }
+                if (ready)
+                {
+                    final CompilationJob job = this.jobs.get(i);
+                    futures.set(i, completion.submit(new Callable<InProcessCompiler.Result>()
+                    {
+                        @Override
+                        public InProcessCompiler.Result call() throws Exception
+                        {
+                            return job.compile(compiler, args);
+                        }
+                    }));
+                }
+            }
+        }
+    }
+
+    /**
+     * Shuts down an executor, waiting for any running compilation to complete.
+     * <p/>
+     * A compilation can't be interrupted, and the compiler mustn't be closed until it completes.
+     *
+     * @param executor the executor
+     */
+    private static void shutdown(ExecutorService executor)
+    {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (!executor.isTerminated())
+        {
+            try
+            {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException exception)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private CompilationJob collectJobsRecursive(IXMLElement node, List<String> classpath)
             throws Exception
     {
@@ -630,7 +925,7 @@ public class CompileWorker implements Runnable
     /**
      * a compilation job
      */
-    private static class CompilationJob
+    static class CompilationJob
     {
 
         private CompileHandler listener;
@@ -693,6 +988,117 @@ public class CompileWorker implements Runnable
             return this.files.size();
         }
 
+        /**
+         * Determines if this job requires the classes of another job.
+         * <p/>
+         * If the arguments specify a destination directory, this is the case if the directory is on this job's class
+         * path. Otherwise, the classes are compiled alongside their sources, and this is the case if any of the other
+         * job's sources reside in a directory on this job's class path.
+         *
+         * @param job       the other job
+         * @param arguments the compiler arguments
+         * @return <tt>true</tt> if this job requires the classes of <tt>job</tt>
+         */
+        public boolean dependsOn(CompilationJob job, List<String> arguments)
+        {
+            if (job == this || job.files.isEmpty())
+            {
+                return false;
+            }
+            List<File> classpath = InProcessCompiler.getClassPath(getOptions(arguments), new ArrayList<String>());
+            if (classpath == null)
+            {
+                return false;
+            }
+            File destination = InProcessCompiler.getDestination(arguments, new ArrayList<String>());
+            for (File cp : classpath)
+            {
+                File dir = cp.getAbsoluteFile();
+                if (destination != null)
+                {
+                    // the destination needn't exist until the first job is compiled
+                    if (dir.equals(destination.getAbsoluteFile()))
+                    {
+                        return true;
+                    }
+                }
+                else if (dir.isDirectory())
+                {
+                    String prefix = dir.getPath() + File.separator;
+                    for (File file : job.files)
+                    {
+                        if (file.getAbsolutePath().startsWith(prefix))
+                        {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the options to pass to an in-process compiler.
+         *
+         * @param arguments the compiler arguments
+         * @return the arguments, with the class path of this job
+         */
+        public List<String> getOptions(List<String> arguments)
+        {
+            List<String> result = new ArrayList<String>(arguments);
+            StringBuilder classpath_sb = new StringBuilder();
+            for (String cp : this.classpath)
+            {
+                if (classpath_sb.length() > 0)
+                {
+                    classpath_sb.append(File.pathSeparatorChar);
+                }
+                classpath_sb.append(new File(cp).getAbsolutePath());
+            }
+            if (classpath_sb.length() > 0)
+            {
+                result.add("-classpath");
+                result.add(classpath_sb.toString());
+            }
+            return result;
+        }
+
+        /**
+         * Returns the equivalent command line of an in-process compilation, for error reporting.
+         *
+         * @param compiler  the compiler name
+         * @param arguments the compiler arguments
+         * @return the command line
+         */
+        public List<String> getCommandLine(String compiler, List<String> arguments)
+        {
+            List<String> result = new ArrayList<String>();
+            result.add(compiler);
+            result.addAll(getOptions(arguments));
+            for (File file : this.files)
+            {
+                result.add(file.getAbsolutePath());
+            }
+            return result;
+        }
+
+        /**
+         * Compiles this job using an in-process compiler.
+         * <p/>
+         * Unlike {@link #perform}, this doesn't report to the listener, so may be invoked on any thread.
+         * The compiler reports an error for each source that can't be compiled, so the class files needn't be
+         * verified.
+         *
+         * @param compiler  the compiler
+         * @param arguments the compiler arguments
+         * @return the result of the compilation
+         */
+        public InProcessCompiler.Result compile(InProcessCompiler compiler, List<String> arguments)
+        {
+            logger.fine("starting job " + this.name);
+            return compiler.compile(this.files, getOptions(arguments));
+        }
+
         /**
          * Perform this job - start compilation.
          *
@@ -0,0 +1,379 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.panels.compile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+
+/**
+ * Compiles sources using the {@link JavaCompiler} of the running JDK, avoiding the need to fork a compiler process.
+ * <p/>
+ * File managers are reused by all compilations performed on the same thread, so that the class path archives
+ * are only opened once. Compilations may be performed concurrently on different threads.
+ * <p/>
+ * A file manager ignores the class path and destination options of compilations after its first, so these are
+ * instead set on the file manager for each compilation.
+ */
+class InProcessCompiler
+{
+
+    /**
+     * The compiler.
+     */
+    private final JavaCompiler compiler;
+
+    /**
+     * The file manager for each thread.
+     */
+    private final ThreadLocal<StandardJavaFileManager> fileManager = new ThreadLocal<StandardJavaFileManager>();
+
+    /**
+     * All file managers created, so that they may be closed.
+     */
+    private final List<StandardJavaFileManager> fileManagers = new ArrayList<StandardJavaFileManager>();
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InProcessCompiler.class.getName());
+
+
+    /**
+     * Constructs an <tt>InProcessCompiler</tt>.
+     *
+     * @param compiler the compiler
+     */
+    public InProcessCompiler(JavaCompiler compiler)
+    {
+        this.compiler = compiler;
+    }
+
+    /**
+     * Returns the compiler of the running JDK.
+     *
+     * @return the compiler, or <tt>null</tt> if the installer isn't running on a JDK
+     */
+    public static JavaCompiler getSystemCompiler()
+    {
+        try
+        {
+            return ToolProvider.getSystemJavaCompiler();
+        }
+        catch (Throwable exception)
+        {
+            logger.log(Level.FINE, "Java compiler not available: " + exception.getMessage(), exception);
+            return null;
+        }
+    }
+
+    /**
+     * Verifies that the compiler accepts the specified options.
+     *
+     * @param options the compiler options
+     * @return a message describing why the options are invalid, or <tt>null</tt> if they are valid
+     */
+    public String checkOptions(List<String> options)
+    {
+        try
+        {
+            compiler.getTask(null, getFileManager(), null, options, null, null);
+            return null;
+        }
+        catch (IllegalArgumentException exception)
+        {
+            return exception.getMessage();
+        }
+    }
+
+    /**
+     * Compiles source files.
+     * <p/>
+     * As per <em>javac</em>, class files are written alongside the source files unless a destination directory
+     * is specified in the options.
+     *
+     * @param files   the source files to compile
+     * @param options the compiler options
+     * @return the result of the compilation
+     */
+    public Result compile(List<File> files, List<String> options)
+    {
+        StandardJavaFileManager manager = getFileManager();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StringWriter output = new StringWriter();
+        boolean success;
+        try
+        {
+            List<String> other = new ArrayList<String>();
+            List<String> taskOptions = new ArrayList<String>();
+            manager.setLocation(StandardLocation.CLASS_PATH, getClassPath(options, other));
+            File destination = getDestination(other, taskOptions);
+            manager.setLocation(StandardLocation.CLASS_OUTPUT,
+                                (destination != null) ? Collections.singletonList(destination) : null);
+            Iterable<? extends JavaFileObject> units = manager.getJavaFileObjectsFromFiles(files);
+            success = compiler.getTask(output, manager, diagnostics, taskOptions, null, units).call();
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.FINE, exception.getMessage(), exception);
+            output.write(exception.toString());
+            success = false;
+        }
+        catch (RuntimeException exception)
+        {
+            // invalid options, or a compiler failure
+            logger.log(Level.FINE, exception.getMessage(), exception);
+            output.write(exception.toString());
+            success = false;
+        }
+        return new Result(success, output.toString(), diagnostics.getDiagnostics());
+    }
+
+    /**
+     * Closes all file managers.
+     */
+    public void close()
+    {
+        synchronized (fileManagers)
+        {
+            for (StandardJavaFileManager manager : fileManagers)
+            {
+                try
+                {
+                    manager.close();
+                }
+                catch (IOException exception)
+                {
+                    logger.log(Level.FINE, exception.getMessage(), exception);
+                }
+            }
+            fileManagers.clear();
+        }
+    }
+
+    /**
+     * Returns the class path specified by compiler options.
+     * <p/>
+     * The class path may be specified using <tt>-classpath</tt>, <tt>-cp</tt> or <tt>--class-path</tt>. As per
+     * <em>javac</em>, if the class path is specified more than once, the last one is used.
+     *
+     * @param options the compiler options
+     * @param other   collects the options other than the class path
+     * @return the class path, or <tt>null</tt> if none is specified
+     */
+    static List<File> getClassPath(List<String> options, List<String> other)
+    {
+        List<File> result = null;
+        for (int i = 0; i < options.size(); ++i)
+        {
+            String option = options.get(i);
+            if ((option.equals("-classpath") || option.equals("-cp") || option.equals("--class-path"))
+                    && i + 1 < options.size())
+            {
+                result = new ArrayList<File>();
+                for (String path : options.get(++i).split(File.pathSeparator))
+                {
+                    if (path.length() != 0)
+                    {
+                        result.add(new File(path));
+                    }
+                }
+            }
+            else
+            {
+                other.add(option);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the destination directory for class files specified by compiler options.
+     * <p/>
+     * As per <em>javac</em>, if the destination is specified more than once, the last one is used.
+     *
+     * @param options the compiler options
+     * @param other   collects the options other than the destination
+     * @return the destination directory, or <tt>null</tt> if class files are written alongside their sources
+     */
+    static File getDestination(List<String> options, List<String> other)
+    {
+        File result = null;
+        for (int i = 0; i < options.size(); ++i)
+        {
+            String option = options.get(i);
+            if (option.equals("-d") && i + 1 < options.size())
+            {
+                result = new File(options.get(++i));
+            }
+            else
+            {
+                other.add(option);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the file manager for the current thread, creating it if required.
+     *
+     * @return the file manager
+     */
+    private StandardJavaFileManager getFileManager()
+    {
+        StandardJavaFileManager result = fileManager.get();
+        if (result == null)
+        {
+            result = compiler.getStandardFileManager(null, null, null);
+            fileManager.set(result);
+            synchronized (fileManagers)
+            {
+                fileManagers.add(result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The result of a compilation.
+     */
+    public static class Result
+    {
+
+        /**
+         * Determines if the compilation succeeded.
+         */
+        private final boolean success;
+
+        /**
+         * Output from the compiler, other than diagnostics.
+         */
+        private final String output;
+
+        /**
+         * The diagnostics reported by the compiler.
+         */
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+        /**
+         * Constructs a <tt>Result</tt>.
+         *
+         * @param success     determines if the compilation succeeded
+         * @param output      output from the compiler, other than diagnostics
+         * @param diagnostics the diagnostics reported by the compiler
+         */
+        public Result(boolean success, String output, List<Diagnostic<? extends JavaFileObject>> diagnostics)
+        {
+            this.success = success;
+            this.output = output;
+            this.diagnostics = diagnostics;
+        }
+
+        /**
+         * Determines if the compilation succeeded.
+         *
+         * @return <tt>true</tt> if the compilation succeeded
+         */
+        public boolean isSuccess()
+        {
+            return success;
+        }
+
+        /**
+         * Returns the output from the compiler, other than diagnostics.
+         *
+         * @return the output
+         */
+        public String getOutput()
+        {
+            return output;
+        }
+
+        /**
+         * Returns the number of errors reported.
+         *
+         * @return the number of errors
+         */
+        public int getErrors()
+        {
+            int result = 0;
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics)
+            {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                {
+                    ++result;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the diagnostics reported by the compiler.
+         *
+         * @return the diagnostics
+         */
+        public List<Diagnostic<? extends JavaFileObject>> getDiagnostics()
+        {
+            return diagnostics;
+        }
+
+        /**
+         * Formats the diagnostics, one per line, in the form <em>file:line: kind: message</em>.
+         *
+         * @return the formatted diagnostics
+         */
+        public String formatDiagnostics()
+        {
+            StringBuilder result = new StringBuilder();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics)
+            {
+                JavaFileObject source = diagnostic.getSource();
+                if (source != null)
+                {
+                    result.append(source.getName()).append(':');
+                    if (diagnostic.getLineNumber() != Diagnostic.NOPOS)
+                    {
+                        result.append(diagnostic.getLineNumber()).append(':');
+                    }
+                    result.append(' ');
+                }
+                result.append(diagnostic.getKind().toString().toLowerCase(Locale.ENGLISH)).append(": ");
+                result.append(diagnostic.getMessage(null)).append('\n');
+            }
+            return result.toString();
+        }
+    }
+}
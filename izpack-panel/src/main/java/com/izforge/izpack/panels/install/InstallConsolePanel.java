@@ -27,6 +27,7 @@ import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.event.ProgressListener;
 import com.izforge.izpack.installer.console.AbstractConsolePanel;
 import com.izforge.izpack.installer.console.ConsolePanel;
+import com.izforge.izpack.installer.event.CoalescingProgressListener;
 import com.izforge.izpack.installer.panel.PanelView;
 import com.izforge.izpack.installer.unpacker.IUnpacker;
 import com.izforge.izpack.util.Console;
@@ -133,7 +134,7 @@ public class InstallConsolePanel extends AbstractConsolePanel implements Progres
 
     private boolean run()
     {
-        unpacker.setProgressListener(this);
+        unpacker.setProgressListener(new CoalescingProgressListener(this));
         unpacker.run();
         return unpacker.getResult();
     }
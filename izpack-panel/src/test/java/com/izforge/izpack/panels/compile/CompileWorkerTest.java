@@ -0,0 +1,575 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.izforge.izpack.panels.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.izforge.izpack.api.data.AutomatedInstallData;
+import com.izforge.izpack.api.data.LocaleDatabase;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.resource.Locales;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.resource.ResourceManager;
+import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.Platforms;
+
+
+/**
+ * Tests the {@link CompileWorker} class, when compiling with the {@link CompileWorker#SYSTEM_COMPILER_NAME
+ * integrated Java compiler}.
+ * <p/>
+ * Tests requiring a compiler do nothing if the tests aren't run on a JDK.
+ */
+public class CompileWorkerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The installation data.
+     */
+    private AutomatedInstallData installData;
+
+    /**
+     * The handler.
+     */
+    private TestCompileHandler handler;
+
+    /**
+     * The source directory.
+     */
+    private File dir;
+
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        Variables variables = new DefaultVariables();
+        installData = new AutomatedInstallData(variables, Platforms.LINUX);
+        InputStream langPack = getClass().getResourceAsStream("/com/izforge/izpack/bin/langpacks/installer/eng.xml");
+        assertNotNull(langPack);
+        installData.setMessages(new LocaleDatabase(langPack, Mockito.mock(Locales.class)));
+        handler = new TestCompileHandler();
+        dir = temporaryFolder.newFolder("src");
+        variables.set("SRC_PATH", dir.getPath());
+    }
+
+    /**
+     * Verifies that a job depends on another if the other job's sources are in a directory on its class path.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testDependsOn() throws IOException
+    {
+        File a = new File(dir, "a");
+        File ab = new File(dir, "ab");
+        assertTrue(a.mkdir() && ab.mkdir());
+
+        CompileWorker.CompilationJob jobA = createJob("a", new File(a, "pkg/A.java"));
+        CompileWorker.CompilationJob jobAB = createJob("ab", new File(ab, "AB.java"));
+        CompileWorker.CompilationJob jobB = createJob("b", new File(dir, "B.java"), a.getPath());
+        CompileWorker.CompilationJob jobC = createJob("c", new File(dir, "C.java"), new File(dir, "missing").getPath());
+
+        List<String> args = Arrays.asList("-g");
+        assertTrue(jobB.dependsOn(jobA, args));
+        assertFalse(jobA.dependsOn(jobB, args));
+        assertFalse(jobB.dependsOn(jobAB, args));   // ab is not within a
+        assertFalse(jobC.dependsOn(jobA, args));
+        assertFalse(jobA.dependsOn(jobA, args));
+    }
+
+    /**
+     * Verifies that when a destination directory is specified, a job depends on the other jobs if the directory
+     * is on its class path.
+     */
+    @Test
+    public void testDependsOnDestination()
+    {
+        File a = new File(dir, "a");
+        File classes = new File(dir, "classes");   // needn't exist
+
+        CompileWorker.CompilationJob jobA = createJob("a", new File(a, "A.java"));
+        CompileWorker.CompilationJob jobB = createJob("b", new File(dir, "B.java"), classes.getPath());
+        CompileWorker.CompilationJob jobC = createJob("c", new File(dir, "C.java"), a.getPath());
+        CompileWorker.CompilationJob jobD = createJob("d", new File(dir, "D.java"));
+
+        List<String> args = Arrays.asList("-g", "-d", classes.getPath());
+        assertTrue(jobB.dependsOn(jobA, args));
+        assertTrue(jobB.dependsOn(jobC, args));
+        assertFalse(jobC.dependsOn(jobA, args));  // classes of a aren't written alongside the sources
+        assertFalse(jobA.dependsOn(jobB, args));
+        assertFalse(jobB.dependsOn(jobB, args));
+
+        // the class path may be supplied by the arguments, if the job has none
+        assertFalse(jobD.dependsOn(jobA, args));
+        assertTrue(jobD.dependsOn(jobA, Arrays.asList("-d", classes.getPath(), "-cp", classes.getPath())));
+        assertTrue(jobD.dependsOn(jobA, Arrays.asList("-d", classes.getPath(), "--class-path", classes.getPath())));
+    }
+
+    /**
+     * Verifies that the class path of a job is passed to the compiler after the user-supplied arguments.
+     */
+    @Test
+    public void testGetOptions()
+    {
+        File a = new File(dir, "a");
+        CompileWorker.CompilationJob job = createJob("b", new File(dir, "B.java"), a.getPath());
+        assertEquals(Arrays.asList("-g", "-classpath", a.getAbsolutePath()), job.getOptions(Arrays.asList("-g")));
+        assertEquals(Arrays.asList(CompileWorker.SYSTEM_COMPILER_NAME, "-g", "-classpath", a.getAbsolutePath(),
+                                   new File(dir, "B.java").getAbsolutePath()),
+                     job.getCommandLine(CompileWorker.SYSTEM_COMPILER_NAME, Arrays.asList("-g")));
+    }
+
+    /**
+     * Verifies that the integrated compiler is the first default compiler when available, and is omitted otherwise.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testDefaultCompilers() throws IOException
+    {
+        String spec = "<compilation><jobs/></compilation>";
+        JavaCompiler javac = InProcessCompiler.getSystemCompiler();
+        if (javac != null)
+        {
+            assertEquals(Arrays.asList(CompileWorker.SYSTEM_COMPILER_NAME, "javac", "jikes"),
+                         createWorker(spec, javac).getAvailableCompilers());
+        }
+        assertEquals(Arrays.asList("javac", "jikes"), createWorker(spec, null).getAvailableCompilers());
+    }
+
+    /**
+     * Verifies that the integrated compiler is only offered by a specification if it is available.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSpecifiedCompilers() throws IOException
+    {
+        String spec = "<compilation><global><compiler>"
+                + "<choice value=\"javac\"/><choice value=\"" + CompileWorker.SYSTEM_COMPILER_NAME + "\"/>"
+                + "</compiler></global><jobs/></compilation>";
+        JavaCompiler javac = InProcessCompiler.getSystemCompiler();
+        if (javac != null)
+        {
+            assertEquals(Arrays.asList("javac", CompileWorker.SYSTEM_COMPILER_NAME),
+                         createWorker(spec, javac).getAvailableCompilers());
+        }
+        assertEquals(Arrays.asList("javac"), createWorker(spec, null).getAvailableCompilers());
+    }
+
+    /**
+     * Verifies that jobs are compiled, and reported in job order.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompile() throws Exception
+    {
+        JavaCompiler javac = InProcessCompiler.getSystemCompiler();
+        if (javac == null)
+        {
+            return;
+        }
+        createSource("a/A.java", "public class A", "{", "}");
+        createSource("b/B.java", "public class B extends A", "{", "}");
+        createSource("c/C.java", "public class C", "{", "}");
+
+        CompileWorker worker = createWorker(getSpec(), javac);
+        CompileResult result = compile(worker, "-g");
+        assertTrue(result.isSuccess());
+        assertNull(handler.error);
+        assertEquals(Arrays.asList("a", "b", "c"), handler.steps);
+        assertTrue(new File(dir, "a/A.class").isFile());
+        assertTrue(new File(dir, "b/B.class").isFile());
+        assertTrue(new File(dir, "c/C.class").isFile());
+    }
+
+    /**
+     * Verifies that compilation errors are reported to the handler with the formatted diagnostics.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompileError() throws Exception
+    {
+        JavaCompiler javac = InProcessCompiler.getSystemCompiler();
+        if (javac == null)
+        {
+            return;
+        }
+        createSource("a/A.java", "public class A", "{", "}");
+        createSource("b/B.java", "public class B extends A", "{", "    int value = \"text\";", "}");
+        createSource("c/C.java", "public class C", "{", "}");
+
+        CompileWorker worker = createWorker(getSpec(), javac);
+        CompileResult result = compile(worker, "");
+        assertFalse(result.isContinue());
+        assertEquals(Arrays.asList("a", "b"), handler.steps);
+
+        assertNotNull(handler.error);
+        assertEquals("Compilation failed", handler.error.getMessage());
+        String expected = new File(dir, "b/B.java").getPath() + ":3: error: ";
+        assertTrue(handler.error.getStderr(), handler.error.getStderr().startsWith(expected));
+        assertTrue(handler.error.getCmdline().startsWith(CompileWorker.SYSTEM_COMPILER_NAME + " -classpath "));
+    }
+
+    /**
+     * Verifies that a job isn't compiled if a job it depends on fails and compilation is stopped.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDependentNotCompiledAfterError() throws Exception
+    {
+        JavaCompiler javac = InProcessCompiler.getSystemCompiler();
+        if (javac == null)
+        {
+            return;
+        }
+        createSource("a/A.java", "public class A", "{", "    int value = \"text\";", "}");
+        createSource("b/B.java", "public class B", "{", "}");
+        createSource("c/C.java", "public class C", "{", "}");
+
+        CompileWorker worker = createWorker(getSpec(), javac);
+        CompileResult result = compile(worker, "");
+        assertFalse(result.isContinue());
+        assertEquals(Arrays.asList("a"), handler.steps);
+        assertNotNull(handler.error);
+        assertFalse(new File(dir, "b/B.class").exists());
+    }
+
+    /**
+     * Verifies that jobs are compiled in dependency order when classes are written to a destination directory.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompileDestination() throws Exception
+    {
+        JavaCompiler javac = InProcessCompiler.getSystemCompiler();
+        if (javac == null)
+        {
+            return;
+        }
+        File classes = new File(dir, "classes");
+        assertTrue(classes.mkdir());
+        createSource("a/A.java", "public class A", "{", "}");
+        createSource("b/B.java", "public class B extends A", "{", "}");
+        createSource("c/C.java", "public class C extends B", "{", "}");
+
+        String spec = "<compilation><jobs>"
+                + "<job name=\"a\"><directory name=\"$SRC_PATH/a\"/></job>"
+                + "<job name=\"b\"><classpath add=\"$SRC_PATH/classes\"/><directory name=\"$SRC_PATH/b\"/></job>"
+                + "<job name=\"c\"><classpath add=\"$SRC_PATH/classes\"/><directory name=\"$SRC_PATH/c\"/></job>"
+                + "</jobs></compilation>";
+        CompileWorker worker = createWorker(spec, javac);
+        CompileResult result = compile(worker, "-d " + classes.getPath());
+        assertTrue(result.isSuccess());
+        assertNull(handler.error);
+        assertEquals(Arrays.asList("a", "b", "c"), handler.steps);
+        assertTrue(new File(classes, "A.class").isFile());
+        assertTrue(new File(classes, "B.class").isFile());
+        assertTrue(new File(classes, "C.class").isFile());
+    }
+
+    /**
+     * Verifies that invalid compiler arguments are reported before any job is compiled.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testInvalidArguments() throws Exception
+    {
+        JavaCompiler javac = InProcessCompiler.getSystemCompiler();
+        if (javac == null)
+        {
+            return;
+        }
+        createSource("a/A.java", "public class A", "{", "}");
+        createSource("b/B.java", "public class B extends A", "{", "}");
+        createSource("c/C.java", "public class C", "{", "}");
+
+        CompileWorker worker = createWorker(getSpec(), javac);
+        CompileResult result = compile(worker, "-g -bogus");
+        assertFalse(result.isContinue());
+        assertTrue(handler.steps.isEmpty());
+        assertFalse(new File(dir, "a/A.class").exists());
+
+        assertNotNull(handler.error);
+        assertEquals("Invalid arguments provided to the compiler.", handler.error.getMessage());
+        assertTrue(handler.error.getStderr().contains("-bogus"));
+    }
+
+    /**
+     * Verifies that selecting the integrated compiler when no compiler is available (i.e. when not running on a JDK)
+     * reports an error rather than failing.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompilerNotFound() throws Exception
+    {
+        createSource("a/A.java", "public class A", "{", "}");
+        createSource("b/B.java", "public class B extends A", "{", "}");
+        createSource("c/C.java", "public class C", "{", "}");
+
+        CompileWorker worker = createWorker(getSpec(), null);
+        CompileResult result = compile(worker, "");
+        assertFalse(result.isContinue());
+        assertTrue(handler.steps.isEmpty());
+
+        assertNotNull(handler.error);
+        assertEquals("The compiler could not be run.", handler.error.getMessage());
+        assertTrue(handler.error.getCmdline().startsWith(CompileWorker.SYSTEM_COMPILER_NAME));
+    }
+
+    /**
+     * Returns a specification with three jobs, where job <em>b</em> depends on job <em>a</em>.
+     *
+     * @return the specification
+     */
+    private String getSpec()
+    {
+        return "<compilation><jobs>"
+                + "<job name=\"a\"><directory name=\"$SRC_PATH/a\"/></job>"
+                + "<job name=\"b\"><classpath add=\"$SRC_PATH/a\"/><directory name=\"$SRC_PATH/b\"/></job>"
+                + "<job name=\"c\"><directory name=\"$SRC_PATH/c\"/></job>"
+                + "</jobs></compilation>";
+    }
+
+    /**
+     * Compiles the jobs of a worker using the integrated compiler.
+     *
+     * @param worker    the worker
+     * @param arguments the compiler arguments
+     * @return the result
+     */
+    private CompileResult compile(CompileWorker worker, String arguments)
+    {
+        worker.setCompiler(CompileWorker.SYSTEM_COMPILER_NAME);
+        worker.setCompilerArguments(arguments);
+        worker.run();
+        assertTrue(handler.stopped);
+        return worker.getResult();
+    }
+
+    /**
+     * Creates a worker.
+     *
+     * @param spec     the compilation specification
+     * @param compiler the system compiler. May be <tt>null</tt>
+     * @return a new worker
+     * @throws IOException for any I/O error
+     */
+    private CompileWorker createWorker(final String spec, JavaCompiler compiler) throws IOException
+    {
+        ResourceManager resources = new ResourceManager()
+        {
+            @Override
+            public InputStream getInputStream(String name)
+            {
+                assertEquals("CompilePanel.Spec.xml", name);
+                return new ByteArrayInputStream(spec.getBytes());
+            }
+        };
+        PlatformModelMatcher matcher = new PlatformModelMatcher(new Platforms(), Platforms.LINUX);
+        return new CompileWorker(installData, handler, new VariableSubstitutorImpl(installData.getVariables()),
+                                 resources, matcher, compiler);
+    }
+
+    /**
+     * Creates a job.
+     *
+     * @param name      the job name
+     * @param file      the file to compile
+     * @param classpath the class path
+     * @return a new job
+     */
+    private CompileWorker.CompilationJob createJob(String name, File file, String... classpath)
+    {
+        ArrayList<File> files = new ArrayList<File>();
+        files.add(file);
+        return new CompileWorker.CompilationJob(handler, installData, name, files, Arrays.asList(classpath));
+    }
+
+    /**
+     * Creates a source file.
+     *
+     * @param path  the path, relative to the source directory
+     * @param lines the source lines
+     * @throws IOException for any I/O error
+     */
+    private void createSource(String path, String... lines) throws IOException
+    {
+        File file = new File(dir, path);
+        if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs())
+        {
+            throw new IOException("Failed to create " + file.getParentFile());
+        }
+        PrintWriter writer = new PrintWriter(file);
+        for (String line : lines)
+        {
+            writer.println(line);
+        }
+        writer.close();
+    }
+
+    /**
+     * Handler that records the compilation steps and error.
+     * <p/>
+     * Errors are not acknowledged, so compilation aborts on the first error.
+     */
+    private static class TestCompileHandler implements CompileHandler
+    {
+
+        /**
+         * The names of the steps started.
+         */
+        private final List<String> steps = new ArrayList<String>();
+
+        /**
+         * The error reported. May be <tt>null</tt>.
+         */
+        private CompileResult error;
+
+        /**
+         * Determines if the action was stopped.
+         */
+        private boolean stopped;
+
+        @Override
+        public void handleCompileError(CompileResult error)
+        {
+            assertNull("Only one error expected", this.error);
+            this.error = error;
+        }
+
+        @Override
+        public void startAction(String name, int steps)
+        {
+        }
+
+        @Override
+        public void stopAction()
+        {
+            stopped = true;
+        }
+
+        @Override
+        public void nextStep(String stepName, int step, int subSteps)
+        {
+            steps.add(stepName);
+        }
+
+        @Override
+        public void setSubStepNo(int subSteps)
+        {
+        }
+
+        @Override
+        public void progress(String message)
+        {
+        }
+
+        @Override
+        public void progress(int subStep, String message)
+        {
+        }
+
+        @Override
+        public void restartAction(String name, String overallMessage, String tip, int steps)
+        {
+        }
+
+        @Override
+        public void emitNotification(String message)
+        {
+        }
+
+        @Override
+        public boolean emitWarning(String title, String message)
+        {
+            return true;
+        }
+
+        @Override
+        public void emitError(String title, String message)
+        {
+        }
+
+        @Override
+        public void emitErrorAndBlockNext(String title, String message)
+        {
+        }
+
+        @Override
+        public int askQuestion(String title, String question, int choices)
+        {
+            return 0;
+        }
+
+        @Override
+        public int askQuestion(String title, String question, int choices, int default_choice)
+        {
+            return default_choice;
+        }
+
+        @Override
+        public int askWarningQuestion(String title, String question, int choices, int default_choice)
+        {
+            return default_choice;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.izforge.izpack.panels.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link InProcessCompiler} class.
+ * <p/>
+ * Tests requiring a compiler do nothing if the tests aren't run on a JDK.
+ */
+public class InProcessCompilerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The compiler under test. May be <tt>null</tt>.
+     */
+    private InProcessCompiler compiler;
+
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        JavaCompiler javac = InProcessCompiler.getSystemCompiler();
+        compiler = (javac != null) ? new InProcessCompiler(javac) : null;
+    }
+
+    /**
+     * Cleans up after the test case.
+     */
+    @After
+    public void tearDown()
+    {
+        if (compiler != null)
+        {
+            compiler.close();
+        }
+    }
+
+    /**
+     * Verifies that valid options are accepted, and that invalid options are reported rather than thrown.
+     */
+    @Test
+    public void testCheckOptions()
+    {
+        if (compiler == null)
+        {
+            return;
+        }
+        assertNull(compiler.checkOptions(Collections.<String>emptyList()));
+        assertNull(compiler.checkOptions(Arrays.asList("-g", "-nowarn")));
+
+        String message = compiler.checkOptions(Arrays.asList("-g", "-bogus"));
+        assertNotNull(message);
+        assertTrue(message.contains("-bogus"));
+    }
+
+    /**
+     * Verifies that a valid source is compiled, with the class file written alongside it.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompile() throws Exception
+    {
+        if (compiler == null)
+        {
+            return;
+        }
+        File source = createSource("Valid.java", "public class Valid", "{", "}");
+
+        InProcessCompiler.Result result = compiler.compile(Arrays.asList(source), Arrays.asList("-g"));
+        assertTrue(result.isSuccess());
+        assertEquals(0, result.getErrors());
+        assertEquals("", result.formatDiagnostics());
+        assertTrue(new File(source.getParentFile(), "Valid.class").isFile());
+    }
+
+    /**
+     * Verifies that the class path of each compilation is honoured when compilations share a file manager.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testClassPathPerCompilation() throws Exception
+    {
+        if (compiler == null)
+        {
+            return;
+        }
+        File a = createSource("A.java", "public class A", "{", "}");
+        File b = createSource("B.java", "public class B extends A", "{", "}");
+        String classpath = a.getParentFile().getPath();
+
+        assertTrue(compiler.compile(Arrays.asList(a), Collections.<String>emptyList()).isSuccess());
+        InProcessCompiler.Result result = compiler.compile(Arrays.asList(b), Arrays.asList("-cp", classpath));
+        assertTrue(result.formatDiagnostics(), result.isSuccess());
+
+        // the class path doesn't carry over to later compilations
+        result = compiler.compile(Arrays.asList(b), Collections.<String>emptyList());
+        assertFalse(result.isSuccess());
+        assertEquals(1, result.getErrors());
+    }
+
+    /**
+     * Verifies that the destination of each compilation is honoured when compilations share a file manager.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDestinationPerCompilation() throws Exception
+    {
+        if (compiler == null)
+        {
+            return;
+        }
+        File a = createSource("A.java", "public class A", "{", "}");
+        File b = createSource("B.java", "public class B", "{", "}");
+        File c = createSource("C.java", "public class C", "{", "}");
+        File out1 = temporaryFolder.newFolder("out1");
+        File out2 = temporaryFolder.newFolder("out2");
+
+        assertTrue(compiler.compile(Arrays.asList(a), Arrays.asList("-d", out1.getPath())).isSuccess());
+        assertTrue(compiler.compile(Arrays.asList(b), Arrays.asList("-d", out2.getPath())).isSuccess());
+        assertTrue(compiler.compile(Arrays.asList(c), Collections.<String>emptyList()).isSuccess());
+
+        assertTrue(new File(out1, "A.class").isFile());
+        assertTrue(new File(out2, "B.class").isFile());
+        assertTrue(new File(c.getParentFile(), "C.class").isFile());
+        assertFalse(new File(out1, "B.class").exists());
+        assertFalse(new File(out1, "C.class").exists());
+    }
+
+    /**
+     * Verifies that the class path and destination are parsed from the compiler options.
+     */
+    @Test
+    public void testParseOptions()
+    {
+        String path = "a" + File.pathSeparator + "b";
+        List<String> other = new ArrayList<String>();
+        assertEquals(Arrays.asList(new File("a"), new File("b")),
+                     InProcessCompiler.getClassPath(Arrays.asList("-g", "-cp", "x", "--class-path", path), other));
+        assertEquals(Arrays.asList("-g"), other);
+        assertEquals(Arrays.asList(new File("x")),
+                     InProcessCompiler.getClassPath(Arrays.asList("-classpath", "x"), new ArrayList<String>()));
+        assertNull(InProcessCompiler.getClassPath(Arrays.asList("-g"), new ArrayList<String>()));
+
+        other.clear();
+        List<String> options = Arrays.asList("-d", "classes", "-g", "-d", "out");
+        assertEquals(new File("out"), InProcessCompiler.getDestination(options, other));
+        assertEquals(Arrays.asList("-g"), other);
+        assertNull(InProcessCompiler.getDestination(Arrays.asList("-g", "-cp", "x"), new ArrayList<String>()));
+    }
+
+    /**
+     * Verifies that compilation errors are reported as diagnostics, formatted with the file and line.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompileError() throws Exception
+    {
+        if (compiler == null)
+        {
+            return;
+        }
+        File source = createSource("Invalid.java", "public class Invalid", "{", "    int value = \"text\";", "}");
+
+        InProcessCompiler.Result result = compiler.compile(Arrays.asList(source), Collections.<String>emptyList());
+        assertFalse(result.isSuccess());
+        assertEquals(1, result.getErrors());
+        assertFalse(new File(source.getParentFile(), "Invalid.class").exists());
+
+        String formatted = result.formatDiagnostics();
+        assertTrue(formatted, formatted.contains("Invalid.java:3: error: "));
+        assertTrue(formatted, formatted.endsWith("\n"));
+    }
+
+    /**
+     * Verifies that invalid options passed to {@link InProcessCompiler#compile} fail the compilation rather than
+     * throw.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompileInvalidOptions() throws Exception
+    {
+        if (compiler == null)
+        {
+            return;
+        }
+        File source = createSource("Valid.java", "public class Valid", "{", "}");
+
+        InProcessCompiler.Result result = compiler.compile(Arrays.asList(source), Arrays.asList("-bogus"));
+        assertFalse(result.isSuccess());
+        assertTrue(result.getOutput().contains("-bogus"));
+    }
+
+    /**
+     * Verifies the formatting of diagnostics with and without a source and line number.
+     */
+    @Test
+    public void testFormatDiagnostics()
+    {
+        List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+        diagnostics.add(new TestDiagnostic(Diagnostic.Kind.ERROR, "/src/A.java", 12, "cannot find symbol"));
+        diagnostics.add(new TestDiagnostic(Diagnostic.Kind.WARNING, "/src/B.java", Diagnostic.NOPOS, "unchecked"));
+        diagnostics.add(new TestDiagnostic(Diagnostic.Kind.NOTE, null, Diagnostic.NOPOS, "deprecated API"));
+
+        InProcessCompiler.Result result = new InProcessCompiler.Result(false, "", diagnostics);
+        assertEquals(1, result.getErrors());
+        assertEquals("/src/A.java:12: error: cannot find symbol\n"
+                             + "/src/B.java: warning: unchecked\n"
+                             + "note: deprecated API\n", result.formatDiagnostics());
+    }
+
+    /**
+     * Creates a source file in its own directory, named after the class.
+     *
+     * @param name  the file name
+     * @param lines the source lines
+     * @return the source file
+     * @throws IOException for any I/O error
+     */
+    private File createSource(String name, String... lines) throws IOException
+    {
+        File dir = new File(temporaryFolder.getRoot(), name.substring(0, name.indexOf('.')));
+        if (!dir.mkdir())
+        {
+            throw new IOException("Failed to create " + dir);
+        }
+        File file = new File(dir, name);
+        PrintWriter writer = new PrintWriter(file);
+        for (String line : lines)
+        {
+            writer.println(line);
+        }
+        writer.close();
+        return file;
+    }
+
+    /**
+     * A diagnostic with a fixed message.
+     */
+    private static class TestDiagnostic implements Diagnostic<JavaFileObject>
+    {
+
+        /**
+         * The diagnostic kind.
+         */
+        private final Kind kind;
+
+        /**
+         * The source. May be <tt>null</tt>.
+         */
+        private final JavaFileObject source;
+
+        /**
+         * The line number.
+         */
+        private final long line;
+
+        /**
+         * The message.
+         */
+        private final String message;
+
+        /**
+         * Constructs a <tt>TestDiagnostic</tt>.
+         *
+         * @param kind    the diagnostic kind
+         * @param path    the source path. May be <tt>null</tt>
+         * @param line    the line number, or {@link Diagnostic#NOPOS}
+         * @param message the message
+         */
+        public TestDiagnostic(Kind kind, String path, long line, String message)
+        {
+            this.kind = kind;
+            this.source = (path != null) ? new TestFileObject(path) : null;
+            this.line = line;
+            this.message = message;
+        }
+
+        @Override
+        public Kind getKind()
+        {
+            return kind;
+        }
+
+        @Override
+        public JavaFileObject getSource()
+        {
+            return source;
+        }
+
+        @Override
+        public long getPosition()
+        {
+            return NOPOS;
+        }
+
+        @Override
+        public long getStartPosition()
+        {
+            return NOPOS;
+        }
+
+        @Override
+        public long getEndPosition()
+        {
+            return NOPOS;
+        }
+
+        @Override
+        public long getLineNumber()
+        {
+            return line;
+        }
+
+        @Override
+        public long getColumnNumber()
+        {
+            return NOPOS;
+        }
+
+        @Override
+        public String getCode()
+        {
+            return null;
+        }
+
+        @Override
+        public String getMessage(Locale locale)
+        {
+            return message;
+        }
+    }
+
+    /**
+     * A source file object with a fixed name.
+     */
+    private static class TestFileObject extends SimpleJavaFileObject
+    {
+
+        /**
+         * The name.
+         */
+        private final String name;
+
+        /**
+         * Constructs a <tt>TestFileObject</tt>.
+         *
+         * @param name the file name
+         */
+        public TestFileObject(String name)
+        {
+            super(new File(name).toURI(), Kind.SOURCE);
+            this.name = name;
+        }
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * A {@link PackFileSource} for an entry of a {@link SourceArchive}.
+ * <p/>
+ * The entry is read directly from the archive when the packs are written.
+ */
+public class ArchiveEntrySource implements PackFileSource
+{
+
+    private static final long serialVersionUID = -7204526826402372593L;
+
+    /**
+     * The archive.
+     */
+    private final SourceArchive archive;
+
+    /**
+     * The entry name.
+     */
+    private final String name;
+
+    /**
+     * The uncompressed length of the entry.
+     */
+    private final long length;
+
+    /**
+     * The last-modification time of the entry, or <tt>-1</tt> if it is not known.
+     */
+    private final long lastModified;
+
+    /**
+     * The CRC-32 of the entry, or <tt>-1</tt> if it is not known.
+     */
+    private final long crc;
+
+    /**
+     * Determines if the entry is a directory.
+     */
+    private final boolean directory;
+
+
+    /**
+     * Constructs an <tt>ArchiveEntrySource</tt>.
+     *
+     * @param archive      the archive
+     * @param name         the entry name
+     * @param length       the uncompressed length of the entry
+     * @param lastModified the last-modification time of the entry, or <tt>-1</tt> if it is not known
+     * @param crc          the CRC-32 of the entry, or <tt>-1</tt> if it is not known
+     * @param directory    determines if the entry is a directory
+     */
+    public ArchiveEntrySource(SourceArchive archive, String name, long length, long lastModified, long crc,
+                              boolean directory)
+    {
+        this.archive = archive;
+        this.name = name;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.crc = crc;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the archive.
+     *
+     * @return the archive
+     */
+    public SourceArchive getArchive()
+    {
+        return archive;
+    }
+
+    /**
+     * Returns the entry name.
+     *
+     * @return the entry name
+     */
+    public String getEntryName()
+    {
+        return name;
+    }
+
+    /**
+     * Returns a description of the source, for diagnostic purposes.
+     *
+     * @return the archive path and entry name
+     */
+    @Override
+    public String getName()
+    {
+        return archive.getFile().getPath() + "!/" + name;
+    }
+
+    /**
+     * Returns the length of the content.
+     *
+     * @return the uncompressed length of the entry
+     */
+    @Override
+    public long getLength()
+    {
+        return length;
+    }
+
+    /**
+     * Returns the last-modification time of the content.
+     *
+     * @return the last-modification time of the entry, or <tt>-1</tt> if it is not known
+     */
+    @Override
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * Determines if the source is a directory.
+     *
+     * @return <tt>true</tt> if the entry is a directory
+     */
+    @Override
+    public boolean isDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Returns a key that changes whenever the content may have changed.
+     *
+     * @return the absolute path of the archive, and the name, length and CRC-32 of the entry
+     */
+    @Override
+    public String getContentKey()
+    {
+        return archive.getFile().getAbsolutePath() + "!/" + name + ":" + length + ":" + crc;
+    }
+
+    /**
+     * Returns the file holding the content.
+     *
+     * @return <tt>null</tt>, as the content is held by the archive
+     */
+    @Override
+    public File getFile()
+    {
+        return null;
+    }
+
+    /**
+     * Opens a stream to read the content.
+     *
+     * @return a new stream
+     * @throws IOException if the entry cannot be read
+     */
+    @Override
+    public InputStream getInputStream() throws IOException
+    {
+        return archive.getInputStream(name);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj instanceof ArchiveEntrySource)
+        {
+            ArchiveEntrySource other = (ArchiveEntrySource) obj;
+            return name.equals(other.name) && archive.getFile().equals(other.archive.getFile());
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return archive.getFile().hashCode() ^ name.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+}
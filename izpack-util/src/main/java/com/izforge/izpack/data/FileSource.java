@@ -0,0 +1,147 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * A {@link PackFileSource} for a file or directory.
+ */
+public class FileSource implements PackFileSource
+{
+
+    private static final long serialVersionUID = 4630416372683209546L;
+
+    /**
+     * The file.
+     */
+    private final File file;
+
+
+    /**
+     * Constructs a <tt>FileSource</tt>.
+     *
+     * @param file the file
+     */
+    public FileSource(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns a description of the source, for diagnostic purposes.
+     *
+     * @return the file path
+     */
+    @Override
+    public String getName()
+    {
+        return file.getPath();
+    }
+
+    /**
+     * Returns the length of the content.
+     *
+     * @return the length of the file in bytes
+     */
+    @Override
+    public long getLength()
+    {
+        return file.length();
+    }
+
+    /**
+     * Returns the last-modification time of the content.
+     *
+     * @return the last-modification time of the file
+     */
+    @Override
+    public long getLastModified()
+    {
+        return file.lastModified();
+    }
+
+    /**
+     * Determines if the source is a directory.
+     *
+     * @return <tt>true</tt> if the file is a directory
+     */
+    @Override
+    public boolean isDirectory()
+    {
+        return file.isDirectory();
+    }
+
+    /**
+     * Returns a key that changes whenever the content may have changed.
+     *
+     * @return the absolute path, length and last-modification time of the file
+     */
+    @Override
+    public String getContentKey()
+    {
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    /**
+     * Returns the file holding the content.
+     *
+     * @return the file
+     */
+    @Override
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Opens a stream to read the content.
+     *
+     * @return a new stream
+     * @throws IOException if the file cannot be opened
+     */
+    @Override
+    public InputStream getInputStream() throws IOException
+    {
+        return new FileInputStream(file);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        return obj instanceof FileSource && file.equals(((FileSource) obj).file);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return file.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getName();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+
+
+/**
+ * The source of the content of a pack file, read when the packs are written.
+ *
+ * @see FileSource
+ * @see ArchiveEntrySource
+ */
+public interface PackFileSource extends Serializable
+{
+
+    /**
+     * Returns a description of the source, for diagnostic purposes.
+     *
+     * @return the source name
+     */
+    String getName();
+
+    /**
+     * Returns the length of the content.
+     *
+     * @return the length of the content in bytes
+     */
+    long getLength();
+
+    /**
+     * Returns the last-modification time of the content.
+     *
+     * @return the last-modification time, or <tt>-1</tt> if it is not known
+     */
+    long getLastModified();
+
+    /**
+     * Determines if the source is a directory.
+     *
+     * @return <tt>true</tt> if the source is a directory
+     */
+    boolean isDirectory();
+
+    /**
+     * Returns a key that changes whenever the content may have changed.
+     * <p/>
+     * This is used to determine if previously compressed content can be reused.
+     *
+     * @return the content key
+     */
+    String getContentKey();
+
+    /**
+     * Returns the file holding the content.
+     *
+     * @return the file, or <tt>null</tt> if the content isn't held by a file of its own
+     */
+    File getFile();
+
+    /**
+     * Opens a stream to read the content.
+     *
+     * @return a new stream. The caller is responsible for closing it
+     * @throws IOException if the stream cannot be opened
+     */
+    InputStream getInputStream() throws IOException;
+}
@@ -37,6 +37,7 @@ import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackColor;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.util.file.FilePermissions;
 
 /**
  * Temporary holding place for Pack information as the Packager is built. The packager is used by
@@ -63,9 +64,9 @@ public class PackInfo implements Serializable
     public PackColor colour;
 
     /**
-     * Files of the Pack.
+     * Files of the Pack, and the source of their content.
      */
-    private Map<PackFile, File> files = new LinkedHashMap<PackFile, File>();
+    private Map<PackFile, PackFileSource> files = new LinkedHashMap<PackFile, PackFileSource>();
 
     /**
      * Parsables files in this Pack.
@@ -211,6 +212,26 @@ public class PackInfo implements Serializable
         pack.setHidden(hidden);
     }
 
+    /**
+     * Sets the compression format of the pack.
+     *
+     * @param compression the compression format, or {@code null} to use that of the installation
+     */
+    public void setCompression(String compression)
+    {
+        pack.setCompression(compression);
+    }
+
+    /**
+     * Returns the compression format of the pack.
+     *
+     * @return the compression format, or {@code null} if the pack uses that of the installation
+     */
+    public String getCompression()
+    {
+        return pack.getCompression();
+    }
+
     /***********************************************************************************************
      * Public methods to add data to the Installer being packed
      **********************************************************************************************/
@@ -238,7 +259,40 @@ public class PackInfo implements Serializable
                                          additionals);
         packFile.setLoosePackInfo(pack.isLoose());
         packFile.setCondition(condition);
-        files.put(packFile, file);
+        if (!file.isDirectory())
+        {
+            // only the execute bits are portable; the remaining bits reflect the umask of the build machine
+            packFile.setMode(FilePermissions.getMode(file) & FilePermissions.EXECUTE);
+        }
+        files.put(packFile, new FileSource(file));
+    }
+
+    /**
+     * Add a file or directory whose content is read from a source other than a file of its own, such as an
+     * archive entry.
+     * <p/>
+     * The content is read from the source when the packs are written.
+     *
+     * @param source           the source of the content
+     * @param relativePath     the path of the file relative to the compilation base directory. May be <tt>null</tt>
+     * @param targetfile       path file will be installed to
+     * @param osList           the target operation system(s) of this pack
+     * @param override         what to do if the file already exists when installing
+     * @param overrideRenameTo the globmapper expression for renaming existing files. May be <tt>null</tt>
+     * @param blockable        whether or not the file might be blocked during installation/uninstallation
+     * @param additionals      additional attributes. May be <tt>null</tt>
+     * @param condition        the condition. May be <tt>null</tt>
+     */
+    public void addFile(PackFileSource source, String relativePath, String targetfile, List<OsModel> osList,
+                        OverrideType override, String overrideRenameTo, Blockable blockable, Map additionals,
+                        String condition)
+    {
+        PackFile packFile = new PackFile(source.getName(), relativePath, targetfile, osList, source.getLength(),
+                                         source.getLastModified(), source.isDirectory(), override, overrideRenameTo,
+                                         blockable, additionals);
+        packFile.setLoosePackInfo(pack.isLoose());
+        packFile.setCondition(condition);
+        files.put(packFile, source);
     }
 
     /**
@@ -251,9 +305,19 @@ public class PackInfo implements Serializable
 
     /**
      * The file described by the specified PackFile. Returns <tt>null</tt> if the PackFile did not
-     * come from the set returned by {@link #getPackFiles()}.
+     * come from the set returned by {@link #getPackFiles()}, or if its content isn't held by a file of its own.
      */
     public File getFile(PackFile packFile)
+    {
+        PackFileSource source = files.get(packFile);
+        return (source != null) ? source.getFile() : null;
+    }
+
+    /**
+     * The source of the content of the specified PackFile. Returns <tt>null</tt> if the PackFile did not
+     * come from the set returned by {@link #getPackFiles()}.
+     */
+    public PackFileSource getSource(PackFile packFile)
     {
         return files.get(packFile);
     }
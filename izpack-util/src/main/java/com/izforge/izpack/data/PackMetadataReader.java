@@ -0,0 +1,391 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.data;
+
+import static com.izforge.izpack.data.PackMetadataWriter.ADDITIONALS;
+import static com.izforge.izpack.data.PackMetadataWriter.BACK_REFERENCE;
+import static com.izforge.izpack.data.PackMetadataWriter.DIRECTORY;
+import static com.izforge.izpack.data.PackMetadataWriter.MAGIC;
+import static com.izforge.izpack.data.PackMetadataWriter.MODE;
+import static com.izforge.izpack.data.PackMetadataWriter.NEW_STRING;
+import static com.izforge.izpack.data.PackMetadataWriter.NULL_STRING;
+import static com.izforge.izpack.data.PackMetadataWriter.PACK200;
+import static com.izforge.izpack.data.PackMetadataWriter.PARSABLE;
+import static com.izforge.izpack.data.PackMetadataWriter.SOLID_JAR;
+import static com.izforge.izpack.data.PackMetadataWriter.VERSION;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * Reads pack meta-data written by {@link PackMetadataWriter}.
+ * <p/>
+ * Packs whose meta-data was written using Java serialization are also supported; the format is determined when the
+ * file count is read.
+ */
+public class PackMetadataReader
+{
+
+    /**
+     * The stream to read from.
+     */
+    private final ObjectInput in;
+
+    /**
+     * The string table.
+     */
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * Determines if the meta-data was written using Java serialization.
+     */
+    private boolean serialized;
+
+    /**
+     * The parsable file meta-data of the last pack file read. May be <tt>null</tt>.
+     */
+    private ParsableFile parsable;
+
+
+    /**
+     * Constructs a <tt>PackMetadataReader</tt>.
+     *
+     * @param in the stream to read from
+     */
+    public PackMetadataReader(ObjectInput in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * Reads the format header, followed by the no. of files in the pack.
+     *
+     * @return the no. of files
+     * @throws IOException for any I/O error, or if the format version is not supported
+     */
+    public int readFileCount() throws IOException
+    {
+        int result;
+        int value = in.readInt();
+        if (value == MAGIC)
+        {
+            int version = in.readUnsignedByte();
+            if (version > VERSION)
+            {
+                throw new StreamCorruptedException("Unsupported pack meta-data version: " + version);
+            }
+            result = readCount();
+        }
+        else
+        {
+            serialized = true;
+            result = value;
+        }
+        return result;
+    }
+
+    /**
+     * Reads the no. of elements that follow.
+     *
+     * @return the no. of elements
+     * @throws IOException for any I/O error
+     */
+    public int readCount() throws IOException
+    {
+        return serialized ? in.readInt() : (int) readVarLong();
+    }
+
+    /**
+     * Reads a pack file.
+     *
+     * @return the pack file
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     */
+    public PackFile readPackFile() throws IOException, ClassNotFoundException
+    {
+        parsable = null;
+        if (serialized)
+        {
+            return (PackFile) in.readObject();
+        }
+        int flags = in.readUnsignedByte();
+        String relativePath = readPath();
+        String targetPath = readPath();
+        long length = readVarLong();
+        long lastModified = readVarLong() - 1;
+        String override = readString();
+        String overrideRenameTo = readString();
+        String blockable = readString();
+        String condition = readString();
+        List<OsModel> osConstraints = readOsConstraints();
+        String previousPackId = null;
+        long offset = -1;
+        if ((flags & BACK_REFERENCE) != 0)
+        {
+            previousPackId = readString();
+            offset = readVarLong();
+        }
+        Map additionals = null;
+        if ((flags & ADDITIONALS) != 0)
+        {
+            additionals = (Map) in.readObject();
+        }
+        int mode = 0;
+        if ((flags & MODE) != 0)
+        {
+            mode = (int) readVarLong();
+        }
+
+        PackFile result = new PackFile(relativePath, targetPath, osConstraints, length, lastModified,
+                                       (flags & DIRECTORY) != 0,
+                                       (override != null) ? OverrideType.valueOf(override) : null, overrideRenameTo,
+                                       (blockable != null) ? Blockable.valueOf(blockable) : null, additionals);
+        result.setCondition(condition);
+        result.setPack200Jar((flags & PACK200) != 0);
+        result.setSolidJar((flags & SOLID_JAR) != 0);
+        result.setMode(mode);
+        if (previousPackId != null)
+        {
+            result.setPreviousPackFileRef(previousPackId, offset);
+        }
+        if ((flags & PARSABLE) != 0)
+        {
+            parsable = readParsableFile();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the parsable file meta-data of the last pack file read.
+     * <p/>
+     * Parsable files returned by this method are not included in the parsable files that follow the pack files.
+     *
+     * @return the parsable file meta-data, or <tt>null</tt> if the last pack file read is not parsable
+     */
+    public ParsableFile getParsableFile()
+    {
+        return parsable;
+    }
+
+    /**
+     * Reads a parsable file.
+     *
+     * @return the parsable file
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     */
+    public ParsableFile readParsableFile() throws IOException, ClassNotFoundException
+    {
+        if (serialized)
+        {
+            return (ParsableFile) in.readObject();
+        }
+        String path = readPath();
+        String type = readString();
+        String encoding = readString();
+        List<OsModel> osConstraints = readOsConstraints();
+        ParsableFile result = new ParsableFile(path, (type != null) ? SubstitutionType.valueOf(type) : null,
+                                               encoding, osConstraints);
+        result.setCondition(readString());
+        return result;
+    }
+
+    /**
+     * Reads an executable file.
+     *
+     * @return the executable file
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     */
+    public ExecutableFile readExecutableFile() throws IOException, ClassNotFoundException
+    {
+        if (serialized)
+        {
+            return (ExecutableFile) in.readObject();
+        }
+        ExecutableFile result = new ExecutableFile();
+        result.path = readPath();
+        result.executionStage = (int) readVarLong();
+        result.mainClass = readString();
+        result.type = (int) readVarLong();
+        result.onFailure = (int) readVarLong();
+        result.argList = readStrings();
+        result.osList = readOsConstraints();
+        result.keepFile = in.readBoolean();
+        result.setCondition(readString());
+        return result;
+    }
+
+    /**
+     * Reads an update check.
+     *
+     * @return the update check
+     * @throws IOException            for any I/O error
+     * @throws ClassNotFoundException if the class of a serialized object cannot be found
+     */
+    public UpdateCheck readUpdateCheck() throws IOException, ClassNotFoundException
+    {
+        if (serialized)
+        {
+            return (UpdateCheck) in.readObject();
+        }
+        UpdateCheck result = new UpdateCheck(readStrings(), readStrings());
+        result.caseSensitive = in.readBoolean();
+        return result;
+    }
+
+    /**
+     * Reads a path.
+     *
+     * @return the path. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private String readPath() throws IOException
+    {
+        String result;
+        long value = readVarLong();
+        if (value == 0)
+        {
+            result = null;
+        }
+        else if (value == 1)
+        {
+            result = in.readUTF();
+        }
+        else
+        {
+            String dir = readString();
+            result = dir + '/' + in.readUTF();
+        }
+        return result;
+    }
+
+    /**
+     * Reads a list of strings.
+     *
+     * @return the strings. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private ArrayList<String> readStrings() throws IOException
+    {
+        ArrayList<String> result = null;
+        int size = (int) readVarLong() - 1;
+        if (size >= 0)
+        {
+            result = new ArrayList<String>(size);
+            for (int i = 0; i < size; ++i)
+            {
+                result.add(readString());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a list of OS constraints.
+     *
+     * @return the OS constraints. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private List<OsModel> readOsConstraints() throws IOException
+    {
+        List<OsModel> result = null;
+        int size = (int) readVarLong() - 1;
+        if (size >= 0)
+        {
+            result = new ArrayList<OsModel>(size);
+            for (int i = 0; i < size; ++i)
+            {
+                result.add(new OsModel(readString(), readString(), readString(), readString(), readString()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a string via the string table.
+     *
+     * @return the string. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private String readString() throws IOException
+    {
+        String result;
+        int ref = (int) readVarLong();
+        if (ref == NULL_STRING)
+        {
+            result = null;
+        }
+        else if (ref == NEW_STRING)
+        {
+            result = in.readUTF();
+            strings.add(result);
+        }
+        else
+        {
+            int index = ref - 2;
+            if (index >= strings.size())
+            {
+                throw new StreamCorruptedException("Invalid string reference: " + ref);
+            }
+            result = strings.get(index);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a non-negative variable length quantity.
+     *
+     * @return the value
+     * @throws IOException for any I/O error
+     */
+    private long readVarLong() throws IOException
+    {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do
+        {
+            if (shift > 63)
+            {
+                throw new StreamCorruptedException("Malformed variable length quantity");
+            }
+            b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        return result;
+    }
+
+}
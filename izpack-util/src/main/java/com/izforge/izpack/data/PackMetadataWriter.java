@@ -0,0 +1,404 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.data;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+
+
+/**
+ * Writes pack meta-data in a compact, versioned binary format.
+ * <p/>
+ * This replaces Java serialization of {@link PackFile}, {@link ParsableFile}, {@link ExecutableFile} and
+ * {@link UpdateCheck} instances. Integers are written as variable length quantities, and strings that are likely to
+ * repeat (directories, conditions, enum names, OS constraints) are written once and subsequently referred to by
+ * their index in a string table.
+ * <p/>
+ * The stream starts with a marker that can never be a valid file count in the serialized format, so that
+ * {@link PackMetadataReader} can continue to read packs written by earlier versions.
+ */
+public class PackMetadataWriter
+{
+
+    /**
+     * Marker identifying the compact format. Negative, so it cannot be confused with a serialized file count.
+     */
+    static final int MAGIC = 0xFF495A50;
+
+    /**
+     * The current format version.
+     */
+    static final int VERSION = 4;
+
+    /**
+     * String reference indicating <tt>null</tt>.
+     */
+    static final int NULL_STRING = 0;
+
+    /**
+     * String reference indicating a new string follows.
+     */
+    static final int NEW_STRING = 1;
+
+    /**
+     * Pack file flag indicating the file is a directory.
+     */
+    static final int DIRECTORY = 0x01;
+
+    /**
+     * Pack file flag indicating the file is a pack200 jar.
+     */
+    static final int PACK200 = 0x02;
+
+    /**
+     * Pack file flag indicating the file refers to the content of a file in a previous pack.
+     */
+    static final int BACK_REFERENCE = 0x04;
+
+    /**
+     * Pack file flag indicating the file has additional attributes.
+     */
+    static final int ADDITIONALS = 0x08;
+
+    /**
+     * Pack file flag indicating the file is parsable, and its parsable file meta-data follows. Since version 2.
+     */
+    static final int PARSABLE = 0x10;
+
+    /**
+     * Pack file flag indicating the file is a jar whose entries are stored by {@link SolidJarWriter}. Since version 3.
+     */
+    static final int SOLID_JAR = 0x20;
+
+    /**
+     * Pack file flag indicating the POSIX permission bits of the file follow. Since version 4.
+     */
+    static final int MODE = 0x40;
+
+    /**
+     * The stream to write to.
+     */
+    private final ObjectOutput out;
+
+    /**
+     * The string table, mapping strings to their index.
+     */
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+
+    /**
+     * Constructs a <tt>PackMetadataWriter</tt>.
+     *
+     * @param out the stream to write to
+     */
+    public PackMetadataWriter(ObjectOutput out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Writes the format header, followed by the no. of files in the pack.
+     *
+     * @param count the no. of files
+     * @throws IOException for any I/O error
+     */
+    public void writeFileCount(int count) throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeCount(count);
+    }
+
+    /**
+     * Writes the no. of elements that follow.
+     *
+     * @param count the no. of elements
+     * @throws IOException for any I/O error
+     */
+    public void writeCount(int count) throws IOException
+    {
+        writeVarLong(count);
+    }
+
+    /**
+     * Writes a pack file.
+     *
+     * @param file the pack file
+     * @throws IOException for any I/O error
+     */
+    public void writePackFile(PackFile file) throws IOException
+    {
+        writePackFile(file, null);
+    }
+
+    /**
+     * Writes a pack file, along with the parsable file meta-data for it.
+     * <p/>
+     * This enables the installer to substitute variables as the file is unpacked, rather than parsing the file after
+     * it has been written.
+     *
+     * @param file     the pack file
+     * @param parsable the parsable file meta-data for the pack file. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    public void writePackFile(PackFile file, ParsableFile parsable) throws IOException
+    {
+        int flags = 0;
+        if (file.isDirectory())
+        {
+            flags |= DIRECTORY;
+        }
+        if (file.isPack200Jar())
+        {
+            flags |= PACK200;
+        }
+        if (file.isSolidJar())
+        {
+            flags |= SOLID_JAR;
+        }
+        if (file.isBackReference())
+        {
+            flags |= BACK_REFERENCE;
+        }
+        if (file.getAdditionals() != null)
+        {
+            flags |= ADDITIONALS;
+        }
+        if (parsable != null)
+        {
+            flags |= PARSABLE;
+        }
+        if (file.getMode() != 0)
+        {
+            flags |= MODE;
+        }
+        out.writeByte(flags);
+        writePath(file.getRelativeSourcePath());
+        writePath(file.getTargetPath());
+        writeVarLong(file.length());
+        writeVarLong(file.lastModified() + 1);  // -1 indicates no timestamp
+        writeString(file.override() != null ? file.override().name() : null);
+        writeString(file.overrideRenameTo());
+        writeString(file.blockable() != null ? file.blockable().name() : null);
+        writeString(file.getCondition());
+        writeOsConstraints(file.osConstraints());
+        if (file.isBackReference())
+        {
+            writeString(file.previousPackId);
+            writeVarLong(file.offsetInPreviousPack);
+        }
+        if (file.getAdditionals() != null)
+        {
+            out.writeObject(file.getAdditionals());
+        }
+        if (file.getMode() != 0)
+        {
+            writeVarLong(file.getMode());
+        }
+        if (parsable != null)
+        {
+            writeParsableFile(parsable);
+        }
+    }
+
+    /**
+     * Writes a parsable file.
+     *
+     * @param file the parsable file
+     * @throws IOException for any I/O error
+     */
+    public void writeParsableFile(ParsableFile file) throws IOException
+    {
+        writePath(file.getPath());
+        writeString(file.getType() != null ? file.getType().name() : null);
+        writeString(file.getEncoding());
+        writeOsConstraints(file.getOsConstraints());
+        writeString(file.getCondition());
+    }
+
+    /**
+     * Writes an executable file.
+     *
+     * @param file the executable file
+     * @throws IOException for any I/O error
+     */
+    public void writeExecutableFile(ExecutableFile file) throws IOException
+    {
+        writePath(file.path);
+        writeVarLong(file.executionStage);
+        writeString(file.mainClass);
+        writeVarLong(file.type);
+        writeVarLong(file.onFailure);
+        writeStrings(file.argList);
+        writeOsConstraints(file.osList);
+        out.writeBoolean(file.keepFile);
+        writeString(file.getCondition());
+    }
+
+    /**
+     * Writes an update check.
+     *
+     * @param check the update check
+     * @throws IOException for any I/O error
+     */
+    public void writeUpdateCheck(UpdateCheck check) throws IOException
+    {
+        writeStrings(check.includesList);
+        writeStrings(check.excludesList);
+        out.writeBoolean(check.caseSensitive);
+    }
+
+    /**
+     * Writes a path.
+     * <p/>
+     * The parent directory is written via the string table, so that files in the same directory share it.
+     * The path is preceded by <tt>0</tt> if it is <tt>null</tt>, <tt>1</tt> if it has no parent, else <tt>2</tt>.
+     *
+     * @param path the path, using '/' as separator. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private void writePath(String path) throws IOException
+    {
+        if (path == null)
+        {
+            writeVarLong(0);
+        }
+        else
+        {
+            int index = path.lastIndexOf('/');
+            if (index == -1)
+            {
+                writeVarLong(1);
+            }
+            else
+            {
+                writeVarLong(2);
+                writeString(path.substring(0, index));
+            }
+            out.writeUTF(path.substring(index + 1));
+        }
+    }
+
+    /**
+     * Writes a list of strings.
+     *
+     * @param list the strings. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private void writeStrings(List<String> list) throws IOException
+    {
+        if (list == null)
+        {
+            writeVarLong(0);
+        }
+        else
+        {
+            writeVarLong(list.size() + 1);
+            for (String value : list)
+            {
+                writeString(value);
+            }
+        }
+    }
+
+    /**
+     * Writes a list of OS constraints.
+     *
+     * @param list the OS constraints. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private void writeOsConstraints(List<OsModel> list) throws IOException
+    {
+        if (list == null)
+        {
+            writeVarLong(0);
+        }
+        else
+        {
+            writeVarLong(list.size() + 1);
+            for (OsModel model : list)
+            {
+                writeString(model.getArch());
+                writeString(model.getFamily());
+                writeString(model.getJre());
+                writeString(model.getName());
+                writeString(model.getVersion());
+            }
+        }
+    }
+
+    /**
+     * Writes a string via the string table.
+     * <p/>
+     * The first occurrence of a string is written in full; subsequent occurrences are written as a reference to it.
+     *
+     * @param value the string. May be <tt>null</tt>
+     * @throws IOException for any I/O error
+     */
+    private void writeString(String value) throws IOException
+    {
+        if (value == null)
+        {
+            writeVarLong(NULL_STRING);
+        }
+        else
+        {
+            Integer index = strings.get(value);
+            if (index != null)
+            {
+                writeVarLong(index + 2);
+            }
+            else
+            {
+                strings.put(value, strings.size());
+                writeVarLong(NEW_STRING);
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    /**
+     * Writes a non-negative value as a variable length quantity, 7 bits per byte.
+     *
+     * @param value the value to write
+     * @throws IOException for any I/O error
+     */
+    private void writeVarLong(long value) throws IOException
+    {
+        if (value < 0)
+        {
+            throw new IOException("Cannot encode negative value: " + value);
+        }
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+}
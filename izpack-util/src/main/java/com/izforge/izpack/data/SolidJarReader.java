@@ -0,0 +1,166 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import static com.izforge.izpack.data.SolidJarWriter.COMMENT;
+import static com.izforge.izpack.data.SolidJarWriter.EXTRA;
+import static com.izforge.izpack.data.SolidJarWriter.STORED;
+import static com.izforge.izpack.data.SolidJarWriter.TIME;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+
+/**
+ * Rebuilds a jar written by {@link SolidJarWriter}.
+ */
+public class SolidJarReader
+{
+
+    /**
+     * The stream to read from.
+     */
+    private final DataInput in;
+
+    /**
+     * The copy buffer.
+     */
+    private final byte[] buffer = new byte[8192];
+
+
+    /**
+     * Constructs a <tt>SolidJarReader</tt>.
+     *
+     * @param in the stream to read from
+     */
+    public SolidJarReader(DataInput in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * Reads a jar, writing it to a stream.
+     * <p/>
+     * The stream is not closed.
+     *
+     * @param out the stream to write the jar to
+     * @throws IOException for any I/O error
+     */
+    public void read(OutputStream out) throws IOException
+    {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        int count = in.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            ZipEntry entry = readEntry();
+            long size = in.readLong();
+            if (entry.getMethod() == ZipEntry.STORED)
+            {
+                entry.setSize(size);
+                entry.setCompressedSize(size);
+            }
+            zip.putNextEntry(entry);
+            copy(size, zip);
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /**
+     * Skips a jar.
+     *
+     * @throws IOException for any I/O error
+     */
+    public void skip() throws IOException
+    {
+        int count = in.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            readEntry();
+            copy(in.readLong(), null);
+        }
+    }
+
+    /**
+     * Reads the attributes of an entry.
+     *
+     * @return the entry
+     * @throws IOException for any I/O error
+     */
+    private ZipEntry readEntry() throws IOException
+    {
+        ZipEntry entry = new ZipEntry(in.readUTF());
+        int flags = in.readUnsignedByte();
+        if ((flags & STORED) != 0)
+        {
+            entry.setMethod(ZipEntry.STORED);
+            entry.setCrc(in.readInt() & 0xFFFFFFFFL);
+        }
+        else
+        {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+        if ((flags & TIME) != 0)
+        {
+            entry.setTime(in.readLong());
+        }
+        if ((flags & EXTRA) != 0)
+        {
+            byte[] extra = new byte[in.readUnsignedShort()];
+            in.readFully(extra);
+            entry.setExtra(extra);
+        }
+        if ((flags & COMMENT) != 0)
+        {
+            entry.setComment(in.readUTF());
+        }
+        return entry;
+    }
+
+    /**
+     * Copies entry content.
+     *
+     * @param size the no. of bytes to copy
+     * @param out  the stream to copy to, or <tt>null</tt> to discard the content
+     * @throws IOException for any I/O error
+     */
+    private void copy(long size, OutputStream out) throws IOException
+    {
+        if (size < 0)
+        {
+            throw new EOFException("Invalid entry size: " + size);
+        }
+        while (size > 0)
+        {
+            int count = (int) Math.min(buffer.length, size);
+            in.readFully(buffer, 0, count);
+            if (out != null)
+            {
+                out.write(buffer, 0, count);
+            }
+            size -= count;
+        }
+    }
+
+}
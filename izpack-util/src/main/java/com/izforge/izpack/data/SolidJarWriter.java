@@ -0,0 +1,225 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import com.izforge.izpack.util.file.FileUtils;
+
+
+/**
+ * Writes the entries of a jar uncompressed, so that they are compressed along with the rest of the pack.
+ * <p/>
+ * A jar is already compressed entry by entry, which leaves nothing for the pack compression to gain, and prevents
+ * the class files of different jars from being compressed together. Writing the entries uncompressed lets the pack
+ * compression see all of them as one solid stream. {@link SolidJarReader} rebuilds the jar on installation, with the
+ * same entries, in the same order, with the same content, times, extra fields, comments and compression methods.
+ * The rebuilt jar is equivalent to the original, but is not byte for byte identical, as entries are recompressed.
+ * <p/>
+ * As the content of each entry is unchanged, signed jars remain valid.
+ */
+public class SolidJarWriter
+{
+
+    /**
+     * Entry flag indicating the entry is stored rather than deflated, and is followed by its CRC.
+     */
+    static final int STORED = 0x01;
+
+    /**
+     * Entry flag indicating the entry has a modification time.
+     */
+    static final int TIME = 0x02;
+
+    /**
+     * Entry flag indicating the entry has an extra field.
+     */
+    static final int EXTRA = 0x04;
+
+    /**
+     * Entry flag indicating the entry has a comment.
+     */
+    static final int COMMENT = 0x08;
+
+    /**
+     * The stream to write to.
+     */
+    private final DataOutput out;
+
+    /**
+     * The copy buffer.
+     */
+    private final byte[] buffer = new byte[8192];
+
+
+    /**
+     * Constructs a <tt>SolidJarWriter</tt>.
+     *
+     * @param out the stream to write to
+     */
+    public SolidJarWriter(DataOutput out)
+    {
+        this.out = out;
+    }
+
+    /**
+     * Determines if a jar can be written by {@link #write(File)}.
+     * <p/>
+     * This is the case for any readable zip file whose entry names are unique, so that it can be rebuilt.
+     *
+     * @param jar the jar
+     * @return <tt>true</tt> if the jar can be written
+     */
+    public static boolean isSupported(File jar)
+    {
+        ZipFile zip = null;
+        try
+        {
+            zip = new ZipFile(jar);
+            Set<String> names = new HashSet<String>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                if (!names.add(entries.nextElement().getName()))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        catch (IOException exception)
+        {
+            return false;
+        }
+        finally
+        {
+            FileUtils.close(zip);
+        }
+    }
+
+    /**
+     * Writes the entries of a jar.
+     *
+     * @param jar the jar
+     * @return the no. of bytes of entry content written
+     * @throws IOException for any I/O error
+     */
+    public long write(File jar) throws IOException
+    {
+        long result = 0;
+        ZipFile zip = new ZipFile(jar);
+        try
+        {
+            out.writeInt(zip.size());
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
+            {
+                result += writeEntry(zip, entries.nextElement());
+            }
+        }
+        finally
+        {
+            FileUtils.close(zip);
+        }
+        return result;
+    }
+
+    /**
+     * Writes an entry.
+     *
+     * @param zip   the zip containing the entry
+     * @param entry the entry
+     * @return the entry size
+     * @throws IOException for any I/O error
+     */
+    private long writeEntry(ZipFile zip, ZipEntry entry) throws IOException
+    {
+        int flags = 0;
+        if (entry.getMethod() == ZipEntry.STORED)
+        {
+            flags |= STORED;
+        }
+        if (entry.getTime() != -1)
+        {
+            flags |= TIME;
+        }
+        if (entry.getExtra() != null)
+        {
+            flags |= EXTRA;
+        }
+        if (entry.getComment() != null)
+        {
+            flags |= COMMENT;
+        }
+        out.writeUTF(entry.getName());
+        out.writeByte(flags);
+        if ((flags & STORED) != 0)
+        {
+            out.writeInt((int) entry.getCrc());
+        }
+        if ((flags & TIME) != 0)
+        {
+            out.writeLong(entry.getTime());
+        }
+        if ((flags & EXTRA) != 0)
+        {
+            out.writeShort(entry.getExtra().length);
+            out.write(entry.getExtra());
+        }
+        if ((flags & COMMENT) != 0)
+        {
+            out.writeUTF(entry.getComment());
+        }
+        long size = entry.getSize();
+        out.writeLong(size);
+
+        long written = 0;
+        InputStream in = zip.getInputStream(entry);
+        try
+        {
+            int read;
+            while (written < size && (read = in.read(buffer, 0, (int) Math.min(buffer.length, size - written))) != -1)
+            {
+                out.write(buffer, 0, read);
+                written += read;
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        if (written != size)
+        {
+            throw new ZipException("Size mismatch reading " + entry.getName() + ": expected " + size + " bytes, read "
+                                           + written);
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+
+/**
+ * A zip archive whose entries are added to packs without being extracted first.
+ * <p/>
+ * The archive is opened on demand, and stays open until {@link #close()} is invoked. It is reopened if an entry is
+ * read after it has been closed.
+ */
+public class SourceArchive implements Closeable, Serializable
+{
+
+    private static final long serialVersionUID = -2093367540651372839L;
+
+    /**
+     * The archive file.
+     */
+    private final File file;
+
+    /**
+     * The opened archive. May be <tt>null</tt>.
+     */
+    private transient ZipFile zip;
+
+
+    /**
+     * Constructs a <tt>SourceArchive</tt>.
+     *
+     * @param file the archive file
+     */
+    public SourceArchive(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Returns the archive file.
+     *
+     * @return the archive file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Returns the entries of the archive, in the order they appear in the archive's central directory.
+     * <p/>
+     * Directory entries have names ending in '/'.
+     *
+     * @return the archive entries
+     * @throws IOException if the archive cannot be read
+     */
+    public List<ArchiveEntrySource> getEntries() throws IOException
+    {
+        List<ArchiveEntrySource> result = new ArrayList<ArchiveEntrySource>();
+        Enumeration<? extends ZipEntry> entries = getZipFile().entries();
+        while (entries.hasMoreElements())
+        {
+            ZipEntry entry = entries.nextElement();
+            result.add(new ArchiveEntrySource(this, entry.getName(), entry.isDirectory() ? 0 : entry.getSize(),
+                                              entry.getTime(), entry.getCrc(), entry.isDirectory()));
+        }
+        return result;
+    }
+
+    /**
+     * Opens a stream to read an entry.
+     *
+     * @param name the entry name
+     * @return a new stream
+     * @throws IOException if the entry doesn't exist or cannot be read
+     */
+    public InputStream getInputStream(String name) throws IOException
+    {
+        ZipFile zipFile = getZipFile();
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null)
+        {
+            throw new IOException("Entry " + name + " not found in archive " + file);
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    /**
+     * Closes the archive.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (zip != null)
+        {
+            try
+            {
+                zip.close();
+            }
+            finally
+            {
+                zip = null;
+            }
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return file.getPath();
+    }
+
+    /**
+     * Returns the opened archive, opening it if required.
+     *
+     * @return the archive
+     * @throws IOException if the archive cannot be opened
+     */
+    private synchronized ZipFile getZipFile() throws IOException
+    {
+        if (zip == null)
+        {
+            zip = new ZipFile(file);
+        }
+        return zip;
+    }
+}
@@ -30,12 +30,13 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
@@ -45,6 +46,7 @@ import org.apache.tools.zip.ZipOutputStream;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.util.file.FilePermissions;
 
 /**
  * <p>
@@ -68,8 +70,6 @@ public class IoHelper
      */
     private static final String MASKED_SLASH_PLACEHOLDER = "~&_&~";
 
-    private static Properties envVars = null;
-
     /**
      * Default constructor
      */
@@ -312,6 +312,9 @@ public class IoHelper
     /**
      * Changes the permissions of the given file to the given POSIX permissions. This method will be
      * raised an exception, if the OS is not UNIX.
+     * <p/>
+     * The permissions are changed in-process where possible; the <tt>chmod</tt> command is only used for modes that
+     * {@link FilePermissions#chmod} doesn't support.
      *
      * @param path        the absolute path of the file for which the permissions should be changed
      * @param permissions POSIX permissions to be set
@@ -322,10 +325,13 @@ public class IoHelper
         // Perform UNIX
         if (OsVersion.IS_UNIX)
         {
-            String[] params = {"chmod", permissions, path};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
+            if (!FilePermissions.chmod(new File(path), permissions))
+            {
+                String[] params = {"chmod", permissions, path};
+                String[] output = new String[2];
+                FileExecutor fe = new FileExecutor();
+                fe.executeCommand(params, output);
+            }
         }
         else
         {
@@ -335,51 +341,15 @@ public class IoHelper
 
     /**
      * Returns the free (disk) space for the given path. If it is not ascertainable -1 returns.
+     * <p/>
+     * The space is determined in-process, and cached briefly; see {@link PlatformProbe#getUsableSpace}.
      *
      * @param path path for which the free space should be detected
      * @return the free space for the given path
      */
     public static long getFreeSpace(String path)
     {
-        long retval = -1;
-        if (OsVersion.IS_WINDOWS)
-        {
-            String command = "cmd.exe";
-            if (System.getProperty("os.name").toLowerCase().contains("windows 9"))
-            {
-                return (-1);
-            }
-            String[] params = {command, "/C", "\"dir /D /-C \"" + path + "\"\""};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
-            retval = extractLong(output[0], -3, 3, "%");
-        }
-        else if (OsVersion.IS_SUNOS)
-        {
-            String[] params = {"df", "-k", path};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
-            retval = extractLong(output[0], -3, 3, "%") * 1024;
-        }
-        else if (OsVersion.IS_HPUX)
-        {
-            String[] params = {"bdf", path};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
-            retval = extractLong(output[0], -3, 3, "%") * 1024;
-        }
-        else if (OsVersion.IS_UNIX)
-        {
-            String[] params = {"df", "-Pk", path};
-            String[] output = new String[2];
-            FileExecutor fe = new FileExecutor();
-            fe.executeCommand(params, output);
-            retval = extractLong(output[0], -3, 3, "%") * 1024;
-        }
-        return retval;
+        return PlatformProbe.getUsableSpace(new File(path));
     }
 
     /**
@@ -394,18 +364,7 @@ public class IoHelper
     {
         if ("getFreeSpace".equals(method))
         {
-            if (OsVersion.IS_UNIX)
-            {
-                return true;
-            }
-            if (OsVersion.IS_WINDOWS)
-            { // getFreeSpace do not work on Windows 98.
-                if (System.getProperty("os.name").toLowerCase().contains("windows 9"))
-                {
-                    return (false);
-                }
-                return (true);
-            }
+            return true;
         }
         else if ("chmod".equals(method))
         {
@@ -457,60 +416,6 @@ public class IoHelper
         return result;
     }
 
-    /**
-     * Extracts a long value from a string in a special manner. The string will be broken into
-     * tokens with a standard StringTokenizer. Arround the assumed place (with the given half range)
-     * the tokens are scaned reverse for a token which represents a long. if useNotIdentifier is not
-     * null, tokens which are contains this string will be ignored. The first founded long returns.
-     *
-     * @param in               the string which should be parsed
-     * @param assumedPlace     token number which should contain the value
-     * @param halfRange        half range for detection range
-     * @param useNotIdentifier string which determines tokens which should be ignored
-     * @return founded long
-     */
-    private static long extractLong(String in, int assumedPlace, int halfRange,
-                                    String useNotIdentifier)
-    {
-        long retval = -1;
-        StringTokenizer st = new StringTokenizer(in);
-        int length = st.countTokens();
-        int i;
-        int currentRange = 0;
-        String[] interestedEntries = new String[halfRange + halfRange];
-        for (i = 0; i < length - halfRange + assumedPlace; ++i)
-        {
-            st.nextToken(); // Forget this entries.
-        }
-
-        for (i = 0; i < halfRange + halfRange; ++i)
-        { // Put the interesting Strings into an intermediaer array.
-            if (st.hasMoreTokens())
-            {
-                interestedEntries[i] = st.nextToken();
-                currentRange++;
-            }
-        }
-
-        for (i = currentRange - 1; i >= 0; --i)
-        {
-            if (useNotIdentifier != null && interestedEntries[i].contains(useNotIdentifier))
-            {
-                continue;
-            }
-            try
-            {
-                retval = Long.parseLong(interestedEntries[i]);
-            }
-            catch (NumberFormatException nfe)
-            {
-                continue;
-            }
-            break;
-        }
-        return retval;
-    }
-
     /**
      * Returns the primary group of the current user. This feature will be supported only on Unix.
      * On other systems null returns.
@@ -672,110 +577,14 @@ public class IoHelper
     }
 
     /**
-     * Returns the value of the environment variable given by key. This method is a work around for
-     * VM versions which do not support getenv in an other way. At the first call all environment
-     * variables will be loaded via an exec. On Windows keys are not case sensitive.
+     * Returns the value of the environment variable given by key. On Windows keys are not case sensitive.
      *
      * @param key variable name for which the value should be resolved
      * @return the value of the environment variable given by key
      */
     public static String getenv(String key)
     {
-        if (envVars == null)
-        {
-            loadEnv();
-        }
-        if (envVars == null)
-        {
-            return (null);
-        }
-        if (OsVersion.IS_WINDOWS)
-        {
-            key = key.toUpperCase();
-        }
-        return (String) (envVars.get(key));
-    }
-
-    /**
-     * Loads all environment variables via an exec.
-     */
-    private static void loadEnv()
-    {
-        String[] output = new String[2];
-        String[] params;
-        if (OsVersion.IS_WINDOWS)
-        {
-            String command = "cmd.exe";
-            if (System.getProperty("os.name").toLowerCase().contains("windows 9"))
-            {
-                command = "command.com";
-            }
-            String[] paramst = {command, "/C", "set"};
-            params = paramst;
-        }
-        else
-        {
-            String[] paramst = {"env"};
-            params = paramst;
-        }
-        FileExecutor fe = new FileExecutor();
-        fe.executeCommand(params, output);
-        if (output[0].length() <= 0)
-        {
-            return;
-        }
-        String lineSep = System.getProperty("line.separator");
-        StringTokenizer tokenizer = new StringTokenizer(output[0], lineSep);
-        envVars = new Properties();
-        String var = null;
-        while (tokenizer.hasMoreTokens())
-        {
-            String line = tokenizer.nextToken();
-            if (line.indexOf('=') == -1)
-            { // May be a env var with a new line in it.
-                if (var == null)
-                {
-                    var = lineSep + line;
-                }
-                else
-                {
-                    var += lineSep + line;
-                }
-            }
-            else
-            { // New var, perform the previous one.
-                setEnvVar(var);
-                var = line;
-            }
-        }
-        setEnvVar(var);
-    }
-
-    /**
-     * Extracts key and value from the given string var. The key should be separated from the value
-     * by a sign. On Windows all chars of the key are translated to upper case.
-     *
-     * @param var
-     */
-    private static void setEnvVar(String var)
-    {
-        if (var == null)
-        {
-            return;
-        }
-        int index = var.indexOf('=');
-        if (index < 0)
-        {
-            return;
-        }
-        String key = var.substring(0, index);
-        // On windows change all key chars to upper.
-        if (OsVersion.IS_WINDOWS)
-        {
-            key = key.toUpperCase();
-        }
-        envVars.setProperty(key, var.substring(index + 1));
-
+        return PlatformProbe.getenv(key);
     }
 
     /**
@@ -795,17 +604,26 @@ public class IoHelper
             alreadyWrittenFiles.put(out, new HashSet<String>());
         }
         Set<String> currentSet = alreadyWrittenFiles.get(out);
+        List<Pattern> includes = null;
+        if (files != null)
+        {
+            includes = new ArrayList<Pattern>(files.size());
+            for (String doInclude : files)
+            {   // Make "includes" self to support regex.
+                includes.add(Pattern.compile(doInclude));
+            }
+        }
         while ((zentry = zin.getNextEntry()) != null)
         {
             String currentName = zentry.getName();
             String testName = currentName.replace('/', '.');
             testName = testName.replace('\\', '.');
-            if (files != null)
+            if (includes != null)
             {
                 boolean founded = false;
-                for (String doInclude : files)
-                {   // Make "includes" self to support regex.
-                    if (testName.matches(doInclude))
+                for (Pattern include : includes)
+                {
+                    if (include.matcher(testName).matches())
                     {
                         founded = true;
                         break;
@@ -822,9 +640,7 @@ public class IoHelper
             }
             try
             {
-                // Get input file date and time.
-                long fileTime = zentry.getTime();
-                copyStreamToJar(zin, out, currentName, fileTime);
+                copyEntryToJar(zin, out, currentName, zentry);
                 zin.closeEntry();
                 currentSet.add(currentName);
             }
@@ -872,6 +688,74 @@ public class IoHelper
         out.closeEntry();
     }
 
+    /**
+     * Copies a zip entry to a jar.
+     * <p/>
+     * Entries that aren't compressed in the source, or that don't shrink when compressed, are written uncompressed,
+     * using the size and CRC of the source entry. These aren't deflated again.
+     *
+     * @param zin         the entry content
+     * @param out         the jar to write to
+     * @param currentName the name of the entry in the jar
+     * @param source      the source entry
+     * @throws IOException if an I/O error occurs
+     */
+    public static void copyEntryToJar(InputStream zin, ZipOutputStream out, String currentName, ZipEntry source)
+            throws IOException
+    {
+        org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(currentName);
+        copyEntryAttributes(source, entry);
+        out.putNextEntry(entry);
+        copyStream(zin, out);
+    }
+
+    /**
+     * Copies a zip entry to a jar.
+     * <p/>
+     * Entries that aren't compressed in the source, or that don't shrink when compressed, are written uncompressed,
+     * using the size and CRC of the source entry. These aren't deflated again.
+     *
+     * @param zin         the entry content
+     * @param out         the jar to write to
+     * @param currentName the name of the entry in the jar
+     * @param source      the source entry
+     * @throws IOException if an I/O error occurs
+     */
+    public static void copyEntryToJar(InputStream zin, java.util.zip.ZipOutputStream out, String currentName,
+                                      ZipEntry source) throws IOException
+    {
+        ZipEntry entry = new ZipEntry(currentName);
+        copyEntryAttributes(source, entry);
+        out.putNextEntry(entry);
+        copyStream(zin, out);
+        out.closeEntry();
+    }
+
+    /**
+     * Copies the time, and if the entry can be stored without compression, the method, size and CRC from one
+     * entry to another.
+     *
+     * @param source the source entry
+     * @param target the target entry
+     */
+    private static void copyEntryAttributes(ZipEntry source, ZipEntry target)
+    {
+        if (source.getTime() != -1)
+        {
+            target.setTime(source.getTime());
+        }
+        long size = source.getSize();
+        long compressedSize = source.getCompressedSize();
+        if (size != -1 && source.getCrc() != -1
+                && (source.getMethod() == ZipEntry.STORED || (compressedSize != -1 && compressedSize >= size)))
+        {
+            target.setMethod(ZipEntry.STORED);
+            target.setSize(size);
+            target.setCompressedSize(size);
+            target.setCrc(source.getCrc());
+        }
+    }
+
     /**
      * Copies all the data from the specified input stream to the specified output stream.
      *
@@ -0,0 +1,199 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.util;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Queries the platform from within the JVM, rather than by running commands such as <tt>df</tt> or <tt>env</tt>.
+ * <p/>
+ * Free space is cached for a short time, as panels query it each time the pack selection or installation path
+ * changes.
+ */
+public final class PlatformProbe
+{
+
+    /**
+     * The time that free space is cached for, in milliseconds.
+     */
+    public static final long FREE_SPACE_TTL = 2000;
+
+    /**
+     * The maximum no. of paths to cache free space for.
+     */
+    private static final int MAX_PATHS = 16;
+
+    /**
+     * The cached free space, keyed on absolute path, in least recently used order.
+     */
+    private static final Map<String, FreeSpace> freeSpace = new LinkedHashMap<String, FreeSpace>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FreeSpace> eldest)
+        {
+            return size() > MAX_PATHS;
+        }
+    };
+
+    /**
+     * The environment, or <tt>null</tt> if it hasn't been loaded.
+     */
+    private static Map<String, String> environment;
+
+
+    /**
+     * Prevents construction.
+     */
+    private PlatformProbe()
+    {
+    }
+
+    /**
+     * Returns the no. of bytes available to this JVM on the partition holding a path.
+     * <p/>
+     * The result is cached briefly; {@link #clearFreeSpace()} discards it once files have been written.
+     *
+     * @param path the path. This should exist
+     * @return the available space in bytes, or <tt>-1</tt> if it cannot be determined
+     */
+    public static long getUsableSpace(File path)
+    {
+        String key = path.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        synchronized (freeSpace)
+        {
+            FreeSpace cached = freeSpace.get(key);
+            if (cached != null && now - cached.time >= 0 && now - cached.time < FREE_SPACE_TTL)
+            {
+                return cached.bytes;
+            }
+        }
+        long bytes;
+        try
+        {
+            bytes = path.getUsableSpace();
+            if (bytes == 0 && !path.exists())
+            {
+                bytes = -1;
+            }
+        }
+        catch (SecurityException exception)
+        {
+            bytes = -1;
+        }
+        synchronized (freeSpace)
+        {
+            freeSpace.put(key, new FreeSpace(bytes, now));
+        }
+        return bytes;
+    }
+
+    /**
+     * Discards cached free space, e.g. after files have been written.
+     */
+    public static void clearFreeSpace()
+    {
+        synchronized (freeSpace)
+        {
+            freeSpace.clear();
+        }
+    }
+
+    /**
+     * Returns the value of an environment variable.
+     * <p/>
+     * On Windows, names are not case sensitive.
+     *
+     * @param name the variable name
+     * @return the variable value, or <tt>null</tt> if it isn't defined
+     */
+    public static String getenv(String name)
+    {
+        return getEnvironment().get(name);
+    }
+
+    /**
+     * Returns the environment.
+     * <p/>
+     * On Windows, the keys are not case sensitive.
+     *
+     * @return the environment
+     */
+    public static synchronized Map<String, String> getEnvironment()
+    {
+        if (environment == null)
+        {
+            Map<String, String> env;
+            try
+            {
+                env = System.getenv();
+            }
+            catch (SecurityException exception)
+            {
+                env = Collections.emptyMap();
+            }
+            if (OsVersion.IS_WINDOWS)
+            {
+                Map<String, String> map = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+                map.putAll(env);
+                env = Collections.unmodifiableMap(map);
+            }
+            environment = env;
+        }
+        return environment;
+    }
+
+    /**
+     * Free space for a path, at a point in time.
+     */
+    private static class FreeSpace
+    {
+
+        /**
+         * The free space, in bytes.
+         */
+        private final long bytes;
+
+        /**
+         * The time when the free space was determined.
+         */
+        private final long time;
+
+        /**
+         * Constructs a <tt>FreeSpace</tt>.
+         *
+         * @param bytes the free space, in bytes
+         * @param time  the time when the free space was determined
+         */
+        public FreeSpace(long bytes, long time)
+        {
+            this.bytes = bytes;
+            this.time = time;
+        }
+    }
+}
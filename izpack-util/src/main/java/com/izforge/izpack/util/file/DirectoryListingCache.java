@@ -0,0 +1,180 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * A thread safe cache of directory listings.
+ * <p/>
+ * Each listing records the names of the directory entries, and whether each is a directory or a file, so that
+ * scanning a directory more than once doesn't list it or query its entries again. A cache may be shared by the
+ * {@link DirectoryScanner}s of several filesets with the same base directory, as long as the directories don't
+ * change while the cache is in use.
+ */
+public class DirectoryListingCache
+{
+
+    /**
+     * The listings, keyed on absolute directory.
+     */
+    private final ConcurrentMap<File, Listing> listings = new ConcurrentHashMap<File, Listing>();
+
+
+    /**
+     * Returns the listing of a directory, listing it if it isn't cached.
+     *
+     * @param dir the directory
+     * @return the directory listing, or <tt>null</tt> if the directory cannot be listed
+     */
+    public Listing getListing(File dir)
+    {
+        File key = dir.getAbsoluteFile();
+        Listing result = listings.get(key);
+        if (result == null)
+        {
+            String[] names = dir.list();
+            if (names != null)
+            {
+                result = new Listing(dir, names);
+                Listing existing = listings.putIfAbsent(key, result);
+                if (existing != null)
+                {
+                    result = existing;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a directory listing is cached.
+     *
+     * @param dir the directory
+     * @return <tt>true</tt> if the directory listing is cached
+     */
+    public boolean isCached(File dir)
+    {
+        return listings.containsKey(dir.getAbsoluteFile());
+    }
+
+    /**
+     * Removes all listings.
+     */
+    public void clear()
+    {
+        listings.clear();
+    }
+
+    /**
+     * The entries of a directory.
+     */
+    public static class Listing
+    {
+
+        /**
+         * Entry type indicating neither a directory nor a file.
+         */
+        private static final byte OTHER = 0;
+
+        /**
+         * Entry type indicating a directory.
+         */
+        private static final byte DIRECTORY = 1;
+
+        /**
+         * Entry type indicating a file.
+         */
+        private static final byte FILE = 2;
+
+        /**
+         * The entry names, in the order returned by {@link File#list()}.
+         */
+        private final String[] names;
+
+        /**
+         * The entry types.
+         */
+        private final byte[] types;
+
+        /**
+         * Constructs a <tt>Listing</tt>.
+         *
+         * @param dir   the directory
+         * @param names the entry names
+         */
+        Listing(File dir, String[] names)
+        {
+            this.names = names;
+            types = new byte[names.length];
+            for (int i = 0; i < names.length; ++i)
+            {
+                File file = new File(dir, names[i]);
+                if (file.isDirectory())
+                {
+                    types[i] = DIRECTORY;
+                }
+                else if (file.isFile())
+                {
+                    types[i] = FILE;
+                }
+                else
+                {
+                    types[i] = OTHER;
+                }
+            }
+        }
+
+        /**
+         * Returns the entry names.
+         *
+         * @return the entry names. The array must not be modified
+         */
+        public String[] getNames()
+        {
+            return names;
+        }
+
+        /**
+         * Determines if an entry is a directory.
+         *
+         * @param index the entry index
+         * @return <tt>true</tt> if the entry is a directory
+         */
+        public boolean isDirectory(int index)
+        {
+            return types[index] == DIRECTORY;
+        }
+
+        /**
+         * Determines if an entry is a normal file.
+         *
+         * @param index the entry index
+         * @return <tt>true</tt> if the entry is a file
+         */
+        public boolean isFile(int index)
+        {
+            return types[index] == FILE;
+        }
+    }
+}
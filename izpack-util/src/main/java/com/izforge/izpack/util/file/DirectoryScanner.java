@@ -22,12 +22,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.util.file.types.Resource;
@@ -280,9 +280,20 @@ public class DirectoryScanner
     protected boolean everythingIncluded = true;
 
     /**
-     * Temporary table to speed up the various scanning methods.
+     * Directory listings, to speed up the various scanning methods.
      */
-    private Map<File, String[]> fileListMap = new HashMap<File, String[]>();
+    private DirectoryListingCache listings = new DirectoryListingCache();
+
+    /**
+     * Whether or not the directory listings are shared with other scanners,
+     * and so survive the end of the scan.
+     */
+    private boolean sharedListings = false;
+
+    /**
+     * The number of threads used to list directories.
+     */
+    private int threads = 1;
 
     /**
      * List of all scanned directories.
@@ -333,6 +344,29 @@ public class DirectoryScanner
      */
     private String[] excludePatterns;
 
+    /**
+     * The tokenized form of {@link #includePatterns}.
+     */
+    private TokenizedPattern[] includeMatchers;
+
+    /**
+     * The tokenized form of {@link #excludePatterns}.
+     */
+    private TokenizedPattern[] excludeMatchers;
+
+    /**
+     * The tokenized form of all include patterns, used to determine
+     * which directories could hold included files.
+     */
+    private TokenizedPattern[] includeStartMatchers;
+
+    /**
+     * The tokenized form of the exclude patterns ending in "**", without
+     * the trailing "**", used to determine which directories have all of
+     * their contents excluded.
+     */
+    private TokenizedPattern[] contentsExcludeMatchers;
+
     /**
      * Have the non-pattern sets and pattern arrays for in- and
      * excludes been initialized?
@@ -623,6 +657,45 @@ public class DirectoryScanner
         this.followSymlinks = followSymlinks;
     }
 
+    /**
+     * Gets the number of threads used to list directories.
+     *
+     * @return the number of threads
+     */
+    public synchronized int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads used to list directories.
+     * <p/>
+     * With more than one thread, the directories that a scan may visit are
+     * listed in parallel before the scan proceeds. The scan results are the
+     * same, and in the same order, as those of a single threaded scan.
+     *
+     * @param threads the number of threads. Values less than 1 are treated
+     *                as 1.
+     */
+    public synchronized void setThreads(int threads)
+    {
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Sets a cache of directory listings to share with other scanners.
+     * <p/>
+     * By default, directory listings are only cached for the duration of a
+     * scan.
+     *
+     * @param listings the directory listing cache
+     */
+    public synchronized void setListingCache(DirectoryListingCache listings)
+    {
+        this.listings = listings;
+        this.sharedListings = true;
+    }
+
     /**
      * Set the list of include patterns to use. All '/' and '\' characters
      * are replaced by <code>File.separatorChar</code>, so the separator used
@@ -865,6 +938,7 @@ public class DirectoryScanner
         {
             newroots.put(SelectorUtils.rtrimWildcardTokens(include), include);
         }
+        prefetch(basedir, "", true);
         if (newroots.containsKey(""))
         {
             // we are going to scan everything anyway
@@ -1043,6 +1117,8 @@ public class DirectoryScanner
                 {
                     if (!couldHoldIncluded(anExcl))
                     {
+                        prefetch(new File(basedir, anExcl),
+                                 anExcl + File.separator, false);
                         scandir(new File(basedir, anExcl),
                                 anExcl + File.separator, false);
                     }
@@ -1051,6 +1127,8 @@ public class DirectoryScanner
                 {
                     if (!couldHoldIncluded(aNotIncl))
                     {
+                        prefetch(new File(basedir, aNotIncl),
+                                 aNotIncl + File.separator, false);
                         scandir(new File(basedir, aNotIncl),
                                 aNotIncl + File.separator, false);
                     }
@@ -1109,9 +1187,9 @@ public class DirectoryScanner
         {
             return;
         }
-        String[] newfiles = dir.list();
+        DirectoryListingCache.Listing listing = listings.getListing(dir);
 
-        if (newfiles == null)
+        if (listing == null)
         {
             /*
              * two reasons are mentioned in the API docs for File.list
@@ -1123,42 +1201,28 @@ public class DirectoryScanner
             throw new Exception("IO error scanning directory "
                     + dir.getAbsolutePath());
         }
-        if (!followSymlinks)
+        String[] newfiles = listing.getNames();
+        int[] entries = new int[newfiles.length];
+        int count = 0;
+        for (int i = 0; i < newfiles.length; i++)
         {
-            Vector<String> noLinks = new Vector<String>();
-            for (String newfile : newfiles)
+            if (!followSymlinks && isSymlink(dir, newfiles[i]))
             {
-                try
-                {
-                    if (FILE_UTILS.isSymbolicLink(dir, newfile))
-                    {
-                        String name = vpath + newfile;
-                        File file = new File(dir, newfile);
-                        (file.isDirectory()
-                                ? dirsExcluded : filesExcluded).addElement(name);
-                    }
-                    else
-                    {
-                        noLinks.addElement(newfile);
-                    }
-                }
-                catch (IOException ioe)
-                {
-                    String msg = "IOException caught while checking "
-                            + "for links, couldn't get canonical path!";
-                    // will be caught and redirected to Ant's logging system
-                    System.err.println(msg);
-                    noLinks.addElement(newfile);
-                }
+                String name = vpath + newfiles[i];
+                (listing.isDirectory(i)
+                        ? dirsExcluded : filesExcluded).addElement(name);
+            }
+            else
+            {
+                entries[count++] = i;
             }
-            newfiles = new String[noLinks.size()];
-            noLinks.copyInto(newfiles);
         }
-        for (String newfile : newfiles)
+        for (int j = 0; j < count; j++)
         {
-            String name = vpath + newfile;
-            File file = new File(dir, newfile);
-            if (file.isDirectory())
+            int i = entries[j];
+            String name = vpath + newfiles[i];
+            File file = new File(dir, newfiles[i]);
+            if (listing.isDirectory(i))
             {
                 if (isIncluded(name))
                 {
@@ -1178,7 +1242,7 @@ public class DirectoryScanner
                     scandir(file, name + File.separator, fast);
                 }
             }
-            else if (file.isFile())
+            else if (listing.isFile(i))
             {
                 if (isIncluded(name))
                 {
@@ -1274,20 +1338,14 @@ public class DirectoryScanner
     {
         ensureNonPatternSetsReady();
 
-        if (isCaseSensitive()
+        boolean cs = isCaseSensitive();
+        if (cs
                 ? includeNonPatterns.contains(name)
                 : includeNonPatterns.contains(name.toUpperCase()))
         {
             return true;
         }
-        for (String includePattern : includePatterns)
-        {
-            if (matchPath(includePattern, name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return matchPath(includeMatchers, name, cs);
     }
 
     /**
@@ -1300,31 +1358,38 @@ public class DirectoryScanner
      */
     protected boolean couldHoldIncluded(String name)
     {
-        for (String include : includes)
-        {
-            if (matchPatternStart(include, name, isCaseSensitive())
-                    && isMorePowerfulThanExcludes(name, include)
-                    && isDeeper(include, name))
-            {
-                return true;
-            }
-        }
-        return false;
+        ensureNonPatternSetsReady();
+        return couldHoldIncluded(name, isCaseSensitive());
     }
 
     /**
-     * Verify that a pattern specifies files deeper
-     * than the level of the specified file.
+     * Test whether or not a name matches the start of at least one include
+     * pattern, and the pattern specifies files deeper than the name.
+     * <p/>
+     * This doesn't synchronize, so that it may be called by the threads
+     * listing directories while a scan holds the lock. The patterns must be
+     * ready.
      *
-     * @param pattern the pattern to check.
-     * @param name    the name to check.
-     * @return whether the pattern is deeper than the name.
+     * @param name The name to match. Must not be <code>null</code>.
+     * @param cs   Whether or not matching should be case sensitive.
+     * @return <code>true</code> when the name matches against the start of at
+     *         least one include pattern, or <code>false</code> otherwise.
      */
-    private boolean isDeeper(String pattern, String name)
+    private boolean couldHoldIncluded(String name, boolean cs)
     {
-        Vector<?> p = SelectorUtils.tokenizePath(pattern);
-        Vector<?> n = SelectorUtils.tokenizePath(name);
-        return p.contains("**") || p.size() > n.size();
+        boolean absolute = name.startsWith(File.separator);
+        String[] tokens = SelectorUtils.tokenizePathAsArray(name);
+        for (TokenizedPattern include : includeStartMatchers)
+        {
+            if (include.absolute == absolute
+                    && SelectorUtils.matchPatternStart(include.tokens, tokens, cs)
+                    && isMorePowerfulThanExcludes(name, include.pattern)
+                    && (include.deep || include.tokens.length > tokens.length))
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -1363,16 +1428,9 @@ public class DirectoryScanner
      */
     private boolean contentsExcluded(String name)
     {
+        ensureNonPatternSetsReady();
         name = (name.endsWith(File.separator)) ? name : name + File.separator;
-        for (String e : excludes)
-        {
-            if (e.endsWith("**") && SelectorUtils.matchPath(
-                    e.substring(0, e.length() - 2), name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return matchPath(contentsExcludeMatchers, name, isCaseSensitive());
     }
 
     /**
@@ -1387,15 +1445,38 @@ public class DirectoryScanner
     {
         ensureNonPatternSetsReady();
 
-        if (isCaseSensitive()
+        boolean cs = isCaseSensitive();
+        if (cs
                 ? excludeNonPatterns.contains(name)
                 : excludeNonPatterns.contains(name.toUpperCase()))
         {
             return true;
         }
-        for (String excludePattern : excludePatterns)
+        return matchPath(excludeMatchers, name, cs);
+    }
+
+    /**
+     * Test whether or not a name matches at least one tokenized pattern.
+     *
+     * @param patterns the patterns.
+     * @param name     The name to match. Must not be <code>null</code>.
+     * @param cs       Whether or not matching should be case sensitive.
+     * @return <code>true</code> when the name matches against at least one
+     *         pattern, or <code>false</code> otherwise.
+     */
+    private static boolean matchPath(TokenizedPattern[] patterns, String name,
+                                     boolean cs)
+    {
+        if (patterns.length == 0)
+        {
+            return false;
+        }
+        boolean absolute = name.startsWith(File.separator);
+        String[] tokens = SelectorUtils.tokenizePathAsArray(name);
+        for (TokenizedPattern pattern : patterns)
         {
-            if (matchPath(excludePattern, name, isCaseSensitive()))
+            if (pattern.absolute == absolute
+                    && SelectorUtils.matchPath(pattern.tokens, tokens, cs))
             {
                 return true;
             }
@@ -1643,16 +1724,8 @@ public class DirectoryScanner
      */
     private String[] list(File file)
     {
-        String[] files = fileListMap.get(file);
-        if (files == null)
-        {
-            files = file.list();
-            if (files != null)
-            {
-                fileListMap.put(file, files);
-            }
-        }
-        return files;
+        DirectoryListingCache.Listing listing = listings.getListing(file);
+        return (listing != null) ? listing.getNames() : null;
     }
 
     /**
@@ -1724,6 +1797,30 @@ public class DirectoryScanner
         return isSymlink(base, SelectorUtils.tokenizePath(path));
     }
 
+    /**
+     * Lists the directories that a scan from the given directory may visit
+     * on a pool of threads, so that the scan finds their listings cached.
+     * <p/>
+     * Listing directories is the bulk of the cost of scanning large trees.
+     * Matching remains single threaded, so the results are the same, and in
+     * the same order, as those of a single threaded scan.
+     * <p/>
+     * Does nothing if only one thread is configured.
+     *
+     * @param dir   The directory to list from.
+     * @param vpath The path of the directory relative to the base directory.
+     * @param fast  Whether or not this is part of a fast scan, which only
+     *              visits directories that could hold included files.
+     */
+    private void prefetch(File dir, String vpath, boolean fast)
+    {
+        if (threads > 1)
+        {
+            ensureNonPatternSetsReady();
+            new ListingPrefetcher(threads, fast, isCaseSensitive()).prefetch(dir, vpath);
+        }
+    }
+
     /**
      * Do we have to traverse a symlink when trying to reach path from
      * basedir?
@@ -1780,11 +1877,18 @@ public class DirectoryScanner
      */
     private synchronized void clearCaches()
     {
-        fileListMap.clear();
+        if (!sharedListings)
+        {
+            listings.clear();
+        }
         includeNonPatterns.clear();
         excludeNonPatterns.clear();
         includePatterns = null;
         excludePatterns = null;
+        includeMatchers = null;
+        excludeMatchers = null;
+        includeStartMatchers = null;
+        contentsExcludeMatchers = null;
         areNonPatternSetsReady = false;
     }
 
@@ -1798,10 +1902,38 @@ public class DirectoryScanner
         {
             includePatterns = fillNonPatternSet(includeNonPatterns, includes);
             excludePatterns = fillNonPatternSet(excludeNonPatterns, excludes);
+            includeMatchers = tokenize(includePatterns);
+            excludeMatchers = tokenize(excludePatterns);
+            includeStartMatchers = tokenize(includes);
+            ArrayList<String> contents = new ArrayList<String>();
+            for (String exclude : excludes)
+            {
+                if (exclude.endsWith("**"))
+                {
+                    contents.add(exclude.substring(0, exclude.length() - 2));
+                }
+            }
+            contentsExcludeMatchers = tokenize(contents.toArray(new String[contents.size()]));
             areNonPatternSetsReady = true;
         }
     }
 
+    /**
+     * Tokenizes patterns, so that each is only tokenized once per scan.
+     *
+     * @param patterns the patterns.
+     * @return the tokenized patterns.
+     */
+    private static TokenizedPattern[] tokenize(String[] patterns)
+    {
+        TokenizedPattern[] result = new TokenizedPattern[patterns.length];
+        for (int i = 0; i < patterns.length; i++)
+        {
+            result[i] = new TokenizedPattern(patterns[i]);
+        }
+        return result;
+    }
+
     /**
      * Add all patterns that are not real patterns (do not contain
      * wildcards) to the set and returns the real patterns.
@@ -1827,4 +1959,154 @@ public class DirectoryScanner
                 : al.toArray(new String[al.size()]);
     }
 
+    /**
+     * A pattern split into path elements.
+     */
+    private static class TokenizedPattern
+    {
+
+        /**
+         * The pattern.
+         */
+        private final String pattern;
+
+        /**
+         * Whether or not the pattern starts with a <code>File.separator</code>.
+         */
+        private final boolean absolute;
+
+        /**
+         * The pattern path elements.
+         */
+        private final String[] tokens;
+
+        /**
+         * Whether or not the pattern contains "**".
+         */
+        private final boolean deep;
+
+        public TokenizedPattern(String pattern)
+        {
+            this.pattern = pattern;
+            absolute = pattern.startsWith(File.separator);
+            tokens = SelectorUtils.tokenizePathAsArray(pattern);
+            deep = Arrays.asList(tokens).contains("**");
+        }
+    }
+
+    /**
+     * Lists directories in parallel, caching their listings.
+     */
+    private class ListingPrefetcher
+    {
+
+        /**
+         * The listing threads.
+         */
+        private final ExecutorService executor;
+
+        /**
+         * Whether or not only directories that could hold included files are
+         * listed.
+         */
+        private final boolean fast;
+
+        /**
+         * Whether or not matching is case sensitive.
+         */
+        private final boolean caseSensitive;
+
+        /**
+         * The number of directories waiting to be listed.
+         */
+        private int pending;
+
+        public ListingPrefetcher(int threads, boolean fast, boolean caseSensitive)
+        {
+            executor = Executors.newFixedThreadPool(threads);
+            this.fast = fast;
+            this.caseSensitive = caseSensitive;
+        }
+
+        /**
+         * Lists a directory and the directories below it that the scan may
+         * visit, returning when all have been listed.
+         *
+         * @param dir   the directory
+         * @param vpath the path of the directory relative to the base
+         *              directory
+         */
+        public void prefetch(File dir, String vpath)
+        {
+            try
+            {
+                submit(dir, vpath);
+                synchronized (this)
+                {
+                    while (pending != 0)
+                    {
+                        wait();
+                    }
+                }
+            }
+            catch (InterruptedException exception)
+            {
+                // the scan lists any remaining directories itself
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+        }
+
+        private synchronized void submit(final File dir, final String vpath)
+        {
+            ++pending;
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        list(dir, vpath);
+                    }
+                    finally
+                    {
+                        done();
+                    }
+                }
+            });
+        }
+
+        private synchronized void done()
+        {
+            if (--pending == 0)
+            {
+                notifyAll();
+            }
+        }
+
+        private void list(File dir, String vpath)
+        {
+            // directories that cannot be listed are reported by the scan
+            DirectoryListingCache.Listing listing = listings.getListing(dir);
+            if (listing != null)
+            {
+                String[] names = listing.getNames();
+                for (int i = 0; i < names.length; i++)
+                {
+                    if (listing.isDirectory(i))
+                    {
+                        String name = vpath + names[i];
+                        if ((!fast || couldHoldIncluded(name, caseSensitive))
+                                && (followSymlinks || !isSymlink(dir, names[i])))
+                        {
+                            submit(new File(dir, names[i]), name + File.separator);
+                        }
+                    }
+                }
+            }
+        }
+    }
 }
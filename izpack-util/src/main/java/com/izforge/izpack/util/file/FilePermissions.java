@@ -0,0 +1,388 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.util.file;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.izforge.izpack.util.OsVersion;
+
+
+/**
+ * Reads and changes POSIX file permissions without forking <tt>chmod</tt>.
+ * <p/>
+ * Modes are the permission bits of <tt>chmod</tt>, e.g. <tt>0755</tt>; <tt>0</tt> indicates the mode isn't known.
+ * <br/>
+ * Where the JVM supports <tt>java.nio.file</tt> (Java 7 and later), it is used via reflection, as IzPack must still
+ * run on Java 6. Otherwise, modes are approximated using {@link File#setReadable}, {@link File#setWritable} and
+ * {@link File#setExecutable}, which cannot distinguish group from other permissions.
+ */
+public class FilePermissions
+{
+
+    /**
+     * <tt>File.toPath()</tt>, or <tt>null</tt> if <tt>java.nio.file</tt> isn't available.
+     */
+    private static final Method TO_PATH;
+
+    /**
+     * <tt>Files.getPosixFilePermissions(Path, LinkOption...)</tt>.
+     */
+    private static final Method GET_PERMISSIONS;
+
+    /**
+     * <tt>Files.setPosixFilePermissions(Path, Set)</tt>.
+     */
+    private static final Method SET_PERMISSIONS;
+
+    /**
+     * The <tt>PosixFilePermission</tt> constants, ordered from <tt>OWNER_READ</tt> to <tt>OTHERS_EXECUTE</tt>,
+     * i.e. from mode bit <tt>0400</tt> to <tt>0001</tt>.
+     */
+    private static final Object[] PERMISSIONS;
+
+    /**
+     * An empty <tt>LinkOption</tt> array.
+     */
+    private static final Object NO_LINK_OPTIONS;
+
+    /**
+     * The permission bits that may be changed.
+     */
+    private static final int ALL = 0777;
+
+    /**
+     * The execute permission bits for owner, group and other.
+     */
+    public static final int EXECUTE = 0111;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(FilePermissions.class.getName());
+
+    static
+    {
+        Method toPath = null;
+        Method getPermissions = null;
+        Method setPermissions = null;
+        Object[] permissions = null;
+        Object noLinkOptions = null;
+        try
+        {
+            Class<?> path = Class.forName("java.nio.file.Path");
+            Class<?> files = Class.forName("java.nio.file.Files");
+            Class<?> linkOption = Class.forName("java.nio.file.LinkOption");
+            noLinkOptions = Array.newInstance(linkOption, 0);
+            toPath = File.class.getMethod("toPath");
+            getPermissions = files.getMethod("getPosixFilePermissions", path, noLinkOptions.getClass());
+            setPermissions = files.getMethod("setPosixFilePermissions", path, Set.class);
+            permissions = Class.forName("java.nio.file.attribute.PosixFilePermission").getEnumConstants();
+        }
+        catch (Exception exception)
+        {
+            // Java 6
+            toPath = null;
+        }
+        TO_PATH = toPath;
+        GET_PERMISSIONS = getPermissions;
+        SET_PERMISSIONS = setPermissions;
+        PERMISSIONS = permissions;
+        NO_LINK_OPTIONS = noLinkOptions;
+    }
+
+    /**
+     * Returns the permission bits of a file.
+     *
+     * @param file the file
+     * @return the permission bits, or <tt>0</tt> if they cannot be determined
+     */
+    public static int getMode(File file)
+    {
+        int result = 0;
+        if (TO_PATH != null)
+        {
+            try
+            {
+                Set<?> permissions = (Set<?>) GET_PERMISSIONS.invoke(null, TO_PATH.invoke(file), NO_LINK_OPTIONS);
+                for (int i = 0; i < PERMISSIONS.length; ++i)
+                {
+                    if (permissions.contains(PERMISSIONS[i]))
+                    {
+                        result |= 0400 >> i;
+                    }
+                }
+            }
+            catch (Exception exception)
+            {
+                // not a POSIX file system, or the file cannot be read
+                logger.log(Level.FINE, "Cannot determine permissions of " + file, getCause(exception));
+                result = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the permission bits of a file.
+     * <p/>
+     * This does nothing on platforms other than Unix.
+     *
+     * @param file the file
+     * @param mode the permission bits
+     * @return <tt>true</tt> if the permissions were set, otherwise <tt>false</tt>
+     */
+    public static boolean setMode(File file, int mode)
+    {
+        if (!OsVersion.IS_UNIX)
+        {
+            return false;
+        }
+        mode &= ALL;
+        if (TO_PATH != null)
+        {
+            try
+            {
+                Set<Object> permissions = new HashSet<Object>();
+                for (int i = 0; i < PERMISSIONS.length; ++i)
+                {
+                    if ((mode & (0400 >> i)) != 0)
+                    {
+                        permissions.add(PERMISSIONS[i]);
+                    }
+                }
+                SET_PERMISSIONS.invoke(null, TO_PATH.invoke(file), permissions);
+                return true;
+            }
+            catch (Exception exception)
+            {
+                logger.log(Level.FINE, "Cannot set permissions of " + file, getCause(exception));
+            }
+        }
+        return setAccess(file, mode);
+    }
+
+    /**
+     * Grants execute permission on a file, leaving its other permissions as they were created.
+     * <p/>
+     * Execute permission is only granted to those of owner, group and other that may read the file, so the umask
+     * the file was created with still applies. E.g. granting <tt>0111</tt> changes <tt>0644</tt> to <tt>0755</tt>,
+     * but <tt>0600</tt> to <tt>0700</tt>.
+     * <p/>
+     * Without <tt>java.nio.file</tt>, the current permissions can't be determined, so execute permission is granted
+     * to the owner only, or to all users if group or other execute permission is requested.
+     * <p/>
+     * This does nothing on platforms other than Unix.
+     *
+     * @param file    the file
+     * @param execute the execute bits to grant, e.g. <tt>0111</tt>. Other bits are ignored
+     * @return <tt>true</tt> if the permissions were changed or already included the execute bits, otherwise
+     *         <tt>false</tt>
+     */
+    public static boolean addExecute(File file, int execute)
+    {
+        execute &= EXECUTE;
+        if (!OsVersion.IS_UNIX || execute == 0)
+        {
+            return false;
+        }
+        int mode = getMode(file);
+        if (mode == 0)
+        {
+            return file.setExecutable(true, (execute & 0011) == 0);
+        }
+        int added = execute & (mode >> 2);
+        return (mode | added) == mode || setMode(file, mode | added);
+    }
+
+    /**
+     * Changes the permissions of a file, given a <tt>chmod</tt> mode.
+     * <p/>
+     * The mode may be octal, e.g. <tt>755</tt>, or a comma separated list of symbolic clauses, e.g.
+     * <tt>u+rwx,go+rx</tt>. Clauses without a user apply to all users, less group and other write permission,
+     * as if the umask were <tt>022</tt>. The special <tt>X</tt>, <tt>s</tt> and <tt>t</tt> permissions aren't
+     * supported.
+     * <p/>
+     * This does nothing on platforms other than Unix.
+     *
+     * @param file        the file
+     * @param permissions the <tt>chmod</tt> mode
+     * @return <tt>true</tt> if the permissions were changed, or <tt>false</tt> if the mode isn't supported or the
+     *         permissions couldn't be changed. Callers may fall back to the <tt>chmod</tt> command in this case
+     */
+    public static boolean chmod(File file, String permissions)
+    {
+        if (!OsVersion.IS_UNIX || permissions == null || permissions.length() == 0)
+        {
+            return false;
+        }
+        if (isOctal(permissions))
+        {
+            int mode = Integer.parseInt(permissions, 8);
+            return mode <= ALL && setMode(file, mode);
+        }
+        int mode = getMode(file);
+        if (mode == 0)
+        {
+            // need the current mode to apply relative changes
+            return false;
+        }
+        for (String clause : permissions.split(","))
+        {
+            mode = apply(clause, mode);
+            if (mode < 0)
+            {
+                return false;
+            }
+        }
+        return setMode(file, mode);
+    }
+
+    /**
+     * Applies a symbolic <tt>chmod</tt> clause to a mode.
+     *
+     * @param clause the clause, e.g. <tt>ug+rw</tt>
+     * @param mode   the current mode
+     * @return the new mode, or <tt>-1</tt> if the clause isn't supported
+     */
+    private static int apply(String clause, int mode)
+    {
+        int who = 0;
+        int pos = 0;
+        int length = clause.length();
+        while (pos < length && "ugoa".indexOf(clause.charAt(pos)) != -1)
+        {
+            switch (clause.charAt(pos++))
+            {
+                case 'u':
+                    who |= 0700;
+                    break;
+                case 'g':
+                    who |= 0070;
+                    break;
+                case 'o':
+                    who |= 0007;
+                    break;
+                default:
+                    who |= ALL;
+            }
+        }
+        if (pos == length)
+        {
+            return -1;
+        }
+        int mask = (who != 0) ? who : (ALL & ~022);
+        while (pos < length)
+        {
+            char op = clause.charAt(pos++);
+            if (op != '+' && op != '-' && op != '=')
+            {
+                return -1;
+            }
+            int bits = 0;
+            while (pos < length && "+-=".indexOf(clause.charAt(pos)) == -1)
+            {
+                switch (clause.charAt(pos++))
+                {
+                    case 'r':
+                        bits |= 0444;
+                        break;
+                    case 'w':
+                        bits |= 0222;
+                        break;
+                    case 'x':
+                        bits |= 0111;
+                        break;
+                    default:
+                        return -1;
+                }
+            }
+            bits &= mask;
+            if (op == '+')
+            {
+                mode |= bits;
+            }
+            else if (op == '-')
+            {
+                mode &= ~bits;
+            }
+            else
+            {
+                mode = (mode & ~(who != 0 ? who : ALL)) | bits;
+            }
+        }
+        return mode;
+    }
+
+    /**
+     * Approximates a mode using the {@link File} access methods.
+     *
+     * @param file the file
+     * @param mode the permission bits
+     * @return <tt>true</tt> if the permissions were set, otherwise <tt>false</tt>
+     */
+    private static boolean setAccess(File file, int mode)
+    {
+        boolean ownerRead = (mode & 0400) != 0;
+        boolean ownerWrite = (mode & 0200) != 0;
+        boolean ownerExecute = (mode & 0100) != 0;
+        boolean result = file.setReadable(ownerRead, (mode & 0044) == 0);
+        result &= file.setWritable(ownerWrite, (mode & 0022) == 0);
+        result &= file.setExecutable(ownerExecute, (mode & 0011) == 0);
+        return result;
+    }
+
+    /**
+     * Determines if a mode is octal.
+     *
+     * @param permissions the mode
+     * @return <tt>true</tt> if the mode is octal
+     */
+    private static boolean isOctal(String permissions)
+    {
+        for (int i = 0; i < permissions.length(); ++i)
+        {
+            char ch = permissions.charAt(i);
+            if (ch < '0' || ch > '7')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the cause of a reflective invocation failure.
+     *
+     * @param exception the exception
+     * @return the cause
+     */
+    private static Throwable getCause(Exception exception)
+    {
+        return (exception instanceof InvocationTargetException) ? exception.getCause() : exception;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+
+/**
+ * A sorted index over a set of paths, supporting lookup of all paths starting with a literal prefix.
+ * <p/>
+ * Pattern matchers use this to restrict the paths they need to test to those sharing the literal (wildcard-free)
+ * prefix of a pattern, so that matching a pattern against a large set of paths costs in proportion to the number of
+ * candidates rather than to the total number of paths.
+ * <p/>
+ * Case insensitive lookups fold US-ASCII characters only. This is what {@link java.util.regex.Pattern#CASE_INSENSITIVE}
+ * does when {@link java.util.regex.Pattern#UNICODE_CASE} is not specified, so the index can be used with such patterns.
+ * Any prefix characters following the first non-ASCII character are ignored by case insensitive lookups, which then
+ * return a superset of the candidates.
+ * <p/>
+ * Matchers that fold further characters must not use case insensitive lookups. For example,
+ * {@link com.izforge.izpack.util.file.types.selectors.SelectorUtils} compares the {@link Character#toUpperCase(char)} of
+ * each character, under which non-ASCII characters such as <tt>'&#92;u0131'</tt> (dotless i) match ASCII ones. These
+ * should match against {@link #getPaths()} instead.
+ * <p/>
+ * This class is thread safe.
+ */
+public class PathIndex
+{
+
+    /**
+     * The paths, sorted.
+     */
+    private final String[] paths;
+
+    /**
+     * The paths with ASCII characters folded to lower case, sorted. Lazily created.
+     */
+    private String[] foldedKeys;
+
+    /**
+     * The paths corresponding to {@link #foldedKeys}.
+     */
+    private String[] foldedPaths;
+
+
+    /**
+     * Constructs a <tt>PathIndex</tt>.
+     *
+     * @param paths the paths to index. Duplicates are ignored
+     */
+    public PathIndex(Collection<String> paths)
+    {
+        TreeSet<String> sorted = new TreeSet<String>(paths);
+        this.paths = sorted.toArray(new String[sorted.size()]);
+    }
+
+    /**
+     * Returns the number of indexed paths.
+     *
+     * @return the number of paths
+     */
+    public int size()
+    {
+        return paths.length;
+    }
+
+    /**
+     * Returns all indexed paths.
+     *
+     * @return the paths, in sorted order
+     */
+    public List<String> getPaths()
+    {
+        return Collections.unmodifiableList(Arrays.asList(paths));
+    }
+
+    /**
+     * Returns the paths starting with the specified prefix.
+     *
+     * @param prefix        the prefix. An empty prefix returns all paths
+     * @param caseSensitive if <tt>false</tt>, US-ASCII characters are compared ignoring case, and the prefix is
+     *                      truncated before its first non-ASCII character
+     * @return the matching paths
+     */
+    public List<String> getPaths(String prefix, boolean caseSensitive)
+    {
+        if (prefix.length() == 0)
+        {
+            return getPaths();
+        }
+        String[] keys;
+        String[] values;
+        if (caseSensitive)
+        {
+            keys = paths;
+            values = paths;
+        }
+        else
+        {
+            synchronized (this)
+            {
+                if (foldedKeys == null)
+                {
+                    fold();
+                }
+                keys = foldedKeys;
+                values = foldedPaths;
+            }
+            prefix = foldCase(getASCIIPrefix(prefix));
+        }
+        List<String> result = new ArrayList<String>();
+        for (int i = lowerBound(keys, prefix); i < keys.length && keys[i].startsWith(prefix); ++i)
+        {
+            result.add(values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the leading US-ASCII characters of a value.
+     *
+     * @param value the value
+     * @return the value, truncated before its first non-ASCII character
+     */
+    private static String getASCIIPrefix(String value)
+    {
+        for (int i = 0; i < value.length(); ++i)
+        {
+            if (value.charAt(i) > 0x7F)
+            {
+                return value.substring(0, i);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Folds ASCII upper case characters to lower case, leaving all other characters unchanged.
+     *
+     * @param value the value to fold
+     * @return the folded value
+     */
+    public static String foldCase(String value)
+    {
+        char[] chars = null;
+        for (int i = 0; i < value.length(); ++i)
+        {
+            char ch = value.charAt(i);
+            if (ch >= 'A' && ch <= 'Z')
+            {
+                if (chars == null)
+                {
+                    chars = value.toCharArray();
+                }
+                chars[i] = (char) (ch + ('a' - 'A'));
+            }
+        }
+        return (chars != null) ? new String(chars) : value;
+    }
+
+    /**
+     * Builds the case insensitive index.
+     */
+    private void fold()
+    {
+        String[][] entries = new String[paths.length][];
+        for (int i = 0; i < paths.length; ++i)
+        {
+            entries[i] = new String[]{foldCase(paths[i]), paths[i]};
+        }
+        Arrays.sort(entries, new Comparator<String[]>()
+        {
+            @Override
+            public int compare(String[] o1, String[] o2)
+            {
+                return o1[0].compareTo(o2[0]);
+            }
+        });
+        String[] keys = new String[entries.length];
+        String[] values = new String[entries.length];
+        for (int i = 0; i < entries.length; ++i)
+        {
+            keys[i] = entries[i][0];
+            values[i] = entries[i][1];
+        }
+        foldedKeys = keys;
+        foldedPaths = values;
+    }
+
+    /**
+     * Returns the index of the first key not less than the specified value.
+     *
+     * @param keys  the sorted keys
+     * @param value the value
+     * @return the index of the first key &gt;= <tt>value</tt>, or <tt>keys.length</tt> if there is none
+     */
+    private static int lowerBound(String[] keys, String value)
+    {
+        int low = 0;
+        int high = keys.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(value) < 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -23,6 +23,7 @@ import java.util.Enumeration;
 import java.util.Vector;
 import java.util.logging.Logger;
 
+import com.izforge.izpack.util.file.DirectoryListingCache;
 import com.izforge.izpack.util.file.DirectoryScanner;
 import com.izforge.izpack.util.file.FileScanner;
 import com.izforge.izpack.util.file.types.selectors.*;
@@ -45,6 +46,8 @@ public class FileSet extends DataType
     private boolean useDefaultExcludes = true;
     private boolean isCaseSensitive = true;
     private boolean followSymlinks = true;
+    private int scanThreads = 1;
+    private DirectoryListingCache listingCache;
 
     /**
      * Construct a new <code>FileSet</code>.
@@ -187,6 +190,28 @@ public class FileSet extends DataType
         return followSymlinks;
     }
 
+    /**
+     * Sets the number of threads used to list directories when scanning.
+     *
+     * @param scanThreads the number of threads.
+     * @see DirectoryScanner#setThreads(int)
+     */
+    public void setScanThreads(int scanThreads)
+    {
+        this.scanThreads = scanThreads;
+    }
+
+    /**
+     * Sets a cache of directory listings to share with other filesets.
+     *
+     * @param listingCache the directory listing cache. May be <code>null</code>
+     * @see DirectoryScanner#setListingCache(DirectoryListingCache)
+     */
+    public void setListingCache(DirectoryListingCache listingCache)
+    {
+        this.listingCache = listingCache;
+    }
+
     /**
      * Returns the directory scanner needed to access the files to process.
      *
@@ -210,6 +235,11 @@ public class FileSet extends DataType
         DirectoryScanner ds = new DirectoryScanner();
         setupDirectoryScanner(ds);
         ds.setFollowSymlinks(followSymlinks);
+        ds.setThreads(scanThreads);
+        if (listingCache != null)
+        {
+            ds.setListingCache(listingCache);
+        }
         ds.scan();
         return ds;
     }
@@ -103,9 +103,29 @@ public final class SelectorUtils
             return false;
         }
 
-        String[] patDirs = tokenizePathAsArray(pattern);
-        String[] strDirs = tokenizePathAsArray(str);
+        return matchPatternStart(tokenizePathAsArray(pattern), tokenizePathAsArray(str), isCaseSensitive);
+    }
 
+    /**
+     * Tests whether or not a tokenized path matches the start of a
+     * tokenized pattern up to the first "**".
+     * <p/>
+     * This allows patterns to be tokenized once, when matched against many
+     * paths. The caller is responsible for checking that the pattern and
+     * path both start with a <code>File.separator</code>, or both don't.
+     *
+     * @param patDirs         The pattern elements, as returned by
+     *                        {@link #tokenizePathAsArray}.
+     * @param strDirs         The path elements, as returned by
+     *                        {@link #tokenizePathAsArray}.
+     * @param isCaseSensitive Whether or not matching should be performed
+     *                        case sensitively.
+     * @return whether or not a given path matches the start of a given
+     *         pattern up to the first "**".
+     */
+    public static boolean matchPatternStart(String[] patDirs, String[] strDirs,
+                                            boolean isCaseSensitive)
+    {
         int patIdxStart = 0;
         int patIdxEnd = patDirs.length - 1;
         int strIdxStart = 0;
@@ -185,9 +205,28 @@ public final class SelectorUtils
             return false;
         }
 
-        String[] patDirs = tokenizePathAsArray(pattern);
-        String[] strDirs = tokenizePathAsArray(str);
+        return matchPath(tokenizePathAsArray(pattern), tokenizePathAsArray(str), isCaseSensitive);
+    }
 
+    /**
+     * Tests whether or not a tokenized path matches a tokenized pattern.
+     * <p/>
+     * This allows patterns to be tokenized once, when matched against many
+     * paths. The caller is responsible for checking that the pattern and
+     * path both start with a <code>File.separator</code>, or both don't.
+     *
+     * @param patDirs         The pattern elements, as returned by
+     *                        {@link #tokenizePathAsArray}.
+     * @param strDirs         The path elements, as returned by
+     *                        {@link #tokenizePathAsArray}.
+     * @param isCaseSensitive Whether or not matching should be performed
+     *                        case sensitively.
+     * @return <code>true</code> if the pattern matches against the string,
+     *         or <code>false</code> otherwise.
+     */
+    public static boolean matchPath(String[] patDirs, String[] strDirs,
+                                    boolean isCaseSensitive)
+    {
         int patIdxStart = 0;
         int patIdxEnd = patDirs.length - 1;
         int strIdxStart = 0;
@@ -203,8 +242,6 @@ public final class SelectorUtils
             }
             if (!match(patDir, strDirs[strIdxStart], isCaseSensitive))
             {
-                patDirs = null;
-                strDirs = null;
                 return false;
             }
             patIdxStart++;
@@ -217,8 +254,6 @@ public final class SelectorUtils
             {
                 if (!patDirs[i].equals("**"))
                 {
-                    patDirs = null;
-                    strDirs = null;
                     return false;
                 }
             }
@@ -229,8 +264,6 @@ public final class SelectorUtils
             if (patIdxStart > patIdxEnd)
             {
                 // String not exhausted, but pattern is. Failure.
-                patDirs = null;
-                strDirs = null;
                 return false;
             }
         }
@@ -245,8 +278,6 @@ public final class SelectorUtils
             }
             if (!match(patDir, strDirs[strIdxEnd], isCaseSensitive))
             {
-                patDirs = null;
-                strDirs = null;
                 return false;
             }
             patIdxEnd--;
@@ -259,8 +290,6 @@ public final class SelectorUtils
             {
                 if (!patDirs[i].equals("**"))
                 {
-                    patDirs = null;
-                    strDirs = null;
                     return false;
                 }
             }
@@ -308,8 +337,6 @@ public final class SelectorUtils
 
             if (foundIdx == -1)
             {
-                patDirs = null;
-                strDirs = null;
                 return false;
             }
 
@@ -321,8 +348,6 @@ public final class SelectorUtils
         {
             if (!patDirs[i].equals("**"))
             {
-                patDirs = null;
-                strDirs = null;
                 return false;
             }
         }
@@ -582,8 +607,11 @@ public final class SelectorUtils
 
     /**
      * Same as {@link #tokenizePath tokenizePath} but hopefully faster.
+     *
+     * @param path Path to tokenize. Must not be <code>null</code>.
+     * @return an array of path elements from the tokenized path
      */
-    private static String[] tokenizePathAsArray(String path)
+    public static String[] tokenizePathAsArray(String path)
     {
         char sep = File.separatorChar;
         int start = 0;
@@ -19,6 +19,7 @@
 package com.izforge.izpack.util.unix;
 
 import com.izforge.izpack.util.FileExecutor;
+import com.izforge.izpack.util.file.FilePermissions;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -348,8 +349,11 @@ public class ShellScript
      */
     public String exec(String itsParams)
     {
-        FileExecutor.getExecOutput(new String[]{UnixHelper.getCustomCommand("chmod"), "+x",
-                itsLocation});
+        if (!FilePermissions.chmod(new File(itsLocation), "+x"))
+        {
+            FileExecutor.getExecOutput(new String[]{UnixHelper.getCustomCommand("chmod"), "+x",
+                    itsLocation});
+        }
 
         if (itsParams != null)
         {
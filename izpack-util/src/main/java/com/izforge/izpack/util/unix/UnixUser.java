@@ -22,6 +22,7 @@
 package com.izforge.izpack.util.unix;
 
 import com.izforge.izpack.util.FileExecutor;
+import com.izforge.izpack.util.file.FilePermissions;
 
 import java.io.File;
 import java.io.IOException;
@@ -259,7 +260,10 @@ public class UnixUser
                 XDGDesktopFolderNameScriptFilename = getCreatedXDGDesktopFolderNameScriptFilename();
             }
 
-            FileExecutor.getExecOutput(new String[]{UnixHelper.getCustomCommand("chmod"), "+x", XDGDesktopFolderNameScriptFilename}, true);
+            if (!FilePermissions.chmod(new File(XDGDesktopFolderNameScriptFilename), "+x"))
+            {
+                FileExecutor.getExecOutput(new String[]{UnixHelper.getCustomCommand("chmod"), "+x", XDGDesktopFolderNameScriptFilename}, true);
+            }
             String xdgDesktopfolder = FileExecutor.getExecOutput(new String[]{XDGDesktopFolderNameScriptFilename}, true).trim();
             new File(XDGDesktopFolderNameScriptFilename).delete();
 
@@ -0,0 +1,248 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.binding.OsModel;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+
+
+/**
+ * Tests the {@link PackMetadataReader} and {@link PackMetadataWriter} classes.
+ */
+public class PackMetadataReaderTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that meta-data written by {@link PackMetadataWriter} is read back unchanged.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadWrite() throws Exception
+    {
+        checkRead(false);
+    }
+
+    /**
+     * Verifies that meta-data written using Java serialization can still be read.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadSerialized() throws Exception
+    {
+        checkRead(true);
+    }
+
+    /**
+     * Verifies that parsable file meta-data written along with a pack file is returned by
+     * {@link PackMetadataReader#getParsableFile()}, until the next pack file is read.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testParsablePackFile() throws Exception
+    {
+        File file = temporaryFolder.newFile("file.txt");
+        PackFile file1 = new PackFile(file.getParentFile(), file, "$INSTALL_PATH/file.txt", null,
+                                      OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null);
+        PackFile file2 = new PackFile(file.getParentFile(), file, "$INSTALL_PATH/other.txt", null,
+                                      OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null);
+        ParsableFile parsable = new ParsableFile("$INSTALL_PATH/file.txt", SubstitutionType.TYPE_SHELL, null, null);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        PackMetadataWriter writer = new PackMetadataWriter(out);
+        writer.writeFileCount(2);
+        writer.writePackFile(file1, parsable);
+        writer.writePackFile(file2);
+        writer.writeCount(0);
+        out.close();
+
+        PackMetadataReader reader = new PackMetadataReader(read(bytes));
+        assertEquals(2, reader.readFileCount());
+        assertEquals("$INSTALL_PATH/file.txt", reader.readPackFile().getTargetPath());
+        ParsableFile readParsable = reader.getParsableFile();
+        assertEquals(parsable.getPath(), readParsable.getPath());
+        assertEquals(SubstitutionType.TYPE_SHELL, readParsable.getType());
+
+        assertEquals("$INSTALL_PATH/other.txt", reader.readPackFile().getTargetPath());
+        assertNull(reader.getParsableFile());
+        assertEquals(0, reader.readCount());
+    }
+
+    /**
+     * Writes meta-data, and verifies it can be read back.
+     *
+     * @param serialized if <tt>true</tt>, write the meta-data using Java serialization
+     * @throws Exception for any error
+     */
+    @SuppressWarnings("unchecked")
+    private void checkRead(boolean serialized) throws Exception
+    {
+        File file = temporaryFolder.newFile("file.txt");
+        List<OsModel> os = Arrays.asList(new OsModel("x86", "windows", null, null, null));
+        Map additionals = new HashMap();
+        additionals.put("key", "value");
+
+        PackFile file1 = new PackFile(file.getParentFile(), file, "$INSTALL_PATH/lib/file.txt", os,
+                                      OverrideType.OVERRIDE_UPDATE, "*.bak", Blockable.BLOCKABLE_AUTO, additionals);
+        file1.setCondition("condition1");
+        file1.setPack200Jar(true);
+        file1.setPreviousPackFileRef("Core", 1234L);
+        PackFile file2 = new PackFile(file.getParentFile(), file, "file.txt", null, OverrideType.OVERRIDE_TRUE, null,
+                                      Blockable.BLOCKABLE_NONE, null);
+        file2.setSolidJar(true);
+        file2.setMode(0755);
+        ParsableFile parsable = new ParsableFile("$INSTALL_PATH/lib/file.txt", SubstitutionType.TYPE_PLAIN, "UTF-8",
+                                                 os);
+        parsable.setCondition("condition2");
+        ExecutableFile executable = new ExecutableFile("$INSTALL_PATH/bin/run.jar", ExecutableFile.JAR, "Main",
+                                                       ExecutableFile.UNINSTALL, ExecutableFile.WARN,
+                                                       new ArrayList<String>(Arrays.asList("a", "b")), os, true);
+        UpdateCheck check = new UpdateCheck(new ArrayList<String>(Arrays.asList("*.jar")), null, "no");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        if (serialized)
+        {
+            out.writeInt(2);
+            out.writeObject(file1);
+            out.writeObject(file2);
+            out.writeInt(1);
+            out.writeObject(parsable);
+            out.writeInt(1);
+            out.writeObject(executable);
+            out.writeInt(1);
+            out.writeObject(check);
+        }
+        else
+        {
+            PackMetadataWriter writer = new PackMetadataWriter(out);
+            writer.writeFileCount(2);
+            writer.writePackFile(file1);
+            writer.writePackFile(file2);
+            writer.writeCount(1);
+            writer.writeParsableFile(parsable);
+            writer.writeCount(1);
+            writer.writeExecutableFile(executable);
+            writer.writeCount(1);
+            writer.writeUpdateCheck(check);
+        }
+        out.close();
+
+        PackMetadataReader reader = new PackMetadataReader(read(bytes));
+        assertEquals(2, reader.readFileCount());
+
+        PackFile read1 = reader.readPackFile();
+        assertEquals("$INSTALL_PATH/lib/file.txt", read1.getTargetPath());
+        assertEquals(file1.getRelativeSourcePath(), read1.getRelativeSourcePath());
+        assertEquals(file1.length(), read1.length());
+        assertEquals(file1.lastModified(), read1.lastModified());
+        assertEquals(OverrideType.OVERRIDE_UPDATE, read1.override());
+        assertEquals("*.bak", read1.overrideRenameTo());
+        assertEquals(Blockable.BLOCKABLE_AUTO, read1.blockable());
+        assertEquals("condition1", read1.getCondition());
+        assertTrue(read1.isPack200Jar());
+        assertFalse(read1.isSolidJar());
+        assertEquals(0, read1.getMode());
+        assertEquals("Core", read1.previousPackId);
+        assertEquals(1234, read1.offsetInPreviousPack);
+        assertEquals("value", read1.getAdditionals().get("key"));
+        assertEquals("windows", read1.osConstraints().get(0).getFamily());
+
+        PackFile read2 = reader.readPackFile();
+        assertEquals("file.txt", read2.getTargetPath());
+        assertNull(read2.osConstraints());
+        assertTrue(read2.isSolidJar());
+        assertEquals(0755, read2.getMode());
+        assertNull(read2.getAdditionals());
+        assertFalse(read2.isBackReference());
+        assertFalse(read2.hasCondition());
+
+        assertEquals(1, reader.readCount());
+        ParsableFile readParsable = reader.readParsableFile();
+        assertEquals(parsable.getPath(), readParsable.getPath());
+        assertEquals(SubstitutionType.TYPE_PLAIN, readParsable.getType());
+        assertEquals("UTF-8", readParsable.getEncoding());
+        assertEquals("condition2", readParsable.getCondition());
+
+        assertEquals(1, reader.readCount());
+        ExecutableFile readExecutable = reader.readExecutableFile();
+        assertEquals(executable.path, readExecutable.path);
+        assertEquals(ExecutableFile.JAR, readExecutable.type);
+        assertEquals("Main", readExecutable.mainClass);
+        assertEquals(ExecutableFile.UNINSTALL, readExecutable.executionStage);
+        assertEquals(ExecutableFile.WARN, readExecutable.onFailure);
+        assertEquals(executable.argList, readExecutable.argList);
+        assertEquals(1, readExecutable.osList.size());
+        assertTrue(readExecutable.keepFile);
+
+        assertEquals(1, reader.readCount());
+        UpdateCheck readCheck = reader.readUpdateCheck();
+        assertEquals(check.includesList, readCheck.includesList);
+        assertNull(readCheck.excludesList);
+        assertFalse(readCheck.caseSensitive);
+    }
+
+    /**
+     * Creates a stream to read the supplied bytes.
+     *
+     * @param bytes the bytes to read
+     * @return a new stream
+     * @throws IOException for any I/O error
+     */
+    private ObjectInputStream read(ByteArrayOutputStream bytes) throws IOException
+    {
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.util.IoHelper;
+
+
+/**
+ * Tests the {@link SolidJarWriter} and {@link SolidJarReader} classes.
+ */
+public class SolidJarWriterTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that a rebuilt jar has the same entries as the original, and that the entries are written
+     * uncompressed.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadWrite() throws Exception
+    {
+        File jar = createJar();
+        assertTrue(SolidJarWriter.isSupported(jar));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        long size = new SolidJarWriter(out).write(jar);
+        out.writeInt(0xCAFE);
+        out.close();
+        assertEquals(getContentSize(jar), size);
+        assertTrue(bytes.size() > size);
+
+        File rebuilt = temporaryFolder.newFile("rebuilt.jar");
+        FileOutputStream rebuiltOut = new FileOutputStream(rebuilt);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        new SolidJarReader(in).read(rebuiltOut);
+        rebuiltOut.close();
+        assertEquals(0xCAFE, in.readInt());
+
+        checkEquals(jar, rebuilt);
+    }
+
+    /**
+     * Verifies that skipping a jar consumes exactly the bytes written for it.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSkip() throws Exception
+    {
+        File jar = createJar();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        new SolidJarWriter(out).write(jar);
+        out.writeInt(0xCAFE);
+        out.close();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        new SolidJarReader(in).skip();
+        assertEquals(0xCAFE, in.readInt());
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Verifies that files that aren't zips, or that can't be rebuilt, are not supported.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnsupported() throws Exception
+    {
+        File text = temporaryFolder.newFile("text.jar");
+        FileOutputStream out = new FileOutputStream(text);
+        out.write("not a jar".getBytes("UTF-8"));
+        out.close();
+        assertFalse(SolidJarWriter.isSupported(text));
+        assertFalse(SolidJarWriter.isSupported(new File(temporaryFolder.getRoot(), "missing.jar")));
+    }
+
+    /**
+     * Creates a jar with a manifest, directories, and both deflated and stored entries with comments and extra
+     * fields.
+     *
+     * @return the jar
+     * @throws Exception for any error
+     */
+    private File createJar() throws Exception
+    {
+        File jar = temporaryFolder.newFile("test.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("Main-Class", "Main");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+
+        out.putNextEntry(new ZipEntry("com/"));
+        out.putNextEntry(new ZipEntry("com/example/"));
+        ZipEntry deflated = new ZipEntry("com/example/Main.class");
+        deflated.setTime(1000000000000L);
+        deflated.setComment("deflated");
+        out.putNextEntry(deflated);
+        for (int i = 0; i < 100; ++i)
+        {
+            out.write(("class content " + i).getBytes("UTF-8"));
+        }
+
+        byte[] content = "stored content".getBytes("UTF-8");
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ZipEntry stored = new ZipEntry("com/example/stored.txt");
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(content.length);
+        stored.setCrc(crc.getValue());
+        stored.setExtra(new byte[]{(byte) 0xFE, (byte) 0xCA, 2, 0, 1, 2});
+        out.putNextEntry(stored);
+        out.write(content);
+
+        out.putNextEntry(new ZipEntry("empty.txt"));
+        out.close();
+        return jar;
+    }
+
+    /**
+     * Returns the total size of the entries of a jar.
+     *
+     * @param jar the jar
+     * @return the total uncompressed size of the entries
+     * @throws Exception for any error
+     */
+    private long getContentSize(File jar) throws Exception
+    {
+        long result = 0;
+        ZipFile zip = new ZipFile(jar);
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements())
+        {
+            result += entries.nextElement().getSize();
+        }
+        zip.close();
+        return result;
+    }
+
+    /**
+     * Verifies two jars have the same entries, in the same order.
+     *
+     * @param expected the expected jar
+     * @param actual   the actual jar
+     * @throws Exception for any error
+     */
+    private void checkEquals(File expected, File actual) throws Exception
+    {
+        ZipFile expectedZip = new ZipFile(expected);
+        ZipFile actualZip = new ZipFile(actual);
+        List<? extends ZipEntry> expectedEntries = list(expectedZip);
+        List<? extends ZipEntry> actualEntries = list(actualZip);
+        assertEquals(expectedEntries.size(), actualEntries.size());
+        for (int i = 0; i < expectedEntries.size(); ++i)
+        {
+            ZipEntry expectedEntry = expectedEntries.get(i);
+            ZipEntry actualEntry = actualEntries.get(i);
+            assertEquals(expectedEntry.getName(), actualEntry.getName());
+            assertEquals(expectedEntry.getMethod(), actualEntry.getMethod());
+            assertEquals(expectedEntry.getTime(), actualEntry.getTime());
+            assertEquals(expectedEntry.getSize(), actualEntry.getSize());
+            assertEquals(expectedEntry.getCrc(), actualEntry.getCrc());
+            assertEquals(expectedEntry.getComment(), actualEntry.getComment());
+            assertArrayEquals(expectedEntry.getExtra(), actualEntry.getExtra());
+            assertArrayEquals(read(expectedZip, expectedEntry), read(actualZip, actualEntry));
+        }
+        expectedZip.close();
+        actualZip.close();
+    }
+
+    /**
+     * Returns the entries of a zip, in order.
+     *
+     * @param zip the zip
+     * @return the entries
+     */
+    private List<? extends ZipEntry> list(ZipFile zip)
+    {
+        List<ZipEntry> result = new ArrayList<ZipEntry>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements())
+        {
+            result.add(entries.nextElement());
+        }
+        return result;
+    }
+
+    /**
+     * Reads the content of an entry.
+     *
+     * @param zip   the zip
+     * @param entry the entry
+     * @return the entry content
+     * @throws Exception for any error
+     */
+    private byte[] read(ZipFile zip, ZipEntry entry) throws Exception
+    {
+        InputStream in = zip.getInputStream(entry);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IoHelper.copyStream(in, out);
+        in.close();
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link PlatformProbe} class.
+ */
+public class PlatformProbeTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that free space is determined for existing paths, and cached.
+     */
+    @Test
+    public void testUsableSpace()
+    {
+        File dir = temporaryFolder.getRoot();
+        long space = PlatformProbe.getUsableSpace(dir);
+        assertTrue(space > 0);
+        assertEquals(space, PlatformProbe.getUsableSpace(dir));
+        assertEquals(space, IoHelper.getFreeSpace(dir.getAbsolutePath()));
+
+        PlatformProbe.clearFreeSpace();
+        assertTrue(PlatformProbe.getUsableSpace(dir) > 0);
+    }
+
+    /**
+     * Verifies that free space cannot be determined for paths that don't exist.
+     */
+    @Test
+    public void testUsableSpaceMissingPath()
+    {
+        File missing = new File(temporaryFolder.getRoot(), "missing");
+        assertEquals(-1, PlatformProbe.getUsableSpace(missing));
+    }
+
+    /**
+     * Verifies that environment variables are read from the JVM.
+     */
+    @Test
+    public void testGetenv()
+    {
+        Map<String, String> env = System.getenv();
+        for (Map.Entry<String, String> entry : env.entrySet())
+        {
+            assertEquals(entry.getValue(), PlatformProbe.getenv(entry.getKey()));
+            assertEquals(entry.getValue(), IoHelper.getenv(entry.getKey()));
+        }
+        assertEquals(env.size(), PlatformProbe.getEnvironment().size());
+        assertNull(PlatformProbe.getenv("IZPACK_UNDEFINED_VARIABLE_" + System.nanoTime()));
+    }
+}
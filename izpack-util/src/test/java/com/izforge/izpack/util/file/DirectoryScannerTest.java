@@ -0,0 +1,151 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+/**
+ * Tests the {@link DirectoryScanner}.
+ */
+public class DirectoryScannerTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The directory to scan.
+     */
+    private File basedir;
+
+
+    /**
+     * Sets up the test case.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Before
+    public void setUp() throws IOException
+    {
+        basedir = temporaryFolder.newFolder("base");
+        for (String dir : new String[]{"a", "b"})
+        {
+            for (String subdir : new String[]{"src", "test", "doc"})
+            {
+                File path = new File(basedir, dir + File.separator + subdir + File.separator + "nested");
+                assertTrue(path.mkdirs());
+                for (String name : new String[]{"One.java", "Two.java", "readme.txt"})
+                {
+                    assertTrue(new File(path, name).createNewFile());
+                    assertTrue(new File(path.getParentFile(), name).createNewFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies that scanning with multiple threads gives the same results, in the same order, as scanning with a
+     * single thread.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testThreadedScan() throws Exception
+    {
+        String[][][] patterns = {
+                {null, null},
+                {{"**/*.java"}, {"**/test/**"}},
+                {{"a/**"}, {"**/nested/**"}},
+                {{"b/src/One.java", "*/doc/**"}, {"**/*.txt"}}
+        };
+        for (String[][] pattern : patterns)
+        {
+            DirectoryScanner expected = scan(pattern[0], pattern[1], 1, null);
+            DirectoryScanner actual = scan(pattern[0], pattern[1], 4, null);
+            assertArrayEquals(expected.getIncludedFiles(), actual.getIncludedFiles());
+            assertArrayEquals(expected.getIncludedDirectories(), actual.getIncludedDirectories());
+            assertArrayEquals(expected.getExcludedFiles(), actual.getExcludedFiles());
+            assertArrayEquals(expected.getNotIncludedFiles(), actual.getNotIncludedFiles());
+            assertArrayEquals(expected.getNotIncludedDirectories(), actual.getNotIncludedDirectories());
+        }
+    }
+
+    /**
+     * Verifies that scanners sharing a listing cache don't list directories again.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSharedListings() throws Exception
+    {
+        DirectoryListingCache listings = new DirectoryListingCache();
+        DirectoryScanner first = scan(new String[]{"a/**"}, null, 1, listings);
+        assertEquals(18, first.getIncludedFiles().length);
+        assertTrue(listings.isCached(new File(basedir, "a")));
+
+        // a file created after listing isn't seen while the cache is in use
+        assertTrue(new File(basedir, "a" + File.separator + "Three.java").createNewFile());
+        DirectoryScanner second = scan(new String[]{"a/**/*.java"}, null, 1, listings);
+        assertEquals(12, second.getIncludedFiles().length);
+
+        DirectoryScanner uncached = scan(new String[]{"a/**/*.java"}, null, 1, null);
+        assertEquals(13, uncached.getIncludedFiles().length);
+    }
+
+    /**
+     * Scans the base directory.
+     *
+     * @param includes the include patterns. May be <tt>null</tt>
+     * @param excludes the exclude patterns. May be <tt>null</tt>
+     * @param threads  the number of threads
+     * @param listings the listing cache. May be <tt>null</tt>
+     * @return the scanner
+     * @throws Exception for any error
+     */
+    private DirectoryScanner scan(String[] includes, String[] excludes, int threads, DirectoryListingCache listings)
+            throws Exception
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(basedir);
+        scanner.setIncludes(includes);
+        scanner.setExcludes(excludes);
+        scanner.setThreads(threads);
+        if (listings != null)
+        {
+            scanner.setListingCache(listings);
+        }
+        scanner.scan();
+        return scanner;
+    }
+}
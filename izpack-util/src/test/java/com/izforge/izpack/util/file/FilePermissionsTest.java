@@ -0,0 +1,168 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.izforge.izpack.util.file;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.izforge.izpack.util.OsVersion;
+
+
+/**
+ * Tests the {@link FilePermissions} class.
+ * <p/>
+ * Permissions are only changed on Unix, so the tests do nothing on other platforms.
+ */
+public class FilePermissionsTest
+{
+
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that modes can be set and read back.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSetMode() throws IOException
+    {
+        if (OsVersion.IS_UNIX)
+        {
+            File file = temporaryFolder.newFile("file");
+            assertTrue(FilePermissions.setMode(file, 0754));
+            assertEquals(0754, FilePermissions.getMode(file));
+            assertTrue(FilePermissions.setMode(file, 0600));
+            assertEquals(0600, FilePermissions.getMode(file));
+        }
+    }
+
+    /**
+     * Verifies that octal and symbolic <tt>chmod</tt> modes are applied.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testChmod() throws IOException
+    {
+        if (OsVersion.IS_UNIX)
+        {
+            File file = temporaryFolder.newFile("file");
+            assertTrue(FilePermissions.chmod(file, "640"));
+            assertEquals(0640, FilePermissions.getMode(file));
+
+            assertTrue(FilePermissions.chmod(file, "u+x,g-r,o+r"));
+            assertEquals(0704, FilePermissions.getMode(file));
+
+            assertTrue(FilePermissions.chmod(file, "a=r"));
+            assertEquals(0444, FilePermissions.getMode(file));
+
+            assertTrue(FilePermissions.chmod(file, "u+w-r"));
+            assertEquals(0244, FilePermissions.getMode(file));
+
+            assertTrue(FilePermissions.chmod(file, "uga+rwx"));
+            assertEquals(0777, FilePermissions.getMode(file));
+        }
+    }
+
+    /**
+     * Verifies that clauses without a user apply to all users, less group and other write permission.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testChmodNoUser() throws IOException
+    {
+        if (OsVersion.IS_UNIX)
+        {
+            File file = temporaryFolder.newFile("file");
+            assertTrue(FilePermissions.setMode(file, 0600));
+            assertTrue(FilePermissions.chmod(file, "+x"));
+            assertEquals(0711, FilePermissions.getMode(file));
+
+            assertTrue(FilePermissions.chmod(file, "+rw"));
+            assertEquals(0755, FilePermissions.getMode(file));
+        }
+    }
+
+    /**
+     * Verifies that execute permission is only granted to those that may read the file.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testAddExecute() throws IOException
+    {
+        if (OsVersion.IS_UNIX)
+        {
+            File file = temporaryFolder.newFile("file");
+            assertTrue(FilePermissions.setMode(file, 0644));
+            assertTrue(FilePermissions.addExecute(file, 0111));
+            assertEquals(0755, FilePermissions.getMode(file));
+
+            assertTrue(FilePermissions.setMode(file, 0600));
+            assertTrue(FilePermissions.addExecute(file, 0111));
+            assertEquals(0700, FilePermissions.getMode(file));
+
+            assertTrue(FilePermissions.setMode(file, 0640));
+            assertTrue(FilePermissions.addExecute(file, 0755));
+            assertEquals(0750, FilePermissions.getMode(file));
+
+            assertTrue(FilePermissions.setMode(file, 0444));
+            assertTrue(FilePermissions.addExecute(file, 0100));
+            assertEquals(0544, FilePermissions.getMode(file));
+
+            assertFalse(FilePermissions.addExecute(file, 0644));
+            assertEquals(0544, FilePermissions.getMode(file));
+        }
+    }
+
+    /**
+     * Verifies that unsupported modes are rejected, leaving the permissions unchanged.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testUnsupported() throws IOException
+    {
+        if (OsVersion.IS_UNIX)
+        {
+            File file = temporaryFolder.newFile("file");
+            assertTrue(FilePermissions.setMode(file, 0644));
+            assertFalse(FilePermissions.chmod(file, "u+s"));
+            assertFalse(FilePermissions.chmod(file, "4755"));
+            assertFalse(FilePermissions.chmod(file, "u"));
+            assertFalse(FilePermissions.chmod(file, "g*w"));
+            assertEquals(0644, FilePermissions.getMode(file));
+        }
+    }
+}
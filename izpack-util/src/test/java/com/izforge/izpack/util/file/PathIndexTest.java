@@ -0,0 +1,108 @@
+/*
+ * IzPack - Copyright 2001-2013 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.izforge.izpack.util.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the {@link PathIndex} class.
+ */
+public class PathIndexTest
+{
+
+    /**
+     * The index under test.
+     */
+    private final PathIndex index = new PathIndex(Arrays.asList(
+            "lib/b.jar", "LIB/c.jar", "lib/a.jar", "bin/run.sh", "lib/\u00c4.jar", "lib/\u00e4.jar", "lib/a.jar"));
+
+
+    /**
+     * Verifies that all paths are returned, sorted and without duplicates, for an empty prefix.
+     */
+    @Test
+    public void testEmptyPrefix()
+    {
+        List<String> expected = Arrays.asList("LIB/c.jar", "bin/run.sh", "lib/a.jar", "lib/b.jar", "lib/\u00c4.jar",
+                                              "lib/\u00e4.jar");
+        assertEquals(6, index.size());
+        assertEquals(expected, index.getPaths());
+        assertEquals(expected, index.getPaths("", true));
+        assertEquals(expected, index.getPaths("", false));
+    }
+
+    /**
+     * Verifies case sensitive lookups.
+     */
+    @Test
+    public void testCaseSensitive()
+    {
+        assertEquals(Arrays.asList("lib/a.jar", "lib/b.jar", "lib/\u00c4.jar", "lib/\u00e4.jar"),
+                     index.getPaths("lib/", true));
+        assertEquals(Arrays.asList("LIB/c.jar"), index.getPaths("LIB/", true));
+        assertEquals(Arrays.asList("lib/\u00e4.jar"), index.getPaths("lib/\u00e4", true));
+        assertEquals(0, index.getPaths("Lib/", true).size());
+    }
+
+    /**
+     * Verifies that case insensitive lookups fold US-ASCII characters.
+     */
+    @Test
+    public void testCaseInsensitive()
+    {
+        assertEquals(Arrays.asList("lib/a.jar", "lib/b.jar", "LIB/c.jar", "lib/\u00c4.jar", "lib/\u00e4.jar"),
+                     index.getPaths("Lib/", false));
+        assertEquals(Arrays.asList("lib/a.jar"), index.getPaths("LIB/A", false));
+        assertEquals(0, index.getPaths("lib/d", false).size());
+    }
+
+    /**
+     * Verifies that case insensitive lookups ignore the prefix from its first non-ASCII character, returning all
+     * candidates that a matcher folding non-ASCII characters may accept.
+     */
+    @Test
+    public void testCaseInsensitiveNonASCII()
+    {
+        List<String> expected = Arrays.asList("lib/a.jar", "lib/b.jar", "LIB/c.jar", "lib/\u00c4.jar",
+                                              "lib/\u00e4.jar");
+        assertEquals(expected, index.getPaths("lib/\u00e4", false));
+        assertEquals(expected, index.getPaths("LIB/\u00c4.jar", false));
+        assertEquals(Arrays.asList("bin/run.sh", "lib/a.jar", "lib/b.jar", "LIB/c.jar", "lib/\u00c4.jar",
+                                   "lib/\u00e4.jar"), index.getPaths("\u00e4", false));
+    }
+
+    /**
+     * Verifies that {@link PathIndex#foldCase(String)} only folds US-ASCII characters.
+     */
+    @Test
+    public void testFoldCase()
+    {
+        assertEquals("lib/a.jar", PathIndex.foldCase("LiB/A.jar"));
+        assertEquals("lib/\u00c4", PathIndex.foldCase("LIB/\u00c4"));
+    }
+}